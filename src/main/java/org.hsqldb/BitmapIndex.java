@@ -0,0 +1,262 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.index.RowIterator;
+import org.hsqldb.lib.HashMap;
+import org.hsqldb.store.SparseBitMap;
+
+/**
+ * A BITMAP INDEX on a single column of a MEMORY or CACHED table. For each
+ * distinct value of the column, and for NULL, it holds the set of the
+ * positions of the rows with the value as a compressed SparseBitMap.<p>
+ *
+ * The bitmaps are held in memory only. They are maintained by the Table
+ * when rows are inserted and deleted, and built again from the rows after
+ * the table is opened or its data file is defragmented. TableFilter
+ * combines the bitmaps for equality, IN and IS NULL conditions with AND
+ * and OR, then reads the rows in the order of their positions.<p>
+ *
+ * Only the column types for which Object.equals() agrees with
+ * Column.compare() can be indexed, as the values are the keys of a
+ * HashMap.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+final class BitmapIndex {
+
+    private HsqlName           name;
+    private final Table        table;
+    private final int          column;
+    private final HashMap      valueMap;
+    private SparseBitMap       nullMap;
+
+    BitmapIndex(HsqlName name, Table table, int column) {
+
+        this.name   = name;
+        this.table  = table;
+        this.column = column;
+        valueMap    = new HashMap();
+        nullMap     = new SparseBitMap();
+    }
+
+    HsqlName getName() {
+        return name;
+    }
+
+    void setName(String name, boolean isquoted) throws HsqlException {
+        this.name.rename(name, isquoted);
+    }
+
+    Table getTable() {
+        return table;
+    }
+
+    int getColumn() {
+        return column;
+    }
+
+    /**
+     * Returns the count of distinct non-null values.
+     */
+    int getValueCount() {
+        return valueMap.size();
+    }
+
+    /**
+     * Returns true if a column of the given type can be indexed.
+     */
+    static boolean isIndexable(int type) {
+
+        switch (type) {
+
+            case Types.TINYINT :
+            case Types.SMALLINT :
+            case Types.INTEGER :
+            case Types.BIGINT :
+            case Types.BOOLEAN :
+            case Types.DATE :
+            case Types.TIME :
+            case Types.TIMESTAMP :
+            case Types.CHAR :
+            case Types.VARCHAR :
+            case Types.LONGVARCHAR :
+                return true;
+
+            default :
+                return false;
+        }
+    }
+
+    /**
+     * Returns true if the values of a column of the given type are equal
+     * when they compare equal in the current collation.
+     */
+    static boolean isCollationExact(Session session, int type) {
+
+        switch (type) {
+
+            case Types.CHAR :
+            case Types.VARCHAR :
+            case Types.LONGVARCHAR :
+                return session.database.collation.collator == null;
+
+            default :
+                return true;
+        }
+    }
+
+    void insert(Row row) {
+        getMap(row.getData()[column], true).set(row.getPos());
+    }
+
+    void delete(Row row) {
+
+        Object       value = row.getData()[column];
+        SparseBitMap map   = getMap(value, false);
+
+        if (map == null) {
+            return;
+        }
+
+        map.unset(row.getPos());
+
+        if (value != null && map.cardinality() == 0) {
+            valueMap.remove(value);
+        }
+    }
+
+    void clear() {
+
+        valueMap.clear();
+
+        nullMap = new SparseBitMap();
+    }
+
+    /**
+     * Returns the positions of the rows with the value, which must be of
+     * the type of the column, or with NULL. The returned object must not
+     * be modified.
+     */
+    SparseBitMap getRows(Object value) {
+
+        SparseBitMap map = getMap(value, false);
+
+        return map == null ? new SparseBitMap()
+                           : map;
+    }
+
+    private SparseBitMap getMap(Object value, boolean create) {
+
+        if (value == null) {
+            return nullMap;
+        }
+
+        SparseBitMap map = (SparseBitMap) valueMap.get(value);
+
+        if (map == null && create) {
+            map = new SparseBitMap();
+
+            valueMap.put(value, map);
+        }
+
+        return map;
+    }
+
+    /**
+     * Returns an iterator over the rows of the table at the positions set
+     * in the map, in the order of the positions.
+     */
+    static RowIterator getIterator(Table table, SparseBitMap map) {
+        return new BitmapRowIterator(table, map);
+    }
+
+    private static final class BitmapRowIterator implements RowIterator {
+
+        private Table        table;
+        private SparseBitMap map;
+        private int          position;
+        private Row          nextRow;
+
+        BitmapRowIterator(Table table, SparseBitMap map) {
+
+            this.table = table;
+            this.map   = map;
+            nextRow    = fetch();
+        }
+
+        public boolean hasNext() {
+            return nextRow != null;
+        }
+
+        public Row next() {
+
+            Row row = nextRow;
+
+            if (row != null) {
+                nextRow = fetch();
+            }
+
+            return row;
+        }
+
+        public void release() {
+            map     = null;
+            nextRow = null;
+        }
+
+        private Row fetch() {
+
+            if (map == null) {
+                return null;
+            }
+
+            while (true) {
+                int pos = map.nextSetBit(position);
+
+                if (pos == -1) {
+                    return null;
+                }
+
+                position = pos + 1;
+
+                Row row = table.getBitmapRow(pos);
+
+                if (row != null) {
+                    return row;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,609 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb;
+
+import org.hsqldb.index.RowIterator;
+import org.hsqldb.lib.HsqlArrayList;
+
+/**
+ * Evaluates simple numeric comparison conditions of a TableFilter over
+ * blocks of rows instead of one row at a time.<p>
+ *
+ * The rows returned by the index iterator of the filter are read into a
+ * block of up to BLOCK_SIZE rows. The values of each column referenced by
+ * a block predicate are copied once into a primitive long[] or double[]
+ * vector and each predicate is then applied to the whole block, narrowing
+ * a selection vector of row offsets. Only the rows that remain in the
+ * selection are returned to the TableFilter, which checks them against the
+ * residual (non block) conditions as before.<p>
+ *
+ * A block predicate is a conjunct of the AND condition of the filter in the
+ * form <code>column op operand</code> where op is one of
+ * =, &lt;&gt;, &lt;, &lt;=, &gt;, &gt;=, the column belongs to the filter
+ * table and the operand is either another column of the same table, a
+ * literal, a parameter or a column of a table earlier in the join. The
+ * operand values other than columns of the same table do not change during
+ * a scan and are evaluated once when the scan starts. Both sides must be
+ * of integral types (TINYINT to BIGINT), or one of them of a floating
+ * point type, so that comparison over long or double values gives the
+ * same result as Column.compare().<p>
+ *
+ * Used only for tables with rows held in memory and for filters that are
+ * not on the right side of an outer join.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+final class BlockFilter {
+
+    static final int BLOCK_SIZE = 1024;
+
+    //
+    private static final int MODE_LONG   = 1;
+    private static final int MODE_DOUBLE = 2;
+
+    //
+    private final Expression[] predicates;
+    private final int[]        opTypes;
+    private final int[]        modes;
+    private final int[]        leftColumns;
+    private final int[]        rightColumns;    // -1 if operand is fixed
+    private final Expression[] operands;
+
+    // operand values evaluated at start of scan
+    private final long[]    longOperands;
+    private final double[]  doubleOperands;
+    private final boolean[] nullOperands;
+
+    // column vectors, indexed by column number
+    private final long[][]    longVectors;
+    private final double[][]  doubleVectors;
+    private final boolean[][] nullVectors;
+    private final boolean[]   longFilled;
+    private final boolean[]   doubleFilled;
+
+    //
+    private final Row[] rows;
+    private final int[] selection;
+    private int         blockSize;
+    private int         selectionSize;
+    private int         selectionPosition;
+    private boolean     isExhausted;
+    private boolean     isFalse;
+
+    private BlockFilter(BlockFilter other) {
+
+        this(toList(other.predicates), other.modes,
+             other.longVectors.length);
+    }
+
+    private static HsqlArrayList toList(Expression[] array) {
+
+        HsqlArrayList list = new HsqlArrayList(array.length);
+
+        for (int i = 0; i < array.length; i++) {
+            list.add(array[i]);
+        }
+
+        return list;
+    }
+
+    private BlockFilter(HsqlArrayList list, int[] types, int columnCount) {
+
+        int count = list.size();
+
+        predicates     = new Expression[count];
+        opTypes        = new int[count];
+        modes          = new int[count];
+        leftColumns    = new int[count];
+        rightColumns   = new int[count];
+        operands       = new Expression[count];
+        longOperands   = new long[count];
+        doubleOperands = new double[count];
+        nullOperands   = new boolean[count];
+        longVectors    = new long[columnCount][];
+        doubleVectors  = new double[columnCount][];
+        nullVectors    = new boolean[columnCount][];
+        longFilled     = new boolean[columnCount];
+        doubleFilled   = new boolean[columnCount];
+        rows           = new Row[BLOCK_SIZE];
+        selection      = new int[BLOCK_SIZE];
+
+        list.toArray(predicates);
+
+        for (int i = 0; i < count; i++) {
+            Expression e = predicates[i];
+
+            opTypes[i]     = e.getType();
+            modes[i]       = types[i];
+            leftColumns[i] = e.getArg().getColumnNr();
+            operands[i]    = e.getArg2();
+            rightColumns[i] = -1;
+
+            if (operands[i].getType() == Expression.COLUMN
+                    && operands[i].getFilter() == e.getArg().getFilter()) {
+                rightColumns[i] = operands[i].getColumnNr();
+            }
+
+            addVector(leftColumns[i], modes[i]);
+
+            if (rightColumns[i] != -1) {
+                addVector(rightColumns[i], modes[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns a new instance with the same predicates and operand values,
+     * for use by another thread.
+     */
+    BlockFilter duplicate() {
+
+        BlockFilter copy = new BlockFilter(this);
+
+        System.arraycopy(longOperands, 0, copy.longOperands, 0,
+                         longOperands.length);
+        System.arraycopy(doubleOperands, 0, copy.doubleOperands, 0,
+                         doubleOperands.length);
+        System.arraycopy(nullOperands, 0, copy.nullOperands, 0,
+                         nullOperands.length);
+
+        copy.isFalse = isFalse;
+
+        return copy;
+    }
+
+    private void addVector(int column, int mode) {
+
+        if (mode == MODE_LONG) {
+            if (longVectors[column] == null) {
+                longVectors[column] = new long[BLOCK_SIZE];
+            }
+        } else {
+            if (doubleVectors[column] == null) {
+                doubleVectors[column] = new double[BLOCK_SIZE];
+            }
+        }
+
+        if (nullVectors[column] == null) {
+            nullVectors[column] = new boolean[BLOCK_SIZE];
+        }
+    }
+
+    /**
+     * Splits the given AND condition of the filter into block predicates and
+     * a residual condition. Returns null if no conjunct can be used as a
+     * block predicate. Otherwise, the residual condition (possibly null) is
+     * stored as the first element of the residual array.
+     */
+    static BlockFilter newBlockFilter(TableFilter filter, Expression e,
+                                      Expression[] residual) {
+
+        if (e == null || filter.isOuterJoin || filter.filterTable.isCached) {
+            return null;
+        }
+
+        HsqlArrayList conjuncts = new HsqlArrayList();
+        HsqlArrayList list      = new HsqlArrayList();
+        Expression    rest      = null;
+
+        addConjuncts(e, conjuncts);
+
+        int[] types = new int[conjuncts.size()];
+
+        for (int i = 0; i < conjuncts.size(); i++) {
+            Expression c    = (Expression) conjuncts.get(i);
+            int        mode = getMode(filter, c);
+
+            if (mode == 0) {
+                rest = rest == null ? c
+                                    : new Expression(Expression.AND, rest,
+                                                     c);
+            } else {
+                types[list.size()] = mode;
+
+                list.add(c);
+            }
+        }
+
+        if (list.isEmpty()) {
+            return null;
+        }
+
+        residual[0] = rest;
+
+        return new BlockFilter(list, types,
+                               filter.filterTable.getColumnCount());
+    }
+
+    private static void addConjuncts(Expression e, HsqlArrayList list) {
+
+        if (e.getType() == Expression.AND) {
+            addConjuncts(e.getArg(), list);
+            addConjuncts(e.getArg2(), list);
+        } else if (e.getType() != Expression.TRUE) {
+            list.add(e);
+        }
+    }
+
+    /**
+     * Returns MODE_LONG or MODE_DOUBLE if the condition can be evaluated
+     * as a block predicate, otherwise 0.
+     */
+    private static int getMode(TableFilter filter, Expression e) {
+
+        switch (e.getType()) {
+
+            case Expression.EQUAL :
+            case Expression.NOT_EQUAL :
+            case Expression.BIGGER :
+            case Expression.BIGGER_EQUAL :
+            case Expression.SMALLER :
+            case Expression.SMALLER_EQUAL :
+                break;
+
+            default :
+                return 0;
+        }
+
+        Expression left  = e.getArg();
+        Expression right = e.getArg2();
+
+        if (left.getType() != Expression.COLUMN
+                || left.getFilter() != filter) {
+            return 0;
+        }
+
+        switch (right.getType()) {
+
+            case Expression.VALUE :
+                break;
+
+            case Expression.COLUMN :
+                if (right.getFilter() != filter &&!right.isResolved()) {
+                    return 0;
+                }
+                break;
+
+            default :
+                return 0;
+        }
+
+        int leftType  = left.getDataType();
+        int rightType = right.getDataType();
+
+        if (!Types.isNumberType(leftType) ||!Types.isNumberType(rightType)) {
+            return 0;
+        }
+
+        int type = leftType == rightType ? leftType
+                                         : Column.getCombinedNumberType(
+                                             leftType, rightType,
+                                             e.getType());
+
+        switch (type) {
+
+            case Types.TINYINT :
+            case Types.SMALLINT :
+            case Types.INTEGER :
+            case Types.BIGINT :
+                return MODE_LONG;
+
+            case Types.REAL :
+            case Types.FLOAT :
+            case Types.DOUBLE :
+                return MODE_DOUBLE;
+
+            default :
+                return 0;
+        }
+    }
+
+    /**
+     * Evaluates the fixed operands and clears the block. Called when the
+     * scan of the filter starts.
+     */
+    void reset(Session session) throws HsqlException {
+
+        clearBlock();
+
+        selectionPosition = 0;
+        isExhausted       = false;
+        isFalse           = false;
+
+        for (int i = 0; i < predicates.length; i++) {
+            if (rightColumns[i] != -1) {
+                continue;
+            }
+
+            Object value = operands[i].getValue(session);
+
+            nullOperands[i] = value == null;
+
+            if (value == null) {
+                isFalse = true;
+
+                continue;
+            }
+
+            if (modes[i] == MODE_LONG) {
+                longOperands[i] = ((Number) value).longValue();
+            } else {
+                doubleOperands[i] = ((Number) value).doubleValue();
+            }
+        }
+    }
+
+    /**
+     * Returns the next row that satisfies the end condition and all the
+     * block predicates, or null when there are no more rows. The
+     * currentData of the filter, if not null, is set to the data of the
+     * returned row.
+     */
+    Row next(Session session, TableFilter filter, RowIterator it,
+             Expression eEnd) throws HsqlException {
+
+        while (true) {
+            if (selectionPosition < selectionSize) {
+                Row row = rows[selection[selectionPosition++]];
+
+                if (filter != null) {
+                    filter.currentData = row.getData();
+                }
+
+                return row;
+            }
+
+            if (isExhausted || isFalse) {
+                clearBlock();
+
+                return null;
+            }
+
+            fillBlock(session, filter, it, eEnd);
+            applyPredicates();
+        }
+    }
+
+    private void fillBlock(Session session, TableFilter filter,
+                           RowIterator it,
+                           Expression eEnd) throws HsqlException {
+
+        blockSize = 0;
+
+        while (blockSize < BLOCK_SIZE) {
+            Row row = it.next();
+
+            if (row == null) {
+                isExhausted = true;
+
+                break;
+            }
+
+            if (eEnd != null) {
+                filter.currentData = row.getData();
+
+                if (!eEnd.testCondition(session)) {
+                    isExhausted = true;
+
+                    break;
+                }
+            }
+
+            rows[blockSize++] = row;
+        }
+
+        for (int i = 0; i < longFilled.length; i++) {
+            longFilled[i]   = false;
+            doubleFilled[i] = false;
+        }
+
+        for (int i = 0; i < blockSize; i++) {
+            selection[i] = i;
+        }
+
+        selectionSize     = blockSize;
+        selectionPosition = 0;
+    }
+
+    private void clearBlock() {
+
+        for (int i = 0; i < blockSize; i++) {
+            rows[i] = null;
+        }
+
+        blockSize     = 0;
+        selectionSize = 0;
+    }
+
+    private void fillVector(int column, int mode) {
+
+        boolean[] nulls = nullVectors[column];
+
+        if (mode == MODE_LONG) {
+            if (longFilled[column]) {
+                return;
+            }
+
+            long[] vector = longVectors[column];
+
+            for (int i = 0; i < blockSize; i++) {
+                Object value = rows[i].getData()[column];
+
+                nulls[i] = value == null;
+
+                if (value != null) {
+                    vector[i] = ((Number) value).longValue();
+                }
+            }
+
+            longFilled[column] = true;
+        } else {
+            if (doubleFilled[column]) {
+                return;
+            }
+
+            double[] vector = doubleVectors[column];
+
+            for (int i = 0; i < blockSize; i++) {
+                Object value = rows[i].getData()[column];
+
+                nulls[i] = value == null;
+
+                if (value != null) {
+                    vector[i] = ((Number) value).doubleValue();
+                }
+            }
+
+            doubleFilled[column] = true;
+        }
+    }
+
+    /**
+     * Narrows the selection vector with each predicate in turn. A null on
+     * either side makes the comparison unknown and the row is rejected.
+     */
+    private void applyPredicates() {
+
+        for (int p = 0; p < predicates.length && selectionSize > 0; p++) {
+            int       left      = leftColumns[p];
+            int       right     = rightColumns[p];
+            int       op        = opTypes[p];
+            boolean[] leftNulls = nullVectors[left];
+            int       count     = 0;
+
+            fillVector(left, modes[p]);
+
+            if (right != -1) {
+                fillVector(right, modes[p]);
+            }
+
+            boolean[] rightNulls = right == -1 ? null
+                                               : nullVectors[right];
+
+            if (modes[p] == MODE_LONG) {
+                long[] a     = longVectors[left];
+                long[] b     = right == -1 ? null
+                                           : longVectors[right];
+                long   value = longOperands[p];
+
+                for (int i = 0; i < selectionSize; i++) {
+                    int s = selection[i];
+
+                    if (leftNulls[s] || (b != null && rightNulls[s])) {
+                        continue;
+                    }
+
+                    long y   = b == null ? value
+                                         : b[s];
+                    int  cmp = a[s] > y ? 1
+                                        : (y > a[s] ? -1
+                                                    : 0);
+
+                    if (isTrue(op, cmp)) {
+                        selection[count++] = s;
+                    }
+                }
+            } else {
+                double[] a     = doubleVectors[left];
+                double[] b     = right == -1 ? null
+                                             : doubleVectors[right];
+                double   value = doubleOperands[p];
+
+                for (int i = 0; i < selectionSize; i++) {
+                    int s = selection[i];
+
+                    if (leftNulls[s] || (b != null && rightNulls[s])) {
+                        continue;
+                    }
+
+                    double y   = b == null ? value
+                                           : b[s];
+                    int    cmp = a[s] > y ? 1
+                                          : (y > a[s] ? -1
+                                                      : 0);
+
+                    if (isTrue(op, cmp)) {
+                        selection[count++] = s;
+                    }
+                }
+            }
+
+            selectionSize = count;
+        }
+    }
+
+    private static boolean isTrue(int op, int cmp) {
+
+        switch (op) {
+
+            case Expression.EQUAL :
+                return cmp == 0;
+
+            case Expression.NOT_EQUAL :
+                return cmp != 0;
+
+            case Expression.BIGGER :
+                return cmp > 0;
+
+            case Expression.BIGGER_EQUAL :
+                return cmp >= 0;
+
+            case Expression.SMALLER :
+                return cmp < 0;
+
+            case Expression.SMALLER_EQUAL :
+            default :
+                return cmp <= 0;
+        }
+    }
+
+    /**
+     * Retrieves a String representation of the block predicates.
+     */
+    String describe(Session session) {
+
+        StringBuffer sb = new StringBuffer();
+
+        for (int i = 0; i < predicates.length; i++) {
+            if (i > 0) {
+                sb.append(" AND ");
+            }
+
+            sb.append(predicates[i].describe(session));
+        }
+
+        return sb.toString();
+    }
+}
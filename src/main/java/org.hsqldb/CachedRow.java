@@ -265,9 +265,16 @@ public class CachedRow extends Row {
 
         Node n = nPrimaryNode;
 
-        while (n != null) {
+        for (int i = 0; n != null; i++) {
             if (n.isRoot()) {
-                return true;
+                Index index = tTable.getIndex(i);
+                Node  root  = index.getRoot(null);
+
+                // the nodes of rows not in a partial index are not linked,
+                // nor are the nodes of an index that is not yet built
+                if (root != null && (!index.isPartial() || root == n)) {
+                    return true;
+                }
             }
 
             n = n.nNext;
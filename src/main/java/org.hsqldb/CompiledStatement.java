@@ -146,6 +146,29 @@ final class CompiledStatement {
      */
     final HsqlName schemaHsqlName;
 
+    /**
+     * Tables read by a SELECT whose result can be kept in the ResultCache,
+     * or null if the result cannot be cached
+     */
+    Table[] resultCacheTables;
+
+    /** true when resultCacheTables has been set */
+    boolean resultCacheChecked;
+
+    /**
+     * Key in CompiledStatementManager of a statement compiled for directly
+     * executed sql, or null
+     */
+    String parameterizedKey;
+
+    /** links in the CompiledStatementManager list in order of use */
+    CompiledStatement lruPrevious;
+    CompiledStatement lruNext;
+
+    /** number of executions and their total time in nanoseconds */
+    long executeCount;
+    long executeTime;
+
     /**
      * Creates a new instance of CompiledStatement for DDL
      *
@@ -395,7 +418,7 @@ final class CompiledStatement {
             SubQuery sq = subqueries[i];
 
             // VIEW working table contents are filled only once per query and reused
-            if (sq.isMaterialised) {
+            if (sq.isMaterialised || sq.isMerged) {
                 continue;
             }
 
@@ -417,6 +440,8 @@ final class CompiledStatement {
             subqueries[i].table.clearAllRows(session);
 
             subqueries[i].isMaterialised = false;
+
+            subqueries[i].clearExecutionData();
         }
     }
 
@@ -434,6 +459,8 @@ final class CompiledStatement {
         parameters   = null;
         paramTypes   = null;
         subqueries   = null;
+
+        resultCacheTables = null;
     }
 
     boolean canExecute(Session session) throws HsqlException {
@@ -86,6 +86,7 @@ final class CompiledStatementExecutor {
     Result execute(CompiledStatement cs, Object[] paramValues) {
 
         Result result = null;
+        long   start  = System.nanoTime();
 
         JavaSystem.gc();
 
@@ -108,6 +109,10 @@ final class CompiledStatementExecutor {
             result = emptyZeroResult;
         }
 
+        cs.executeCount++;
+
+        cs.executeTime += System.nanoTime() - start;
+
         return result;
     }
 
@@ -32,10 +32,13 @@
 package org.hsqldb;
 
 import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.lib.HashMap;
+import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.IntKeyHashMap;
 import org.hsqldb.lib.IntKeyIntValueHashMap;
 import org.hsqldb.lib.IntValueHashMap;
 import org.hsqldb.lib.Iterator;
+import org.hsqldb.store.ValuePool;
 
 /**
  * This class manages the reuse of CompiledStatement objects for prepared
@@ -60,14 +63,28 @@ import org.hsqldb.lib.Iterator;
  *
  * This class keeps count of the number of different sessions that are linked
  * to each registered compiled statement, and the number of times each session
- * is linked.  It unregisters a compiled statement when no session remains
- * linked to it.<p>
+ * is linked.  When no session remains linked to a compiled statement, it is
+ * kept for reuse by a later session that prepares the same sql.<p>
+ *
+ * The number of CompiledStatement objects kept is limited by the
+ * hsqldb.statement_cache_size property. When the limit is exceeded, the least
+ * recently used statement is evicted: it is unregistered if no session is
+ * linked to it, otherwise it is invalidated in the same way as after a DDL
+ * change and is recompiled on its next use. The execution count and time of
+ * a statement are kept when it is recompiled. A limit of 0 means no limit,
+ * in which case statements are unregistered as soon as no session is linked
+ * to them.<p>
  *
  * Modified by fredt@users from the original by boucherb@users to simplify,
  * support multiple identical prepared statements per session, and avoid
  * keeping references to CompiledStatement objects after DDL changes which
  * could result in memory leaks. Modified further to support schemas.<p>
  *
+ * Statements executed directly, rather than prepared, are reused when they
+ * differ only in the values of literals. Their parameterized forms are kept
+ * separately, are not linked with sessions and are discarded after each DDL
+ * change. They are subject to the same limit (fredt@users).<p>
+ *
  * @author boucherb@users
  * @author fredt@users
  *
@@ -97,6 +114,25 @@ final class CompiledStatementManager {
     /** Map: Compiled statment id (int) => number of sessions that use the statement */
     private IntKeyIntValueHashMap useMap;
 
+    /**
+     * Map: user, schema and parameterized SQL String => Compiled Statement,
+     * or the SQL String itself if the statement cannot be reused
+     */
+    private HashMap parameterizedMap;
+
+    /** maximum number of entries in parameterizedMap */
+    private static final int PARAMETERIZED_MAX = 1000;
+
+    /** most recently and least recently used valid compiled statements */
+    private CompiledStatement head;
+    private CompiledStatement tail;
+
+    /** number of statements in the list */
+    private int compiledCount;
+
+    /** maximum number of statements in the list, 0 for no limit */
+    private int maxCompiled;
+
     /**
      * Monotonically increasing counter used to assign unique ids to compiled
      * statements.
@@ -111,13 +147,14 @@ final class CompiledStatementManager {
      */
     CompiledStatementManager(Database database) {
 
-        this.database = database;
-        schemaMap     = new IntKeyHashMap();
-        sqlLookup     = new IntKeyHashMap();
-        csidMap       = new IntKeyHashMap();
-        sessionUseMap = new IntKeyHashMap();
-        useMap        = new IntKeyIntValueHashMap();
-        next_cs_id    = 0;
+        this.database    = database;
+        schemaMap        = new IntKeyHashMap();
+        sqlLookup        = new IntKeyHashMap();
+        csidMap          = new IntKeyHashMap();
+        sessionUseMap    = new IntKeyHashMap();
+        useMap           = new IntKeyIntValueHashMap();
+        parameterizedMap = new HashMap();
+        next_cs_id       = 0;
     }
 
     /**
@@ -130,6 +167,8 @@ final class CompiledStatementManager {
         csidMap.clear();
         sessionUseMap.clear();
         useMap.clear();
+        parameterizedMap.clear();
+        clearList();
 
         next_cs_id = 0;
     }
@@ -148,6 +187,68 @@ final class CompiledStatementManager {
 
             cs.clearVariables();
         }
+
+        clearList();
+        removeUnused();
+    }
+
+    /**
+     * Used after any DDL change. Discards the parameterized forms of directly
+     * executed statements, including those that could not be compiled
+     * before the change.
+     */
+    synchronized void resetParameterized() {
+        clearParameterized();
+    }
+
+    /**
+     * Sets the maximum number of compiled statements kept. The least
+     * recently used statements are evicted to fit the new limit.
+     *
+     * @param size the limit, or 0 for no limit
+     */
+    synchronized void setMaxStatements(int size) {
+
+        maxCompiled = size;
+
+        if (maxCompiled == 0) {
+            removeUnused();
+        } else {
+            evict();
+        }
+    }
+
+    /**
+     * Returns the registered statements, followed by the statements
+     * compiled for directly executed sql.
+     */
+    synchronized HsqlArrayList getStatements() {
+
+        HsqlArrayList list = new HsqlArrayList();
+        Iterator      it   = csidMap.values().iterator();
+
+        while (it.hasNext()) {
+            list.add(it.next());
+        }
+
+        it = parameterizedMap.values().iterator();
+
+        while (it.hasNext()) {
+            Object value = it.next();
+
+            if (value instanceof CompiledStatement) {
+                list.add(value);
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * Returns the number of sessions linked with a registered statement.
+     */
+    synchronized int getUseCount(int csid) {
+        return useMap.get(csid, 0);
     }
 
     /**
@@ -206,15 +307,18 @@ final class CompiledStatementManager {
 
             // revalidate with the original schema
             try {
-                cs    = compileSql(session, sql, cs.schemaHsqlName.name);
-                cs.id = csid;
+                cs = compileSql(session, sql, cs.schemaHsqlName.name);
 
-                csidMap.put(csid, cs);
+                registerStatement(csid, cs);
+                evict();
             } catch (Throwable t) {
                 freeStatement(csid, session.getId(), true);
 
                 return null;
             }
+        } else {
+            unlink(cs);
+            link(cs);
         }
 
         return cs;
@@ -279,11 +383,21 @@ final class CompiledStatementManager {
 
             sqlMap.put(cs.sql, csid);
             sqlLookup.put(csid, cs.sql);
+        } else {
+            CompiledStatement old = (CompiledStatement) csidMap.get(csid);
+
+            if (old != null) {
+                unlink(old);
+
+                cs.executeCount = old.executeCount;
+                cs.executeTime  = old.executeTime;
+            }
         }
 
         cs.id = csid;
 
         csidMap.put(csid, cs);
+        link(cs);
 
         return csid;
     }
@@ -298,7 +412,7 @@ final class CompiledStatementManager {
      * @param sid the session identifier
      * @param freeAll if true, remove all links to the session
      */
-    void freeStatement(int csid, int sid, boolean freeAll) {
+    synchronized void freeStatement(int csid, int sid, boolean freeAll) {
 
         if (csid == -1) {
 
@@ -329,19 +443,7 @@ final class CompiledStatementManager {
 
                 // statement already removed due to invalidation
             } else if (usecount == 1) {
-                CompiledStatement cs =
-                    (CompiledStatement) csidMap.remove(csid);
-
-                if (cs != null) {
-                    int schemaid = cs.schemaHsqlName.hashCode();
-                    IntValueHashMap sqlMap =
-                        (IntValueHashMap) schemaMap.get(schemaid);
-                    String sql = (String) sqlLookup.remove(csid);
-
-                    sqlMap.remove(sql);
-                }
-
-                useMap.remove(csid);
+                releaseStatement(csid);
             } else {
                 useMap.put(csid, usecount - 1);
             }
@@ -379,19 +481,7 @@ final class CompiledStatementManager {
             int usecount = useMap.get(csid, 1) - 1;
 
             if (usecount == 0) {
-                CompiledStatement cs =
-                    (CompiledStatement) csidMap.remove(csid);
-
-                if (cs != null) {
-                    int schemaid = cs.schemaHsqlName.hashCode();
-                    IntValueHashMap sqlMap =
-                        (IntValueHashMap) schemaMap.get(schemaid);
-                    String sql = (String) sqlLookup.remove(csid);
-
-                    sqlMap.remove(sql);
-                }
-
-                useMap.remove(csid);
+                releaseStatement(csid);
             } else {
                 useMap.put(csid, usecount);
             }
@@ -431,9 +521,13 @@ final class CompiledStatementManager {
         if (cs == null ||!cs.isValid ||!session.isAdmin()) {
             cs   = compileSql(session, sql, session.currentSchema.name);
             csid = registerStatement(csid, cs);
+        } else {
+            unlink(cs);
+            link(cs);
         }
 
         linkSession(csid, session.getId());
+        evict();
 
         return cs;
     }
@@ -446,4 +540,247 @@ final class CompiledStatementManager {
 
         return sys.sqlCompileStatement(sql);
     }
+
+    /**
+     * Retrieves the compiled statement for the parameterized form of a
+     * directly executed statement, compiling it on first use. Returns null
+     * if the statement cannot be compiled with parameters, or if its
+     * parameter types are not compatible with the literals.
+     *
+     * @param session the session
+     * @param psql the parameterized statement
+     * @return the compiled statement or null
+     */
+    synchronized CompiledStatement getParameterized(Session session,
+            ParameterizedSql psql) {
+
+        String key = session.getUsername() + '\u0000'
+                     + session.currentSchema.name + '\u0000' + psql.key;
+        Object value = parameterizedMap.get(key);
+
+        if (value instanceof CompiledStatement) {
+            CompiledStatement cs = (CompiledStatement) value;
+
+            if (cs.isValid) {
+                unlink(cs);
+                link(cs);
+
+                return cs;
+            }
+        } else if (value != null) {
+            return null;
+        }
+
+        if (parameterizedMap.size() >= PARAMETERIZED_MAX) {
+            clearParameterized();
+        }
+
+        CompiledStatement cs;
+
+        try {
+            cs = compileSql(session, psql.sql, session.currentSchema.name);
+        } catch (Throwable t) {
+            parameterizedMap.put(key, psql.sql);
+
+            return null;
+        }
+
+        boolean isReusable;
+
+        switch (cs.type) {
+
+            case CompiledStatement.INSERT_VALUES :
+            case CompiledStatement.INSERT_SELECT :
+            case CompiledStatement.UPDATE :
+            case CompiledStatement.DELETE :
+            case CompiledStatement.SELECT :
+                isReusable = psql.isCompatible(cs);
+                break;
+
+            default :
+                isReusable = false;
+        }
+
+        if (!isReusable) {
+            parameterizedMap.put(key, psql.sql);
+
+            return null;
+        }
+
+        cs.id               = nextID();
+        cs.parameterizedKey = key;
+
+        parameterizedMap.put(key, cs);
+        link(cs);
+        evict();
+
+        return cs;
+    }
+
+    /**
+     * Called when no session remains linked to a registered statement.
+     * Keeps the statement for reuse if it is valid and there is a limit on
+     * the number of statements, otherwise unregisters it.
+     */
+    private void releaseStatement(int csid) {
+
+        CompiledStatement cs = (CompiledStatement) csidMap.get(csid);
+
+        useMap.remove(csid);
+
+        if (cs == null ||!cs.isValid || maxCompiled == 0) {
+            removeStatement(csid);
+        }
+    }
+
+    /**
+     * Unregisters a statement.
+     */
+    private void removeStatement(int csid) {
+
+        CompiledStatement cs = (CompiledStatement) csidMap.remove(csid);
+
+        if (cs != null) {
+            int schemaid = cs.schemaHsqlName.hashCode();
+            IntValueHashMap sqlMap =
+                (IntValueHashMap) schemaMap.get(schemaid);
+            String sql = (String) sqlLookup.remove(csid);
+
+            sqlMap.remove(sql);
+            unlink(cs);
+        }
+
+        useMap.remove(csid);
+    }
+
+    /**
+     * Unregisters all statements that are not linked with a session.
+     */
+    private void removeUnused() {
+
+        HsqlArrayList list = new HsqlArrayList();
+        Iterator      it   = csidMap.keySet().iterator();
+
+        while (it.hasNext()) {
+            int csid = it.nextInt();
+
+            if (useMap.get(csid, 0) == 0) {
+                list.add(ValuePool.getInt(csid));
+            }
+        }
+
+        for (int i = 0; i < list.size(); i++) {
+            removeStatement(((Integer) list.get(i)).intValue());
+        }
+    }
+
+    private void clearParameterized() {
+
+        Iterator it = parameterizedMap.values().iterator();
+
+        while (it.hasNext()) {
+            Object value = it.next();
+
+            if (value instanceof CompiledStatement) {
+                unlink((CompiledStatement) value);
+            }
+        }
+
+        parameterizedMap.clear();
+    }
+
+    /**
+     * Evicts the least recently used statements until the number of
+     * statements is within the limit. A statement compiled for directly
+     * executed sql, or one not linked with any session, is removed. Any
+     * other statement is replaced with an invalid copy, to be recompiled on
+     * its next use, while the statement itself is left intact for any
+     * execution in progress.
+     */
+    private void evict() {
+
+        if (maxCompiled == 0) {
+            return;
+        }
+
+        while (compiledCount > maxCompiled) {
+            CompiledStatement cs = tail;
+
+            unlink(cs);
+
+            if (cs.parameterizedKey != null) {
+                parameterizedMap.remove(cs.parameterizedKey);
+            } else if (useMap.get(cs.id, 0) == 0) {
+                removeStatement(cs.id);
+            } else {
+                CompiledStatement copy =
+                    new CompiledStatement(cs.schemaHsqlName);
+
+                copy.clearVariables();
+
+                copy.id           = cs.id;
+                copy.sql          = cs.sql;
+                copy.executeCount = cs.executeCount;
+                copy.executeTime  = cs.executeTime;
+
+                csidMap.put(cs.id, copy);
+            }
+        }
+    }
+
+    private void link(CompiledStatement cs) {
+
+        cs.lruPrevious = null;
+        cs.lruNext     = head;
+
+        if (head == null) {
+            tail = cs;
+        } else {
+            head.lruPrevious = cs;
+        }
+
+        head = cs;
+
+        compiledCount++;
+    }
+
+    private void unlink(CompiledStatement cs) {
+
+        if (cs != head && cs.lruPrevious == null) {
+
+            // not in the list
+            return;
+        }
+
+        if (cs.lruPrevious == null) {
+            head = cs.lruNext;
+        } else {
+            cs.lruPrevious.lruNext = cs.lruNext;
+        }
+
+        if (cs.lruNext == null) {
+            tail = cs.lruPrevious;
+        } else {
+            cs.lruNext.lruPrevious = cs.lruPrevious;
+        }
+
+        cs.lruPrevious = null;
+        cs.lruNext     = null;
+
+        compiledCount--;
+    }
+
+    private void clearList() {
+
+        while (head != null) {
+            CompiledStatement cs = head;
+
+            head           = cs.lruNext;
+            cs.lruPrevious = null;
+            cs.lruNext     = null;
+        }
+
+        tail          = null;
+        compiledCount = 0;
+    }
 }
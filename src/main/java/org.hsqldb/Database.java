@@ -67,6 +67,7 @@
 package org.hsqldb;
 
 import java.lang.reflect.Constructor;
+import java.util.concurrent.ForkJoinPool;
 
 import org.hsqldb.lib.FileAccess;
 import org.hsqldb.lib.FileUtil;
@@ -145,6 +146,8 @@ public class Database {
     /** true means filesReadOnly but CACHED and TEXT tables are disallowed */
     private boolean                filesInJar;
     public boolean                 sqlEnforceStrictSize;
+    public int                     sqlParallelScanThreads;
+    private ForkJoinPool           parallelScanPool;
     public int                     firstIdentity;
     private boolean                bIgnoreCase;
     private boolean                bReferentialIntegrity;
@@ -161,6 +164,7 @@ public class Database {
     public SessionManager     sessionManager;
     public TransactionManager txManager;
     CompiledStatementManager  compiledStatementManager;
+    ResultCache               resultCache;
 
     // schema objects
     public SchemaManager schemaManager;
@@ -250,6 +254,7 @@ public class Database {
                 "false").equals("true");
         logger                   = new Logger();
         compiledStatementManager = new CompiledStatementManager(this);
+        resultCache              = new ResultCache();
     }
 
     /**
@@ -345,6 +350,9 @@ public class Database {
         schemaManager  = null;
         sessionManager = null;
         dbInfo         = null;
+
+        setParallelScanThreads(0);
+        setResultCacheSize(0);
     }
 
     /**
@@ -637,6 +645,50 @@ public class Database {
         if (resetPrepared) {
             compiledStatementManager.resetStatements();
         }
+
+        compiledStatementManager.resetParameterized();
+        resultCache.clear();
+    }
+
+    /**
+     * Sets the number of threads used for parallel scans. A value of 0 or
+     * 1 disables parallel scans and releases the threads.
+     */
+    public synchronized void setParallelScanThreads(int threads) {
+
+        if (parallelScanPool != null
+                && parallelScanPool.getParallelism() != threads) {
+            parallelScanPool.shutdown();
+
+            parallelScanPool = null;
+        }
+
+        sqlParallelScanThreads = threads;
+    }
+
+    /**
+     * Sets the maximum size in KB of the cache of prepared SELECT results.
+     * A value of 0 disables the cache and discards its contents.
+     */
+    public void setResultCacheSize(int kilobytes) {
+        resultCache.setMaxBytes(kilobytes * 1024L);
+    }
+
+    /**
+     * Sets the maximum number of compiled statements kept for reuse.
+     * A value of 0 means no limit.
+     */
+    public void setStatementCacheSize(int size) {
+        compiledStatementManager.setMaxStatements(size);
+    }
+
+    synchronized ForkJoinPool getParallelScanPool() {
+
+        if (parallelScanPool == null) {
+            parallelScanPool = new ForkJoinPool(sqlParallelScanThreads);
+        }
+
+        return parallelScanPool;
     }
 
     private synchronized void setState(int state) {
@@ -140,8 +140,13 @@ class DatabaseCommandInterpreter {
 
         JavaSystem.gc();
 
-        result = null;
-        cmd    = Token.UNKNOWNTOKEN;
+        result = executeParameterized(sql);
+
+        if (result != null) {
+            return result;
+        }
+
+        cmd = Token.UNKNOWNTOKEN;
 
         try {
             tokenizer.reset(sql);
@@ -201,6 +206,61 @@ class DatabaseCommandInterpreter {
                               : result;
     }
 
+    /**
+     * Executes a single SELECT, INSERT, UPDATE or DELETE statement using the
+     * compiled form of the statement with its literals replaced by
+     * parameters, which is reused for statements that differ only in the
+     * values of the literals. Returns null if the statement cannot be
+     * executed this way.
+     *
+     * @param sql query
+     * @return the result of executing the given SQL String, or null
+     */
+    private Result executeParameterized(String sql) {
+
+        if (session.isSchemaDefintion() || session.isProcessingScript()
+                || session.isProcessingLog()) {
+            return null;
+        }
+
+        CompiledStatement cs;
+        Object[]          values;
+
+        try {
+            ParameterizedSql psql = ParameterizedSql.newParameterizedSql(sql);
+
+            if (psql == null) {
+                return null;
+            }
+
+            cs = database.compiledStatementManager.getParameterized(session,
+                    psql);
+
+            if (cs == null) {
+                return null;
+            }
+
+            values = psql.getParameterValues(session, cs);
+
+            if (values == null) {
+                return null;
+            }
+        } catch (HsqlException e) {
+            return null;
+        }
+
+        session.setScripting(false);
+
+        Result result = session.sqlExecuteCompiledNoPreChecks(cs, values);
+
+        // report errors as for a statement compiled without parameters
+        if (result.isError() && result.getException() != null) {
+            result = new Result(result.getException(), null);
+        }
+
+        return result;
+    }
+
     private Result executePart(int cmd, String token) throws Throwable {
 
         Result result   = Session.emptyUpdateCount;
@@ -375,6 +435,15 @@ class DatabaseCommandInterpreter {
                 result = processExplainPlan();
                 break;
 
+            case Token.REFRESH :
+                processRefresh();
+                break;
+
+            case Token.CLUSTER :
+                processCluster();
+                database.setMetaDirty(true);
+                break;
+
             default :
                 throw Trace.error(Trace.UNEXPECTED_TOKEN, token);
         }
@@ -457,6 +526,13 @@ class DatabaseCommandInterpreter {
 
             // table
             case Token.MEMORY :
+                if (!isTempTable
+                        && tokenizer.isGetThis(Token.T_MATERIALIZED)) {
+                    processCreateMaterializedView(Table.MEMORY_TABLE);
+
+                    return;
+                }
+
                 tokenizer.getThis(Token.T_TABLE);
             case Token.TABLE :
                 tableType = isTempTable ? Table.TEMP_TABLE
@@ -471,6 +547,12 @@ class DatabaseCommandInterpreter {
                     throw Trace.error(Trace.UNEXPECTED_TOKEN, token);
                 }
 
+                if (tokenizer.isGetThis(Token.T_MATERIALIZED)) {
+                    processCreateMaterializedView(Table.CACHED_TABLE);
+
+                    return;
+                }
+
                 tokenizer.getThis(Token.T_TABLE);
                 processCreateTable(Table.CACHED_TABLE);
 
@@ -524,6 +606,11 @@ class DatabaseCommandInterpreter {
                 processCreateView();
                 break;
 
+            case Token.MATERIALIZED :
+                processCreateMaterializedView(
+                    database.getDefaultTableType());
+                break;
+
             // index
             case Token.UNIQUE :
                 unique = true;
@@ -535,6 +622,11 @@ class DatabaseCommandInterpreter {
                 processCreateIndex(unique);
                 break;
 
+            case Token.BITMAP :
+                tokenizer.getThis(Token.T_INDEX);
+                processCreateBitmapIndex();
+                break;
+
             default : {
                 throw Trace.error(Trace.UNEXPECTED_TOKEN, token);
             }
@@ -1508,6 +1600,123 @@ class DatabaseCommandInterpreter {
         tokenizer.setPartMarker(logposition);
     }
 
+    /**
+     * Responsible for handling the execution CREATE MATERIALIZED VIEW SQL
+     * statements. The rows are computed unless the statement is read from
+     * the script, which contains the rows or their index roots.
+     *
+     * @param type MEMORY_TABLE or CACHED_TABLE
+     * @throws HsqlException
+     */
+    private void processCreateMaterializedView(int type)
+    throws HsqlException {
+
+        tokenizer.getThis(Token.T_VIEW);
+
+        String name = tokenizer.getName();
+        HsqlName schemaname =
+            session.getSchemaHsqlNameForWrite(tokenizer.getLongNameFirst());
+        int logposition = tokenizer.getPartMarker();
+
+        database.schemaManager.checkUserViewNotExists(session, name,
+                schemaname.name);
+
+        HsqlName viewHsqlName = database.nameManager.newHsqlName(name,
+            tokenizer.wasQuotedIdentifier());
+
+        viewHsqlName.schema = schemaname;
+
+        HsqlName[] colList = null;
+
+        if (tokenizer.isGetThis(Token.T_OPENBRACKET)) {
+            HsqlArrayList list = Parser.getColumnNames(database, null,
+                tokenizer, true);
+
+            colList = new HsqlName[list.size()];
+            colList = (HsqlName[]) list.toArray(colList);
+        }
+
+        tokenizer.getThis(Token.T_AS);
+        tokenizer.setPartMarker();
+
+        Parser parser   = new Parser(session, database, tokenizer);
+        int    brackets = parser.parseOpenBracketsSelect();
+        Select select;
+
+        select = parser.parseSelect(brackets, true, false, true, true);
+
+        if (select.sIntoTable != null) {
+            throw (Trace.error(Trace.INVALID_IDENTIFIER, Token.INTO));
+        }
+
+        select.prepareResult(session);
+
+        MaterializedView view = new MaterializedView(session, database,
+            viewHsqlName, type, tokenizer.getLastPart(), colList);
+
+        session.commit();
+        database.schemaManager.linkTable(view);
+        view.link();
+
+        if (!session.isProcessingScript()) {
+            view.refresh(session);
+        }
+
+        tokenizer.setPartMarker(logposition);
+    }
+
+    /**
+     * Responsible for handling REFRESH MATERIALIZED VIEW. The statement is
+     * logged and the rows are not.
+     *
+     * @throws HsqlException
+     */
+    private void processRefresh() throws HsqlException {
+
+        session.checkAdmin();
+        session.checkDDLWrite();
+        tokenizer.getThis(Token.T_MATERIALIZED);
+        tokenizer.getThis(Token.T_VIEW);
+
+        String name   = tokenizer.getName();
+        String schema = session.getSchemaName(tokenizer.getLongNameFirst());
+        Table  t = database.schemaManager.getUserTable(session, name, schema);
+
+        if (!(t instanceof MaterializedView)) {
+            throw Trace.error(Trace.VIEW_NOT_FOUND, name);
+        }
+
+        session.commit();
+        ((MaterializedView) t).refresh(session);
+        session.setScripting(true);
+    }
+
+    /**
+     * Responsible for handling CLUSTER &lt;table&gt;. The statement is not
+     * logged, as it changes only where the rows are stored.
+     *
+     * @throws HsqlException
+     */
+    private void processCluster() throws HsqlException {
+
+        session.checkAdmin();
+        session.checkDDLWrite();
+
+        String name   = tokenizer.getName();
+        String schema = session.getSchemaName(tokenizer.getLongNameFirst());
+        Table  t = database.schemaManager.getUserTable(session, name, schema);
+
+        if (!t.isCached()) {
+            throw Trace.error(Trace.OPERATION_NOT_SUPPORTED);
+        }
+
+        session.commit();
+
+        TableWorks tw = new TableWorks(session, t);
+
+        tw.clusterTable();
+    }
+
     /**
      * Responsible for handling tail of ALTER TABLE ... RENAME ...
      * @param t table
@@ -1617,7 +1826,7 @@ class DatabaseCommandInterpreter {
             schema);
         String token;
 
-        if (t.isView()) {
+        if (t.isView() || t instanceof MaterializedView) {
             throw Trace.error(Trace.NOT_A_TABLE);
         }
 
@@ -1945,11 +2154,17 @@ class DatabaseCommandInterpreter {
 
                 break;
             }
+            case Token.MATERIALIZED : {
+                tokenizer.getThis(Token.T_VIEW);
+                processDropTable(false, true);
+
+                break;
+            }
             case Token.VIEW : {
                 isview = true;
             }    //fall thru
             case Token.TABLE : {
-                processDropTable(isview);
+                processDropTable(isview, false);
 
                 break;
             }
@@ -2299,6 +2514,44 @@ class DatabaseCommandInterpreter {
 
                         break;
                     }
+                    case Token.CLUSTERED : {
+                        session.checkAdmin();
+
+                        boolean value = processTrueOrFalse();
+
+                        // accepted in the script of a database where
+                        // CACHED tables are MEMORY tables
+                        if (!t.isCached() &&!session.isProcessingScript()
+                                &&!session.isProcessingLog()) {
+                            throw Trace.error(Trace.OPERATION_NOT_SUPPORTED);
+                        }
+
+                        t.setClustered(value);
+
+                        break;
+                    }
+                    case Token.ZONEMAP : {
+                        session.checkAdmin();
+
+                        // SET TABLE <table> ZONEMAP OFF
+                        // SET TABLE <table> ZONEMAP (<column>, ...)
+                        int[] columns = tokenizer.isGetThis(Token.T_OFF)
+                                        ? null
+                                        : processColumnList(t, false);
+
+                        // the zones are ranges of primary key values
+                        if (!t.hasPrimaryKey()
+                                || (!t.isCached()
+                                    &&!session.isProcessingScript()
+                                    &&!session.isProcessingLog())) {
+                            throw Trace.error(Trace.OPERATION_NOT_SUPPORTED);
+                        }
+
+                        t.setZoneMapColumns(columns);
+                        database.setMetaDirty(true);
+
+                        break;
+                    }
                     case Token.INDEX : {
                         session.checkAdmin();
 
@@ -2668,7 +2921,15 @@ class DatabaseCommandInterpreter {
 
         session.setScripting(true);
         session.commit();
-        t.getIndex(name).setName(newName, isQuoted);
+
+        BitmapIndex bitmapIndex = t.getBitmapIndex(name);
+
+        if (bitmapIndex == null) {
+            t.getIndex(name).setName(newName, isQuoted);
+        } else {
+            bitmapIndex.setName(newName, isQuoted);
+        }
+
         database.schemaManager.renameIndex(name, newName, t.getName());
     }
 
@@ -2818,21 +3079,191 @@ class DatabaseCommandInterpreter {
         database.schemaManager.checkIndexExists(indexName, t.getSchemaName(),
                 false);
 
-        HsqlName indexHsqlName = newIndexHsqlName(indexName, indexNameQuoted);
-        int[]    indexColumns  = processColumnList(t, true);
-        String   extra         = tokenizer.getSimpleToken();
+        HsqlName      indexHsqlName = newIndexHsqlName(indexName,
+            indexNameQuoted);
+        HsqlArrayList list          = processIndexElementList();
+        int[]         indexColumns  = new int[list.size()];
+        String        expression    = null;
+
+        for (int i = 0; i < indexColumns.length; i++) {
+            Expression e = (Expression) list.get(i);
+
+            if (e.getType() == Expression.COLUMN
+                    && e.getTableName() == null) {
+                String name = e.getColumnName();
+
+                indexColumns[i] = t.getColumnNr(name);
+
+                if (ArrayUtil.find(indexColumns, indexColumns[i]) != i) {
+                    throw Trace.error(Trace.COLUMN_ALREADY_EXISTS, name);
+                }
+            } else if (indexColumns.length == 1) {
+                indexColumns[i] = processCreateIndexExpression(t, e);
+                expression      = e.getDDL();
+            } else {
+                throw Trace.error(Trace.OPERATION_NOT_SUPPORTED);
+            }
+        }
+
+        String extra = tokenizer.getSimpleToken();
 
         if (!Token.T_DESC.equals(extra) && !Token.T_ASC.equals(extra)) {
             tokenizer.back();
         }
 
+        String predicate = null;
+
+        if (tokenizer.isGetThis(Token.T_WHERE)) {
+            predicate = processCreateIndexCondition(t);
+        }
+
         session.commit();
         session.setScripting(true);
 
         TableWorks tableWorks = new TableWorks(session, t);
 
         tableWorks.createIndex(indexColumns, indexHsqlName, unique, false,
-                               false);
+                               false, expression, predicate);
+    }
+
+    /**
+     * Responsible for handling the bracketed list of CREATE INDEX, which
+     * holds columns, each optionally followed by ASC or DESC, or a single
+     * expression. Returns the list of parsed Expression objects.
+     *
+     * @throws HsqlException
+     */
+    private HsqlArrayList processIndexElementList() throws HsqlException {
+
+        HsqlArrayList list   = new HsqlArrayList();
+        Parser        parser = new Parser(session, database, tokenizer);
+
+        tokenizer.getThis(Token.T_OPENBRACKET);
+
+        while (true) {
+            list.add(parser.parseExpression());
+
+            String token = tokenizer.getSimpleToken();
+
+            if (token.equals(Token.T_DESC) || token.equals(Token.T_ASC)) {
+                token = tokenizer.getSimpleToken();
+            }
+
+            if (token.equals(Token.T_COMMA)) {
+                continue;
+            }
+
+            if (token.equals(Token.T_CLOSEBRACKET)) {
+                break;
+            }
+
+            throw Trace.error(Trace.UNEXPECTED_TOKEN, token);
+        }
+
+        return list;
+    }
+
+    /**
+     * Responsible for handling the expression of an expression index in
+     * CREATE INDEX ... Resolves the expression and returns the first
+     * column of the table that is used in it.
+     *
+     * @param t the table
+     * @param e the expression
+     * @throws HsqlException
+     */
+    private int processCreateIndexExpression(Table t,
+            Expression e) throws HsqlException {
+
+        if (!Index.isKeyExpression(e)) {
+            throw Trace.error(Trace.OPERATION_NOT_SUPPORTED);
+        }
+
+        boolean[] columns = Expression.getKeyFilter(session, t,
+            e).usedColumns;
+
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i]) {
+                return i;
+            }
+        }
+
+        // the value would be the same for all rows
+        throw Trace.error(Trace.OPERATION_NOT_SUPPORTED);
+    }
+
+    /**
+     * Responsible for handling the WHERE condition of a partial index in
+     * CREATE INDEX ... Returns the SQL text of the condition.
+     *
+     * @param t the table
+     * @throws HsqlException
+     */
+    private String processCreateIndexCondition(Table t)
+    throws HsqlException {
+
+        Parser     parser    = new Parser(session, database, tokenizer);
+        Expression condition = parser.parseExpression();
+
+        if (!Index.isPredicateCondition(condition)) {
+            throw Trace.error(Trace.OPERATION_NOT_SUPPORTED);
+        }
+
+        // this workaround is here to stop LIKE optimisation (for proper scripting)
+        condition.setLikeOptimised();
+        Expression.getCheckSelect(session, t, condition);
+
+        return condition.getDDL();
+    }
+
+    /**
+     * Handles CREATE BITMAP INDEX &lt;name&gt; ON &lt;table&gt;(&lt;column&gt;).
+     * Only MEMORY and CACHED tables are supported.
+     *
+     * @throws HsqlException
+     */
+    private void processCreateBitmapIndex() throws HsqlException {
+
+        Table   t;
+        String  indexName       = tokenizer.getName();
+        String  schema          = tokenizer.getLongNameFirst();
+        boolean indexNameQuoted = tokenizer.wasQuotedIdentifier();
+
+        tokenizer.getThis(Token.T_ON);
+
+        String tablename = tokenizer.getName();
+        String tableschema =
+            session.getSchemaNameForWrite(tokenizer.getLongNameFirst());
+
+        if (schema != null && !schema.equals(tableschema)) {
+            throw Trace.error(Trace.INVALID_SCHEMA_NAME_NO_SUBCLASS);
+        }
+
+        t = database.schemaManager.getTable(session, tablename, tableschema);
+
+        if (t.isTemp() || t.isText() || t.isView()) {
+            throw Trace.error(Trace.OPERATION_NOT_SUPPORTED);
+        }
+
+        database.schemaManager.checkIndexExists(indexName, t.getSchemaName(),
+                false);
+
+        HsqlName indexHsqlName = newIndexHsqlName(indexName, indexNameQuoted);
+        int[]    indexColumns  = processColumnList(t, false);
+
+        if (indexColumns.length != 1) {
+            throw Trace.error(Trace.OPERATION_NOT_SUPPORTED);
+        }
+
+        if (!BitmapIndex.isIndexable(t.getColumn(indexColumns[0]).getType())) {
+            throw Trace.error(Trace.WRONG_DATA_TYPE);
+        }
+
+        session.commit();
+        session.setScripting(true);
+        t.addBitmapIndex(new BitmapIndex(indexHsqlName, t, indexColumns[0]));
+        t.checkBitmapIndexes(session);
+        database.schemaManager.registerIndexName(indexName, t.getName());
     }
 
     /**
@@ -2946,7 +3377,9 @@ class DatabaseCommandInterpreter {
         session.close();
     }
 
-    private void processDropTable(boolean isView) throws HsqlException {
+    private void processDropTable(boolean isView,
+                                  boolean isMaterialized)
+                                  throws HsqlException {
 
         boolean ifexists = false;
         boolean cascade  = false;
@@ -2979,6 +3412,20 @@ class DatabaseCommandInterpreter {
 
         schema = session.getSchemaNameForWrite(schema);
 
+        if (!isView) {
+            Table t = database.schemaManager.findUserTable(session, name,
+                schema);
+
+            if (t != null && isMaterialized != t instanceof MaterializedView) {
+                if (ifexists) {
+                    return;
+                }
+
+                throw Trace.error(isMaterialized ? Trace.VIEW_NOT_FOUND
+                                                 : Trace.TABLE_NOT_FOUND, name);
+            }
+        }
+
         database.schemaManager.dropTable(session, name, schema, ifexists,
                                          isView, cascade);
     }
@@ -117,6 +117,12 @@ class DatabaseInformation {
     protected static final int SYSTEM_ROLE_AUTHORIZATION_DESCRIPTORS = 44;
     protected static final int SYSTEM_SCHEMATA                       = 45;
 
+    // result cache statistics
+    protected static final int SYSTEM_RESULTCACHE = 46;
+
+    // compiled statement statistics
+    protected static final int SYSTEM_STATEMENTS = 47;
+
     /** system table names strictly in order of their ids */
     protected static final String[] sysTableNames = {
         "SYSTEM_BESTROWIDENTIFIER",                 //
@@ -178,7 +184,13 @@ class DatabaseInformation {
         "SYSTEM_AUTHORIZATIONS",                    //
         "SYSTEM_COLLATIONS",                        //
         "SYSTEM_ROLE_AUTHORIZATION_DESCRIPTORS",    //
-        "SYSTEM_SCHEMATA"                           //
+        "SYSTEM_SCHEMATA",                          //
+
+        // result cache statistics
+        "SYSTEM_RESULTCACHE",                       //
+
+        // compiled statement statistics
+        "SYSTEM_STATEMENTS"                         //
 
         // Future use
 //        "SYSTEM_ASSERTIONS",
@@ -178,6 +178,12 @@ extends DatabaseInformationMain {
             case SYSTEM_COLLATIONS : {
                 return SYSTEM_COLLATIONS();
             }
+            case SYSTEM_RESULTCACHE : {
+                return SYSTEM_RESULTCACHE();
+            }
+            case SYSTEM_STATEMENTS : {
+                return SYSTEM_STATEMENTS();
+            }
             default :
                 return super.generateTable(tableIndex);
         }
@@ -469,6 +475,172 @@ extends DatabaseInformationMain {
         return t;
     }
 
+    /**
+     * Retrieves a <code>Table</code> object describing the current state
+     * of the cache of prepared SELECT results. <p>
+     *
+     * The table has a single row with the following columns: <p>
+     *
+     * <pre class="SqlCodeExample">
+     * MAX_CACHE_BYTES    BIGINT    maximum size of cached results
+     * CACHE_BYTES        BIGINT    estimated size of cached results
+     * CACHE_SIZE         INTEGER   number of cached results
+     * HIT_COUNT          BIGINT    executions that used a cached result
+     * MISS_COUNT         BIGINT    executions of cacheable statements that did not
+     * HIT_RATIO          DOUBLE    HIT_COUNT / (HIT_COUNT + MISS_COUNT)
+     * EVICTION_COUNT     BIGINT    results evicted to make space
+     * INVALIDATION_COUNT BIGINT    results discarded after a table was modified
+     * </pre> <p>
+     *
+     * The counts are kept from the time the database was opened. MAX_CACHE_BYTES
+     * is set by the hsqldb.result_cache_size property and the cache is not used
+     * when it is 0. <p>
+     *
+     * @return a description of the current state of the result cache
+     * @throws HsqlException if an error occurs while producing the table
+     */
+    Table SYSTEM_RESULTCACHE() throws HsqlException {
+
+        Table t = sysTables[SYSTEM_RESULTCACHE];
+
+        if (t == null) {
+            t = createBlankTable(sysTableHsqlNames[SYSTEM_RESULTCACHE]);
+
+            addColumn(t, "MAX_CACHE_BYTES", Types.BIGINT, false);       // not null
+            addColumn(t, "CACHE_BYTES", Types.BIGINT, false);           // not null
+            addColumn(t, "CACHE_SIZE", Types.INTEGER, false);           // not null
+            addColumn(t, "HIT_COUNT", Types.BIGINT, false);             // not null
+            addColumn(t, "MISS_COUNT", Types.BIGINT, false);            // not null
+            addColumn(t, "HIT_RATIO", Types.DOUBLE, false);             // not null
+            addColumn(t, "EVICTION_COUNT", Types.BIGINT, false);        // not null
+            addColumn(t, "INVALIDATION_COUNT", Types.BIGINT, false);    // not null
+            t.createPrimaryKey(null);
+
+            return t;
+        }
+
+        ResultCache cache = database.resultCache;
+        Object[]    row   = t.getEmptyRowData();
+        long        hits  = cache.getHitCount();
+        long        total = hits + cache.getMissCount();
+        double      ratio = total == 0 ? 0
+                                       : (double) hits / total;
+
+        // column number mappings
+        final int imax_cache_bytes    = 0;
+        final int icache_bytes        = 1;
+        final int icache_size         = 2;
+        final int ihit_count          = 3;
+        final int imiss_count         = 4;
+        final int ihit_ratio          = 5;
+        final int ieviction_count     = 6;
+        final int iinvalidation_count = 7;
+
+        row[imax_cache_bytes] = ValuePool.getLong(cache.getMaxBytes());
+        row[icache_bytes]     = ValuePool.getLong(cache.getBytes());
+        row[icache_size]      = ValuePool.getInt(cache.getEntryCount());
+        row[ihit_count]       = ValuePool.getLong(hits);
+        row[imiss_count]      = ValuePool.getLong(cache.getMissCount());
+        row[ihit_ratio] =
+            ValuePool.getDouble(Double.doubleToLongBits(ratio));
+        row[ieviction_count] = ValuePool.getLong(cache.getEvictionCount());
+        row[iinvalidation_count] =
+            ValuePool.getLong(cache.getInvalidationCount());
+
+        t.insertSys(row);
+        t.setDataReadOnly(true);
+
+        return t;
+    }
+
+    /**
+     * Retrieves a <code>Table</code> object describing the compiled
+     * statements kept for reuse. ADMIN users see all statements while
+     * non-admin users see none.<p>
+     *
+     * Each row is a statement description with the following columns: <p>
+     *
+     * <pre class="SqlCodeExample">
+     * STATEMENT_ID    INTEGER   compiled statement identifier
+     * STATEMENT_SCHEM VARCHAR   default schema of the statement
+     * SQL             VARCHAR   sql of the statement
+     * SESSION_COUNT   INTEGER   number of sessions that have prepared it
+     * IS_COMPILED     BOOLEAN   false if it will be recompiled on next use
+     * IS_DIRECT       BOOLEAN   compiled for directly executed sql?
+     * EXECUTE_COUNT   BIGINT    number of executions
+     * EXECUTE_TIME    BIGINT    total time of executions in milliseconds
+     * </pre> <p>
+     *
+     * For directly executed sql, SQL is the statement with its literals
+     * replaced by parameters. Executions that used a result from the result
+     * cache are not counted. <p>
+     *
+     * @return a description of the compiled statements
+     * @throws HsqlException if an error occurs while producing the table
+     */
+    Table SYSTEM_STATEMENTS() throws HsqlException {
+
+        Table t = sysTables[SYSTEM_STATEMENTS];
+
+        if (t == null) {
+            t = createBlankTable(sysTableHsqlNames[SYSTEM_STATEMENTS]);
+
+            addColumn(t, "STATEMENT_ID", Types.INTEGER, false);     // not null
+            addColumn(t, "STATEMENT_SCHEM", Types.VARCHAR, false);  // not null
+            addColumn(t, "SQL", Types.VARCHAR, false);              // not null
+            addColumn(t, "SESSION_COUNT", Types.INTEGER, false);    // not null
+            addColumn(t, "IS_COMPILED", Types.BOOLEAN, false);      // not null
+            addColumn(t, "IS_DIRECT", Types.BOOLEAN, false);        // not null
+            addColumn(t, "EXECUTE_COUNT", Types.BIGINT, false);     // not null
+            addColumn(t, "EXECUTE_TIME", Types.BIGINT, false);      // not null
+
+            // order:  STATEMENT_ID
+            t.createPrimaryKey(null, new int[]{ 0 }, true);
+
+            return t;
+        }
+
+        if (!session.isAdmin()) {
+            t.setDataReadOnly(true);
+
+            return t;
+        }
+
+        CompiledStatementManager csm = database.compiledStatementManager;
+        HsqlArrayList            statements = csm.getStatements();
+        CompiledStatement        cs;
+        Object[]                 row;
+
+        // column number mappings
+        final int istatement_id    = 0;
+        final int istatement_schem = 1;
+        final int isql             = 2;
+        final int isession_count   = 3;
+        final int iis_compiled     = 4;
+        final int iis_direct       = 5;
+        final int iexecute_count   = 6;
+        final int iexecute_time    = 7;
+
+        for (int i = 0; i < statements.size(); i++) {
+            cs                    = (CompiledStatement) statements.get(i);
+            row                   = t.getEmptyRowData();
+            row[istatement_id]    = ValuePool.getInt(cs.id);
+            row[istatement_schem] = cs.schemaHsqlName.name;
+            row[isql]             = cs.sql;
+            row[isession_count]   = ValuePool.getInt(csm.getUseCount(cs.id));
+            row[iis_compiled]     = ValuePool.getBoolean(cs.isValid);
+            row[iis_direct] = ValuePool.getBoolean(cs.parameterizedKey != null);
+            row[iexecute_count]   = ValuePool.getLong(cs.executeCount);
+            row[iexecute_time]    = ValuePool.getLong(cs.executeTime / 1000000);
+
+            t.insertSys(row);
+        }
+
+        t.setDataReadOnly(true);
+
+        return t;
+    }
+
     /**
      * Retrieves a <code>Table</code> object describing the visible
      * access rights for all accessible Java Class objects defined
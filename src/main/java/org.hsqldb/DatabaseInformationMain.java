@@ -171,6 +171,8 @@ class DatabaseInformationMain extends DatabaseInformation {
         nonCachedTablesSet.add("SYSTEM_SESSIONS");
         nonCachedTablesSet.add("SYSTEM_PROPERTIES");
         nonCachedTablesSet.add("SYSTEM_SEQUENCES");
+        nonCachedTablesSet.add("SYSTEM_RESULTCACHE");
+        nonCachedTablesSet.add("SYSTEM_STATEMENTS");
     }
 
     /**
@@ -232,7 +232,7 @@ public class DatabaseScript {
             for (int i = 0, tSize = tTable.size(); i < tSize; i++) {
                 Table t = (Table) tTable.get(i);
 
-                if (t.isView()) {
+                if (t.isView() || t instanceof MaterializedView) {
                     continue;
                 }
 
@@ -242,47 +242,44 @@ public class DatabaseScript {
                 addRow(r, a.toString());
 
                 // indexes for table
-                for (int j = 1; j < t.getIndexCount(); j++) {
-                    Index index = t.getIndex(j);
-
-                    if (HsqlName.isReservedName(index.getName().name)) {
-
-                        // the following are autocreated with the table
-                        // indexes for primary keys
-                        // indexes for unique constraints
-                        // own table indexes for foreign keys
-                        continue;
-                    }
+                addIndexStatements(t, r);
 
+                // readonly for TEXT tables only
+                if (t.isText() && t.isConnected() && t.isDataReadOnly()) {
                     a = new StringBuffer(64);
 
-                    a.append(Token.T_CREATE).append(' ');
-
-                    if (index.isUnique()) {
-                        a.append(Token.T_UNIQUE).append(' ');
-                    }
-
-                    a.append(Token.T_INDEX).append(' ');
-                    a.append(index.getName().statementName);
-                    a.append(' ').append(Token.T_ON).append(' ');
+                    a.append(Token.T_SET).append(' ').append(
+                        Token.T_TABLE).append(' ');
                     a.append(t.getName().statementName);
+                    a.append(' ').append(Token.T_READONLY).append(' ').append(
+                        Token.T_TRUE);
+                    addRow(r, a.toString());
+                }
 
-                    int[] col = index.getColumns();
-                    int   len = index.getVisibleColumns();
+                // clustered for CACHED tables only
+                if (t.isClustered()) {
+                    a = new StringBuffer(64);
 
-                    getColumnList(t, col, len, a);
+                    a.append(Token.T_SET).append(' ').append(
+                        Token.T_TABLE).append(' ');
+                    a.append(t.getName().statementName);
+                    a.append(' ').append(Token.T_CLUSTERED).append(' ').append(
+                        Token.T_TRUE);
                     addRow(r, a.toString());
                 }
 
-                // readonly for TEXT tables only
-                if (t.isText() && t.isConnected() && t.isDataReadOnly()) {
+                // zone map columns
+                int[] zoneMapColumns = t.getZoneMapColumns();
+
+                if (zoneMapColumns != null) {
                     a = new StringBuffer(64);
 
                     a.append(Token.T_SET).append(' ').append(
                         Token.T_TABLE).append(' ');
                     a.append(t.getName().statementName);
-                    a.append(' ').append(Token.T_READONLY).append(' ').append(
-                        Token.T_TRUE);
+                    a.append(' ').append(Token.T_ZONEMAP).append(' ');
+                    getColumnList(t, zoneMapColumns, zoneMapColumns.length,
+                                  a);
                     addRow(r, a.toString());
                 }
 
@@ -301,23 +298,7 @@ public class DatabaseScript {
                 }
 
                 // triggers
-                int numTrigs = TriggerDef.NUM_TRIGS;
-
-                for (int tv = 0; tv < numTrigs; tv++) {
-                    HsqlArrayList trigVec = t.triggerLists[tv];
-
-                    if (trigVec == null) {
-                        continue;
-                    }
-
-                    int trCount = trigVec.size();
-
-                    for (int k = 0; k < trCount; k++) {
-                        a = ((TriggerDef) trigVec.get(k)).getDDL();
-
-                        addRow(r, a.toString());
-                    }
-                }
+                addTriggerStatements(t, r);
             }
 
             // forward referencing foreign keys
@@ -340,7 +321,8 @@ public class DatabaseScript {
                 Table t = (Table) tTable.get(i);
 
                 if (indexRoots && t.isIndexCached()
-                        && !t.isEmpty(sysSession)) {
+                        && !t.isEmpty(sysSession)
+                        && !(t instanceof MaterializedView)) {
                     addRow(r, getIndexRootsDDL((Table) tTable.get(i)));
                 }
             }
@@ -356,11 +338,14 @@ public class DatabaseScript {
                 }
             }
 
-            // views
+            // views and materialized views, in order of creation
             for (int i = 0, tSize = tTable.size(); i < tSize; i++) {
                 Table t = (Table) tTable.get(i);
 
-                if (t.isView()) {
+                if (t instanceof MaterializedView) {
+                    addMaterializedViewStatements((MaterializedView) t,
+                                                  indexRoots, sysSession, r);
+                } else if (t.isView()) {
                     View         v = (View) tTable.get(i);
                     StringBuffer a = new StringBuffer(128);
 
@@ -387,6 +372,144 @@ public class DatabaseScript {
         }
     }
 
+    /**
+     * Adds CREATE INDEX statements for the user-defined indexes.
+     */
+    private static void addIndexStatements(Table t, Result r) {
+
+        for (int j = 1; j < t.getIndexCount(); j++) {
+            Index index = t.getIndex(j);
+
+            if (HsqlName.isReservedName(index.getName().name)) {
+
+                // the following are autocreated with the table
+                // indexes for primary keys
+                // indexes for unique constraints
+                // own table indexes for foreign keys
+                continue;
+            }
+
+            StringBuffer a = new StringBuffer(64);
+
+            a.append(Token.T_CREATE).append(' ');
+
+            if (index.isUnique()) {
+                a.append(Token.T_UNIQUE).append(' ');
+            }
+
+            a.append(Token.T_INDEX).append(' ');
+            a.append(index.getName().statementName);
+            a.append(' ').append(Token.T_ON).append(' ');
+            a.append(t.getName().statementName);
+
+            int[] col = index.getColumns();
+            int   len = index.getVisibleColumns();
+
+            if (index.isExpression()) {
+                try {
+                    a.append('(').append(index.getKeyExpressionDDL());
+                    a.append(')');
+                } catch (HsqlException e) {
+
+                    // should not throw as it is already tested OK
+                }
+            } else {
+                getColumnList(t, col, len, a);
+            }
+
+            if (index.isPartial()) {
+                try {
+                    a.append(' ').append(Token.T_WHERE).append(' ');
+                    a.append(index.getPredicateDDL());
+                } catch (HsqlException e) {
+
+                    // should not throw as it is already tested OK
+                }
+            }
+
+            addRow(r, a.toString());
+        }
+
+        if (t.bitmapIndexes == null) {
+            return;
+        }
+
+        for (int j = 0; j < t.bitmapIndexes.length; j++) {
+            BitmapIndex  index = t.bitmapIndexes[j];
+            StringBuffer a     = new StringBuffer(64);
+
+            a.append(Token.T_CREATE).append(' ');
+            a.append(Token.T_BITMAP).append(' ');
+            a.append(Token.T_INDEX).append(' ');
+            a.append(index.getName().statementName);
+            a.append(' ').append(Token.T_ON).append(' ');
+            a.append(t.getName().statementName);
+            getColumnList(t, new int[]{ index.getColumn() }, 1, a);
+            addRow(r, a.toString());
+        }
+    }
+
+    /**
+     * Adds CREATE TRIGGER statements.
+     */
+    private static void addTriggerStatements(Table t, Result r) {
+
+        int numTrigs = TriggerDef.NUM_TRIGS;
+
+        for (int tv = 0; tv < numTrigs; tv++) {
+            HsqlArrayList trigVec = t.triggerLists[tv];
+
+            if (trigVec == null) {
+                continue;
+            }
+
+            int trCount = trigVec.size();
+
+            for (int k = 0; k < trCount; k++) {
+                StringBuffer a = ((TriggerDef) trigVec.get(k)).getDDL();
+
+                addRow(r, a.toString());
+            }
+        }
+    }
+
+    /**
+     * Adds the CREATE MATERIALIZED VIEW statement, followed by the indexes,
+     * triggers and, for CACHED views, the index roots.
+     */
+    private static void addMaterializedViewStatements(MaterializedView v,
+            boolean indexRoots, Session sysSession, Result r) {
+
+        StringBuffer a = new StringBuffer(128);
+
+        a.append(Token.T_CREATE).append(' ');
+        a.append(v.isCached() ? Token.T_CACHED
+                              : Token.T_MEMORY).append(' ');
+        a.append(Token.T_MATERIALIZED).append(' ');
+        a.append(Token.T_VIEW).append(' ');
+        a.append(v.getName().statementName).append(' ').append('(');
+
+        int count = v.getColumnCount();
+
+        for (int j = 0; j < count; j++) {
+            a.append(v.getColumn(j).columnName.statementName);
+
+            if (j < count - 1) {
+                a.append(',');
+            }
+        }
+
+        a.append(')').append(' ').append(Token.T_AS).append(' ');
+        a.append(v.getStatement());
+        addRow(r, a.toString());
+        addIndexStatements(v, r);
+        addTriggerStatements(v, r);
+
+        if (indexRoots && v.isIndexCached() && !v.isEmpty(sysSession)) {
+            addRow(r, getIndexRootsDDL(v));
+        }
+    }
+
     static String getIdentityUpdateDDL(Table t) {
 
         if (t.identityColumn == -1) {
@@ -174,6 +174,20 @@ class DiskNode extends Node {
         return ret;
     }
 
+    /**
+     * Returns the file position of the left child without reading it.
+     */
+    int getLeftPos() {
+        return iLeft;
+    }
+
+    /**
+     * Returns the file position of the right child without reading it.
+     */
+    int getRightPos() {
+        return iRight;
+    }
+
     boolean isLeft(Node node) throws HsqlException {
 
         if (node == null) {
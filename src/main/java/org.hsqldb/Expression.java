@@ -914,6 +914,9 @@ public class Expression {
             case QUERY :
                 buf.append("QUERY ");
                 buf.append(subQuery.select.describe(session));
+                buf.append(" memo=[hits=").append(subQuery.getMemoHits());
+                buf.append(" misses=").append(subQuery.getMemoMisses());
+                buf.append("]\n");
 
                 return buf.toString();
 
@@ -1670,8 +1673,7 @@ public class Expression {
                     String      filterName = filter.getName();
 
                     if (tableName == null || filterName.equals(tableName)) {
-                        Table table = filter.getTable();
-                        int   i     = table.findColumn(columnName);
+                        int i = filter.findColumn(columnName);
 
                         if (i != -1) {
                             if (tableName == null) {
@@ -1866,7 +1868,9 @@ public class Expression {
 */
 
     /**
-     * set boolean flags and expressions for columns in a join
+     * set boolean flags and expressions for columns in a join. Only the
+     * terms of AND conditions are used, as an equality inside an OR or NOT
+     * condition does not hold for every row.
      *
      * @param filter target table filter
      * @param columns boolean array
@@ -1875,12 +1879,11 @@ public class Expression {
     void getEquiJoinColumns(TableFilter filter, boolean[] columns,
                             Expression[] elist) {
 
-        if (eArg != null) {
+        if (exprType == AND) {
             eArg.getEquiJoinColumns(filter, columns, elist);
-        }
-
-        if (eArg2 != null) {
             eArg2.getEquiJoinColumns(filter, columns, elist);
+
+            return;
         }
 
         if (exprType == EQUAL) {
@@ -1958,7 +1961,7 @@ public class Expression {
 
                 if (tableName == null || tableName.equals(filterName)) {
                     Table table = f.getTable();
-                    int   i     = table.findColumn(columnName);
+                    int   i     = f.findColumn(columnName);
 
                     if (i != -1) {
                         tableFilter = f;
@@ -2538,17 +2541,20 @@ public class Expression {
             boolean like    = false;
             boolean larger  = false;
 
+            // the range high value is null when the prefix has no successor
+            boolean bounded = likeObject.getRangeHigh() != null;
+
             if (likeObject.isEquivalentToBetweenPredicate()) {
 
-                // X LIKE 'abc%' <=> X >= 'abc' AND X <= 'abc' || max_collation_char
-                larger  = likeObject.hasCollation;
+                // X LIKE 'abc%' <=> X >= 'abc' AND X < 'abd'
+                larger  = likeObject.hasCollation ||!bounded;
                 between = !larger;
                 like    = larger;
             } else if (likeObject
                     .isEquivalentToBetweenPredicateAugmentedWithLike()) {
 
-                // X LIKE 'abc%...' <=> X >= 'abc' AND X <= 'abc' || max_collation_char AND X LIKE 'abc%...'
-                larger  = likeObject.hasCollation;
+                // X LIKE 'abc%...' <=> X >= 'abc' AND X < 'abd' AND X LIKE 'abc%...'
+                larger  = likeObject.hasCollation ||!bounded;
                 between = !larger;
                 like    = true;
             }
@@ -2566,17 +2572,17 @@ public class Expression {
                 Expression eArgOld = eArg;
 
                 eArg       = new Expression(BIGGER_EQUAL, eArgOld, eFirst);
-                eArg2      = new Expression(SMALLER_EQUAL, eArgOld, eLast);
+                eArg2      = new Expression(SMALLER, eArgOld, eLast);
                 exprType   = AND;
                 likeObject = null;
             } else if (between && like) {
                 Expression gte = new Expression(BIGGER_EQUAL, eArg, eFirst);
-                Expression lte = new Expression(SMALLER_EQUAL, eArg, eLast);
+                Expression lt  = new Expression(SMALLER, eArg, eLast);
 
                 eArg2 = new Expression(eArg, eArg2, likeObject.escapeChar,
                                        likeObject.hasCollation);
                 eArg2.likeObject = likeObject;
-                eArg             = new Expression(AND, gte, lte);
+                eArg             = new Expression(AND, gte, lt);
                 exprType         = AND;
                 likeObject       = null;
             } else if (larger) {
@@ -2592,6 +2598,42 @@ public class Expression {
         }
     }
 
+    /**
+     * Returns true if this is a LIKE condition with a pattern that is known
+     * only at execution time, where a range of the values of the first
+     * operand that can match the pattern can then be determined.
+     */
+    boolean isLikeRangeCandidate() {
+
+        return exprType == LIKE && likeObject != null
+               &&!likeObject.hasCollation && eArg.exprType == COLUMN
+               && Types.isCharacterType(eArg.dataType)
+               &&!eArg2.isFixedConstant();
+    }
+
+    /**
+     * For a LIKE condition, returns the current range of values of the
+     * first operand that can match the pattern, as {low, high} where the
+     * high value is not included, or is null if there is no upper limit.
+     * Returns null if the pattern has no fixed prefix.
+     */
+    Object[] getLikeRange(Session session) throws HsqlException {
+
+        String s = (String) eArg2.getValue(session, Types.VARCHAR);
+
+        likeObject.resetPattern(session, s);
+
+        String low = likeObject.getRangeLow();
+
+        if (low == null || low.length() == 0) {
+            return null;
+        }
+
+        return new Object[] {
+            low, likeObject.getRangeHigh()
+        };
+    }
+
     /**
      * Parametric or fixed value lists plus queries are handled.
      *
@@ -2849,6 +2891,101 @@ public class Expression {
         return columnIndex;
     }
 
+    /**
+     * Binds this COLUMN expression to a column of the filter. Used when a
+     * view or derived table is merged into the enclosing query.
+     */
+    void setColumn(TableFilter filter, int index) {
+        tableFilter = filter;
+        columnIndex = index;
+    }
+
+    /**
+     * Returns a copy of this condition for the select of a view or derived
+     * table, in which each column of the filter is replaced with a copy of
+     * the select column at the same position. Returns null if the condition
+     * references other columns, a column that has no replacement, or
+     * contains anything other than values, parameters and comparison,
+     * logical or arithmetic operations.
+     */
+    Expression getPushedCondition(TableFilter filter, Expression[] columns) {
+
+        switch (exprType) {
+
+            case VALUE :
+                return this;
+
+            case COLUMN : {
+                if (tableFilter != filter || columns[columnIndex] == null) {
+                    return null;
+                }
+
+                Expression column = columns[columnIndex];
+                Expression e      = new Expression(column);
+
+                e.tableFilter  = column.tableFilter;
+                e.columnIndex  = column.columnIndex;
+                e.tableName    = column.tableName;
+                e.columnName   = column.columnName;
+                e.columnQuoted = column.columnQuoted;
+
+                e.setTableColumnAttributes(column);
+
+                return e;
+            }
+            case VALUELIST :
+                for (int i = 0; i < valueList.length; i++) {
+                    if (valueList[i].exprType != VALUE) {
+                        return null;
+                    }
+                }
+
+                return this;
+
+            case NEGATE :
+            case ADD :
+            case SUBTRACT :
+            case MULTIPLY :
+            case DIVIDE :
+            case CONCAT :
+            case NOT :
+            case EQUAL :
+            case BIGGER_EQUAL :
+            case BIGGER :
+            case SMALLER :
+            case SMALLER_EQUAL :
+            case NOT_EQUAL :
+            case AND :
+            case OR :
+            case IN :
+            case IS_NULL : {
+                Expression e = new Expression(this);
+
+                e.isInJoin = false;
+
+                if (eArg != null) {
+                    e.eArg = eArg.getPushedCondition(filter, columns);
+
+                    if (e.eArg == null) {
+                        return null;
+                    }
+                }
+
+                if (eArg2 != null) {
+                    e.eArg2 = eArg2.getPushedCondition(filter, columns);
+
+                    if (e.eArg2 == null) {
+                        return null;
+                    }
+                }
+
+                return e;
+            }
+            default :
+                return null;
+        }
+    }
+
     /**
      * Returns the column size
      *
@@ -3292,8 +3429,21 @@ public class Expression {
             case FUNCTION :
                 return function.getValue(session);
 
-            case QUERY :
-                return subQuery.select.getValue(session, dataType);
+            case QUERY : {
+                Object key = subQuery.getMemoKey(session);
+
+                if (key != null && subQuery.isMemoized(key)) {
+                    return subQuery.getMemoized(key);
+                }
+
+                Object value = subQuery.select.getValue(session, dataType);
+
+                if (key != null) {
+                    subQuery.memoize(key, value);
+                }
+
+                return value;
+            }
 
             case NEGATE :
                 return Column.negate(eArg.getValue(session, dataType),
@@ -3608,6 +3758,12 @@ public class Expression {
             }
 
             if (!subQuery.isResolved) {
+                Boolean result = subQuery.testSemiJoin(session, o);
+
+                if (result != null) {
+                    return result;
+                }
+
                 subQuery.populateTable(session);
             }
 
@@ -3632,10 +3788,28 @@ public class Expression {
             return subQuery.table.isEmpty(session) ? Boolean.FALSE
                                                    : Boolean.TRUE;
         } else {
+            Boolean result = subQuery.testSemiJoin(session, null);
+
+            if (result != null) {
+                return result;
+            }
+
+            Object key = subQuery.getMemoKey(session);
+
+            if (key != null && subQuery.isMemoized(key)) {
+                return (Boolean) subQuery.getMemoized(key);
+            }
+
             Result r = subQuery.select.getResult(session, 1);    // 1 is already enough
 
-            return r.rRoot == null ? Boolean.FALSE
-                                   : Boolean.TRUE;
+            result = r.rRoot == null ? Boolean.FALSE
+                                     : Boolean.TRUE;
+
+            if (key != null) {
+                subQuery.memoize(key, result);
+            }
+
+            return result;
         }
     }
 
@@ -3919,6 +4093,24 @@ public class Expression {
         return s;
     }
 
+    /**
+     * Resolves the expression of an expression index against the columns
+     * of the table and returns the filter that is used to evaluate it for
+     * each row.
+     */
+    static TableFilter getKeyFilter(Session session, Table t,
+                                    Expression e) throws HsqlException {
+
+        TableFilter filter = new TableFilter(t, null, null, false);
+
+        e.resolveTables(filter);
+        e.resolveTypes(session);
+        e.checkResolved(true);
+        filter.setAsCheckFilter();
+
+        return filter;
+    }
+
     /**
      * Sets the left leaf.
      *
@@ -0,0 +1,324 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package org.hsqldb;
+
+import java.util.NoSuchElementException;
+
+import org.hsqldb.index.RowIterator;
+
+/**
+ * Iterates over all the rows of a CACHED table, or over the rows of a range
+ * of one of its indexes, in passes over the .data file, reading the rows in
+ * ascending order of file position within each pass, instead of in index
+ * order.<p>
+ *
+ * The positions of the rows that have not yet been read are taken from the
+ * child links of the index nodes. A child at a higher position than the
+ * last row read is read in the current pass, one at a lower position is
+ * kept for the next pass. Each pass moves forward through the file, reusing
+ * the read buffer of the file and the read-ahead of the file system. The
+ * number of passes is at most the height of the index and the rows of a
+ * table that has been defragmented or clustered are read in one pass.<p>
+ *
+ * For a range, a child is not read when the key of its parent shows that
+ * none of the rows below it can be in the range, so only the rows of the
+ * range and the nodes on the paths to them are read. The limits of the
+ * range may be wider than the conditions of the query, which are checked
+ * for each row in the range.<p>
+ *
+ * Used by TableFilter for a full scan of the primary index, or a range scan
+ * of an index, when the order of the rows does not affect the result, for
+ * example for aggregates without GROUP BY.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+final class FileOrderIterator implements RowIterator {
+
+    private Session      session;
+    private Table        table;
+    private Index        index;
+    private int          offset;
+    private boolean      isRange;
+    private Object       low;
+    private boolean      isLowInclusive;
+    private Object       high;
+    private boolean      isHighInclusive;
+    private int          type;
+    private TableFilter  filter;
+    private Expression   start;
+    private Expression   end;
+    private PositionHeap currentPass;
+    private PositionHeap nextPass;
+    private int          lastPos;
+    private Row          nextRow;
+
+    FileOrderIterator(Session session, Table table) {
+        this(session, table, table.getPrimaryIndex(), false, null, true,
+             null, true, null, null, null);
+    }
+
+    /**
+     * The range consists of the rows whose first key value is not null and
+     * lies between low and high. A null low or high value means the range
+     * has no limit on that side. The values must be of the type of the
+     * first key column. A row in the range is returned only if the start
+     * and end conditions of the filter, when not null, are true.
+     */
+    FileOrderIterator(Session session, Table table, Index index,
+                      Object low, boolean isLowInclusive, Object high,
+                      boolean isHighInclusive, TableFilter filter,
+                      Expression start, Expression end) {
+        this(session, table, index, true, low, isLowInclusive, high,
+             isHighInclusive, filter, start, end);
+    }
+
+    private FileOrderIterator(Session session, Table table, Index index,
+                              boolean isRange, Object low,
+                              boolean isLowInclusive, Object high,
+                              boolean isHighInclusive, TableFilter filter,
+                              Expression start, Expression end) {
+
+        this.session         = session;
+        this.table           = table;
+        this.index           = index;
+        this.isRange         = isRange;
+        this.low             = low;
+        this.isLowInclusive  = isLowInclusive;
+        this.high            = high;
+        this.isHighInclusive = isHighInclusive;
+        this.filter          = filter;
+        this.start           = start;
+        this.end             = end;
+        offset               = table.getIndexIndex(index.getName().name);
+        type                 = isRange ? index.getColumnTypes()[0]
+                                       : 0;
+        currentPass          = new PositionHeap();
+        nextPass             = new PositionHeap();
+
+        Node root = index.getRoot(session);
+
+        if (root != null) {
+            currentPass.push(root.getKey());
+        }
+
+        nextRow = fetch();
+    }
+
+    public boolean hasNext() {
+        return nextRow != null;
+    }
+
+    public Row next() {
+
+        Row row = nextRow;
+
+        if (row != null) {
+            nextRow = fetch();
+        }
+
+        return row;
+    }
+
+    public void release() {
+        currentPass = null;
+        nextPass    = null;
+        nextRow     = null;
+    }
+
+    private Row fetch() {
+
+        while (currentPass != null) {
+            if (currentPass.size == 0) {
+                if (nextPass.size == 0) {
+                    return null;
+                }
+
+                PositionHeap temp = currentPass;
+
+                currentPass = nextPass;
+                nextPass    = temp;
+            }
+
+            lastPos = currentPass.pop();
+
+            Row row = table.getRow(lastPos);
+
+            if (row == null) {
+                throw new NoSuchElementException();
+            }
+
+            DiskNode node = (DiskNode) row.getNode(offset);
+
+            if (!isRange) {
+                add(node.getLeftPos());
+                add(node.getRightPos());
+
+                return row;
+            }
+
+            Object  key;
+            boolean isBelow;
+            boolean isAbove;
+            boolean isMatch;
+
+            try {
+                key     = index.getKeyValue(session, row.getData(), 0);
+                isBelow = key == null || (low != null &&!isAboveLow(key));
+                isAbove = key != null && high != null &&!isBelowHigh(key);
+                isMatch = !isBelow &&!isAbove && isMatch(row);
+            } catch (HsqlException e) {
+                throw new NoSuchElementException(e.getMessage());
+            }
+
+            // the rows to the left have smaller keys, those to the right larger
+            if (!isBelow) {
+                add(node.getLeftPos());
+            }
+
+            if (!isAbove) {
+                add(node.getRightPos());
+            }
+
+            if (isMatch) {
+                return row;
+            }
+        }
+
+        return null;
+    }
+
+    private boolean isMatch(Row row) throws HsqlException {
+
+        if (filter == null) {
+            return true;
+        }
+
+        filter.currentData = row.getData();
+
+        return (start == null || start.testCondition(session))
+               && (end == null || end.testCondition(session));
+    }
+
+    private boolean isAboveLow(Object key) {
+
+        int result = Column.compare(index.collation, key, low, type);
+
+        return result > 0 || (result == 0 && isLowInclusive);
+    }
+
+    private boolean isBelowHigh(Object key) {
+
+        int result = Column.compare(index.collation, key, high, type);
+
+        return result < 0 || (result == 0 && isHighInclusive);
+    }
+
+    private void add(int pos) {
+
+        if (pos == Node.NO_POS) {
+            return;
+        }
+
+        if (pos > lastPos) {
+            currentPass.push(pos);
+        } else {
+            nextPass.push(pos);
+        }
+    }
+
+    /**
+     * A binary min-heap of file positions.
+     */
+    private static final class PositionHeap {
+
+        int[] heap = new int[64];
+        int   size;
+
+        void push(int pos) {
+
+            if (size == heap.length) {
+                int[] newHeap = new int[heap.length * 2];
+
+                System.arraycopy(heap, 0, newHeap, 0, size);
+
+                heap = newHeap;
+            }
+
+            int i = size++;
+
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+
+                if (heap[parent] <= pos) {
+                    break;
+                }
+
+                heap[i] = heap[parent];
+                i       = parent;
+            }
+
+            heap[i] = pos;
+        }
+
+        int pop() {
+
+            int result = heap[0];
+            int last   = heap[--size];
+            int i      = 0;
+
+            while (true) {
+                int child = 2 * i + 1;
+
+                if (child >= size) {
+                    break;
+                }
+
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+
+                if (last <= heap[child]) {
+                    break;
+                }
+
+                heap[i] = heap[child];
+                i       = child;
+            }
+
+            heap[i] = last;
+
+            return result;
+        }
+    }
+}
@@ -287,6 +287,57 @@ class Function {
         eArg = new Expression[iArgCount];
     }
 
+    /**
+     * Returns true if this is a built-in function that returns the same
+     * value for the same arguments within the execution of a statement.
+     * Java routines defined by users are not assumed to be deterministic.
+     */
+    boolean isDeterministic() {
+
+        Class<?> c    = mMethod.getDeclaringClass();
+        String   name = mMethod.getName();
+
+        if (c == Library.class) {
+            return !name.equals("rand") &&!name.equals("identity");
+        }
+
+        if (c == Math.class) {
+            return !name.equals("random");
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns true if this is a deterministic function that does not depend
+     * on the session or on the time of execution, so that its value can be
+     * reused by later statements.
+     */
+    boolean isRepeatable() {
+
+        switch (fID) {
+
+            case Library.curtime :
+            case Library.curdate :
+            case Library.getAutoCommit :
+            case Library.isReadOnlyConnection :
+            case Library.now :
+            case Library.user :
+                return false;
+        }
+
+        return isDeterministic();
+    }
+
+    /**
+     * Returns true if the other Function calls the same Java method with
+     * the same number of arguments.
+     */
+    boolean isSameMethod(Function other) {
+        return mMethod.equals(other.mMethod)
+               && eArg.length == other.eArg.length;
+    }
+
     /**
      * Evaluates and returns this Function in the context of the session.<p>
      */
@@ -73,6 +73,7 @@ class GroupedResult {
     int                   groupEnd;
     private final boolean isGrouped;
     private final boolean isAggregated;
+    private final boolean isOrdered;
     private HashSet       groups;
     private ResultGroup   currGroup;
 
@@ -83,15 +84,20 @@ class GroupedResult {
         groupEnd     = groupBegin + select.iGroupLen;
         isGrouped    = groupBegin != groupEnd;
         isAggregated = select.isAggregated;
+        isOrdered    = isGrouped && select.isGroupOrdered;
 
-        if (isGrouped) {
+        if (isGrouped &&!isOrdered) {
             groups = new HashSet();
         }
     }
 
     Object[] getRow(Object[] row) {
 
-        if (isGrouped) {
+        if (isOrdered) {
+            if (currGroup != null && currGroup.isSameGroup(row)) {
+                ArrayUtil.copyArray(currGroup.row, row, row.length);
+            }
+        } else if (isGrouped) {
             ResultGroup newGroup = new ResultGroup(row);
             ResultGroup group    = (ResultGroup) groups.get(newGroup);
 
@@ -109,7 +115,17 @@ class GroupedResult {
 
     void addRow(Object[] row) {
 
-        if (isGrouped) {
+        if (isOrdered) {
+
+            // rows arrive in group order, so only the last group can match
+            if (currGroup != null && currGroup.isSameGroup(row)) {
+                System.arraycopy(row, 0, currGroup.row, 0, row.length);
+            } else {
+                currGroup = new ResultGroup(row);
+
+                result.add(row);
+            }
+        } else if (isGrouped) {
             ResultGroup newGroup = new ResultGroup(row);
 
             currGroup = (ResultGroup) groups.get(newGroup);
@@ -180,8 +196,13 @@ class GroupedResult {
 
             ResultGroup group = (ResultGroup) obj;
 
+            return isSameGroup(group.row);
+        }
+
+        boolean isSameGroup(Object[] otherRow) {
+
             for (int i = groupBegin; i < groupEnd; i++) {
-                if (!equals(row[i], group.row[i])) {
+                if (!equals(row[i], otherRow[i])) {
                     return false;
                 }
             }
@@ -71,6 +71,9 @@ import java.util.NoSuchElementException;
 import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.index.RowIterator;
 import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.ObjectComparator;
+import org.hsqldb.lib.Sort;
+import org.hsqldb.store.ValuePool;
 
 // fredt@users 20020221 - patch 513005 by sqlbob@users - corrections
 // fredt@users 20020225 - patch 1.7.0 - changes to support cascading deletes
@@ -118,6 +121,14 @@ public class Index {
     final boolean    onCommitPreserve;
     final Table      table;
 
+    // condition of a partial index, only the rows that satisfy it are added
+    private Expression  predicate;
+    private TableFilter predicateFilter;
+
+    // expression of an expression index, which gives the first key value
+    private Expression  keyExpression;
+    private TableFilter keyFilter;
+
     /**
      * Constructor declaration
      *
@@ -194,6 +205,236 @@ public class Index {
         return isConstraint;
     }
 
+    /**
+     * Is this a partial index?
+     */
+    boolean isPartial() {
+        return predicate != null;
+    }
+
+    /**
+     * Makes this a partial index. The condition is resolved with the
+     * filter, which is used to evaluate it for each row. Used before any
+     * rows are added.
+     */
+    void setPredicate(Expression predicate, TableFilter filter) {
+        this.predicate  = predicate;
+        predicateFilter = filter;
+    }
+
+    Expression getPredicate() {
+        return predicate;
+    }
+
+    TableFilter getPredicateFilter() {
+        return predicateFilter;
+    }
+
+    /**
+     * Returns the SQL text of the condition, with the current names of the
+     * table and columns.
+     */
+    String getPredicateDDL() throws HsqlException {
+        return predicate.getDDL();
+    }
+
+    /**
+     * Returns true if the row data satisfies the condition of a partial
+     * index, or if this is not a partial index.
+     */
+    boolean isIndexed(Session session, Object[] data) throws HsqlException {
+
+        if (predicate == null) {
+            return true;
+        }
+
+        // rows are inserted without a session when the script is read
+        if (session == null) {
+            session = table.database.sessionManager.getSysSession();
+        }
+
+        predicateFilter.currentData = data;
+
+        boolean result = Boolean.TRUE.equals(predicate.test(session));
+
+        predicateFilter.currentData = null;
+
+        return result;
+    }
+
+    /**
+     * Is this an expression index?
+     */
+    boolean isExpression() {
+        return keyExpression != null;
+    }
+
+    /**
+     * Makes this an expression index. The expression is resolved with the
+     * filter and replaces the first column of the index, which is one of
+     * the columns used in the expression. The key values are computed from
+     * the rows when they are compared, as nodes do not store them. Used
+     * before any rows are added.
+     */
+    void setKeyExpression(Expression expression, TableFilter filter) {
+
+        keyExpression = expression;
+        keyFilter     = filter;
+        colTypes[0]   = expression.getDataType();
+
+        for (int i = 0; i < colCheck.length; i++) {
+            colCheck[i] |= filter.usedColumns[i];
+        }
+    }
+
+    Expression getKeyExpression() {
+        return keyExpression;
+    }
+
+    TableFilter getKeyFilter() {
+        return keyFilter;
+    }
+
+    /**
+     * Returns the SQL text of the expression, with the current names of
+     * the table and columns.
+     */
+    String getKeyExpressionDDL() throws HsqlException {
+        return keyExpression.getDDL();
+    }
+
+    /**
+     * Returns the value of the key column at the given position for the
+     * row data. For an expression index, the first value is computed.
+     */
+    Object getKeyValue(Session session, Object[] data,
+                       int position) throws HsqlException {
+
+        if (position != 0 || keyExpression == null) {
+            return data[colIndex[position]];
+        }
+
+        // rows are inserted without a session when the script is read
+        if (session == null) {
+            session = table.database.sessionManager.getSysSession();
+        }
+
+        keyFilter.currentData = data;
+
+        Object value = keyExpression.getValue(session);
+
+        keyFilter.currentData = null;
+
+        return value;
+    }
+
+    /**
+     * Returns true if the expression of an expression index is made only
+     * of columns, constants, operations and built-in functions that always
+     * give the same result for the same row, so that the key of a row does
+     * not change while the row is in the index.
+     */
+    static boolean isKeyExpression(Expression e) {
+
+        if (e == null) {
+            return true;
+        }
+
+        switch (e.getType()) {
+
+            case Expression.VALUE :
+                return !e.isParam();
+
+            case Expression.COLUMN :
+                return true;
+
+            case Expression.FUNCTION : {
+                if (!e.function.isRepeatable()) {
+                    return false;
+                }
+
+                Expression[] args = e.function.eArg;
+
+                for (int i = 0; i < args.length; i++) {
+                    if (!isKeyExpression(args[i])) {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+            case Expression.NEGATE :
+            case Expression.ADD :
+            case Expression.SUBTRACT :
+            case Expression.MULTIPLY :
+            case Expression.DIVIDE :
+            case Expression.CONCAT :
+            case Expression.CONVERT :
+                return isKeyExpression(e.getArg())
+                       && isKeyExpression(e.getArg2());
+
+            default :
+                return false;
+        }
+    }
+
+    /**
+     * Returns true if the condition of a partial index is made only of
+     * columns, constants and operations that always give the same result
+     * for the same row, so that a row is found in the index when it is
+     * deleted if it was added.
+     */
+    static boolean isPredicateCondition(Expression e) {
+
+        if (e == null) {
+            return true;
+        }
+
+        switch (e.getType()) {
+
+            case Expression.VALUE :
+                return !e.isParam();
+
+            case Expression.COLUMN :
+                return true;
+
+            case Expression.VALUELIST : {
+                Expression[] values = e.valueList;
+
+                for (int i = 0; i < values.length; i++) {
+                    if (!isPredicateCondition(values[i])) {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+            case Expression.AND :
+            case Expression.OR :
+            case Expression.NOT :
+            case Expression.EQUAL :
+            case Expression.NOT_EQUAL :
+            case Expression.BIGGER :
+            case Expression.BIGGER_EQUAL :
+            case Expression.SMALLER :
+            case Expression.SMALLER_EQUAL :
+            case Expression.IS_NULL :
+            case Expression.LIKE :
+            case Expression.IN :
+            case Expression.NEGATE :
+            case Expression.ADD :
+            case Expression.SUBTRACT :
+            case Expression.MULTIPLY :
+            case Expression.DIVIDE :
+            case Expression.CONCAT :
+                return isPredicateCondition(e.getArg())
+                       && isPredicateCondition(e.getArg2());
+
+            default :
+                return false;
+        }
+    }
+
     /**
      * Returns the array containing column indexes for index
      */
@@ -212,6 +453,15 @@ public class Index {
 
         String columnNameList = "";
 
+        if (keyExpression != null) {
+            try {
+                return keyExpression.getDDL();
+            } catch (HsqlException e) {
+
+                // should not throw as it is already tested OK
+            }
+        }
+
         for (int j = 0; j < colIndex.length; ++j) {
             columnNameList +=
                 table.getColumn(colIndex[j]).columnName.statementName;
@@ -280,7 +530,7 @@ public class Index {
                               : root.getKey();
     }
 
-    private Node getRoot(Session session) {
+    Node getRoot(Session session) {
 
         if (isTemp && session != null) {
             return session.getIndexRoot(indexName, onCommitPreserve);
@@ -294,6 +544,10 @@ public class Index {
      */
     void insert(Session session, Row row, int offset) throws HsqlException {
 
+        if (predicate != null &&!isIndexed(session, row.getData())) {
+            return;
+        }
+
         Node    n       = getRoot(session);
         Node    x       = n;
         boolean isleft  = true;
@@ -315,22 +569,7 @@ public class Index {
             compare = compareRowForInsert(session, row, n.getRow());
 
             if (compare == 0) {
-                int    errorCode = Trace.VIOLATION_OF_UNIQUE_INDEX;
-                String name      = indexName.statementName;
-
-                if (isConstraint) {
-                    Constraint c =
-                        table.getUniqueOrPKConstraintForIndex(this);
-
-                    if (c != null) {
-                        name      = c.getName().name;
-                        errorCode = Trace.VIOLATION_OF_UNIQUE_CONSTRAINT;
-                    }
-                }
-
-                throw Trace.error(errorCode, new Object[] {
-                    name, getColumnNameList()
-                });
+                throw getUniqueViolation();
             }
 
             isleft = compare < 0;
@@ -341,6 +580,197 @@ public class Index {
         balance(session, x, isleft);
     }
 
+    /**
+     * Returns the exception for a row that violates the uniqueness of the
+     * index or of its constraint.
+     */
+    private HsqlException getUniqueViolation() {
+
+        int    errorCode = Trace.VIOLATION_OF_UNIQUE_INDEX;
+        String name      = indexName.statementName;
+
+        if (isConstraint) {
+            Constraint c = table.getUniqueOrPKConstraintForIndex(this);
+
+            if (c != null) {
+                name      = c.getName().name;
+                errorCode = Trace.VIOLATION_OF_UNIQUE_CONSTRAINT;
+            }
+        }
+
+        return Trace.error(errorCode, new Object[] {
+            name, getColumnNameList()
+        });
+    }
+
+    /**
+     * Returns the entry used by IndexBuilder to build this index for the
+     * given row, or null if the row is not indexed. The entry holds the
+     * key values, then the primary key values, then the row itself or, for
+     * CACHED rows, its position.
+     */
+    Object[] getBuildEntry(Session session, Row row) throws HsqlException {
+
+        Object[] data = row.getData();
+
+        if (predicate != null &&!isIndexed(session, data)) {
+            return null;
+        }
+
+        int      keyLength = colIndex.length + pkCols.length;
+        Object[] entry     = new Object[keyLength + 1];
+
+        for (int j = 0; j < colIndex.length; j++) {
+            entry[j] = getKeyValue(session, data, j);
+        }
+
+        for (int j = 0; j < pkCols.length; j++) {
+            entry[colIndex.length + j] = data[pkCols[j]];
+        }
+
+        entry[keyLength] = table.getIndexType() == DISK_INDEX
+                           ? (Object) ValuePool.getInt(row.getPos())
+                           : row;
+
+        return entry;
+    }
+
+    /**
+     * Sorts the entries made by getBuildEntry() and checks them for
+     * uniqueness. Uses no session or table state, so the entries of
+     * different indexes can be sorted at the same time.
+     */
+    void sortEntries(Object[] entries) throws HsqlException {
+
+        Sort.sort(entries, new ObjectComparator() {
+
+            public int compare(Object a, Object b) {
+                return compareEntries((Object[]) a, (Object[]) b);
+            }
+        }, 0, entries.length - 1);
+
+        for (int i = 1; i < entries.length; i++) {
+            if (compareEntries((Object[]) entries[i - 1],
+                               (Object[]) entries[i]) == 0) {
+                throw getUniqueViolation();
+            }
+        }
+    }
+
+    /**
+     * Links the nodes at the given offset for the sorted entries into a
+     * balanced tree and returns its root, which the caller sets with
+     * setRoot(). Each node is linked once, instead of inserting the rows
+     * one by one with rebalancing. Any earlier links of the nodes are
+     * overwritten.
+     */
+    Node linkEntries(Object[] entries, int offset) throws HsqlException {
+
+        Node root = buildTree(entries, 0, entries.length - 1, offset);
+
+        if (root != null) {
+            root.getUpdatedNode().setParent(null);
+        }
+
+        return root;
+    }
+
+    /**
+     * Links the nodes for the sorted entries from first to last into a
+     * balanced tree and returns its root node. The left subtree never has
+     * more nodes than the right one, so the balance of each node follows
+     * from the node counts.
+     */
+    private Node buildTree(Object[] entries, int first, int last,
+                           int offset) throws HsqlException {
+
+        if (first > last) {
+            return null;
+        }
+
+        int      mid   = (first + last) >>> 1;
+        Node     left  = buildTree(entries, first, mid - 1, offset);
+        Node     right = buildTree(entries, mid + 1, last, offset);
+        Object[] entry = (Object[]) entries[mid];
+        Object   ref   = entry[entry.length - 1];
+        Row      row   = ref instanceof Row
+                         ? (Row) ref
+                         : table.getRow(((Integer) ref).intValue());
+        Node     x     = row.getNode(offset);
+
+        set(x, true, left);
+        set(x, false, right);
+
+        x = x.getUpdatedNode();
+
+        x.setBalance(getHeight(last - mid) - getHeight(mid - first));
+
+        return x;
+    }
+
+    /**
+     * Returns the height of a tree with count nodes built by buildTree().
+     */
+    private static int getHeight(int count) {
+        return 32 - Integer.numberOfLeadingZeros(count);
+    }
+
+    /**
+     * Compares two entries made by getBuildEntry() in the same way as
+     * compareRowForInsert() compares the rows.
+     */
+    private int compareEntries(Object[] a, Object[] b) {
+
+        int     j       = 0;
+        boolean hasNull = false;
+
+        for (; j < colIndex.length; j++) {
+            int i = Column.compare(collation, a[j], b[j], colTypes[j]);
+
+            if (i != 0) {
+                return i;
+            }
+
+            if (a[j] == null) {
+                hasNull = true;
+            }
+        }
+
+        if (isUnique &&!useRowId &&!hasNull) {
+            return 0;
+        }
+
+        for (int k = 0; k < pkCols.length; k++, j++) {
+            int i = Column.compare(collation, a[j], b[j], pkTypes[k]);
+
+            if (i != 0) {
+                return i;
+            }
+        }
+
+        if (useRowId) {
+            int difference = getEntryPos(a) - getEntryPos(b);
+
+            if (difference < 0) {
+                difference = -1;
+            } else if (difference > 0) {
+                difference = 1;
+            }
+
+            return difference;
+        }
+
+        return 0;
+    }
+
+    private static int getEntryPos(Object[] entry) {
+
+        Object ref = entry[entry.length - 1];
+
+        return ref instanceof Row ? ((Row) ref).getPos()
+                                  : ((Integer) ref).intValue();
+    }
+
     /**
      * Balances part of the tree after an alteration to the index.
      */
@@ -420,6 +850,10 @@ public class Index {
             return;
         }
 
+        if (predicate != null &&!isIndexed(session, x.getData())) {
+            return;
+        }
+
         for (IndexRowIterator it = updatableIterators.next;
                 it != updatableIterators; it = it.next) {
             it.updateForDelete(x);
@@ -651,6 +1085,19 @@ public class Index {
         return getIterator(session, node);
     }
 
+    /**
+     * Returns an iterator positioned on the first row that matches the
+     * rowdata over the mapped columns. Unlike findFirstRow, NULL values in
+     * the rowdata match NULL values in the index.
+     */
+    RowIterator findFirstRowWithNulls(Session session, Object[] rowdata,
+                                      int[] rowColMap) throws HsqlException {
+
+        Node node = find(session, rowdata, rowColMap, true);
+
+        return getIterator(session, node);
+    }
+
     RowIterator findFirstRowForDelete(Session session, Object[] rowdata,
                                       int[] rowColMap) throws HsqlException {
 
@@ -697,14 +1144,24 @@ public class Index {
                              int[] rowColMap,
                              boolean first) throws HsqlException {
 
-        Node x = getRoot(session);
-        Node n;
-        Node result = null;
-
         if (isNull(rowdata, rowColMap)) {
             return null;
         }
 
+        return find(session, rowdata, rowColMap, first);
+    }
+
+    /**
+     * Finds the first or any row that matches the rowdata, with NULL values
+     * comparing equal.
+     */
+    private Node find(Session session, Object[] rowdata, int[] rowColMap,
+                      boolean first) throws HsqlException {
+
+        Node x = getRoot(session);
+        Node n;
+        Node result = null;
+
         while (x != null) {
             int i = this.compareRowNonUnique(session, rowdata, rowColMap,
                                              x.getData());
@@ -787,14 +1244,12 @@ public class Index {
      * Determines if a table row has a null column for any of the indexed
      * columns.
      */
-    boolean isNull(Object[] row) {
+    boolean isNull(Session session, Object[] row) throws HsqlException {
 
         int count = colIndex.length;
 
         for (int i = 0; i < count; i++) {
-            int j = colIndex[i];
-
-            if (row[j] == null) {
+            if (getKeyValue(session, row, i) == null) {
                 return true;
             }
         }
@@ -815,7 +1270,7 @@ public class Index {
 
         Node    x      = getRoot(session);
         Node    found  = null;
-        boolean unique = isUnique &&!isNull(rowdata);
+        boolean unique = isUnique &&!isNull(session, rowdata);
 
         while (x != null) {
             int c = compareRowNonUnique(session, rowdata, colIndex,
@@ -879,7 +1334,7 @@ public class Index {
         while (x != null) {
             boolean t =
                 Column.compare(
-                    collation, value, x.getData()[colIndex[0]],
+                    collation, value, getKeyValue(session, x.getData(), 0),
                     colTypes[0]) >= iTest;
 
             if (t) {
@@ -909,7 +1364,7 @@ public class Index {
         }
 */
         while (x != null) {
-            Object colvalue = x.getData()[colIndex[0]];
+            Object colvalue = getKeyValue(session, x.getData(), 0);
             int result = Column.compare(collation, value, colvalue,
                                         colTypes[0]);
 
@@ -933,6 +1388,86 @@ public class Index {
         return getIterator(session, x);
     }
 
+    /**
+     * Finds the first node that is larger than the key, or larger or equal
+     * if isBigger is false, based on the first count columns of the index.
+     * The key holds the values in index column order.
+     *
+     * @return iterator
+     *
+     * @throws HsqlException
+     */
+    RowIterator findFirstRow(Session session, Object[] key, int count,
+                             boolean isBigger) throws HsqlException {
+
+        Node x     = getRoot(session);
+        Node found = null;
+
+        while (x != null) {
+            int c = compareKey(session, key, count, x.getData());
+
+            if (isBigger ? c < 0
+                         : c <= 0) {
+                found = x;
+                x     = x.getLeft();
+            } else {
+                x = x.getRight();
+            }
+        }
+
+        return getIterator(session, found);
+    }
+
+    /**
+     * Finds the last node that is smaller than the key, or smaller or equal
+     * if isSmaller is false, based on the first count columns of the index.
+     * The returned iterator returns the rows in reverse index order.
+     *
+     * @return iterator
+     *
+     * @throws HsqlException
+     */
+    RowIterator findLastRow(Session session, Object[] key, int count,
+                            boolean isSmaller) throws HsqlException {
+
+        Node x     = getRoot(session);
+        Node found = null;
+
+        while (x != null) {
+            int c = compareKey(session, key, count, x.getData());
+
+            if (isSmaller ? c > 0
+                          : c >= 0) {
+                found = x;
+                x     = x.getRight();
+            } else {
+                x = x.getLeft();
+            }
+        }
+
+        return getReverseIterator(session, found);
+    }
+
+    /**
+     * Compares the key, which holds values in index column order, with the
+     * first count columns of the index in a full table row.
+     */
+    private int compareKey(Session session, Object[] key, int count,
+                           Object[] data) throws HsqlException {
+
+        for (int j = 0; j < count; j++) {
+            int i = Column.compare(collation, key[j],
+                                   getKeyValue(session, data, j),
+                                   colTypes[j]);
+
+            if (i != 0) {
+                return i;
+            }
+        }
+
+        return 0;
+    }
+
     /**
      * Finds the first node where the data is not null.
      *
@@ -946,7 +1481,8 @@ public class Index {
 
         while (x != null) {
             boolean t = Column.compare(
-                collation, null, x.getData()[colIndex[0]], colTypes[0]) >= 0;
+                collation, null, getKeyValue(session, x.getData(), 0),
+                colTypes[0]) >= 0;
 
             if (t) {
                 Node r = x.getRight();
@@ -968,7 +1504,7 @@ public class Index {
         }
 
         while (x != null) {
-            Object colvalue = x.getData()[colIndex[0]];
+            Object colvalue = getKeyValue(session, x.getData(), 0);
 
             if (colvalue == null) {
                 x = next(x);
@@ -1025,6 +1561,67 @@ public class Index {
                          : x.getRow();
     }
 
+    /**
+     * Returns an iterator that returns the rows in reverse index order,
+     * starting with the last row.
+     *
+     * @throws HsqlException
+     */
+    RowIterator lastRowIterator(Session session) throws HsqlException {
+
+        Node x = getRoot(session);
+        Node r = x;
+
+        while (r != null) {
+            x = r;
+            r = x.getRight();
+        }
+
+        return getReverseIterator(session, x);
+    }
+
+    /**
+     * Returns the node before the given one
+     *
+     * @param x node
+     *
+     * @return previous node
+     *
+     * @throws HsqlException
+     */
+    Node previous(Node x) throws HsqlException {
+
+        if (x == null) {
+            return null;
+        }
+
+        Node l = x.getLeft();
+
+        if (l != null) {
+            x = l;
+
+            Node r = x.getRight();
+
+            while (r != null) {
+                x = r;
+                r = x.getRight();
+            }
+
+            return x;
+        }
+
+        Node ch = x;
+
+        x = x.getParent();
+
+        while (x != null && ch.equals(x.getLeft())) {
+            ch = x;
+            x  = x.getParent();
+        }
+
+        return x;
+    }
+
     /**
      * Returns the node after the given one
      *
@@ -1177,7 +1774,10 @@ public class Index {
     int compareRowNonUnique(Session session, Object[] a, int[] rowColMap,
                             Object[] b) throws HsqlException {
 
-        int i = Column.compare(collation, a[rowColMap[0]], b[colIndex[0]],
+        Object value = keyExpression != null && rowColMap == colIndex
+                       ? getKeyValue(session, a, 0)
+                       : a[rowColMap[0]];
+        int i = Column.compare(collation, value, getKeyValue(session, b, 0),
                                colTypes[0]);
 
         if (i != 0) {
@@ -1244,9 +1844,9 @@ public class Index {
         boolean  hasNull = false;
 
         for (; j < colIndex.length; j++) {
-            Object currentvalue = a[colIndex[j]];
-            int i = Column.compare(collation, currentvalue, b[colIndex[j]],
-                                   colTypes[j]);
+            Object currentvalue = getKeyValue(session, a, j);
+            int i = Column.compare(collation, currentvalue,
+                                   getKeyValue(session, b, j), colTypes[j]);
 
             if (i != 0) {
                 return i;
@@ -1328,11 +1928,25 @@ public class Index {
         }
     }
 
+    private IndexRowIterator getReverseIterator(Session session, Node x) {
+
+        if (x == null) {
+            return emptyIterator;
+        } else {
+            IndexRowIterator it = new IndexRowIterator(session, this, x);
+
+            it.isReverse = true;
+
+            return it;
+        }
+    }
+
     static class IndexRowIterator implements RowIterator {
 
         Session                    session;
         Index                      index;
         Node                       nextnode;
+        boolean                    isReverse;
         protected IndexRowIterator last;
         protected IndexRowIterator next;
 
@@ -1360,7 +1974,8 @@ public class Index {
                 try {
                     Row row = nextnode.getRow();
 
-                    nextnode = index.next(nextnode);
+                    nextnode = isReverse ? index.previous(nextnode)
+                                         : index.next(nextnode);
 
                     return row;
                 } catch (Exception e) {
@@ -1375,7 +1990,8 @@ public class Index {
 
             try {
                 if (node.equals(nextnode)) {
-                    nextnode = index.next(node);
+                    nextnode = isReverse ? index.previous(node)
+                                         : index.next(node);
                 }
             } catch (Exception e) {}
         }
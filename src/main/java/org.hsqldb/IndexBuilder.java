@@ -0,0 +1,244 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import org.hsqldb.index.RowIterator;
+import org.hsqldb.lib.HsqlArrayList;
+
+/**
+ * Builds one or more indexes of a table from the rows of its primary index,
+ * which must already hold all the rows.<p>
+ *
+ * The rows are read in a single scan of the primary index and the key
+ * entries for all the indexes are made together. When there is more than
+ * one index and enough rows, each index is then sorted on its own worker
+ * thread, so the time taken is that of the slowest index rather than the
+ * sum for all of them. The nodes of MEMORY and TEXT tables are linked by
+ * the same workers. The nodes of CACHED tables are linked afterwards on the
+ * calling thread, as linking them changes rows held in the shared cache.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+final class IndexBuilder {
+
+    /** fewer rows than this are not worth starting threads for */
+    static final int MIN_PARALLEL_ROWS = 10000;
+
+    //
+    private Session    session;
+    private Table      table;
+    private int        first;
+    private Index[]    indexes;
+    private Object[][] entries;
+    private Node[]     roots;
+    private boolean    isWorkerLinked;
+    private int        rowCount;
+
+    /**
+     * Builds the count indexes of the table starting at position first.
+     */
+    IndexBuilder(Session session, Table table, int first, int count) {
+
+        this.session   = session;
+        this.table     = table;
+        this.first     = first;
+        indexes        = new Index[count];
+        entries        = new Object[count][];
+        roots          = new Node[count];
+        isWorkerLinked = table.getIndexType() != Index.DISK_INDEX;
+
+        for (int i = 0; i < count; i++) {
+            indexes[i] = table.getIndex(first + i);
+        }
+    }
+
+    void build() throws HsqlException {
+
+        if (indexes.length == 0) {
+            return;
+        }
+
+        readEntries();
+
+        if (indexes.length > 1 && rowCount >= MIN_PARALLEL_ROWS
+                && Runtime.getRuntime().availableProcessors() > 1) {
+            buildParallel();
+        } else {
+            for (int i = 0; i < indexes.length; i++) {
+                buildEntries(i);
+            }
+        }
+
+        for (int i = 0; i < indexes.length; i++) {
+            if (!isWorkerLinked) {
+                roots[i] = indexes[i].linkEntries(entries[i], first + i);
+            }
+
+            indexes[i].setRoot(session, roots[i]);
+
+            entries[i] = null;
+        }
+    }
+
+    /**
+     * Makes the entries for all the indexes in one scan of the rows.
+     */
+    private void readEntries() throws HsqlException {
+
+        HsqlArrayList[] lists = new HsqlArrayList[indexes.length];
+        RowIterator     it    = table.getPrimaryIndex().firstRow(session);
+
+        for (int i = 0; i < indexes.length; i++) {
+            lists[i] = new HsqlArrayList();
+        }
+
+        while (it.hasNext()) {
+            Row row = it.next();
+
+            rowCount++;
+
+            for (int i = 0; i < indexes.length; i++) {
+                Object[] entry = indexes[i].getBuildEntry(session, row);
+
+                if (entry != null) {
+                    lists[i].add(entry);
+                }
+            }
+        }
+
+        for (int i = 0; i < indexes.length; i++) {
+            entries[i] = lists[i].toArray();
+            lists[i]   = null;
+        }
+    }
+
+    /**
+     * Sorts the entries of one index and, if the nodes can be linked
+     * outside the calling thread, links them.
+     */
+    private void buildEntries(int i) throws HsqlException {
+
+        indexes[i].sortEntries(entries[i]);
+
+        if (isWorkerLinked) {
+            roots[i] = indexes[i].linkEntries(entries[i], first + i);
+        }
+    }
+
+    /**
+     * Builds the first index on the calling thread and each of the others
+     * on a worker thread, then waits for all the workers. Any error is
+     * thrown on the calling thread, for the first index that failed.
+     */
+    private void buildParallel() throws HsqlException {
+
+        Worker[] workers = new Worker[indexes.length];
+
+        for (int i = 1; i < indexes.length; i++) {
+            workers[i] = new Worker(i);
+
+            workers[i].start();
+        }
+
+        Throwable error = null;
+
+        try {
+            buildEntries(0);
+        } catch (Throwable t) {
+            error = t;
+        }
+
+        for (int i = 1; i < indexes.length; i++) {
+            workers[i].waitFor();
+
+            if (error == null) {
+                error = workers[i].error;
+            }
+        }
+
+        if (error instanceof HsqlException) {
+            throw (HsqlException) error;
+        } else if (error instanceof OutOfMemoryError) {
+            throw Trace.error(Trace.OUT_OF_MEMORY);
+        } else if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        }
+    }
+
+    private class Worker extends Thread {
+
+        int       index;
+        Throwable error;
+
+        Worker(int index) {
+
+            super("HSQLDB Index Builder " + indexes[index].getName().name);
+
+            this.index = index;
+
+            setDaemon(true);
+        }
+
+        public void run() {
+
+            try {
+                buildEntries(index);
+            } catch (Throwable t) {
+                error = t;
+            }
+        }
+
+        /**
+         * Waits for the worker to finish, even if the calling thread is
+         * interrupted, as the worker still uses the rows of the table.
+         */
+        void waitFor() {
+
+            boolean interrupted = false;
+
+            while (isAlive()) {
+                try {
+                    join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
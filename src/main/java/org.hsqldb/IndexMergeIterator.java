@@ -0,0 +1,131 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import org.hsqldb.index.RowIterator;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.store.BitMap;
+
+/**
+ * Returns the union of the rows returned by several index iterators over
+ * the same table, each row once. The positions of the rows are collected
+ * in a bit map. Rows of CACHED tables are then read again by position, in
+ * the order of the positions in the data file. Rows of other tables are
+ * kept as they are found and returned in that order.<p>
+ *
+ * Used by TableFilter for an OR condition where each alternative can use
+ * an index of the table.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+final class IndexMergeIterator implements RowIterator {
+
+    private Table         table;
+    private BitMap        map;
+    private HsqlArrayList rows;
+    private int           position;
+    private Row           nextRow;
+
+    IndexMergeIterator(Table table, RowIterator[] iterators) {
+
+        boolean isByPosition = table.isCached() &&!table.isText();
+
+        this.table = table;
+        map        = new BitMap(1024);
+        rows       = isByPosition ? null
+                                  : new HsqlArrayList();
+
+        for (int i = 0; i < iterators.length; i++) {
+            RowIterator it = iterators[i];
+
+            for (Row row = it.next(); row != null; row = it.next()) {
+                if (map.set(row.getPos()) == 0 && rows != null) {
+                    rows.add(row);
+                }
+            }
+
+            it.release();
+        }
+
+        position = 0;
+        nextRow  = fetch();
+    }
+
+    public boolean hasNext() {
+        return nextRow != null;
+    }
+
+    public Row next() {
+
+        Row row = nextRow;
+
+        if (row != null) {
+            nextRow = fetch();
+        }
+
+        return row;
+    }
+
+    public void release() {
+        rows = null;
+        map  = null;
+    }
+
+    private Row fetch() {
+
+        if (map == null) {
+            return null;
+        }
+
+        if (rows != null) {
+            return position < rows.size() ? (Row) rows.get(position++)
+                                          : null;
+        }
+
+        while (true) {
+            int pos = map.nextSetBit(position);
+
+            if (pos == -1) {
+                return null;
+            }
+
+            position = pos + 1;
+
+            Row row = table.getRow(pos);
+
+            if (row != null) {
+                return row;
+            }
+        }
+    }
+}
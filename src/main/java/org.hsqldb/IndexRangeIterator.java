@@ -0,0 +1,251 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import java.util.NoSuchElementException;
+
+import org.hsqldb.index.RowIterator;
+
+/**
+ * Iterates over the rows of an index whose leading columns are equal to a
+ * prefix of values and whose next column value lies in any of a list of
+ * ranges, seeking in the index once for each range. The ranges must be in
+ * ascending order and must not overlap, so that the rows are returned in
+ * index order, or in reverse index order if isReverse is true.<p>
+ *
+ * Used by TableFilter for <code>column IN (value, ...)</code>, where each
+ * range is a single value, for <code>column LIKE pattern</code> where
+ * the pattern is known only at execution time, where the range covers the
+ * values that start with the fixed prefix of the pattern, and for
+ * equality conditions on the leading columns of a multi-column index
+ * followed by a range condition on the next column.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+final class IndexRangeIterator implements RowIterator {
+
+    private Session     session;
+    private Index       index;
+    private Object[]    key;
+    private int         prefixLength;
+    private Object[]    lowValues;
+    private Object[]    highValues;
+    private boolean     isLowInclusive;
+    private boolean     isHighInclusive;
+    private boolean     isReverse;
+    private int[]       types;
+    private int         rangeCount;
+    private int         range;
+    private RowIterator it;
+    private Row         nextRow;
+
+    /**
+     * Each range includes its low value and, if isHighInclusive is true, its
+     * high value. A null high value means there is no upper limit.
+     */
+    IndexRangeIterator(Session session, Index index, Object[] lowValues,
+                       Object[] highValues, boolean isHighInclusive) {
+        this(session, index, new Object[0], lowValues, true, highValues,
+             isHighInclusive, false);
+    }
+
+    /**
+     * The prefix holds the values of the leading index columns. A null
+     * element in lowValues or highValues means the range has no limit on
+     * that side. Rows with a null value in the column after the prefix are
+     * returned only when both lowValues and highValues are null, which is
+     * a single range over all the rows that match the prefix.
+     */
+    IndexRangeIterator(Session session, Index index, Object[] prefix,
+                       Object[] lowValues, boolean isLowInclusive,
+                       Object[] highValues, boolean isHighInclusive,
+                       boolean isReverse) {
+
+        this.session         = session;
+        this.index           = index;
+        this.lowValues       = lowValues;
+        this.highValues      = highValues;
+        this.isLowInclusive  = isLowInclusive;
+        this.isHighInclusive = isHighInclusive;
+        this.isReverse       = isReverse;
+        prefixLength         = prefix.length;
+        key                  = new Object[prefixLength + 1];
+        types                = index.getColumnTypes();
+        rangeCount           = lowValues != null ? lowValues.length
+                                                 : highValues != null
+                                                   ? highValues.length
+                                                   : 1;
+        range                = isReverse ? rangeCount
+                                         : -1;
+
+        System.arraycopy(prefix, 0, key, 0, prefixLength);
+
+        nextRow = fetch();
+    }
+
+    public boolean hasNext() {
+        return nextRow != null;
+    }
+
+    public Row next() {
+
+        Row row = nextRow;
+
+        if (row != null) {
+            nextRow = fetch();
+        }
+
+        return row;
+    }
+
+    public void release() {
+
+        if (it != null) {
+            it.release();
+
+            it = null;
+        }
+    }
+
+    private Row fetch() {
+
+        while (true) {
+            if (it == null) {
+                range += isReverse ? -1
+                                   : 1;
+
+                if (range < 0 || range >= rangeCount) {
+                    return null;
+                }
+
+                try {
+                    it = isReverse ? seekLast()
+                                   : seekFirst();
+                } catch (HsqlException e) {
+                    throw new NoSuchElementException(e.getMessage());
+                }
+            }
+
+            Row row = it.next();
+
+            try {
+                if (row != null && isInRange(row.getData())) {
+                    return row;
+                }
+            } catch (HsqlException e) {
+                throw new NoSuchElementException(e.getMessage());
+            }
+
+            release();
+        }
+    }
+
+    private RowIterator seekFirst() throws HsqlException {
+
+        if (lowValues == null && highValues == null) {
+            return index.findFirstRow(session, key, prefixLength, false);
+        }
+
+        Object low = lowValues == null ? null
+                                       : lowValues[range];
+
+        key[prefixLength] = low;
+
+        // without a low value, skip the nulls
+        return index.findFirstRow(session, key, prefixLength + 1,
+                                  low == null ||!isLowInclusive);
+    }
+
+    private RowIterator seekLast() throws HsqlException {
+
+        Object high = highValues == null ? null
+                                         : highValues[range];
+
+        if (high == null) {
+            return index.findLastRow(session, key, prefixLength, false);
+        }
+
+        key[prefixLength] = high;
+
+        return index.findLastRow(session, key, prefixLength + 1,
+                                 !isHighInclusive);
+    }
+
+    private boolean isInRange(Object[] data) throws HsqlException {
+
+        Collation collation = session.database.collation;
+
+        for (int i = 0; i < prefixLength; i++) {
+            if (Column.compare(collation, index.getKeyValue(session, data, i),
+                               key[i], types[i]) != 0) {
+                return false;
+            }
+        }
+
+        if (lowValues == null && highValues == null) {
+            return true;
+        }
+
+        Object value = index.getKeyValue(session, data, prefixLength);
+
+        if (value == null) {
+            return false;
+        }
+
+        int    type = types[prefixLength];
+        Object low  = lowValues == null ? null
+                                        : lowValues[range];
+        Object high = highValues == null ? null
+                                         : highValues[range];
+
+        if (low != null) {
+            int result = Column.compare(collation, value, low, type);
+
+            if (isLowInclusive ? result < 0
+                               : result <= 0) {
+                return false;
+            }
+        }
+
+        if (high != null) {
+            int result = Column.compare(collation, value, high, type);
+
+            if (isHighInclusive ? result > 0
+                                : result >= 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
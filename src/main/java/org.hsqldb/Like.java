@@ -330,12 +330,30 @@ class Like {
         return getStartsWith();
     }
 
+    /**
+     * Returns the smallest string that is larger than all the strings that
+     * start with the fixed prefix, or null if there is no such string.
+     */
     String getRangeHigh() {
 
         String s = getStartsWith();
 
-        return s == null ? null
-                         : s.concat("\uffff");
+        if (s == null) {
+            return null;
+        }
+
+        int end = s.length();
+
+        while (end > 0 && s.charAt(end - 1) == '\uffff') {
+            end--;
+        }
+
+        if (end == 0) {
+            return null;
+        }
+
+        return s.substring(0, end - 1).concat(
+            String.valueOf((char) (s.charAt(end - 1) + 1)));
     }
 
     public String describe(Session session) {
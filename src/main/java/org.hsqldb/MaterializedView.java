@@ -0,0 +1,810 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb;
+
+import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.index.RowIterator;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.Iterator;
+import org.hsqldb.store.ValuePool;
+
+/**
+ * Represents a MATERIALIZED VIEW, a table that holds the result of a SELECT
+ * statement.<p>
+ *
+ * The rows are computed when the view is created and when a REFRESH
+ * MATERIALIZED VIEW statement is executed. Users cannot modify the rows.
+ * The view is also maintained incrementally when rows are inserted,
+ * deleted or updated in the base table, if the SELECT reads a single table
+ * and is one of the two forms below. Otherwise the rows are only changed
+ * by REFRESH.<p>
+ *
+ * <ul>
+ * <li>No DISTINCT, aggregates, GROUP BY, HAVING, LIMIT, subqueries or set
+ * operations. Each base row that satisfies the condition adds or removes
+ * one row of the view.
+ * <li>GROUP BY columns and COUNT(*), COUNT(expression) or SUM(column) where
+ * the column is NOT NULL. Each GROUP BY column is also a select column and
+ * a COUNT(*) column is required. Each base row updates the row for its
+ * group, which is removed when the count falls to zero.
+ * </ul>
+ *
+ * The changes to the view are made in the same transaction as the changes
+ * to the base table and are logged as changes to the view, so rollback
+ * and recovery need no maintenance. The rows computed by CREATE and
+ * REFRESH are not logged, as these statements are replayed from the log.
+ * An index on all columns, with the plain column references first, is used
+ * to find the view rows.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+final class MaterializedView extends Table {
+
+    private static final int MODE_REFRESH   = 0;
+    private static final int MODE_ROWS      = 1;
+    private static final int MODE_AGGREGATE = 2;
+
+    //
+    private String     statement;
+    private HsqlName[] colList;
+    private HsqlName   indexName;
+
+    /** schema at the time of compilation */
+    HsqlName compileTimeSchema;
+
+    //
+    private Select       viewSelect;
+    private SubQuery[]   viewSubqueries;
+    private int          mode;
+    private Table        baseTable;
+    private TableFilter  baseFilter;
+    private Expression[] conditions;
+
+    /** select columns, or the arguments of the aggregates */
+    private Expression[] columnExpressions;
+
+    /** COUNT or SUM for aggregate columns, otherwise 0 */
+    private int[] aggregateTypes;
+    private int   countColumn;
+    private Index lookupIndex;
+    private int[] lookupColumns;
+
+    /**
+     * Constructor.
+     *
+     * @param session the connected context
+     * @param db database
+     * @param name HsqlName of the view
+     * @param type MEMORY_TABLE or CACHED_TABLE
+     * @param definition SELECT statement of the view
+     * @param columns array of HsqlName column names
+     * @throws HsqlException
+     */
+    MaterializedView(Session session, Database db, HsqlName name, int type,
+                     String definition,
+                     HsqlName[] columns) throws HsqlException {
+
+        super(db, name, type);
+
+        colList           = columns;
+        statement         = View.trimStatement(definition);
+        compileTimeSchema = session.getSchemaHsqlName(null);
+
+        compile(session);
+
+        statement = View.replaceAsterisks(statement, viewSubqueries);
+
+        checkSchemas();
+        createPrimaryKey();
+
+        indexName   = database.nameManager.newAutoName("IDX");
+        lookupIndex = createIndexStructure(getIndexColumns(), indexName,
+                                           false, false, false);
+    }
+
+    /**
+     * Constructor for a copy with a modified structure. The copy is
+     * compiled after the columns and indexes are copied.
+     */
+    private MaterializedView(MaterializedView view) throws HsqlException {
+
+        super(view.database, view.tableName, view.getTableType());
+
+        colList           = view.colList;
+        statement         = view.statement;
+        compileTimeSchema = view.compileTimeSchema;
+        indexName         = view.indexName;
+    }
+
+    protected Table duplicate() throws HsqlException {
+        return new MaterializedView(this);
+    }
+
+    /**
+     * Compiles the SELECT statement and determines how the view is
+     * maintained. Sets up the columns when first called.
+     */
+    void compile(Session session) throws HsqlException {
+
+        Parser p = new Parser(session, database, new Tokenizer(statement));
+
+        p.setCompilingView();
+
+        int      brackets = p.parseOpenBracketsSelect();
+        SubQuery sq = p.parseSubquery(brackets, colList, true,
+                                      Expression.VIEW);
+
+        viewSubqueries = p.getSortedSubqueries();
+        viewSelect     = sq.select;
+
+        viewSelect.prepareResult(session);
+
+        if (columnCount == 0) {
+            addColumns(viewSelect.resultMetaData, viewSelect.iResultLen);
+        }
+
+        if (baseTable != null) {
+            baseTable.removeMaterializedView(this);
+        }
+
+        setMaintenance();
+
+        if (indexName != null) {
+            lookupIndex = getIndex(indexName.name);
+        }
+    }
+
+    /**
+     * Compiles the view after a change to the structure of a table it
+     * references or to its own structure, and registers it with the base
+     * table.
+     */
+    void recompile() throws HsqlException {
+
+        String schema = compileTimeSchema.name;
+
+        if (!database.schemaManager.schemaExists(schema)) {
+            schema = null;
+        }
+
+        compile(database.sessionManager.getSysSession(schema, false));
+        link();
+    }
+
+    /**
+     * Registers the view for incremental maintenance with its base table.
+     */
+    void link() {
+
+        if (mode != MODE_REFRESH) {
+            baseTable.addMaterializedView(this);
+        }
+    }
+
+    void drop() throws HsqlException {
+
+        if (baseTable != null) {
+            baseTable.removeMaterializedView(this);
+        }
+    }
+
+    /**
+     * Returns the SELECT statement for the view.
+     */
+    String getStatement() {
+        return statement;
+    }
+
+    /**
+     * Returns true if the view is maintained on changes to the base table.
+     */
+    boolean isIncremental() {
+        return mode != MODE_REFRESH;
+    }
+
+    /**
+     * Rows are modified only by maintenance and REFRESH.
+     */
+    void checkDataReadOnly() throws HsqlException {
+        throw Trace.error(Trace.DATA_IS_READONLY);
+    }
+
+    /**
+     * Overridden to disable SET TABLE READONLY DDL.
+     */
+    void setDataReadOnly(boolean value) throws HsqlException {
+        throw Trace.error(Trace.NOT_A_TABLE);
+    }
+
+    /**
+     * Replaces the rows with the result of the SELECT statement. The rows
+     * are not logged.
+     */
+    void refresh(Session session) throws HsqlException {
+
+        Result result = getViewResult(session);
+
+        clearRows(session);
+
+        for (Record r = result.rRoot; r != null; r = r.next) {
+            Object[] data = getEmptyRowData();
+
+            System.arraycopy(r.data, 0, data, 0, data.length);
+            insertData(session, data);
+        }
+    }
+
+    /**
+     * Updates the view for a row inserted into the base table.
+     */
+    void insertBaseRow(Session session, Object[] data) throws HsqlException {
+
+        if (!isSelected(session, data)) {
+            return;
+        }
+
+        if (mode == MODE_ROWS) {
+            insertNoCheck(session, getViewRow(session));
+        } else {
+            updateGroup(session, 1);
+        }
+    }
+
+    /**
+     * Updates the view for a row deleted from the base table.
+     */
+    void deleteBaseRow(Session session, Object[] data) throws HsqlException {
+
+        if (!isSelected(session, data)) {
+            return;
+        }
+
+        if (mode == MODE_ROWS) {
+            Row row = findViewRow(session, getViewRow(session));
+
+            if (row != null) {
+                deleteNoCheck(session, row, true);
+            }
+        } else {
+            updateGroup(session, -1);
+        }
+    }
+
+    /**
+     * Returns true if the view references the table.
+     */
+    boolean hasTable(Table table) {
+
+        for (int i = 0; i < viewSubqueries.length; i++) {
+            Select select = viewSubqueries[i].select;
+
+            for (; select != null; select = select.unionSelect) {
+                TableFilter[] tfilter = select.tFilter;
+
+                for (int j = 0; j < tfilter.length; j++) {
+                    if (table.equals(tfilter[j].filterTable.tableName)) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns true if the view references the named column of the table.
+     */
+    boolean hasColumn(Table table, String colname) {
+
+        if (hasTable(table)) {
+            Expression.Collector coll = new Expression.Collector();
+
+            coll.addAll(viewSubqueries[viewSubqueries.length - 1].select,
+                        Expression.COLUMN);
+
+            Iterator it = coll.iterator();
+
+            for (; it.hasNext(); ) {
+                Expression e = (Expression) it.next();
+
+                if (colname.equals(e.getBaseColumnName())
+                        && table.equals(e.getTableHsqlName())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns true if the view references the view.
+     */
+    boolean hasView(View view) {
+
+        for (int i = 0; i < viewSubqueries.length; i++) {
+            if (viewSubqueries[i].view == view) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Throws if the view references a table in another schema.
+     */
+    private void checkSchemas() throws HsqlException {
+
+        for (int i = 0; i < viewSubqueries.length; i++) {
+            Select select = viewSubqueries[i].select;
+
+            for (; select != null; select = select.unionSelect) {
+                TableFilter[] tfilter = select.tFilter;
+
+                for (int j = 0; j < tfilter.length; j++) {
+                    HsqlName schema = tfilter[j].filterTable.tableName.schema;
+
+                    if (database.schemaManager.isSystemSchema(schema)) {
+                        continue;
+                    }
+
+                    if (!schema.equals(tableName.schema)) {
+                        throw Trace.error(
+                            Trace.INVALID_SCHEMA_NAME_NO_SUBCLASS);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the columns of the lookup index, the plain column references
+     * first, then the other columns.
+     */
+    private int[] getIndexColumns() {
+
+        int   len     = viewSelect.iResultLen;
+        int[] columns = new int[len];
+        int   count   = 0;
+
+        for (int i = 0; i < len; i++) {
+            if (viewSelect.exprColumns[i].getType() == Expression.COLUMN) {
+                columns[count++] = i;
+            }
+        }
+
+        for (int i = 0; i < len; i++) {
+            if (viewSelect.exprColumns[i].getType() != Expression.COLUMN) {
+                columns[count++] = i;
+            }
+        }
+
+        return columns;
+    }
+
+    /**
+     * Determines whether and how the view is maintained incrementally.
+     */
+    private void setMaintenance() throws HsqlException {
+
+        Select select = viewSelect;
+
+        mode      = MODE_REFRESH;
+        baseTable = null;
+
+        if (viewSubqueries.length != 1 || select.tFilter.length != 1
+                || select.unionSelect != null || select.isDistinctSelect
+                || select.limitCondition != null
+                || select.havingCondition != null) {
+            return;
+        }
+
+        TableFilter filter = select.tFilter[0];
+        Table       table  = filter.filterTable;
+
+        switch (table.getTableType()) {
+
+            case MEMORY_TABLE :
+            case CACHED_TABLE :
+            case TEXT_TABLE :
+                break;
+
+            default :
+                return;
+        }
+
+        HsqlArrayList list = new HsqlArrayList();
+
+        TableFilter.collectConjuncts(select.queryCondition, list);
+        filter.collectConditions(list);
+
+        for (int i = 0; i < list.size(); i++) {
+            if (!isDeterministic((Expression) list.get(i))) {
+                return;
+            }
+        }
+
+        int          len     = select.iResultLen;
+        Expression[] exprs   = new Expression[len];
+        int[]        types   = new int[len];
+        int          count   = -1;
+        int          columns = 0;
+
+        for (int i = 0; i < len; i++) {
+            Expression e = select.exprColumns[i];
+
+            if (!isDeterministic(e)) {
+                return;
+            }
+
+            if (!e.isAggregate()) {
+                if (e.getType() == Expression.COLUMN) {
+                    columns++;
+                }
+
+                exprs[i] = e;
+
+                continue;
+            }
+
+            Expression arg = e.getArg();
+
+            if (e.isDistinctAggregate) {
+                return;
+            }
+
+            switch (e.getType()) {
+
+                case Expression.COUNT :
+                    if (arg.getType() == Expression.ASTERISK) {
+                        count = i;
+                        arg   = null;
+                    }
+                    break;
+
+                case Expression.SUM :
+                    if (arg.getType() != Expression.COLUMN
+                            || table.getColumn(
+                                arg.getColumnNr()).isNullable()) {
+                        return;
+                    }
+                    break;
+
+                default :
+                    return;
+            }
+
+            exprs[i] = arg;
+            types[i] = e.getType();
+        }
+
+        int[] group = new int[columns];
+
+        for (int i = 0, j = 0; i < len; i++) {
+            if (types[i] == 0 && exprs[i].getType() == Expression.COLUMN) {
+                group[j++] = i;
+            }
+        }
+
+        if (select.isAggregated || select.iGroupLen != 0) {
+
+            // each select column is a group column or a supported aggregate
+            if (count == -1 || columns + countAggregates(types) != len) {
+                return;
+            }
+
+            // each group column is a select column
+            for (int i = len; i < len + select.iGroupLen; i++) {
+                Expression e = select.exprColumns[i];
+
+                if (e.getType() != Expression.COLUMN
+                        || findColumn(exprs, group, e) == -1) {
+                    return;
+                }
+            }
+
+            if (columns != 0 && select.iGroupLen == 0) {
+                return;
+            }
+
+            mode          = MODE_AGGREGATE;
+            lookupColumns = group;
+        } else {
+            mode          = MODE_ROWS;
+            lookupColumns = getIndexColumns();
+        }
+
+        baseTable         = table;
+        baseFilter        = filter;
+        columnExpressions = exprs;
+        aggregateTypes    = types;
+        countColumn       = count;
+        conditions        = new Expression[list.size()];
+
+        list.toArray(conditions);
+    }
+
+    private static int countAggregates(int[] types) {
+
+        int count = 0;
+
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] != 0) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the select column among the group columns that references
+     * the same base column as the expression, or -1.
+     */
+    private static int findColumn(Expression[] exprs, int[] group,
+                                  Expression e) {
+
+        for (int i = 0; i < group.length; i++) {
+            if (exprs[group[i]].getColumnNr() == e.getColumnNr()) {
+                return group[i];
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns false if the expression contains a subquery, a sequence or a
+     * function that may return a different value for the same arguments.
+     */
+    private static boolean isDeterministic(Expression e) {
+
+        Expression.Collector c = new Expression.Collector();
+
+        c.addAll(e, Expression.SEQUENCE);
+        c.addAll(e, Expression.FUNCTION);
+        c.addAll(e, Expression.QUERY);
+
+        Iterator it = c.iterator();
+
+        while (it.hasNext()) {
+            Expression f = (Expression) it.next();
+
+            if (f.exprType != Expression.FUNCTION
+                    ||!f.function.isDeterministic()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Positions the base table filter on the row and tests the conditions
+     * of the view.
+     */
+    private boolean isSelected(Session session,
+                               Object[] data) throws HsqlException {
+
+        baseFilter.currentData = data;
+        baseFilter.currentRow  = null;
+
+        for (int i = 0; i < conditions.length; i++) {
+            if (!conditions[i].testCondition(session)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the view row for the current base row.
+     */
+    private Object[] getViewRow(Session session) throws HsqlException {
+
+        Object[] data = getEmptyRowData();
+
+        for (int i = 0; i < columnExpressions.length; i++) {
+            data[i] = columnExpressions[i].getValue(session);
+        }
+
+        return data;
+    }
+
+    /**
+     * Adds (delta 1) or removes (delta -1) the current base row to or from
+     * the aggregates of its group.
+     */
+    private void updateGroup(Session session,
+                             int delta) throws HsqlException {
+
+        Object[] data = getEmptyRowData();
+
+        for (int i = 0; i < lookupColumns.length; i++) {
+            int j = lookupColumns[i];
+
+            data[j] = columnExpressions[j].getValue(session);
+        }
+
+        Row      row     = findViewRow(session, data);
+        Object[] oldData = null;
+        int      count   = 0;
+
+        if (row == null) {
+            if (delta < 0) {
+                return;
+            }
+        } else {
+            oldData = row.getData();
+            count   = ((Number) oldData[countColumn]).intValue();
+        }
+
+        count += delta;
+
+        int[] types = getColumnTypes();
+
+        for (int i = 0; i < aggregateTypes.length; i++) {
+            switch (aggregateTypes[i]) {
+
+                case Expression.COUNT : {
+                    int n = oldData == null ? 0
+                                            : ((Number) oldData[i])
+                                                .intValue();
+
+                    if (columnExpressions[i] == null
+                            || columnExpressions[i].getValue(session)
+                               != null) {
+                        n += delta;
+                    }
+
+                    data[i] = ValuePool.getInt(n);
+
+                    break;
+                }
+                case Expression.SUM : {
+                    Object value = Column.convertObject(
+                        columnExpressions[i].getValue(session), types[i]);
+
+                    if (count == 0) {
+                        data[i] = null;
+                    } else if (oldData == null || oldData[i] == null) {
+                        data[i] = value;
+                    } else {
+                        data[i] = delta > 0
+                                  ? Column.add(oldData[i], value, types[i])
+                                  : Column.subtract(oldData[i], value,
+                                                    types[i]);
+                    }
+
+                    break;
+                }
+            }
+        }
+
+        if (row != null) {
+            deleteNoCheck(session, row, true);
+        }
+
+        // the row for a global aggregate is kept when the table is empty
+        if (count > 0 || lookupColumns.length == 0) {
+            insertNoCheck(session, data);
+        }
+    }
+
+    /**
+     * Returns a view row that has the same values as the data in the lookup
+     * columns, or null.
+     */
+    private Row findViewRow(Session session,
+                            Object[] data) throws HsqlException {
+
+        if (lookupIndex != null && lookupColumns.length != 0) {
+            return lookupIndex.findFirstRowWithNulls(session, data,
+                    lookupColumns).next();
+        }
+
+        RowIterator it    = getPrimaryIndex().firstRow(session);
+        int[]       types = getColumnTypes();
+
+        for (Row row = it.next(); row != null; row = it.next()) {
+            if (Index.compareRows(session, row.getData(), data,
+                                  lookupColumns, types) == 0) {
+                return row;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Executes the SELECT statement.
+     */
+    private Result getViewResult(Session session) throws HsqlException {
+
+        // the last subquery is the view itself
+        int count = viewSubqueries.length - 1;
+
+        try {
+            for (int i = 0; i < count; i++) {
+                SubQuery sq = viewSubqueries[i];
+
+                if (sq.isMerged ||!sq.isResolved) {
+                    continue;
+                }
+
+                sq.populateTable(session);
+
+                sq.isMaterialised = true;
+            }
+
+            return viewSelect.getResult(session, 0);
+        } finally {
+            for (int i = 0; i < count; i++) {
+                viewSubqueries[i].table.clearAllRows(session);
+
+                viewSubqueries[i].isMaterialised = false;
+
+                viewSubqueries[i].clearExecutionData();
+            }
+        }
+    }
+
+    /**
+     * Removes all rows without logging. The rows of CACHED views are also
+     * removed from the data file.
+     */
+    private void clearRows(Session session) throws HsqlException {
+
+        if (!isCached) {
+            clearAllRows(session);
+
+            return;
+        }
+
+        HsqlArrayList rows = new HsqlArrayList();
+        RowIterator   it   = getPrimaryIndex().firstRow(session);
+
+        for (Row row = it.next(); row != null; row = it.next()) {
+            rows.add(row);
+        }
+
+        for (int i = 0; i < rows.size(); i++) {
+            deleteNoCheckRollback(session, (Row) rows.get(i), false);
+        }
+    }
+}
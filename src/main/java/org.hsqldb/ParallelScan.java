@@ -0,0 +1,388 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.hsqldb.index.RowIterator;
+import org.hsqldb.lib.HsqlArrayList;
+
+/**
+ * Computes the aggregates of a SELECT over a single table with several
+ * threads.<p>
+ *
+ * The AVL tree of the primary index is split at a fixed depth into
+ * disjoint subtrees, each holding a contiguous key range. Each subtree is
+ * scanned by a task of a ForkJoinPool, which filters the rows with its own
+ * copy of the BlockFilter of the TableFilter and accumulates partial
+ * SetFunction objects. The nodes above the split depth are scanned by one
+ * additional task. The partial results are then merged into one row of
+ * SetFunction objects, which Select.buildResult() finalises as usual.<p>
+ *
+ * Used only when the database property sql.parallel_scan_threads is
+ * larger than 1 and the SELECT has no GROUP BY, HAVING or join, all its
+ * columns are non-DISTINCT aggregates of a plain column or COUNT(*), the
+ * table rows are held in memory and the whole WHERE condition can be
+ * evaluated by the BlockFilter. The statement is executed while the
+ * calling session holds the database lock, so the index cannot change
+ * during the scan.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+final class ParallelScan {
+
+    private ParallelScan() {}
+
+    /**
+     * Returns an array of merged SetFunction objects, one for each column
+     * of the select, or null if the select cannot be computed in parallel.
+     */
+    static Object[] aggregate(Session session,
+                              Select select) throws HsqlException {
+
+        int threads = session.database.sqlParallelScanThreads;
+
+        if (threads < 2 || select.tFilter.length != 1
+                || select.iHavingLen != 0 || select.iGroupLen != 0
+                ||!isTrue(select.queryCondition)) {
+            return null;
+        }
+
+        TableFilter  filter     = select.tFilter[0];
+        Expression[] columns    = select.exprColumns;
+        int[]        setTypes   = new int[columns.length];
+        int[]        dataTypes  = new int[columns.length];
+        int[]        colIndexes = new int[columns.length];
+
+        if (!filter.isParallelScanCandidate()) {
+            return null;
+        }
+
+        for (int i = 0; i < columns.length; i++) {
+            Expression e = columns[i];
+
+            if (!e.isSelfAggregate() || e.isDistinctAggregate) {
+                return null;
+            }
+
+            Expression arg = e.getArg();
+
+            if (arg.getType() == Expression.ASTERISK) {
+                colIndexes[i] = -1;
+            } else if (arg.getType() == Expression.COLUMN
+                       && arg.getFilter() == filter) {
+                colIndexes[i] = arg.getColumnNr();
+            } else {
+                return null;
+            }
+
+            setTypes[i]  = e.getType();
+            dataTypes[i] = arg.getDataType();
+        }
+
+        Node root = filter.filterIndex.getRoot(session);
+
+        if (root == null) {
+            return null;
+        }
+
+        BlockFilter blockFilter = filter.getBlockFilter();
+
+        if (blockFilter != null) {
+            blockFilter.reset(session);
+        }
+
+        // split into about four subtrees per thread
+        int depth = 0;
+
+        while ((1 << depth) < threads * 4) {
+            depth++;
+        }
+
+        HsqlArrayList subtrees = new HsqlArrayList();
+        HsqlArrayList singles  = new HsqlArrayList();
+
+        split(root, depth, subtrees, singles);
+
+        ScanTask[] tasks = new ScanTask[subtrees.size() + 1];
+
+        for (int i = 0; i < subtrees.size(); i++) {
+            tasks[i] = new ScanTask(session, new Node[]{
+                (Node) subtrees.get(i) }, true, blockFilter, setTypes,
+                    dataTypes, colIndexes);
+        }
+
+        Node[] singleNodes = new Node[singles.size()];
+
+        singles.toArray(singleNodes);
+
+        tasks[subtrees.size()] = new ScanTask(session, singleNodes, false,
+                                              blockFilter, setTypes,
+                                              dataTypes, colIndexes);
+
+        ForkJoinPool pool = session.database.getParallelScanPool();
+
+        try {
+            pool.invoke(new RootTask(tasks));
+        } catch (ScanException e) {
+            throw e.exception;
+        }
+
+        Object[] row = tasks[0].functions;
+
+        for (int i = 1; i < tasks.length; i++) {
+            for (int j = 0; j < row.length; j++) {
+                ((SetFunction) row[j]).merge(
+                    session, (SetFunction) tasks[i].functions[j]);
+            }
+        }
+
+        return row;
+    }
+
+    /**
+     * Returns true if the condition is null, TRUE or an AND of such
+     * conditions, after all the conditions are assigned to the filters.
+     */
+    static boolean isTrue(Expression e) {
+
+        if (e == null || e.getType() == Expression.TRUE) {
+            return true;
+        }
+
+        return e.getType() == Expression.AND && isTrue(e.getArg())
+               && isTrue(e.getArg2());
+    }
+
+    /**
+     * Adds the roots of the subtrees at the given depth to subtrees and the
+     * nodes above that depth to singles.
+     */
+    private static void split(Node node, int depth, HsqlArrayList subtrees,
+                              HsqlArrayList singles) throws HsqlException {
+
+        if (node == null) {
+            return;
+        }
+
+        if (depth == 0) {
+            subtrees.add(node);
+
+            return;
+        }
+
+        singles.add(node);
+        split(node.getLeft(), depth - 1, subtrees, singles);
+        split(node.getRight(), depth - 1, subtrees, singles);
+    }
+
+    /**
+     * Carries an HsqlException out of a worker thread.
+     */
+    private static class ScanException extends RuntimeException {
+
+        static final long serialVersionUID = -8931304009912056797L;
+
+        HsqlException exception;
+
+        ScanException(HsqlException cause) {
+            this.exception = cause;
+        }
+    }
+
+    private static class RootTask extends RecursiveAction {
+
+        static final long serialVersionUID = -9106096916655535432L;
+
+        private final ScanTask[] tasks;
+
+        RootTask(ScanTask[] tasks) {
+            this.tasks = tasks;
+        }
+
+        protected void compute() {
+            invokeAll(tasks);
+        }
+    }
+
+    private static class ScanTask extends RecursiveAction {
+
+        static final long serialVersionUID = -4649117173757141810L;
+
+        private final Session     session;
+        private final Node[]      nodes;
+        private final boolean     isSubtree;
+        private final BlockFilter blockFilter;
+        private final int[]       colIndexes;
+        final Object[]            functions;
+
+        ScanTask(Session session, Node[] nodes, boolean isSubtree,
+                 BlockFilter blockFilter, int[] setTypes, int[] dataTypes,
+                 int[] colIndexes) {
+
+            this.session     = session;
+            this.nodes       = nodes;
+            this.isSubtree   = isSubtree;
+            this.blockFilter = blockFilter == null ? null
+                                                   : blockFilter.duplicate();
+            this.colIndexes = colIndexes;
+            functions       = new Object[setTypes.length];
+
+            for (int i = 0; i < setTypes.length; i++) {
+                functions[i] = new SetFunction(setTypes[i], dataTypes[i],
+                                               false);
+            }
+        }
+
+        protected void compute() {
+
+            try {
+                RowIterator it = isSubtree ? new SubtreeIterator(nodes[0])
+                                           : new NodeListIterator(nodes);
+
+                while (true) {
+                    Row row = blockFilter == null ? it.next()
+                                                  : blockFilter.next(session,
+                                                      null, it, null);
+
+                    if (row == null) {
+                        break;
+                    }
+
+                    Object[] data = row.getData();
+
+                    for (int i = 0; i < colIndexes.length; i++) {
+                        Object value = colIndexes[i] == -1
+                                       ? Expression.INTEGER_1
+                                       : data[colIndexes[i]];
+
+                        ((SetFunction) functions[i]).add(session, value);
+                    }
+                }
+            } catch (HsqlException e) {
+                throw new ScanException(e);
+            }
+        }
+    }
+
+    /**
+     * Iterates in key order over the rows of one subtree of an index,
+     * using only the child links of the nodes.
+     */
+    static class SubtreeIterator implements RowIterator {
+
+        private Node[] stack = new Node[64];
+        private int    depth;
+
+        SubtreeIterator(Node root) throws HsqlException {
+            pushLeft(root);
+        }
+
+        private void pushLeft(Node node) throws HsqlException {
+
+            while (node != null) {
+                if (depth == stack.length) {
+                    Node[] newStack = new Node[depth * 2];
+
+                    System.arraycopy(stack, 0, newStack, 0, depth);
+
+                    stack = newStack;
+                }
+
+                stack[depth++] = node;
+                node           = node.getLeft();
+            }
+        }
+
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        public Row next() {
+
+            if (depth == 0) {
+                return null;
+            }
+
+            try {
+                Node node = stack[--depth];
+
+                stack[depth] = null;
+
+                pushLeft(node.getRight());
+
+                return node.getRow();
+            } catch (HsqlException e) {
+                throw new NoSuchElementException(e.getMessage());
+            }
+        }
+
+        public void release() {}
+    }
+
+    /**
+     * Iterates over the rows of a list of nodes.
+     */
+    private static class NodeListIterator implements RowIterator {
+
+        private final Node[] nodes;
+        private int          position;
+
+        NodeListIterator(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        public boolean hasNext() {
+            return position < nodes.length;
+        }
+
+        public Row next() {
+
+            if (position == nodes.length) {
+                return null;
+            }
+
+            try {
+                return nodes[position++].getRow();
+            } catch (HsqlException e) {
+                throw new NoSuchElementException(e.getMessage());
+            }
+        }
+
+        public void release() {}
+    }
+}
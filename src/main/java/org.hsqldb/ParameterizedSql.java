@@ -0,0 +1,386 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hsqldb;
+
+import java.math.BigDecimal;
+
+import org.hsqldb.lib.HashSet;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.store.ValuePool;
+
+/**
+ * The form of a directly executed SELECT, INSERT, UPDATE or DELETE
+ * statement with its literals replaced by parameter markers, used to reuse
+ * the CompiledStatement for statements that differ only in the values of
+ * literals.<p>
+ *
+ * String and numeric literals are replaced, except those that cannot be
+ * parameters or whose replacement could change the meaning of the
+ * statement: literals in a select list, in ORDER BY and GROUP BY lists,
+ * after LIKE and ESCAPE, and in the precision and scale of a data type. A
+ * minus sign before a number is part of the literal when it follows an
+ * operator, an opening bracket or a comma.<p>
+ *
+ * The key is the statement with the data types of the literals, as the
+ * types of the parameters of the compiled statement depend on them. A
+ * compiled statement is used only if each parameter has the type of its
+ * literal, or a type to which the literal converts without a change in
+ * meaning.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+final class ParameterizedSql {
+
+    /** tokens after which a minus sign is part of a number */
+    private static HashSet unaryMinusContext = new HashSet();
+
+    static {
+        unaryMinusContext.addAll(new Object[] {
+            "(", ",", "=", "<", ">", "<=", ">=", "<>", "!=", "+", "-", "*",
+            "/"
+        });
+    }
+
+    /** the statement with parameter markers */
+    String sql;
+
+    /** the statement and the types of the literals */
+    String key;
+
+    //
+    private Object[] values;
+    private int[]    types;
+
+    private ParameterizedSql(String sql, HsqlArrayList valueList,
+                             HsqlArrayList typeList) {
+
+        StringBuffer sb = new StringBuffer(sql);
+
+        values = new Object[valueList.size()];
+        types  = new int[typeList.size()];
+
+        valueList.toArray(values);
+        sb.append('\u0000');
+
+        for (int i = 0; i < types.length; i++) {
+            types[i] = ((Integer) typeList.get(i)).intValue();
+
+            sb.append(types[i]).append(',');
+        }
+
+        this.sql = sql;
+        key      = sb.toString();
+    }
+
+    /**
+     * Returns the parameterized form of the statement, or null if it is not
+     * a single SELECT, INSERT, UPDATE or DELETE statement without
+     * parameters.
+     */
+    static ParameterizedSql newParameterizedSql(String sql)
+    throws HsqlException {
+
+        Tokenizer     tokenizer = new Tokenizer(sql);
+        StringBuffer  sb        = new StringBuffer(sql.length());
+        HsqlArrayList valueList = new HsqlArrayList();
+        HsqlArrayList typeList  = new HsqlArrayList();
+        boolean[]     keep      = new boolean[8];
+        int           depth     = 0;
+        int           copied    = 0;
+        int           minusPos  = -1;
+        boolean       keepNext  = false;
+        boolean       typeName  = false;
+        String        previous  = "";
+        String        token     = tokenizer.getString();
+
+        if (!token.equals(Token.T_SELECT) &&!token.equals(Token.T_INSERT)
+                &&!token.equals(Token.T_UPDATE)
+                &&!token.equals(Token.T_DELETE)
+                &&!token.equals(Token.T_OPENBRACKET)) {
+            return null;
+        }
+
+        for (; tokenizer.getTokenPosition() < tokenizer.getLength();
+                token = tokenizer.getString()) {
+            int start = tokenizer.getTokenPosition();
+
+            if (tokenizer.wasParameter()) {
+                return null;
+            }
+
+            if (tokenizer.wasValue()) {
+                Object value = tokenizer.getAsValue();
+                int    type  = tokenizer.getType();
+
+                if (!keep[depth] &&!keepNext && isLiteralType(type)) {
+                    if (minusPos != -1 && type != Types.VARCHAR) {
+                        start = minusPos;
+                        value = negate(value);
+                    }
+
+                    sb.append(sql.substring(copied, start));
+                    sb.append(Token.T_QUESTION);
+
+                    copied = tokenizer.getPosition();
+
+                    valueList.add(value);
+                    typeList.add(ValuePool.getInt(type));
+                }
+
+                keepNext = false;
+                typeName = false;
+                minusPos = -1;
+                previous = "";
+
+                continue;
+            }
+
+            minusPos = -1;
+
+            if (tokenizer.wasQuotedIdentifier()
+                    ||!tokenizer.wasSimpleToken()) {
+                typeName = false;
+                previous = "";
+
+                continue;
+            }
+
+            if (token.equals(Token.T_QUESTION)
+                    || token.equals(Token.T_SEMICOLON)) {
+                return null;
+            } else if (token.equals(Token.T_OPENBRACKET)) {
+                depth++;
+
+                if (depth == keep.length) {
+                    boolean[] newKeep = new boolean[depth * 2];
+
+                    System.arraycopy(keep, 0, newKeep, 0, depth);
+
+                    keep = newKeep;
+                }
+
+                keep[depth] = keep[depth - 1] || typeName;
+            } else if (token.equals(Token.T_CLOSEBRACKET)) {
+                if (depth == 0) {
+                    return null;
+                }
+
+                depth--;
+            } else if (token.equals(Token.T_SELECT)
+                       || token.equals(Token.T_ORDER)
+                       || token.equals(Token.T_GROUP)) {
+                keep[depth] = true;
+            } else if (token.equals(Token.T_FROM)) {
+                keep[depth] = false;
+            } else if (token.equals(Token.T_LIKE)
+                       || token.equals(Token.T_ESCAPE)) {
+                keepNext = true;
+            } else if (token.equals("-")
+                       && unaryMinusContext.contains(previous)) {
+                minusPos = start;
+            }
+
+            typeName = Types.typeAliases.get(token, Integer.MIN_VALUE)
+                       != Integer.MIN_VALUE;
+            previous = token;
+        }
+
+        sb.append(sql.substring(copied));
+
+        return new ParameterizedSql(sb.toString(), valueList, typeList);
+    }
+
+    /**
+     * Returns true if the statement has a parameter for each literal and
+     * each parameter has a type that is compatible with the literal. A
+     * numeric literal is compatible only with a parameter of the same type
+     * or of a type that holds all its values without changing the result of
+     * the expression, as a parameter typed after a neighbouring INTEGER
+     * column would turn 2.0 into 2 and a / 2.0 into integer division. The
+     * statement must not read system tables, as their contents are produced
+     * when the statement is compiled.
+     */
+    boolean isCompatible(CompiledStatement cs) {
+
+        if (cs.parameters.length != types.length
+                || readsSystemTables(cs.select)) {
+            return false;
+        }
+
+        for (int i = 0; i < cs.subqueries.length; i++) {
+            if (readsSystemTables(cs.subqueries[i].select)) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < types.length; i++) {
+            int type      = types[i];
+            int paramType = cs.paramTypes[i];
+
+            if (type == paramType) {
+                continue;
+            }
+
+            if (Types.isNumberType(type)) {
+                if (isWidening(type, paramType)) {
+                    continue;
+                }
+
+                return false;
+            }
+
+            switch (paramType) {
+
+                case Types.CHAR :
+                case Types.VARCHAR :
+                case Types.VARCHAR_IGNORECASE :
+                case Types.LONGVARCHAR :
+                case Types.DATE :
+                case Types.TIME :
+                case Types.TIMESTAMP :
+                    continue;
+                default :
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the values of the literals converted to the types of the
+     * parameters, or null if a value changes in the conversion. The
+     * statement must be compatible.
+     */
+    Object[] getParameterValues(Session session, CompiledStatement cs) {
+
+        Object[] paramValues = new Object[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            Object value     = values[i];
+            int    type      = types[i];
+            int    paramType = cs.paramTypes[i];
+
+            if (type == paramType || Types.isCharacterType(paramType)) {
+                paramValues[i] = value;
+
+                continue;
+            }
+
+            try {
+                Object converted = Column.convertObject(value, paramType);
+                Object back      = Column.convertObject(converted, type);
+
+                if (Column.compare(session.database.collation, value, back,
+                                   type) != 0) {
+                    return null;
+                }
+
+                paramValues[i] = converted;
+            } catch (HsqlException e) {
+                return null;
+            }
+        }
+
+        return paramValues;
+    }
+
+    private static boolean readsSystemTables(Select select) {
+
+        for (; select != null; select = select.unionSelect) {
+            for (int i = 0; i < select.tFilter.length; i++) {
+                if (select.tFilter[i].filterTable.getTableType()
+                        == Table.SYSTEM_TABLE) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns true if a numeric literal of the given type can be passed as a
+     * parameter of paramType without losing its value or its arithmetic.
+     */
+    private static boolean isWidening(int type, int paramType) {
+
+        switch (type) {
+
+            case Types.INTEGER :
+                return paramType == Types.BIGINT
+                       || paramType == Types.DECIMAL
+                       || paramType == Types.NUMERIC
+                       || paramType == Types.DOUBLE
+                       || paramType == Types.FLOAT
+                       || paramType == Types.REAL;
+
+            case Types.BIGINT :
+                return paramType == Types.DECIMAL
+                       || paramType == Types.NUMERIC;
+
+            default :
+                return false;
+        }
+    }
+
+    private static boolean isLiteralType(int type) {
+
+        switch (type) {
+
+            case Types.VARCHAR :
+            case Types.INTEGER :
+            case Types.BIGINT :
+            case Types.DECIMAL :
+            case Types.DOUBLE :
+                return true;
+
+            default :
+                return false;
+        }
+    }
+
+    private static Object negate(Object value) {
+
+        if (value instanceof Integer) {
+            return ValuePool.getInt(-((Integer) value).intValue());
+        } else if (value instanceof Long) {
+            return ValuePool.getLong(-((Long) value).longValue());
+        } else if (value instanceof Double) {
+            double d = -((Double) value).doubleValue();
+
+            return ValuePool.getDouble(Double.doubleToLongBits(d));
+        } else {
+            return ((BigDecimal) value).negate();
+        }
+    }
+}
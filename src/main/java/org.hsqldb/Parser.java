@@ -355,15 +355,12 @@ class Parser {
         return sq;
     }
 
-    SubQuery getViewSubquery(View v) {
-
-        SubQuery sq = v.viewSubQuery;
-
-        for (int i = 0; i < v.viewSubqueries.length; i++) {
-            subQueryList.add(v.viewSubqueries[i]);
-        }
-
-        return sq;
+    /**
+     * Returns a copy of the view subquery for this statement, adding the
+     * subqueries of the copy to the subquery list.
+     */
+    SubQuery getViewSubquery(View v) throws HsqlException {
+        return v.compileCopy(session, subQueryList);
     }
 
     /**
@@ -1138,10 +1135,9 @@ class Parser {
             session.check(t.getName(), UserManager.SELECT);
 
             if (t.isView()) {
-                sq        = getViewSubquery((View) t);
-                sq.select = ((View) t).viewSelect;
-                t         = sq.table;
-                sAlias    = token;
+                sq     = getViewSubquery((View) t);
+                t      = sq.table;
+                sAlias = token;
             }
         }
 
@@ -1182,7 +1178,12 @@ class Parser {
             throw Trace.error(Trace.COLUMN_COUNT_DOES_NOT_MATCH);
         }
 
-        return new TableFilter(t, sAlias, columnList, outerjoin);
+        TableFilter filter = new TableFilter(t, sAlias, columnList,
+                                             outerjoin);
+
+        filter.subQuery = sq;
+
+        return filter;
     }
 
     /**
@@ -0,0 +1,310 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb;
+
+
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.Iterator;
+
+/**
+ * Merges views and derived tables into the enclosing SELECT, or pushes the
+ * conditions of the enclosing SELECT into them, before the conditions are
+ * assigned to the table filters.<p>
+ *
+ * Each reference to a view in a statement is compiled separately (see
+ * View.compileCopy()), so the select of a view or derived table belongs to
+ * a single table filter and can be modified.<p>
+ *
+ * A view or derived table is merged when its select reads a single table
+ * without an outer join, has no DISTINCT, GROUP BY, HAVING, aggregates,
+ * LIMIT or set operations, and each select column is a column of the table.
+ * The filter then reads the table directly and the conditions of the select
+ * are added to the enclosing select. The references to the columns of the
+ * view are mapped to the columns of the table. A merged subquery is not
+ * materialized.<p>
+ *
+ * Otherwise, each AND term of the enclosing WHERE condition that references
+ * only columns of the view, values and parameters is copied into the
+ * select of the view, replacing each column with the corresponding select
+ * column. Columns that are computed, or are not grouping columns of a
+ * grouped select, cannot be replaced. Conditions are not pushed into a
+ * select with LIMIT, an outer join or aggregates without GROUP BY. The
+ * condition remains in the enclosing select. In both cases, the filters of
+ * the select can use indexes on the conditions.<p>
+ *
+ * Views and derived tables that are joined with an OUTER JOIN are not
+ * rewritten.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+final class QueryRewriter {
+
+    private QueryRewriter() {}
+
+    /**
+     * Rewrites the views and derived tables of the select. The columns of
+     * the select must have been resolved.
+     */
+    static void rewrite(Session session, Select select) throws HsqlException {
+
+        for (int i = 0; i < select.tFilter.length; i++) {
+            TableFilter filter = select.tFilter[i];
+
+            if (filter.subQuery == null || filter.isOuterJoin
+                    || filter.subQuery.isMerged) {
+                continue;
+            }
+
+            if (isMergeable(filter.subQuery.select)) {
+                merge(select, filter);
+            }
+
+            if (filter.subQuery != null) {
+                pushConditions(session, select, filter);
+            }
+        }
+    }
+
+    private static boolean isMergeable(Select select) {
+
+        if (select.unionSelect != null || select.tFilter.length != 1
+                || select.tFilter[0].isOuterJoin || select.isDistinctSelect
+                || select.iGroupLen != 0 || select.havingCondition != null
+                || select.limitCondition != null) {
+            return false;
+        }
+
+        TableFilter filter = select.tFilter[0];
+
+        for (int i = 0; i < select.iResultLen; i++) {
+            Expression e = select.exprColumns[i];
+
+            if (e.getType() != Expression.COLUMN || e.getFilter() != filter) {
+                return false;
+            }
+        }
+
+        HsqlArrayList list = new HsqlArrayList();
+
+        TableFilter.collectConjuncts(select.queryCondition, list);
+        filter.collectConditions(list);
+
+        for (int i = 0; i < list.size(); i++) {
+            Expression.Collector collector = new Expression.Collector();
+
+            collector.addAll((Expression) list.get(i), Expression.QUERY);
+
+            if (!collector.isEmpty()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Replaces the view or derived table of the filter with the table of its
+     * select and moves the conditions of the select to the enclosing select.
+     */
+    private static void merge(Select select, TableFilter filter) {
+
+        Select      inner  = filter.subQuery.select;
+        TableFilter source = inner.tFilter[0];
+        int[]       map    = new int[inner.iResultLen];
+
+        for (int i = 0; i < map.length; i++) {
+            map[i] = inner.exprColumns[i].getColumnNr();
+        }
+
+        // references to the view, including those in subqueries
+        Expression.Collector collector = new Expression.Collector();
+
+        collector.addAll(select, Expression.COLUMN);
+
+        Iterator it = collector.iterator();
+
+        while (it.hasNext()) {
+            Expression e = (Expression) it.next();
+
+            if (e.getFilter() == filter) {
+                e.setColumn(filter, map[e.getColumnNr()]);
+            }
+        }
+
+        HsqlArrayList list = new HsqlArrayList();
+
+        TableFilter.collectConjuncts(inner.queryCondition, list);
+        source.collectConditions(list);
+
+        for (int i = 0; i < list.size(); i++) {
+            Expression condition = (Expression) list.get(i);
+
+            collector.clear();
+            collector.addAll(condition, Expression.COLUMN);
+
+            it = collector.iterator();
+
+            while (it.hasNext()) {
+                Expression e = (Expression) it.next();
+
+                if (e.getFilter() == source) {
+                    e.setColumn(filter, e.getColumnNr());
+                }
+            }
+
+            select.queryCondition = select.queryCondition == null
+                                    ? condition
+                                    : new Expression(Expression.AND,
+                                    select.queryCondition, condition);
+        }
+
+        filter.subQuery.isMerged = true;
+
+        filter.setMergedTable(source, map);
+    }
+
+    /**
+     * Copies the conditions of the select that reference only the filter
+     * into the select of the filter's view or derived table.
+     */
+    private static void pushConditions(Session session, Select select,
+                                       TableFilter filter)
+                                       throws HsqlException {
+
+        Select        inner   = filter.subQuery.select;
+        HsqlArrayList columns = new HsqlArrayList();
+
+        for (Select s = inner; s != null; s = s.unionSelect) {
+            Expression[] list = getPushColumns(s);
+
+            if (list == null) {
+                return;
+            }
+
+            columns.add(list);
+        }
+
+        HsqlArrayList conditions = new HsqlArrayList();
+
+        TableFilter.collectConjuncts(select.queryCondition, conditions);
+
+        Expression[] pushed = new Expression[columns.size()];
+
+        for (int i = 0; i < conditions.size(); i++) {
+            Expression   condition = (Expression) conditions.get(i);
+            Expression[] copies    = new Expression[pushed.length];
+            boolean      isPushed  = true;
+
+            for (int j = 0; j < copies.length && isPushed; j++) {
+                copies[j] = condition.getPushedCondition(filter,
+                        (Expression[]) columns.get(j));
+                isPushed = copies[j] != null;
+            }
+
+            if (!isPushed) {
+                continue;
+            }
+
+            for (int j = 0; j < copies.length; j++) {
+                pushed[j] = pushed[j] == null ? copies[j]
+                                              : new Expression(
+                                                  Expression.AND, pushed[j],
+                                                  copies[j]);
+            }
+        }
+
+        if (pushed[0] == null) {
+            return;
+        }
+
+        int j = 0;
+
+        for (Select s = inner; s != null; s = s.unionSelect, j++) {
+            s.addCondition(session, pushed[j]);
+        }
+    }
+
+    /**
+     * Returns the select columns that can replace the columns of the view,
+     * with null elements for those that cannot, or null if no condition can
+     * be pushed into the select.
+     */
+    private static Expression[] getPushColumns(Select select) {
+
+        if (select.limitCondition != null) {
+            return null;
+        }
+
+        for (int i = 0; i < select.tFilter.length; i++) {
+            if (select.tFilter[i].isOuterJoin) {
+                return null;
+            }
+        }
+
+        Expression[] columns = new Expression[select.iResultLen];
+
+        for (int i = 0; i < select.iResultLen; i++) {
+            Expression e = select.exprColumns[i];
+
+            if (e.isAggregate() && select.iGroupLen == 0) {
+                return null;
+            }
+
+            if (e.getType() == Expression.COLUMN
+                    && (select.iGroupLen == 0 || isGroupColumn(select, e))) {
+                columns[i] = e;
+            }
+        }
+
+        return columns;
+    }
+
+    private static boolean isGroupColumn(Select select, Expression e) {
+
+        int start = select.iResultLen;
+
+        for (int i = start; i < start + select.iGroupLen; i++) {
+            Expression g = select.exprColumns[i];
+
+            if (g.getType() == Expression.COLUMN
+                    && g.getFilter() == e.getFilter()
+                    && g.getColumnNr() == e.getColumnNr()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
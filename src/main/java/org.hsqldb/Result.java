@@ -66,13 +66,16 @@
 
 package org.hsqldb;
 
+import org.hsqldb.lib.HashSet;
 import org.hsqldb.lib.Iterator;
 import org.hsqldb.rowio.RowInputBinary;
 import org.hsqldb.rowio.RowOutputBinary;
+import org.hsqldb.types.Binary;
 
 import java.io.DataInput;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.math.BigDecimal;
 import java.util.NoSuchElementException;
 
 // fredt@users 20020130 - patch 1.7.0 by fredt
@@ -855,6 +858,25 @@ public class Result {
             return;
         }
 
+        RowKey[] keys = getRowKeys(session, columnCount);
+
+        if (keys == null) {
+            removeDuplicatesSorted(session, columnCount);
+
+            return;
+        }
+
+        retainRows(keys, new HashSet(size), null, true);
+    }
+
+    /**
+     * Sort based version of removeDuplicates, used when the values cannot be
+     * hashed consistently with Column.compare(). Leaves the result sorted.
+     */
+    private void removeDuplicatesSorted(Session session,
+                                        int columnCount)
+                                        throws HsqlException {
+
         int[] order = new int[columnCount];
         int[] way   = new int[columnCount];
 
@@ -896,8 +918,36 @@ public class Result {
     void removeSecond(Session session, Result minus,
                       int columnCount) throws HsqlException {
 
-        removeDuplicates(session, columnCount);
-        minus.removeDuplicates(session, columnCount);
+        if (rRoot == null) {
+            return;
+        }
+
+        RowKey[] keys      = getRowKeys(session, columnCount);
+        RowKey[] minusKeys = minus.getRowKeys(session, columnCount);
+
+        if (keys == null || minusKeys == null) {
+            removeSecondSorted(session, minus, columnCount);
+
+            return;
+        }
+
+        HashSet other = new HashSet(minusKeys.length + 1);
+
+        for (int i = 0; i < minusKeys.length; i++) {
+            other.add(minusKeys[i]);
+        }
+
+        retainRows(keys, new HashSet(size), other, false);
+    }
+
+    private void removeSecondSorted(Session session, Result minus,
+                                    int columnCount) throws HsqlException {
+
+        removeDuplicatesSorted(session, columnCount);
+
+        if (minus.rRoot != null) {
+            minus.removeDuplicatesSorted(session, columnCount);
+        }
 
         Record  n     = rRoot;
         Record  last  = rRoot;
@@ -946,8 +996,37 @@ public class Result {
     void removeDifferent(Session session, Result r2,
                          int columnCount) throws HsqlException {
 
-        removeDuplicates(session, columnCount);
-        r2.removeDuplicates(session, columnCount);
+        if (rRoot == null) {
+            return;
+        }
+
+        RowKey[] keys   = getRowKeys(session, columnCount);
+        RowKey[] r2Keys = r2.getRowKeys(session, columnCount);
+
+        if (keys == null || r2Keys == null) {
+            removeDifferentSorted(session, r2, columnCount);
+
+            return;
+        }
+
+        HashSet other = new HashSet(r2Keys.length + 1);
+
+        for (int i = 0; i < r2Keys.length; i++) {
+            other.add(r2Keys[i]);
+        }
+
+        retainRows(keys, new HashSet(size), other, true);
+    }
+
+    private void removeDifferentSorted(Session session, Result r2,
+                                       int columnCount)
+                                       throws HsqlException {
+
+        removeDuplicatesSorted(session, columnCount);
+
+        if (r2.rRoot != null) {
+            r2.removeDuplicatesSorted(session, columnCount);
+        }
 
         Record  n     = rRoot;
         Record  last  = rRoot;
@@ -990,6 +1069,223 @@ public class Result {
         rTail = last;
     }
 
+    /**
+     * Keeps the first row for each distinct key, in the existing order. If
+     * other is not null, a row is kept only if its key is (inOther is true)
+     * or is not (inOther is false) in the other set.
+     */
+    private void retainRows(RowKey[] keys, HashSet seen, HashSet other,
+                            boolean inOther) {
+
+        Record n    = rRoot;
+        Record last = null;
+        int    i    = 0;
+
+        rRoot = null;
+        size  = 0;
+
+        for (; n != null; n = n.next, i++) {
+            if (other != null && other.contains(keys[i]) != inOther) {
+                continue;
+            }
+
+            if (!seen.add(keys[i])) {
+                continue;
+            }
+
+            if (last == null) {
+                rRoot = n;
+            } else {
+                last.next = n;
+            }
+
+            last = n;
+
+            size++;
+        }
+
+        if (last != null) {
+            last.next = null;
+        }
+
+        rTail = last;
+    }
+
+    /**
+     * Returns the hash keys for the first columnCount columns of each row,
+     * or null if a value cannot be hashed consistently with
+     * Column.compare(), which is the case for string columns compared with
+     * a Collator, NaN floating point values and unknown types.
+     */
+    private RowKey[] getRowKeys(Session session,
+                                int columnCount) throws HsqlException {
+
+        Collation collation = session.database.collation;
+        int[]     types     = metaData.colTypes;
+
+        for (int j = 0; j < columnCount; j++) {
+            switch (types[j]) {
+
+                case Types.VARCHAR :
+                case Types.LONGVARCHAR :
+                case Types.CHAR :
+                case Types.VARCHAR_IGNORECASE :
+                    if (collation.collator != null) {
+                        return null;
+                    }
+            }
+        }
+
+        RowKey[] keys = new RowKey[size];
+        Record   n    = rRoot;
+
+        for (int i = 0; n != null; n = n.next, i++) {
+            Object[] key = new Object[columnCount];
+
+            for (int j = 0; j < columnCount; j++) {
+                Object value = n.data[j];
+
+                if (value == null) {
+                    continue;
+                }
+
+                value = getHashValue(value, types[j]);
+
+                if (value == null) {
+                    return null;
+                }
+
+                key[j] = value;
+            }
+
+            keys[i] = new RowKey(key);
+        }
+
+        return keys;
+    }
+
+    /**
+     * Returns an Object whose equals() and hashCode() agree with
+     * Column.compare() for the given type, or null if there is no such
+     * Object.
+     */
+    static Object getHashValue(Object value, int type) {
+
+        switch (type) {
+
+            case Types.NULL :
+            case Types.OTHER :
+
+                // all non-null values compare as equal
+                return Boolean.TRUE;
+
+            case Types.VARCHAR :
+            case Types.LONGVARCHAR :
+            case Types.BOOLEAN :
+            case Types.TIMESTAMP :
+                return value;
+
+            case Types.CHAR :
+                return Library.rtrim((String) value);
+
+            case Types.VARCHAR_IGNORECASE : {
+                String       string = (String) value;
+                StringBuffer sb     = new StringBuffer(string.length());
+
+                for (int i = 0; i < string.length(); i++) {
+                    sb.append(Character.toLowerCase(
+                        Character.toUpperCase(string.charAt(i))));
+                }
+
+                return sb.toString();
+            }
+            case Types.TINYINT :
+            case Types.SMALLINT :
+            case Types.INTEGER :
+                return new Integer(((Number) value).intValue());
+
+            case Types.BIGINT :
+                return new Long(((Number) value).longValue());
+
+            case Types.REAL :
+            case Types.FLOAT :
+            case Types.DOUBLE : {
+                double d = ((Number) value).doubleValue();
+
+                if (Double.isNaN(d)) {
+                    return null;
+                }
+
+                // -0.0 and 0.0 compare as equal
+                return new Double(d == 0 ? 0
+                                         : d);
+            }
+            case Types.NUMERIC :
+            case Types.DECIMAL : {
+                BigDecimal d = (BigDecimal) value;
+
+                return d.signum() == 0 ? BigDecimal.valueOf(0)
+                                       : d.stripTrailingZeros();
+            }
+            case Types.DATE :
+            case Types.TIME :
+                return new Long(((java.util.Date) value).getTime());
+
+            case Types.BINARY :
+            case Types.VARBINARY :
+            case Types.LONGVARBINARY :
+                return value instanceof Binary ? value
+                                               : null;
+
+            default :
+                return null;
+        }
+    }
+
+    /**
+     * Hash key over the significant columns of a row.
+     */
+    static class RowKey {
+
+        private final Object[] values;
+        private final int      hashCode;
+
+        RowKey(Object[] values) {
+
+            int hash = 0;
+
+            for (int i = 0; i < values.length; i++) {
+                hash = hash * 31 + (values[i] == null ? 0
+                                                      : values[i].hashCode());
+            }
+
+            this.values = values;
+            hashCode    = hash;
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object other) {
+
+            if (!(other instanceof RowKey)) {
+                return false;
+            }
+
+            Object[] otherValues = ((RowKey) other).values;
+
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null ? otherValues[i] != null
+                                      : !values[i].equals(otherValues[i])) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
     /**
      *  Method declaration
      *
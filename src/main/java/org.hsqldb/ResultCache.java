@@ -0,0 +1,513 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb;
+
+import java.math.BigDecimal;
+
+import org.hsqldb.lib.HashMap;
+import org.hsqldb.lib.HashSet;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.Iterator;
+import org.hsqldb.types.Binary;
+import org.hsqldb.types.JavaObject;
+
+/**
+ * Keeps the results of executing prepared SELECT statements for reuse by
+ * later executions with the same parameter values, in any session.<p>
+ *
+ * An entry is keyed by the compiled statement id, the parameter values and
+ * the maximum row count of the session. It records the modification count
+ * of each table read by the statement when it was executed, and is
+ * discarded when it is looked up after one of these counts has changed.
+ * All entries are discarded after a change to the database structure or
+ * access rights.<p>
+ *
+ * Statements that read system or temporary tables, or that use sequences,
+ * Java routines or built-in functions that depend on the session or the
+ * time of execution, are not cached.<p>
+ *
+ * The total size of the entries is limited by the
+ * hsqldb.result_cache_size property, in KB. The least recently used
+ * entries are evicted when the limit is reached. A size of 0 disables the
+ * cache.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+final class ResultCache {
+
+    /** estimate of the memory used by a row apart from its values */
+    private static final int ROW_OVERHEAD = 32;
+
+    /** key values of a statement without parameters */
+    private static final Object[] noParamValues = new Object[0];
+
+    /** Map: Entry => Entry */
+    private HashMap entries;
+
+    /** most recently and least recently used entries */
+    private Entry head;
+    private Entry tail;
+
+    //
+    private long maxBytes;
+    private long bytes;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long invalidationCount;
+
+    ResultCache() {
+        entries = new HashMap();
+    }
+
+    /**
+     * Sets the maximum size of the cache. Entries are evicted to fit the
+     * new size. A size of 0 disables the cache.
+     */
+    synchronized void setMaxBytes(long size) {
+
+        maxBytes = size;
+
+        evict();
+    }
+
+    /**
+     * Discards all entries.
+     */
+    synchronized void clear() {
+
+        entries.clear();
+
+        head  = null;
+        tail  = null;
+        bytes = 0;
+    }
+
+    /**
+     * Returns the cached result of executing the statement with the given
+     * parameter values, or executes the statement and caches the result.
+     *
+     * @param session the context in which to perform the execution
+     * @param cs any valid CompiledStatement
+     * @param paramValues the parameter values
+     * @return the result of executing the statement
+     */
+    Result execute(Session session, CompiledStatement cs,
+                   Object[] paramValues) {
+
+        Table[] tables = getTables(cs);
+
+        if (maxBytes == 0 || tables == null) {
+            return session.compiledStatementExecutor.execute(cs,
+                    paramValues);
+        }
+
+        Entry  key    = new Entry(cs.id, session.getMaxRows(),
+                                  paramValues == null ? noParamValues
+                                                      : paramValues);
+        Result result = get(key, cs);
+
+        if (result != null) {
+            return result;
+        }
+
+        long[] counts = new long[tables.length];
+
+        for (int i = 0; i < tables.length; i++) {
+            counts[i] = tables[i].modificationCount;
+        }
+
+        result = session.compiledStatementExecutor.execute(cs, paramValues);
+
+        if (result.mode == ResultConstants.DATA) {
+            key.paramValues = key.paramValues.clone();
+            key.statement   = cs;
+            key.tables      = tables;
+            key.counts      = counts;
+            key.result      = result;
+            key.size        = getSize(result);
+
+            put(key);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the result of a valid entry equal to the key, or null.
+     */
+    private synchronized Result get(Entry key, CompiledStatement cs) {
+
+        Entry entry = (Entry) entries.get(key);
+
+        if (entry != null) {
+            if (entry.isValid(cs)) {
+                hitCount++;
+
+                unlink(entry);
+                link(entry);
+
+                return entry.result;
+            }
+
+            remove(entry);
+
+            invalidationCount++;
+        }
+
+        missCount++;
+
+        return null;
+    }
+
+    private synchronized void put(Entry entry) {
+
+        if (entry.size > maxBytes || entries.containsKey(entry)) {
+            return;
+        }
+
+        entries.put(entry, entry);
+        link(entry);
+
+        bytes += entry.size;
+
+        evict();
+    }
+
+    synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    synchronized long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    /**
+     * Removes the least recently used entries until the size is within
+     * the limit.
+     */
+    private void evict() {
+
+        while (bytes > maxBytes && tail != null) {
+            remove(tail);
+
+            evictionCount++;
+        }
+    }
+
+    private void remove(Entry entry) {
+
+        entries.remove(entry);
+        unlink(entry);
+
+        bytes -= entry.size;
+    }
+
+    private void link(Entry entry) {
+
+        entry.prev = null;
+        entry.next = head;
+
+        if (head == null) {
+            tail = entry;
+        } else {
+            head.prev = entry;
+        }
+
+        head = entry;
+    }
+
+    private void unlink(Entry entry) {
+
+        if (entry.prev == null) {
+            head = entry.next;
+        } else {
+            entry.prev.next = entry.next;
+        }
+
+        if (entry.next == null) {
+            tail = entry.prev;
+        } else {
+            entry.next.prev = entry.prev;
+        }
+
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    /**
+     * Returns the tables read by the statement, or null if its result
+     * cannot be cached. The outcome is kept in the statement.
+     */
+    private static Table[] getTables(CompiledStatement cs) {
+
+        if (!cs.resultCacheChecked) {
+            HashSet set = new HashSet();
+
+            if (cs.type == CompiledStatement.SELECT
+                    && cs.select.sIntoTable == null
+                    && collectTables(cs.select, set)) {
+                for (int i = 0; i < cs.subqueries.length; i++) {
+                    if (!collectTables(cs.subqueries[i].select, set)) {
+                        set = null;
+
+                        break;
+                    }
+                }
+            } else {
+                set = null;
+            }
+
+            if (set != null) {
+                cs.resultCacheTables =
+                    (Table[]) set.toArray(new Table[set.size()]);
+            }
+
+            cs.resultCacheChecked = true;
+        }
+
+        return cs.resultCacheTables;
+    }
+
+    /**
+     * Adds the tables read by the select and its unions to the set.
+     * Returns false if the result cannot be cached.
+     */
+    private static boolean collectTables(Select select, HashSet set) {
+
+        for (; select != null; select = select.unionSelect) {
+            HsqlArrayList list = new HsqlArrayList();
+
+            for (int i = 0; i < select.exprColumns.length; i++) {
+                list.add(select.exprColumns[i]);
+            }
+
+            list.add(select.queryCondition);
+            list.add(select.havingCondition);
+            list.add(select.limitCondition);
+
+            for (int i = 0; i < select.tFilter.length; i++) {
+                Table table = select.tFilter[i].filterTable;
+
+                switch (table.getTableType()) {
+
+                    case Table.SYSTEM_SUBQUERY :
+
+                        // the subquery is in the list of the statement
+                        break;
+
+                    case Table.MEMORY_TABLE :
+                    case Table.CACHED_TABLE :
+                    case Table.TEXT_TABLE :
+                        set.add(table);
+                        break;
+
+                    default :
+                        return false;
+                }
+
+                select.tFilter[i].collectConditions(list);
+            }
+
+            for (int i = 0; i < list.size(); i++) {
+                Expression           e = (Expression) list.get(i);
+                Expression.Collector c = new Expression.Collector();
+
+                c.addAll(e, Expression.SEQUENCE);
+                c.addAll(e, Expression.FUNCTION);
+
+                Iterator it = c.iterator();
+
+                while (it.hasNext()) {
+                    Expression f = (Expression) it.next();
+
+                    if (f.exprType == Expression.SEQUENCE
+                            ||!f.function.isRepeatable()) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns an estimate of the memory used by the rows of the result.
+     */
+    private static long getSize(Result result) {
+
+        long size = 0;
+
+        for (Record rec = result.rRoot; rec != null; rec = rec.next) {
+            Object[] data = rec.data;
+
+            size += ROW_OVERHEAD + 4 * data.length;
+
+            for (int i = 0; i < data.length; i++) {
+                size += getSize(data[i]);
+            }
+        }
+
+        return size;
+    }
+
+    private static int getSize(Object o) {
+
+        if (o == null) {
+            return 0;
+        } else if (o instanceof String) {
+            return 40 + 2 * ((String) o).length();
+        } else if (o instanceof Binary) {
+            return 32 + ((Binary) o).getBytesLength();
+        } else if (o instanceof JavaObject) {
+            return 32 + ((JavaObject) o).getBytesLength();
+        } else if (o instanceof BigDecimal) {
+            return 64;
+        } else {
+            return 24;
+        }
+    }
+
+    /**
+     * Key and value of an entry, and its place in the list of entries in
+     * order of use.
+     */
+    private static class Entry {
+
+        int      csid;
+        int      maxRows;
+        Object[] paramValues;
+        int      hash;
+
+        //
+        CompiledStatement statement;
+        Table[]           tables;
+        long[]            counts;
+        Result            result;
+        long              size;
+
+        //
+        Entry prev;
+        Entry next;
+
+        Entry(int csid, int maxRows, Object[] paramValues) {
+
+            this.csid        = csid;
+            this.maxRows     = maxRows;
+            this.paramValues = paramValues;
+
+            int h = csid * 31 + maxRows;
+
+            for (int i = 0; i < paramValues.length; i++) {
+                Object o = paramValues[i];
+
+                h = h * 31 + (o == null ? 0
+                                        : o.hashCode());
+            }
+
+            hash = h;
+        }
+
+        /**
+         * Returns true if the statement has not been recompiled and the
+         * tables have not been modified since the result was cached.
+         */
+        boolean isValid(CompiledStatement cs) {
+
+            if (statement != cs) {
+                return false;
+            }
+
+            for (int i = 0; i < tables.length; i++) {
+                if (tables[i].modificationCount != counts[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object other) {
+
+            if (!(other instanceof Entry)) {
+                return false;
+            }
+
+            Entry entry = (Entry) other;
+
+            if (csid != entry.csid || maxRows != entry.maxRows
+                    || paramValues.length != entry.paramValues.length) {
+                return false;
+            }
+
+            for (int i = 0; i < paramValues.length; i++) {
+                Object a = paramValues[i];
+                Object b = entry.paramValues[i];
+
+                if (a == null ? b != null
+                              :!a.equals(b)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -501,6 +501,15 @@ public class SchemaManager {
             }
         }
 
+        if (t.getBitmapIndex(indexname) != null) {
+            session.commit();
+            session.setScripting(true);
+            t.dropBitmapIndex(indexname);
+            removeIndexName(indexname, t.getName());
+
+            return;
+        }
+
         t.checkDropIndex(indexname, null, false);
         session.commit();
         session.setScripting(true);
@@ -840,6 +849,8 @@ public class SchemaManager {
                                   views[0].getName().name);
             }
         }
+
+        checkCascadeDropMaterializedViews(view, cascade);
     }
 
     /**
@@ -862,6 +873,29 @@ public class SchemaManager {
                                   views[0].getName().name);
             }
         }
+
+        checkCascadeDropMaterializedViews(table, cascade);
+    }
+
+    /**
+     * Throws if the table or view is referenced in a materialized view.
+     */
+    private void checkCascadeDropMaterializedViews(Table table,
+            boolean cascade) throws HsqlException {
+
+        MaterializedView[] views = getMaterializedViewsWithTable(table,
+            null);
+
+        if (views != null) {
+            if (cascade) {
+                for (int i = views.length - 1; i >= 0; i--) {
+                    dropTable(views[i], cascade);
+                }
+            } else {
+                throw Trace.error(Trace.TABLE_REFERENCED_VIEW,
+                                  views[0].getName().name);
+            }
+        }
     }
 
     /**
@@ -898,6 +932,14 @@ public class SchemaManager {
             throw Trace.error(Trace.COLUMN_IS_REFERENCED,
                               views[0].getName().name);
         }
+
+        MaterializedView[] mviews = getMaterializedViewsWithTable(table,
+            column);
+
+        if (mviews != null) {
+            throw Trace.error(Trace.COLUMN_IS_REFERENCED,
+                              mviews[0].getName().name);
+        }
     }
 
     /**
@@ -959,6 +1001,42 @@ public class SchemaManager {
                             : (View[]) list.toArray(new View[list.size()]);
     }
 
+    /**
+     * Returns an array of materialized views that reference the specified
+     * table or view, or the specified column if column parameter is not
+     * null.
+     */
+    private MaterializedView[] getMaterializedViewsWithTable(Table table,
+            String column) {
+
+        HsqlArrayList list = null;
+        Iterator      it   = allTablesIterator();
+
+        while (it.hasNext()) {
+            Table t = (Table) it.next();
+
+            if (t instanceof MaterializedView) {
+                MaterializedView v = (MaterializedView) t;
+                boolean found = table.isView() ? v.hasView((View) table)
+                                               : column == null
+                                                 ? v.hasTable(table)
+                                                 : v.hasColumn(table, column);
+
+                if (found) {
+                    if (list == null) {
+                        list = new HsqlArrayList();
+                    }
+
+                    list.add(t);
+                }
+            }
+        }
+
+        return list == null ? null
+                            : (MaterializedView[]) list.toArray(
+                                new MaterializedView[list.size()]);
+    }
+
     /**
      * Returns an array of views that reference a sequence.
      */
@@ -989,24 +1067,63 @@ public class SchemaManager {
 
     /**
      * After addition or removal of columns and indexes all views that
-     * reference the table should be recompiled.
+     * reference the table should be recompiled. The views are compiled with
+     * the system session, which may be the session executing the statement
+     * when a script is processed, so the state of the session is restored.
      */
-    void recompileViews(Table table) throws HsqlException {
+    void recompileViews(Session session,
+                        Table table) throws HsqlException {
+
+        HsqlName currentSchema = null;
+        User     user          = null;
+        boolean  isScript      = false;
+        boolean  isLog         = false;
+
+        if (session != null) {
+            currentSchema = session.currentSchema;
+            user          = session.getUser();
+            isScript      = session.isProcessingScript;
+            isLog         = session.isProcessingLog;
+        }
+
+        try {
+            View[] viewlist = getViewsWithTable(table, null);
+
+            if (viewlist != null) {
+                for (int i = 0; i < viewlist.length; i++) {
+                    String schema = viewlist[i].compileTimeSchema.name;
 
-        View[] viewlist = getViewsWithTable(table, null);
+                    if (!schemaExists(schema)) {
+                        schema = null;
+                    }
 
-        if (viewlist != null) {
-            for (int i = 0; i < viewlist.length; i++) {
-                String schema = viewlist[i].compileTimeSchema.name;
+                    Session sysSession =
+                        database.sessionManager.getSysSession(schema, false);
 
-                if (!schemaExists(schema)) {
-                    schema = null;
+                    viewlist[i].compile(sysSession);
                 }
+            }
 
-                Session session =
-                    database.sessionManager.getSysSession(schema, false);
+            MaterializedView[] mviews = getMaterializedViewsWithTable(table,
+                null);
+
+            if (mviews != null) {
+                for (int i = 0; i < mviews.length; i++) {
+                    mviews[i].recompile();
+                }
+            }
+
+            // the table may be a new object for a materialized view
+            if (table instanceof MaterializedView) {
+                ((MaterializedView) table).recompile();
+            }
+        } finally {
+            if (session != null) {
+                session.currentSchema      = currentSchema;
+                session.isProcessingScript = isScript;
+                session.isProcessingLog    = isLog;
 
-                viewlist[i].compile(session);
+                session.setUser(user);
             }
         }
     }
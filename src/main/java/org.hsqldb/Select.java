@@ -67,6 +67,7 @@
 package org.hsqldb;
 
 import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HashMap;
 import org.hsqldb.lib.HashSet;
 import org.hsqldb.lib.HsqlArrayList;
@@ -129,8 +130,12 @@ class Select {
                           INTERSECT = 3,
                           EXCEPT    = 4;
     private boolean       simpleLimit;        // true if maxrows can be uses as is
+    boolean               isGroupOrdered;     // rows are read in GROUP BY order
+    private boolean       isSortSatisfied;    // rows are read in ORDER BY order
+    private boolean       groupLimit;         // LIMIT applies to ordered groups
     Result.ResultMetaData resultMetaData;
     IntKeyHashMap         asteriskPositions;
+    private boolean       isRewritten;        // views have been merged
 
     /**
      * Experimental.
@@ -163,10 +168,44 @@ class Select {
     void resolve(Session session) throws HsqlException {
 
         resolveTables();
+
+        if (!isRewritten) {
+            isRewritten = true;
+
+            QueryRewriter.rewrite(session, this);
+        }
+
         resolveTypes(session);
         setFilterConditions(session);
     }
 
+    /**
+     * Adds a condition to a resolved select. The conditions already
+     * assigned to the filters are assigned again together with the new one.
+     */
+    void addCondition(Session session,
+                      Expression condition) throws HsqlException {
+
+        Expression e = queryCondition;
+
+        for (int i = 0; i < tFilter.length; i++) {
+            Expression c = tFilter[i].removeConditions();
+
+            if (c != null) {
+                e = e == null ? c
+                              : new Expression(Expression.AND, e, c);
+            }
+        }
+
+        condition.resolveTypes(session);
+
+        queryCondition = e == null ? condition
+                                   : new Expression(Expression.AND, e,
+                                   condition);
+
+        setFilterConditions(session);
+    }
+
     /**
      * Method declaration
      *
@@ -468,6 +507,272 @@ class Select {
 
         simpleLimit = (isDistinctSelect == false && isGrouped == false
                        && unionSelect == null && iOrderLen == 0);
+
+        setGroupOrder(session);
+        setSortOrder();
+        setFileOrder();
+    }
+
+    /**
+     * Allows the first TableFilter of a select with aggregates and no
+     * GROUP BY to read the rows of a CACHED table in file order when it
+     * scans the whole table, as the order of the rows does not affect the
+     * single result row.
+     */
+    private void setFileOrder() {
+
+        if (tFilter.length > 0) {
+            tFilter[0].isFileOrder = isAggregated &&!isGrouped;
+        }
+    }
+
+    /**
+     * Checks whether the rows of the first table are read in ORDER BY order
+     * for a SELECT without grouping, aggregates, DISTINCT or UNION. This is
+     * the case when the ORDER BY columns, all ascending or all descending,
+     * follow the index of the first TableFilter after the leading columns
+     * that have a single value in the filter. A full scan can use any index
+     * of the table. For descending, a full scan or an index seek is read in
+     * reverse order. The sort is then skipped and LIMIT stops the scan
+     * early.
+     */
+    private void setSortOrder() {
+
+        if (iOrderLen == 0 || isGrouped || isAggregated || isDistinctSelect
+                || unionSelect != null || tFilter.length == 0
+                || tFilter[0].isIndexMerge()) {
+            return;
+        }
+
+        TableFilter filter    = tFilter[0];
+        int         direction = sortDirection[0];
+
+        for (int j = 1; j < iOrderLen; j++) {
+            if (sortDirection[j] != direction) {
+                return;
+            }
+        }
+
+        boolean isOrdered = isIndexOrder(filter.filterIndex,
+                                         filter.getEqualityPrefix());
+
+        if (!isOrdered && filter.isFullScan()) {
+            Index[] indexes = filter.filterTable.getIndexes();
+
+            for (int i = 0; i < indexes.length; i++) {
+                if (filter.isIndexUsable(indexes[i])
+                        && isIndexOrder(indexes[i], 0)) {
+                    filter.filterIndex = indexes[i];
+                    isOrdered          = true;
+
+                    break;
+                }
+            }
+        }
+
+        if (!isOrdered) {
+            return;
+        }
+
+        if (direction == -1) {
+            if (!filter.isReversible()) {
+                return;
+            }
+
+            filter.isDescending = true;
+        }
+
+        isSortSatisfied = true;
+        simpleLimit     = true;
+    }
+
+    /**
+     * Returns true if the ORDER BY columns follow the columns of the index,
+     * ignoring the first equalityPrefix columns, which have a single value.
+     */
+    private boolean isIndexOrder(Index index, int equalityPrefix) {
+
+        if (index == null || index.isExpression()) {
+            return false;
+        }
+
+        TableFilter filter    = tFilter[0];
+        int[]       indexCols = index.getColumns();
+        int         next      = equalityPrefix;
+
+        for (int j = 0; j < iOrderLen; j++) {
+            Expression e = exprColumns[sortOrder[j]];
+
+            if (e.getType() != Expression.COLUMN
+                    || e.getFilter() != filter) {
+                return false;
+            }
+
+            int position = ArrayUtil.find(indexCols, e.getColumnNr());
+
+            if (position == -1) {
+                return false;
+            }
+
+            if (position < equalityPrefix) {
+                continue;
+            }
+
+            if (position != next) {
+                return false;
+            }
+
+            next++;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether the rows of the first table are read in the order of
+     * the GROUP BY columns, in which case each group is complete as soon
+     * as a row with a different key is read and GroupedResult does not need
+     * to hash the groups. This is the case when the GROUP BY columns are
+     * the leading columns of the index used by the first TableFilter, in
+     * any order. Only the types for which Object.equals() agrees with
+     * Column.compare() are allowed, as GroupedResult compares the keys
+     * with equals() while the index orders them with compare().<p>
+     *
+     * Also checks if an ORDER BY on a leading part of the same columns is
+     * already satisfied, and if a LIMIT can stop the scan early.
+     */
+    private void setGroupOrder(Session session) throws HsqlException {
+
+        isGroupOrdered  = false;
+        isSortSatisfied = false;
+        groupLimit      = false;
+
+        if (!isGrouped || tFilter.length == 0 || tFilter[0].isIndexMerge()) {
+            return;
+        }
+
+        TableFilter filter    = tFilter[0];
+        int         usedCount = getGroupPrefixCount(session, filter.filterIndex);
+
+        // a full scan can use any index that matches the GROUP BY columns
+        if (usedCount == -1 && filter.isFullScan()) {
+            Index[] indexes = filter.filterTable.getIndexes();
+
+            for (int i = 0; i < indexes.length; i++) {
+                if (!filter.isIndexUsable(indexes[i])) {
+                    continue;
+                }
+
+                usedCount = getGroupPrefixCount(session, indexes[i]);
+
+                if (usedCount != -1) {
+                    filter.filterIndex = indexes[i];
+
+                    break;
+                }
+            }
+        }
+
+        if (usedCount == -1) {
+            return;
+        }
+
+        int[] indexCols = filter.filterIndex.getColumns();
+
+        isGroupOrdered = true;
+
+        if (iOrderLen > 0 &&!isDistinctSelect) {
+            isSortSatisfied = true;
+
+            for (int j = 0; j < iOrderLen; j++) {
+                Expression e = exprColumns[sortOrder[j]];
+
+                if (j >= usedCount || sortDirection[j] != 1
+                        || e.getType() != Expression.COLUMN
+                        || e.getFilter() != filter
+                        || e.getColumnNr() != indexCols[j]) {
+                    isSortSatisfied = false;
+
+                    break;
+                }
+            }
+        }
+
+        groupLimit = iHavingLen == 0 &&!isDistinctSelect
+                     && unionSelect == null
+                     && (iOrderLen == 0 || isSortSatisfied);
+    }
+
+    /**
+     * Returns the number of leading columns of the index that are exactly
+     * the distinct GROUP BY columns, or -1 if the GROUP BY columns are not
+     * such a set.
+     */
+    private int getGroupPrefixCount(Session session, Index index) {
+
+        if (index == null || index.isExpression()) {
+            return -1;
+        }
+
+        TableFilter filter     = tFilter[0];
+        int[]       indexCols  = index.getColumns();
+        int[]       types      = filter.filterTable.getColumnTypes();
+        boolean[]   used       = new boolean[indexCols.length];
+        int         usedCount  = 0;
+        boolean     isCollated = session.database.collation.collator != null;
+
+        for (int i = iResultLen; i < iResultLen + iGroupLen; i++) {
+            Expression e = exprColumns[i];
+
+            if (e.getType() != Expression.COLUMN
+                    || e.getFilter() != filter) {
+                return -1;
+            }
+
+            int colIndex = e.getColumnNr();
+            int position = ArrayUtil.find(indexCols, colIndex);
+
+            if (position == -1) {
+                return -1;
+            }
+
+            switch (types[colIndex]) {
+
+                case Types.TINYINT :
+                case Types.SMALLINT :
+                case Types.INTEGER :
+                case Types.BIGINT :
+                case Types.BOOLEAN :
+                case Types.DATE :
+                case Types.TIME :
+                case Types.TIMESTAMP :
+                    break;
+
+                case Types.VARCHAR :
+                case Types.LONGVARCHAR :
+                    if (isCollated) {
+                        return -1;
+                    }
+                    break;
+
+                default :
+                    return -1;
+            }
+
+            if (!used[position]) {
+                used[position] = true;
+
+                usedCount++;
+            }
+        }
+
+        for (int i = 0; i < usedCount; i++) {
+            if (!used[i]) {
+                return -1;
+            }
+        }
+
+        return usedCount;
     }
 
     /**
@@ -661,7 +966,20 @@ class Select {
         int limitStart = getLimitStart(session);
         int limitCount = getLimitCount(session, rowCount);
 
-        if (!simpleLimit) {
+        if (groupLimit) {
+
+            // one more group is started before the last one is complete
+            if (rowCount == 0) {
+                rowCount = limitCount;
+            }
+
+            if (rowCount == 0
+                    || rowCount >= Integer.MAX_VALUE - limitStart) {
+                rowCount = Integer.MAX_VALUE;
+            } else {
+                rowCount += limitStart + 1;
+            }
+        } else if (!simpleLimit) {
             rowCount = Integer.MAX_VALUE;
         } else {
             if (rowCount == 0) {
@@ -730,7 +1048,7 @@ class Select {
 
     private void sortResult(Session session, Result r) throws HsqlException {
 
-        if (iOrderLen == 0) {
+        if (iOrderLen == 0 || isSortSatisfied) {
             return;
         }
 
@@ -854,6 +1172,49 @@ class Select {
         return true;
     }
 
+    /**
+     * Returns a row of SetFunction objects with the count when the select
+     * has only COUNT(*) columns over a single table and all its conditions
+     * are evaluated exactly with the bitmap indexes of the table, otherwise
+     * null.
+     */
+    private Object[] getBitmapCountRow(Session session)
+    throws HsqlException {
+
+        if (tFilter.length != 1 || iHavingLen != 0
+                ||!ParallelScan.isTrue(queryCondition)) {
+            return null;
+        }
+
+        for (int i = 0; i < exprColumns.length; i++) {
+            Expression e = exprColumns[i];
+
+            if (e.getType() != Expression.COUNT || e.isDistinctAggregate
+                    || e.getArg().getType() != Expression.ASTERISK) {
+                return null;
+            }
+        }
+
+        int count = tFilter[0].getBitmapCount(session);
+
+        if (count == -1) {
+            return null;
+        }
+
+        Object[] row = new Object[exprColumns.length];
+
+        for (int i = 0; i < row.length; i++) {
+            SetFunction function = new SetFunction(Expression.COUNT,
+                                                   Types.INTEGER, false);
+
+            function.addCount(count);
+
+            row[i] = function;
+        }
+
+        return row;
+    }
+
 // fredt@users 20030810 - patch 1.7.2 - OUTER JOIN rewrite
     private Result buildResult(Session session,
                                int limitcount) throws HsqlException {
@@ -870,6 +1231,29 @@ class Select {
                              && queryCondition.isFixedConditional()
                              &&!queryCondition.testCondition(session));
 
+        // aggregates over one large memory table may be computed in parallel
+        if (notempty && isAggregated &&!isGrouped
+                && session.database.sqlParallelScanThreads > 1) {
+            Object[] row = ParallelScan.aggregate(session, this);
+
+            if (row != null) {
+                gResult.addRow(row);
+
+                notempty = false;
+            }
+        }
+
+        // COUNT(*) with conditions that bitmap indexes evaluate exactly
+        if (notempty && isAggregated &&!isGrouped) {
+            Object[] row = getBitmapCountRow(session);
+
+            if (row != null) {
+                gResult.addRow(row);
+
+                notempty = false;
+            }
+        }
+
         while (notempty && level >= 0) {
 
             // perform a join
@@ -1182,6 +1566,7 @@ class Select {
         sb.append("isDistinctSelect=[").append(isDistinctSelect).append(
             "]\n");
         sb.append("isGrouped=[").append(isGrouped).append("]\n");
+        sb.append("isGroupOrdered=[").append(isGroupOrdered).append("]\n");
         sb.append("isAggregated=[").append(isAggregated).append("]\n");
         sb.append("columns=[");
 
@@ -1179,7 +1179,7 @@ public class Session implements SessionInterface {
     }
 
     private Result sqlExecute(CompiledStatement cs, Object[] pvals) {
-        return sqlExecuteCompiledNoPreChecks(cs, pvals);
+        return database.resultCache.execute(this, cs, pvals);
     }
 
 // session DATETIME functions
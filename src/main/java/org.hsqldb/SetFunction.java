@@ -205,6 +205,125 @@ public class SetFunction {
         }
     }
 
+    /**
+     * Adds a count of rows, each with a non-null value, to a COUNT that is
+     * not DISTINCT. Used when the rows are counted without reading them.
+     */
+    void addCount(int rows) throws HsqlException {
+
+        if (isDistinct || setType != Expression.COUNT) {
+            throw Trace.error(Trace.GENERAL_ERROR);
+        }
+
+        count += rows;
+    }
+
+    /**
+     * Adds the state of another SetFunction of the same type, built over a
+     * disjoint set of rows, to this one. Used to combine partial aggregates
+     * computed in parallel. Not supported for DISTINCT aggregates.
+     */
+    void merge(Session session, SetFunction other) throws HsqlException {
+
+        if (isDistinct || other.isDistinct) {
+            throw Trace.error(Trace.GENERAL_ERROR);
+        }
+
+        hasNull |= other.hasNull;
+
+        if (other.count == 0) {
+            return;
+        }
+
+        count += other.count;
+
+        switch (setType) {
+
+            case Expression.COUNT :
+                return;
+
+            case Expression.AVG :
+            case Expression.SUM : {
+                switch (type) {
+
+                    case Types.TINYINT :
+                    case Types.SMALLINT :
+                    case Types.INTEGER :
+                        currentLong += other.currentLong;
+
+                        return;
+
+                    case Types.BIGINT :
+                        hi += other.hi;
+                        lo += other.lo;
+
+                        return;
+
+                    case Types.REAL :
+                    case Types.FLOAT :
+                    case Types.DOUBLE :
+                        currentDouble += other.currentDouble;
+
+                        return;
+
+                    case Types.NUMERIC :
+                    case Types.DECIMAL :
+                        if (currentBigDecimal == null) {
+                            currentBigDecimal = other.currentBigDecimal;
+                        } else if (other.currentBigDecimal != null) {
+                            currentBigDecimal =
+                                currentBigDecimal.add(other.currentBigDecimal);
+                        }
+
+                        return;
+
+                    default :
+                        throw Trace.error(Trace.SUM_OF_NON_NUMERIC);
+                }
+            }
+            case Expression.MIN :
+            case Expression.MAX : {
+                if (currentValue == null) {
+                    currentValue = other.currentValue;
+
+                    return;
+                }
+
+                if (other.currentValue == null) {
+                    return;
+                }
+
+                int compare = Column.compare(session.database.collation,
+                                             currentValue,
+                                             other.currentValue, type);
+
+                if (setType == Expression.MIN ? compare > 0
+                                              : compare < 0) {
+                    currentValue = other.currentValue;
+                }
+
+                return;
+            }
+            case Expression.EVERY :
+                every &= other.every;
+
+                return;
+
+            case Expression.SOME :
+                some |= other.some;
+
+                return;
+
+            case Expression.STDDEV_POP :
+            case Expression.STDDEV_SAMP :
+            case Expression.VAR_POP :
+            case Expression.VAR_SAMP :
+                mergeDataPoints(other);
+
+                return;
+        }
+    }
+
     Object getValue() throws HsqlException {
 
         if (setType == Expression.COUNT) {
@@ -458,6 +577,33 @@ public class SetFunction {
         sk  += xi;
     }
 
+    /**
+     * Combines the sum and the sum of squared deviations of two disjoint
+     * sets of data points.
+     */
+    private void mergeDataPoints(SetFunction other) {
+
+        if (!other.initialized) {
+            return;
+        }
+
+        if (!initialized) {
+            n           = other.n;
+            sk          = other.sk;
+            vk          = other.vk;
+            initialized = true;
+
+            return;
+        }
+
+        double delta = other.sk / other.n - sk / n;
+
+        vk += other.vk
+              + delta * delta * ((double) n * other.n) / (n + other.n);
+        sk += other.sk;
+        n  += other.n;
+    }
+
     private Number getVariance() {
 
         if (!initialized) {
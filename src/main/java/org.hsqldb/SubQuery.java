@@ -31,7 +31,13 @@
 
 package org.hsqldb;
 
+import org.hsqldb.index.RowIterator;
+import org.hsqldb.lib.HashMap;
+import org.hsqldb.lib.HashSet;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.Iterator;
 import org.hsqldb.lib.ObjectComparator;
+import org.hsqldb.store.ValuePool;
 
 /**
  * Represents an SQL view or anonymous subquery (inline virtual table
@@ -39,6 +45,24 @@ import org.hsqldb.lib.ObjectComparator;
  *
  * Implements {@link ObjectComparator ObjectComparator} to
  * provide the correct order of materialization for nested views / subqueries.
+ * <p>
+ *
+ * A correlated EXISTS or IN subquery over a single table, which is
+ * correlated only by equality between its columns and outer columns, is
+ * executed as a semi-join. The inner rows that satisfy the uncorrelated
+ * conditions are read once per statement execution and the values of the
+ * correlated columns (and of the IN column) are stored in a hash set.
+ * Each outer row then probes the set with the values of the outer columns.
+ * NOT EXISTS and NOT IN use the same probe as an anti-join. Consistent with
+ * the nested execution, inner rows with a null key value never match and a
+ * null outer value never matches.
+ *<p>
+ *
+ * Other correlated scalar and EXISTS subqueries are executed for each outer
+ * row, but the results are memoized for the duration of the statement
+ * execution, keyed on the values of the outer columns that the subquery
+ * references. The memo holds up to MEMO_SIZE entries. Subqueries that
+ * call a function which is not deterministic are not memoized.
  *
  * @author boucherb@users
  * @author fredt@users
@@ -54,6 +78,25 @@ class SubQuery implements ObjectComparator {
     Table   table;
     View    view;
     boolean isMaterialised;
+    boolean isMerged;    // merged into the enclosing query, not materialized
+
+    // semi-join for correlated EXISTS and IN
+    private boolean      isSemiJoinChecked;
+    private boolean      isSemiJoin;
+    private TableFilter  semiJoinFilter;
+    private Expression[] innerConditions;
+    private Expression[] innerKeys;
+    private Expression[] outerKeys;    // null element for the IN value
+    private int[]        keyTypes;
+    private HashSet      semiJoinKeys;
+
+    // memo of scalar and EXISTS results for outer column values
+    static final int     MEMO_SIZE = 1024;
+    private boolean      isMemoChecked;
+    private Expression[] memoColumns;
+    private HashMap      memo;
+    private long         memoHits;
+    private long         memoMisses;
 
     void populateTable(Session session) throws HsqlException {
 
@@ -67,6 +110,466 @@ class SubQuery implements ObjectComparator {
         table.insertResult(session, r);
     }
 
+    /**
+     * Returns TRUE if the given IN value (null for EXISTS) and the current
+     * values of the outer columns have a matching inner row, or FALSE if
+     * they do not. Returns null if the subquery cannot be executed as a
+     * semi-join, in which case it must be executed for the outer row.
+     */
+    Boolean testSemiJoin(Session session,
+                         Object inValue) throws HsqlException {
+
+        if (!isSemiJoinChecked) {
+            isSemiJoinChecked = true;
+            isSemiJoin        = setSemiJoin(session, inValue == null);
+        }
+
+        if (!isSemiJoin) {
+            return null;
+        }
+
+        if (semiJoinKeys == null) {
+            semiJoinKeys = buildSemiJoinKeys(session);
+
+            if (semiJoinKeys == null) {
+                isSemiJoin = false;
+
+                return null;
+            }
+        }
+
+        Object[] key = new Object[keyTypes.length];
+
+        for (int i = 0; i < key.length; i++) {
+            Object value = outerKeys[i] == null ? inValue
+                                                : outerKeys[i].getValue(
+                                                    session);
+
+            if (value == null) {
+                return Boolean.FALSE;
+            }
+
+            value = Result.getHashValue(Column.convertObject(value,
+                    keyTypes[i]), keyTypes[i]);
+
+            if (value == null) {
+                return null;
+            }
+
+            key[i] = value;
+        }
+
+        return semiJoinKeys.contains(new Result.RowKey(key)) ? Boolean.TRUE
+                                                             : Boolean.FALSE;
+    }
+
+    /**
+     * Clears the keys of the semi-join and the memo at the end of statement
+     * execution.
+     */
+    void clearExecutionData() {
+        semiJoinKeys = null;
+        memo         = null;
+    }
+
+    /**
+     * Returns the memo key for the current values of the outer columns, or
+     * null if the results of this subquery are not memoized.
+     */
+    Object getMemoKey(Session session) throws HsqlException {
+
+        if (!isMemoChecked) {
+            isMemoChecked = true;
+            memoColumns   = getMemoColumns();
+        }
+
+        if (memoColumns == null) {
+            return null;
+        }
+
+        Object[] key = new Object[memoColumns.length];
+
+        for (int i = 0; i < key.length; i++) {
+            key[i] = memoColumns[i].getValue(session);
+        }
+
+        return new Result.RowKey(key);
+    }
+
+    /**
+     * Returns true if the memo has a result for the key, counting a hit or
+     * a miss.
+     */
+    boolean isMemoized(Object key) {
+
+        if (memo != null && memo.containsKey(key)) {
+            memoHits++;
+
+            return true;
+        }
+
+        memoMisses++;
+
+        return false;
+    }
+
+    Object getMemoized(Object key) {
+        return memo.get(key);
+    }
+
+    /**
+     * Adds a result to the memo, unless the memo is full.
+     */
+    void memoize(Object key, Object value) {
+
+        if (memo == null) {
+            memo = new HashMap();
+        }
+
+        if (memo.size() < MEMO_SIZE) {
+            memo.put(key, value);
+        }
+    }
+
+    long getMemoHits() {
+        return memoHits;
+    }
+
+    long getMemoMisses() {
+        return memoMisses;
+    }
+
+    /**
+     * Returns the columns of enclosing queries that are referenced in the
+     * select, including any nested subqueries, or null if the select
+     * cannot be memoized.
+     */
+    private Expression[] getMemoColumns() {
+
+        HsqlArrayList columns = new HsqlArrayList();
+        HashSet       filters = new HashSet();
+
+        if (!collectMemoColumns(select, columns, filters)) {
+            return null;
+        }
+
+        HsqlArrayList outer = new HsqlArrayList();
+
+        for (int i = 0; i < columns.size(); i++) {
+            Expression  e      = (Expression) columns.get(i);
+            TableFilter filter = e.getFilter();
+
+            if (filter == null) {
+                return null;
+            }
+
+            if (!filters.contains(filter) &&!outer.contains(e)) {
+                outer.add(e);
+            }
+        }
+
+        Expression[] array = new Expression[outer.size()];
+
+        outer.toArray(array);
+
+        return array;
+    }
+
+    private static boolean collectMemoColumns(Select select,
+            HsqlArrayList columns, HashSet filters) {
+
+        for (; select != null; select = select.unionSelect) {
+            HsqlArrayList list = new HsqlArrayList();
+
+            for (int i = 0; i < select.exprColumns.length; i++) {
+                list.add(select.exprColumns[i]);
+            }
+
+            TableFilter.collectConjuncts(select.queryCondition, list);
+            TableFilter.collectConjuncts(select.havingCondition, list);
+
+            if (select.limitCondition != null) {
+                list.add(select.limitCondition);
+            }
+
+            for (int i = 0; i < select.tFilter.length; i++) {
+                filters.add(select.tFilter[i]);
+                select.tFilter[i].collectConditions(list);
+            }
+
+            for (int i = 0; i < list.size(); i++) {
+                Expression           e = (Expression) list.get(i);
+                Expression.Collector c = new Expression.Collector();
+
+                c.addAll(e, Expression.SEQUENCE);
+                c.addAll(e, Expression.FUNCTION);
+
+                Iterator it = c.iterator();
+
+                while (it.hasNext()) {
+                    Expression f = (Expression) it.next();
+
+                    if (f.exprType == Expression.SEQUENCE
+                            ||!f.function.isDeterministic()) {
+                        return false;
+                    }
+                }
+
+                c.clear();
+                c.addAll(e, Expression.COLUMN);
+                columns.addAll(c);
+                c.clear();
+                c.addAll(e, Expression.QUERY);
+
+                it = c.iterator();
+
+                while (it.hasNext()) {
+                    Expression q = (Expression) it.next();
+
+                    if (!collectMemoColumns(q.subQuery.select, columns,
+                                            filters)) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Splits the conditions of the select into the uncorrelated conditions
+     * and the correlation equalities. Returns false if the subquery is not
+     * a correlated EXISTS or single column IN over one table, or any
+     * condition is not of the two kinds. For IN, the select column is
+     * the first key.
+     */
+    private boolean setSemiJoin(Session session,
+                                boolean isExists) throws HsqlException {
+
+        if (isResolved || select.tFilter.length != 1
+                || select.unionSelect != null
+                || select.limitCondition != null || select.iGroupLen != 0
+                || select.havingCondition != null) {
+            return false;
+        }
+
+        if (select.resultMetaData == null) {
+            select.prepareResult(session);
+        }
+
+        if (select.isAggregated) {
+            return false;
+        }
+
+        TableFilter filter = select.tFilter[0];
+
+        if (filter.isOuterJoin
+                || filter.filterTable.getTableType() == Table.SYSTEM_SUBQUERY) {
+            return false;
+        }
+
+        HsqlArrayList conditions = new HsqlArrayList();
+        HsqlArrayList inner      = new HsqlArrayList();
+        HsqlArrayList innerKey   = new HsqlArrayList();
+        HsqlArrayList outerKey   = new HsqlArrayList();
+        HsqlArrayList types      = new HsqlArrayList();
+
+        TableFilter.collectConjuncts(select.queryCondition, conditions);
+        filter.collectConditions(conditions);
+
+        if (!isExists) {
+            if (select.iResultLen != 1
+                    ||!isInnerExpression(select.exprColumns[0], filter)) {
+                return false;
+            }
+
+            innerKey.add(select.exprColumns[0]);
+            outerKey.add(null);
+            types.add(ValuePool.getInt(table.getColumnTypes()[0]));
+        }
+
+        for (int i = 0; i < conditions.size(); i++) {
+            Expression e = (Expression) conditions.get(i);
+
+            if (isInnerExpression(e, filter)) {
+                inner.add(e);
+
+                continue;
+            }
+
+            if (e.getType() != Expression.EQUAL) {
+                return false;
+            }
+
+            Expression left  = e.getArg();
+            Expression right = e.getArg2();
+
+            if (left.getType() != Expression.COLUMN
+                    || right.getType() != Expression.COLUMN) {
+                return false;
+            }
+
+            if (left.getFilter() == filter && right.getFilter() != filter
+                    && isOuterColumn(right)) {
+                innerKey.add(left);
+                outerKey.add(right);
+            } else if (right.getFilter() == filter
+                       && left.getFilter() != filter
+                       && isOuterColumn(left)) {
+                innerKey.add(right);
+                outerKey.add(left);
+            } else {
+                return false;
+            }
+
+            // the type used by Expression.compareValues()
+            int type = left.getDataType();
+
+            if (left.getDataType() != right.getDataType()
+                    && Types.isNumberType(left.getDataType())
+                    && Types.isNumberType(right.getDataType())) {
+                type = Column.getCombinedNumberType(left.getDataType(),
+                                                    right.getDataType(),
+                                                    Expression.EQUAL);
+            }
+
+            types.add(ValuePool.getInt(type));
+        }
+
+        if (outerKey.isEmpty()) {
+            return false;
+        }
+
+        keyTypes = new int[types.size()];
+
+        for (int i = 0; i < keyTypes.length; i++) {
+            keyTypes[i] = ((Integer) types.get(i)).intValue();
+
+            switch (keyTypes[i]) {
+
+                case Types.CHAR :
+                case Types.VARCHAR :
+                case Types.VARCHAR_IGNORECASE :
+                case Types.LONGVARCHAR :
+                    if (session.database.collation.collator != null) {
+                        return false;
+                    }
+            }
+        }
+
+        semiJoinFilter  = filter;
+        innerConditions = new Expression[inner.size()];
+        innerKeys       = new Expression[innerKey.size()];
+        outerKeys       = new Expression[outerKey.size()];
+
+        inner.toArray(innerConditions);
+        innerKey.toArray(innerKeys);
+        outerKey.toArray(outerKeys);
+
+        return true;
+    }
+
+    /**
+     * Returns true if the expression references no column other than
+     * those of the filter and contains no subquery.
+     */
+    private static boolean isInnerExpression(Expression e,
+            TableFilter filter) {
+
+        Expression.Collector collector = new Expression.Collector();
+
+        collector.addAll(e, Expression.QUERY);
+
+        if (!collector.isEmpty()) {
+            return false;
+        }
+
+        collector.addAll(e, Expression.COLUMN);
+
+        Iterator it = collector.iterator();
+
+        while (it.hasNext()) {
+            if (((Expression) it.next()).getFilter() != filter) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns true if the column belongs to an enclosing query, which is
+     * fixed during each execution of the subquery.
+     */
+    private static boolean isOuterColumn(Expression e) {
+
+        TableFilter filter = e.getFilter();
+
+        return filter != null && filter.isAssigned &&!filter.isOuterJoin;
+    }
+
+    /**
+     * Reads the inner rows that satisfy the uncorrelated conditions and
+     * returns the set of their key values. Returns null if a key value
+     * cannot be hashed consistently with Column.compare().
+     */
+    private HashSet buildSemiJoinKeys(Session session) throws HsqlException {
+
+        HashSet  keys  = new HashSet();
+        Object[] saved = semiJoinFilter.currentData;
+        RowIterator it =
+            semiJoinFilter.filterTable.getPrimaryIndex().firstRow(session);
+
+        try {
+            while (it.hasNext()) {
+                Row row = it.next();
+
+                semiJoinFilter.currentData = row.getData();
+
+                boolean found = true;
+
+                for (int i = 0; i < innerConditions.length && found; i++) {
+                    found = innerConditions[i].testCondition(session);
+                }
+
+                if (!found) {
+                    continue;
+                }
+
+                Object[] key = new Object[keyTypes.length];
+
+                for (int i = 0; i < key.length && found; i++) {
+                    Object value = innerKeys[i].getValue(session);
+
+                    if (value == null) {
+                        found = false;
+
+                        break;
+                    }
+
+                    value = Result.getHashValue(
+                        Column.convertObject(value, keyTypes[i]),
+                        keyTypes[i]);
+
+                    if (value == null) {
+                        return null;
+                    }
+
+                    key[i] = value;
+                }
+
+                if (found) {
+                    keys.add(new Result.RowKey(key));
+                }
+            }
+        } finally {
+            semiJoinFilter.currentData = saved;
+        }
+
+        return keys;
+    }
+
     /**
      * This results in the following sort order:
      *
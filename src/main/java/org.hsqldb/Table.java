@@ -74,6 +74,7 @@ import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HashMappedList;
 import org.hsqldb.lib.HashSet;
 import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.IntKeyHashMap;
 import org.hsqldb.lib.Iterator;
 import org.hsqldb.lib.StringUtil;
 import org.hsqldb.persist.CachedObject;
@@ -144,10 +145,17 @@ public class Table extends BaseTable {
     int            identityColumn;                    // -1 means no such row
     NumberSequence identitySequence;                  // next value of identity column
     NumberSequence rowIdSequence;                     // next value of optional rowid
+    long           modificationCount;                 // incremented when rows are inserted or deleted
 
 // -----------------------------------------------------------------------
     Constraint[]      constraintList;                 // constrainst for the table
     HsqlArrayList[]   triggerLists;                   // array of trigger lists
+    MaterializedView[] materializedViews;             // incrementally maintained views
+    BitmapIndex[]      bitmapIndexes;                 // BITMAP INDEX objects, null if none
+    private IntKeyHashMap bitmapRows;                 // rows of a memory table by position, for the bitmap indexes
+    private boolean       bitmapIndexesValid = true;  // false when the bitmaps must be built again from the rows
+    private int[]         zoneMapColumns;             // columns summarized by the zone map, null if none
+    private ZoneMap       zoneMap;                    // null until used or after the rows are moved
     private int[]     colTypes;                       // fredt - types of columns
     private int[]     colSizes;                       // fredt - copy of SIZE values for columns
     private int[]     colScales;                      // fredt - copy of SCALE values for columns
@@ -172,6 +180,7 @@ public class Table extends BaseTable {
     protected boolean       isLogged;
     protected int           indexType;                // fredt - type of index used
     protected boolean       onCommitPreserve;         // for temp tables
+    protected boolean       isClustered;              // CACHED rows are added at the end of the file
 
     //
     PersistentStore rowStore;
@@ -322,6 +331,60 @@ public class Table extends BaseTable {
         return isReadOnly;
     }
 
+    /**
+     * A clustered CACHED table keeps its rows in primary key order in the
+     * .data file as far as possible. New rows are always added at the end
+     * of the file, so rows inserted in key order are stored in key order,
+     * and CLUSTER or CHECKPOINT DEFRAG writes all the rows again in key
+     * order.
+     */
+    public final boolean isClustered() {
+        return isClustered;
+    }
+
+    void setClustered(boolean value) {
+        isClustered = value;
+    }
+
+    /**
+     * Returns the columns summarized by the zone map of the table, or null.
+     */
+    int[] getZoneMapColumns() {
+        return zoneMapColumns;
+    }
+
+    /**
+     * Sets the columns summarized by the zone map, or null for none. The
+     * summaries are built from the rows when the zone map is first used.
+     */
+    void setZoneMapColumns(int[] columns) {
+
+        zoneMapColumns = columns;
+        zoneMap        = null;
+    }
+
+    /**
+     * Returns the zone map of the table, built from the rows if necessary,
+     * or null if the table has no zone map columns. The zones are ranges of
+     * primary key values, so a table without a primary key has no zone map.
+     */
+    ZoneMap getZoneMap(Session session) throws HsqlException {
+
+        if (zoneMapColumns == null ||!hasPrimaryKey()) {
+            return null;
+        }
+
+        if (zoneMap == null) {
+            ZoneMap map = new ZoneMap(this, zoneMapColumns);
+
+            map.build(session);
+
+            zoneMap = map;
+        }
+
+        return zoneMap;
+    }
+
     /**
      * sets the isReadOnly flag, and invalidates the database's system tables as needed
      */
@@ -680,6 +743,8 @@ public class Table extends BaseTable {
         Table t = new Table(database, tableName, tableType);
 
         t.onCommitPreserve = onCommitPreserve;
+        t.isClustered      = isClustered;
+        t.zoneMapColumns   = zoneMapColumns;
 
         return t;
     }
@@ -793,11 +858,51 @@ public class Table extends BaseTable {
             tn.createAdjustedIndex(indexList[i], colIndex, adjust);
         }
 
+        copyBitmapIndexes(tn, newColumn, colIndex, adjust);
+
+        if (zoneMapColumns != null) {
+            int[] cols = ArrayUtil.toAdjustedColumnArray(zoneMapColumns,
+                colIndex, adjust);
+
+            tn.zoneMapColumns = cols.length == 0 ? null
+                                                 : cols;
+        }
+
         tn.triggerLists = triggerLists;
 
         return tn;
     }
 
+    /**
+     * Adds to the new table a copy of each bitmap index, with the column
+     * number adjusted. The bitmaps are built as the rows are moved.
+     */
+    private void copyBitmapIndexes(Table tn, Column newColumn, int colIndex,
+                                   int adjust) throws HsqlException {
+
+        if (bitmapIndexes == null) {
+            return;
+        }
+
+        for (int i = 0; i < bitmapIndexes.length; i++) {
+            int column = bitmapIndexes[i].getColumn();
+            int[] cols = ArrayUtil.toAdjustedColumnArray(new int[]{ column },
+                colIndex, adjust);
+
+            if (cols.length == 0
+                    || (column == colIndex && adjust == 0
+                        && newColumn != null
+                        &&!BitmapIndex.isIndexable(newColumn.getType()))) {
+                throw Trace.error(Trace.COLUMN_IS_IN_INDEX);
+            }
+
+            tn.addBitmapIndex(new BitmapIndex(bitmapIndexes[i].getName(),
+                                              tn, cols[0]));
+        }
+
+        tn.bitmapIndexesValid = true;
+    }
+
     Index getIndex(int[] exclude, int colIndex) {
 
         for (int i = 1; i < indexList.length; i++) {
@@ -864,6 +969,8 @@ public class Table extends BaseTable {
             tn.createAdjustedIndex(idx, -1, 0);
         }
 
+        copyBitmapIndexes(tn, null, -1, 0);
+
         tn.triggerLists = triggerLists;
 
         return tn;
@@ -1152,6 +1259,12 @@ public class Table extends BaseTable {
             int[] cols      = index.getColumns();
             int   colsCount = index.getVisibleColumns();
 
+            // partial indexes do not hold all the rows and expression
+            // indexes do not hold the values of the columns
+            if (index.isPartial() || index.isExpression()) {
+                continue;
+            }
+
             if (i == 0) {
 
                 // ignore system primary keys
@@ -1295,7 +1408,8 @@ public class Table extends BaseTable {
             boolean result = ArrayUtil.containsAllTrueElements(columnCheck,
                 index.colCheck);
 
-            if (result && index.getVisibleColumns() > colCount) {
+            if (result && index.getVisibleColumns() > colCount
+                    &&!index.isPartial() &&!index.isExpression()) {
                 colCount    = index.getVisibleColumns();
                 indexChoice = index;
             }
@@ -1313,7 +1427,9 @@ public class Table extends BaseTable {
             Index currentindex = getIndex(i);
             int[] indexcol     = currentindex.getColumns();
 
-            if (ArrayUtil.haveEqualArrays(indexcol, col, col.length)) {
+            if (ArrayUtil.haveEqualArrays(indexcol, col, col.length)
+                    &&!currentindex.isPartial()
+                    &&!currentindex.isExpression()) {
                 if (!unique || currentindex.isUnique()) {
                     return currentindex;
                 }
@@ -1381,6 +1497,12 @@ public class Table extends BaseTable {
 
             indexList[i].setRoot(null, f);
         }
+
+        bitmapIndexesValid = false;
+
+        // after a defrag, the zone map is built again when next used, with
+        // the summaries narrowed to the rows that remain
+        zoneMap = null;
     }
 
     /**
@@ -1527,11 +1649,130 @@ public class Table extends BaseTable {
 
         // if a column to remove is one of the Index columns
         if (colarr.length != index.getVisibleColumns()) {
+
+            // the other columns of the expression may remain
+            if (index.isExpression()) {
+                throw Trace.error(Trace.COLUMN_IS_IN_INDEX);
+            }
+
             return null;
         }
 
-        return createIndexStructure(colarr, index.getName(), index.isUnique(),
-                                    index.isConstraint, index.isForward);
+        Index newindex = createIndexStructure(colarr, index.getName(),
+                                              index.isUnique(),
+                                              index.isConstraint,
+                                              index.isForward);
+
+        if (index.isExpression()) {
+            try {
+                setIndexExpression(database.sessionManager.getSysSession(),
+                                   newindex, index.getKeyExpressionDDL());
+            } catch (HsqlException e) {
+
+                // a column used in the expression is removed
+                throw Trace.error(Trace.COLUMN_IS_IN_INDEX);
+            }
+        }
+
+        if (index.isPartial()) {
+            try {
+                setIndexPredicate(database.sessionManager.getSysSession(),
+                                  newindex, index.getPredicateDDL());
+            } catch (HsqlException e) {
+
+                // a column used in the condition is removed
+                throw Trace.error(Trace.COLUMN_IS_IN_INDEX);
+            }
+        }
+
+        return newindex;
+    }
+
+    /**
+     * Makes the index a partial index with the condition, given as SQL
+     * text, resolved against the columns of this table. Used before any
+     * rows are added to the index.
+     */
+    void setIndexPredicate(Session session, Index index,
+                           String ddl) throws HsqlException {
+
+        Expression condition = parseIndexPredicate(session, ddl);
+        Select     s = Expression.getCheckSelect(session, this, condition);
+
+        s.tFilter[0].setAsCheckFilter();
+        index.setPredicate(condition, s.tFilter[0]);
+        setBestRowIdentifiers();
+    }
+
+    /**
+     * Parses and checks the condition of a partial index on this table.
+     * Returns the condition, which is not yet resolved.
+     */
+    private Expression parseIndexPredicate(Session session,
+                                           String ddl) throws HsqlException {
+
+        Tokenizer  tokenizer = new Tokenizer(ddl);
+        Parser     parser    = new Parser(session, database, tokenizer);
+        Expression condition = parser.parseExpression();
+
+        if (!Index.isPredicateCondition(condition)) {
+            throw Trace.error(Trace.OPERATION_NOT_SUPPORTED);
+        }
+
+        // this workaround is here to stop LIKE optimisation (for proper scripting)
+        condition.setLikeOptimised();
+
+        return condition;
+    }
+
+    /**
+     * Makes the index an expression index with the expression, given as SQL
+     * text, resolved against the columns of this table. Used before any
+     * rows are added to the index.
+     */
+    void setIndexExpression(Session session, Index index,
+                            String ddl) throws HsqlException {
+
+        Tokenizer   tokenizer  = new Tokenizer(ddl);
+        Parser      parser     = new Parser(session, database, tokenizer);
+        Expression  expression = parser.parseExpression();
+        TableFilter filter     = Expression.getKeyFilter(session, this,
+            expression);
+
+        if (!Index.isKeyExpression(expression)) {
+            throw Trace.error(Trace.OPERATION_NOT_SUPPORTED);
+        }
+
+        index.setKeyExpression(expression, filter);
+        setBestRowIdentifiers();
+    }
+
+    /**
+     * Returns true if the table has an expression index.
+     */
+    boolean hasExpressionIndexes() {
+
+        for (int i = 1; i < indexList.length; i++) {
+            if (indexList[i].isExpression()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns true if the table has a partial index.
+     */
+    boolean hasPartialIndexes() {
+
+        for (int i = 1; i < indexList.length; i++) {
+            if (indexList[i].isPartial()) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     /**
@@ -1540,6 +1781,18 @@ public class Table extends BaseTable {
     Index createIndex(Session session, int[] column, HsqlName name,
                       boolean unique, boolean constraint,
                       boolean forward) throws HsqlException {
+        return createIndex(session, column, name, unique, constraint,
+                           forward, null, null);
+    }
+
+    /**
+     *  As above, with the expression of an expression index and the
+     *  condition of a partial index, or null.
+     */
+    Index createIndex(Session session, int[] column, HsqlName name,
+                      boolean unique, boolean constraint, boolean forward,
+                      String expression,
+                      String predicate) throws HsqlException {
 
         int newindexNo = createIndexStructureGetNo(column, name, unique,
             constraint, forward);
@@ -1550,6 +1803,14 @@ public class Table extends BaseTable {
         HsqlException error        = null;
 
         try {
+            if (expression != null) {
+                setIndexExpression(session, newindex, expression);
+            }
+
+            if (predicate != null) {
+                setIndexPredicate(session, newindex, predicate);
+            }
+
             while (it.hasNext()) {
                 Row  row      = it.next();
                 Node backnode = row.getNode(newindexNo - 1);
@@ -1558,12 +1819,11 @@ public class Table extends BaseTable {
                 newnode.nNext  = backnode.nNext;
                 backnode.nNext = newnode;
 
-                // count before inserting
                 rowCount++;
-
-                newindex.insert(session, row, newindexNo);
             }
 
+            new IndexBuilder(session, this, newindexNo, 1).build();
+
             return newindex;
         } catch (OutOfMemoryError e) {
             error = Trace.error(Trace.OUT_OF_MEMORY);
@@ -1837,9 +2097,12 @@ public class Table extends BaseTable {
 
             Row newrow = newRow(data);
 
-            indexRow(session, newrow);
+            indexPrimaryRow(session, newrow);
         }
 
+        // the other indexes are built once all the rows are in the table
+        new IndexBuilder(session, this, 1, indexList.length - 1).build();
+
         from.drop();
     }
 
@@ -1929,8 +2192,7 @@ public class Table extends BaseTable {
      *  UNIQUE or PRIMARY constraints are enforced by attempting to
      *  add the row to the indexes.
      */
-    private void insertNoCheck(Session session,
-                               Object[] data) throws HsqlException {
+    void insertNoCheck(Session session, Object[] data) throws HsqlException {
 
         Row row = newRow(data);
 
@@ -1944,6 +2206,12 @@ public class Table extends BaseTable {
         if (isLogged) {
             database.logger.writeInsertStatement(session, this, data);
         }
+
+        if (materializedViews != null) {
+            for (int i = 0; i < materializedViews.length; i++) {
+                materializedViews[i].insertBaseRow(session, data);
+            }
+        }
     }
 
     /**
@@ -2026,11 +2294,27 @@ public class Table extends BaseTable {
     /**
      * Not for general use.
      * Used by ScriptReader to unconditionally insert a row into
-     * the table when the .script file is read.
+     * the table when the .script file is read. The row is added to the
+     * primary index only, until buildIndexesFromScript() is called.
      */
     public void insertFromScript(Object[] data) throws HsqlException {
+
         updateIdentityValue(data);
-        insertData(null, data);
+
+        Row row = newRow(data);
+
+        indexPrimaryRow(null, row);
+        commitRowToStore(row);
+    }
+
+    /**
+     * Not for general use.
+     * Used by ScriptReader to build the other indexes of the table once
+     * all its rows in the .script file have been inserted.
+     */
+    public void buildIndexesFromScript(Session session)
+    throws HsqlException {
+        new IndexBuilder(session, this, 1, indexList.length - 1).build();
     }
 
     /**
@@ -2261,6 +2545,181 @@ public class Table extends BaseTable {
         }
     }
 
+    /**
+     * Registers a materialized view to be maintained on changes to the
+     * rows of this table. Replaces an earlier object with the same name.
+     */
+    void addMaterializedView(MaterializedView view) {
+
+        removeMaterializedView(view);
+
+        if (materializedViews == null) {
+            materializedViews = new MaterializedView[]{ view };
+        } else {
+            materializedViews =
+                (MaterializedView[]) ArrayUtil.toAdjustedArray(
+                    materializedViews, view, materializedViews.length, 1);
+        }
+    }
+
+    /**
+     * Stops the maintenance of a materialized view.
+     */
+    void removeMaterializedView(MaterializedView view) {
+
+        if (materializedViews == null) {
+            return;
+        }
+
+        for (int i = 0; i < materializedViews.length; i++) {
+            if (materializedViews[i].getName().equals(view.getName())) {
+                if (materializedViews.length == 1) {
+                    materializedViews = null;
+                } else {
+                    materializedViews =
+                        (MaterializedView[]) ArrayUtil.toAdjustedArray(
+                            materializedViews, null, i, -1);
+                }
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds a bitmap index and builds its bitmaps from the rows.
+     */
+    void addBitmapIndex(BitmapIndex index) {
+
+        if (bitmapIndexes == null) {
+            bitmapIndexes = new BitmapIndex[]{ index };
+
+            if (!isCached) {
+                bitmapRows = new IntKeyHashMap();
+            }
+        } else {
+            bitmapIndexes = (BitmapIndex[]) ArrayUtil.toAdjustedArray(
+                bitmapIndexes, index, bitmapIndexes.length, 1);
+        }
+
+        bitmapIndexesValid = false;
+    }
+
+    /**
+     * Returns the bitmap index with the given name, or null if there is
+     * none.
+     */
+    BitmapIndex getBitmapIndex(String name) {
+
+        if (bitmapIndexes == null) {
+            return null;
+        }
+
+        for (int i = 0; i < bitmapIndexes.length; i++) {
+            if (bitmapIndexes[i].getName().name.equals(name)) {
+                return bitmapIndexes[i];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the bitmap index on the column, or null if there is none.
+     */
+    BitmapIndex getBitmapIndexForColumn(int column) {
+
+        if (bitmapIndexes == null) {
+            return null;
+        }
+
+        for (int i = 0; i < bitmapIndexes.length; i++) {
+            if (bitmapIndexes[i].getColumn() == column) {
+                return bitmapIndexes[i];
+            }
+        }
+
+        return null;
+    }
+
+    void dropBitmapIndex(String name) {
+
+        for (int i = 0; i < bitmapIndexes.length; i++) {
+            if (bitmapIndexes[i].getName().name.equals(name)) {
+                if (bitmapIndexes.length == 1) {
+                    bitmapIndexes = null;
+                    bitmapRows    = null;
+                } else {
+                    bitmapIndexes = (BitmapIndex[]) ArrayUtil.toAdjustedArray(
+                        bitmapIndexes, null, i, -1);
+                }
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Builds the bitmaps again from the rows if they are not up to date.
+     */
+    void checkBitmapIndexes(Session session) throws HsqlException {
+
+        if (bitmapIndexes == null || bitmapIndexesValid) {
+            return;
+        }
+
+        for (int i = 0; i < bitmapIndexes.length; i++) {
+            bitmapIndexes[i].clear();
+        }
+
+        if (bitmapRows != null) {
+            bitmapRows.clear();
+        }
+
+        RowIterator it = getPrimaryIndex().firstRow(session);
+
+        for (Row row = it.next(); row != null; row = it.next()) {
+            insertBitmapRow(row);
+        }
+
+        bitmapIndexesValid = true;
+    }
+
+    /**
+     * Returns the row at the position for a bitmap index, or null if there
+     * is none.
+     */
+    Row getBitmapRow(int pos) {
+        return isCached ? getRow(pos)
+                        : (Row) bitmapRows.get(pos);
+    }
+
+    private void insertBitmapRow(Row row) {
+
+        for (int i = 0; i < bitmapIndexes.length; i++) {
+            bitmapIndexes[i].insert(row);
+        }
+
+        if (bitmapRows != null) {
+            bitmapRows.put(row.getPos(), row);
+        }
+    }
+
+    private void deleteBitmapRow(Row row) {
+
+        if (bitmapIndexes == null ||!bitmapIndexesValid) {
+            return;
+        }
+
+        for (int i = 0; i < bitmapIndexes.length; i++) {
+            bitmapIndexes[i].delete(row);
+        }
+
+        if (bitmapRows != null) {
+            bitmapRows.remove(row.getPos());
+        }
+    }
+
     /** @todo fredt - reused structures to be reviewed for multi-threading */
 
     /**
@@ -2802,8 +3261,8 @@ public class Table extends BaseTable {
      * Low level row delete method. Removes the row from the indexes and
      * from the Cache.
      */
-    private void deleteNoCheck(Session session, Row row,
-                               boolean log) throws HsqlException {
+    void deleteNoCheck(Session session, Row row,
+                       boolean log) throws HsqlException {
 
         if (row.isCascadeDeleted()) {
             return;
@@ -2819,8 +3278,11 @@ public class Table extends BaseTable {
             indexList[i].delete(session, node);
         }
 
+        deleteBitmapRow(row);
         row.delete();
 
+        modificationCount++;
+
         if (session != null) {
             session.addDeleteAction(this, row);
         }
@@ -2828,6 +3290,12 @@ public class Table extends BaseTable {
         if (log && isLogged) {
             database.logger.writeDeleteStatement(session, this, data);
         }
+
+        if (materializedViews != null) {
+            for (int i = 0; i < materializedViews.length; i++) {
+                materializedViews[i].deleteBaseRow(session, data);
+            }
+        }
     }
 
     /**
@@ -2900,8 +3368,11 @@ public class Table extends BaseTable {
             indexList[i].delete(session, node);
         }
 
+        deleteBitmapRow(row);
         row.delete();
 
+        modificationCount++;
+
         if (session != null) {
             session.addDeleteAction(this, row);
         }
@@ -2922,9 +3393,12 @@ public class Table extends BaseTable {
             indexList[i].delete(session, node);
         }
 
+        deleteBitmapRow(row);
         row.delete();
         removeRowFromStore(row);
 
+        modificationCount++;
+
         if (log && isLogged) {
             database.logger.writeDeleteStatement(session, this, row.getData());
         }
@@ -3299,6 +3773,8 @@ public class Table extends BaseTable {
 
         int i = 0;
 
+        modificationCount++;
+
         try {
             for (; i < indexList.length; i++) {
                 indexList[i].insert(session, row, i);
@@ -3317,6 +3793,41 @@ public class Table extends BaseTable {
 
             throw e;
         }
+
+        if (bitmapIndexes != null && bitmapIndexesValid) {
+            insertBitmapRow(row);
+        }
+
+        if (zoneMap != null) {
+            zoneMap.add(row.getData());
+        }
+    }
+
+    /**
+     * As above, but only for the primary index. The other indexes are built
+     * later from all the rows.
+     */
+    private void indexPrimaryRow(Session session,
+                                 Row row) throws HsqlException {
+
+        modificationCount++;
+
+        try {
+            indexList[0].insert(session, row, 0);
+        } catch (HsqlException e) {
+            row.delete();
+            removeRowFromStore(row);
+
+            throw e;
+        }
+
+        if (bitmapIndexes != null && bitmapIndexesValid) {
+            insertBitmapRow(row);
+        }
+
+        if (zoneMap != null) {
+            zoneMap.add(row.getData());
+        }
     }
 
     /**
@@ -3324,10 +3835,15 @@ public class Table extends BaseTable {
      */
     void clearAllRows(Session session) {
 
+        modificationCount++;
+
         for (int i = 0; i < indexList.length; i++) {
             indexList[i].clearAll(session);
         }
 
+        bitmapIndexesValid = false;
+        zoneMap            = null;
+
         if (!isTemp) {
             identitySequence.reset();
             rowIdSequence.reset();
@@ -3384,6 +3900,8 @@ public class Table extends BaseTable {
 
             row.setPos(pos);
         }
+
+        bitmapIndexesValid = false;
     }
 
     /**
@@ -3469,7 +3987,12 @@ public class Table extends BaseTable {
         }
 
         public void add(CachedObject row) throws IOException {
-            cache.add(row);
+
+            if (isClustered) {
+                cache.addAtEnd(row);
+            } else {
+                cache.add(row);
+            }
         }
 
         public void restore(CachedObject row) throws IOException {
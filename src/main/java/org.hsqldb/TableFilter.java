@@ -69,6 +69,10 @@ package org.hsqldb;
 import org.hsqldb.index.RowIterator;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HashMappedList;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.ObjectComparator;
+import org.hsqldb.lib.Sort;
+import org.hsqldb.store.SparseBitMap;
 
 // fredt@users 20030813 - patch 1.7.2 - fix for column comparison within same table bugs #572075 and 722443
 // fredt@users 20031012 - patch 1.7.2 - better OUTER JOIN implementation
@@ -94,20 +98,65 @@ final class TableFilter {
     static final int   CONDITION_END       = 3;    // candidate for eEnd
     static final int   CONDITION_OUTER     = 4;    // add to this
     Table              filterTable;
+    SubQuery           subQuery;    // view or derived table of filterTable
     private String     tableAlias;
+
+    // after a merge, the columns of the view that are visible by name
+    private Table mergedTable;
+    private int[] mergedColumns;
     HashMappedList     columnAliases;
     Index              filterIndex;
     private Object[]   emptyData;
     boolean[]          usedColumns;
     private Expression eStart, eEnd;
 
+    // IN condition with a list of values to seek in filterIndex
+    private Expression eIn;
+
+    // LIKE condition in eAnd with a pattern prefix to seek in filterIndex
+    private Expression eLike;
+
+    // values of the leading columns of filterIndex that have an equality
+    // condition, and conditions for a range on the next column
+    private Expression[] rangePrefix;
+    private Expression   rangeLow;
+    private Expression   rangeHigh;
+
+    // OR condition in eAnd with alternatives that each seek in an index
+    private Expression   eOr;
+    private Expression[] mergeConditions;
+    private Index[]      mergeIndexes;
+
+    // conditions in eAnd evaluated with the bitmap indexes of the table,
+    // exact when they are all the conditions of eAnd
+    private Expression eBitmap;
+    private boolean    isBitmapExact;
+
+    // partial indexes of the table that hold all the rows that satisfy the
+    // query conditions
+    private Index[] partialIndexes;
+
+    // conditions in eAnd on columns with a zone map, used to skip parts of
+    // a full scan of a CACHED table; they remain in eAnd
+    private Expression   eZone;
+    private int[]        zoneColumns;
+    private int[]        zoneOpTypes;
+    private Expression[] zoneValues;
+
     //
     Expression eAnd;
 
+    // block evaluation of simple conditions in eAnd
+    private BlockFilter blockFilter;
+    private Expression  eResidual;
+
     //
     boolean      isOuterJoin;                      // table joined with OUTER JOIN
     boolean      isAssigned;                       // conditions have been assigned to this
     boolean      isMultiFindFirst;                 // findFirst() uses multi-column index
+    boolean      isRangeSeek;                      // findFirst() uses rangePrefix and range
+    boolean      isDescending;                     // scan in reverse index order
+    boolean      isFileOrder;                      // full scan may read rows in file order
     Expression[] findFirstExpressions;             // expressions for column values
 
     //
@@ -163,6 +212,94 @@ final class TableFilter {
         return filterTable;
     }
 
+    /**
+     * Returns the index of the named column in filterTable, or -1 if the
+     * filter has no such column.
+     */
+    int findColumn(String name) {
+
+        if (mergedTable == null) {
+            return filterTable.findColumn(name);
+        }
+
+        int i = mergedTable.findColumn(name);
+
+        return i == -1 ? -1
+                       : mergedColumns[i];
+    }
+
+    /**
+     * Replaces the view or derived table of this filter with the table of
+     * its select. The columns of the view remain visible by name and are
+     * mapped to the given columns of the table.
+     */
+    void setMergedTable(TableFilter source, int[] columns) {
+
+        if (mergedTable == null) {
+            mergedTable   = filterTable;
+            mergedColumns = columns;
+        } else {
+            for (int i = 0; i < mergedColumns.length; i++) {
+                mergedColumns[i] = columns[mergedColumns[i]];
+            }
+        }
+
+        filterTable = source.filterTable;
+        subQuery    = source.subQuery;
+        emptyData   = filterTable.getEmptyRowData();
+        usedColumns = filterTable.getNewColumnCheckList();
+    }
+
+    /**
+     * Returns the conditions assigned to this filter combined with AND, or
+     * null if there are none, and clears them so that they can be assigned
+     * again together with other conditions.
+     */
+    Expression removeConditions() {
+
+        HsqlArrayList list = new HsqlArrayList();
+
+        collectConditions(list);
+
+        Expression condition = null;
+
+        for (int i = 0; i < list.size(); i++) {
+            Expression e = (Expression) list.get(i);
+
+            condition = condition == null ? e
+                                          : new Expression(Expression.AND,
+                                          condition, e);
+        }
+
+        eStart               = null;
+        eEnd                 = null;
+        eIn                  = null;
+        eLike                = null;
+        rangePrefix          = null;
+        rangeLow             = null;
+        rangeHigh            = null;
+        eOr                  = null;
+        mergeConditions      = null;
+        mergeIndexes         = null;
+        eBitmap              = null;
+        isBitmapExact        = false;
+        partialIndexes       = null;
+        eZone                = null;
+        zoneColumns          = null;
+        zoneOpTypes          = null;
+        zoneValues           = null;
+        eAnd                 = null;
+        eResidual            = null;
+        blockFilter          = null;
+        filterIndex          = null;
+        isAssigned           = false;
+        isMultiFindFirst     = false;
+        isRangeSeek          = false;
+        findFirstExpressions = null;
+
+        return condition;
+    }
+
     /**
      * Retrieves a CONDITION_XXX code indicating how a condition
      * expression can be used for a TableFilter.
@@ -303,318 +440,1880 @@ final class TableFilter {
     void setConditions(Session session,
                        Expression condition) throws HsqlException {
 
+        setPartialIndexes(session, condition);
         setCondition(session, condition);
 
-        if (filterIndex == null) {
-            filterIndex = filterTable.getPrimaryIndex();
-        }
+        if (eOr != null && (eStart != null || eEnd != null || eIn != null
+                            || eLike != null)) {
 
-        if (filterIndex.getVisibleColumns() == 1 || eStart == null
-                || eAnd == null || eStart.exprType != Expression.EQUAL) {
-            return;
+            // the OR condition remains in eAnd
+            eOr             = null;
+            mergeConditions = null;
+            mergeIndexes    = null;
         }
 
-        boolean[]    check    = filterTable.getNewColumnCheckList();
-        Expression[] expr     = new Expression[check.length];
-        int          colindex = eStart.getArg().getColumnNr();
-
-        check[colindex] = true;
-        expr[colindex]  = eStart.getArg2();
-
-        eAnd.getEquiJoinColumns(this, check, expr);
-
-        if (ArrayUtil.containsAllTrueElements(check, filterIndex.colCheck)) {
-            isMultiFindFirst     = true;
-            findFirstExpressions = expr;
+        if (filterIndex == null && partialIndexes != null && isFullScan()) {
+            filterIndex = partialIndexes[0];
         }
-    }
-
-    private void setCondition(Session session,
-                              Expression e) throws HsqlException {
 
-        int        type = e.getType();
-        Expression e1   = e.getArg();
-        Expression e2   = e.getArg2();
-
-        isAssigned = true;
-
-        if (type == Expression.AND) {
-            setCondition(session, e1);
-            setCondition(session, e2);
-
-            return;
+        if (filterIndex == null) {
+            filterIndex = filterTable.getPrimaryIndex();
         }
 
-        if (type == Expression.OR && isOuterJoin && e.isInJoin
-                && e.outerFilter == this) {
-            addAndCondition(e);
-            e.setTrue();
-
-            return;
-        }
+        Expression[] residual = new Expression[1];
 
-        int conditionType = getConditionType(e);
+        blockFilter = BlockFilter.newBlockFilter(this, eAnd, residual);
+        eResidual   = blockFilter == null ? eAnd
+                                          : residual[0];
 
-        if (conditionType == CONDITION_NONE) {
+        if (filterIndex.getVisibleColumns() > 1 && eStart != null
+                && eAnd != null && eStart.exprType == Expression.EQUAL) {
+            boolean[]    check    = filterTable.getNewColumnCheckList();
+            Expression[] expr     = new Expression[check.length];
+            int          colindex = eStart.getArg().getColumnNr();
 
-            // not a condition expression
-            return;
-        }
+            check[colindex] = true;
+            expr[colindex]  = eStart.getArg2();
 
-// fredt@users 20030813 - patch 1.7.2 - fix for column comparison within same table bugs #572075 and 722443
-        if (e1.getFilter() == this && e2.getFilter() == this) {
-            conditionType = CONDITION_UNORDERED;
-        } else if (e1.getFilter() == this) {
-            if (!e.isInJoin && isOuterJoin) {
+            eAnd.getEquiJoinColumns(this, check, expr);
 
-                // do not use a where condition on the second table in outer joins
-                return;
+            if (ArrayUtil.containsAllTrueElements(check,
+                                                  filterIndex.colCheck)) {
+                isMultiFindFirst     = true;
+                findFirstExpressions = expr;
             }
+        }
 
-            // ok include this
-        } else if ((e2.getFilter() == this)
-                   && (conditionType != CONDITION_UNORDERED)) {
-
-            // swap and try again to allow index usage
-            e.swapCondition();
-            setCondition(session, e);
+        setRangeConditions();
+        setBitmapConditions(session);
+        setZoneConditions();
+    }
 
-            return;
-        } else if (e1.outerFilter == this) {
+    /**
+     * Sets rangePrefix to the values of the leading columns of filterIndex
+     * that have an equality condition, and rangeLow and rangeHigh to the
+     * conditions on the next column, so that the index can be read from
+     * either end of the range. When the prefix has more than one column,
+     * or is followed by a range, the seek replaces the one on the first
+     * column and the conditions also remain in eAnd.
+     */
+    private void setRangeConditions() {
 
-            // fredt - this test is last to allow swapping the terms above
-            conditionType = CONDITION_OUTER;
-        } else {
+        if (eStart == null) {
+            if (eEnd != null) {
+                rangePrefix = new Expression[0];
+                rangeHigh   = eEnd;
+            }
 
-            // unrelated: don't include
             return;
         }
 
-//        Trace.doAssert(e1.getFilter() == this, "setCondition");
-        if (!e2.isResolved()) {
+        if (eStart.exprType == Expression.IS_NULL) {
             return;
         }
 
-        // fredt - condition defined in outer but not this one
-        if (e1.outerFilter != null && e1.outerFilter != this) {
+        if (eStart.exprType != Expression.EQUAL) {
+            rangePrefix = new Expression[0];
+            rangeLow    = eStart;
+            rangeHigh   = eEnd;
+
             return;
         }
 
-        if (conditionType == CONDITION_UNORDERED) {
-            addAndCondition(e);
+        HsqlArrayList list = new HsqlArrayList();
 
-            return;
-        }
+        collectConjuncts(eAnd, list);
 
-        if (conditionType == CONDITION_OUTER) {
-            addAndCondition(e);
+        int[]         cols   = filterIndex.getColumns();
+        HsqlArrayList prefix = new HsqlArrayList();
 
-            return;
-        }
+        prefix.add(eStart.getArg2());
 
-        int   i     = e1.getColumnNr();
-        Index index = filterTable.getIndexForColumn(session, i);
+        while (prefix.size() < cols.length) {
+            Expression e = findRangeCondition(list, cols[prefix.size()],
+                                              Expression.EQUAL);
 
-        if (index == null || (filterIndex != index && filterIndex != null)) {
-            addAndCondition(e);
+            if (e == null) {
+                break;
+            }
 
-            return;
+            prefix.add(e.getArg2());
         }
 
-        filterIndex = index;
+        rangePrefix = new Expression[prefix.size()];
 
-        switch (conditionType) {
+        prefix.toArray(rangePrefix);
 
-            case CONDITION_START_END : {
+        if (rangePrefix.length < cols.length) {
+            int column = cols[rangePrefix.length];
 
-                // candidate for both start and end
-                if ((eStart != null) || (eEnd != null)) {
-                    addAndCondition(e);
+            rangeLow = findRangeCondition(list, column,
+                                          Expression.BIGGER_EQUAL);
 
-                    return;
-                }
+            if (rangeLow == null) {
+                rangeLow = findRangeCondition(list, column,
+                                              Expression.BIGGER);
+            }
 
-                eStart = new Expression(e);
-                eEnd   = eStart;
+            rangeHigh = findRangeCondition(list, column,
+                                           Expression.SMALLER_EQUAL);
 
-                break;
+            if (rangeHigh == null) {
+                rangeHigh = findRangeCondition(list, column,
+                                               Expression.SMALLER);
             }
-            case CONDITION_START : {
+        }
 
-                // candidate for start
-                if (eStart != null) {
-                    addAndCondition(e);
+        isRangeSeek = !isMultiFindFirst
+                      && (rangePrefix.length > 1 || rangeLow != null
+                          || rangeHigh != null);
+    }
 
-                    return;
-                }
+    /**
+     * Returns the first condition in the list that compares the column of
+     * this filter with a constant, a parameter or a column of another
+     * table with the given condition type, or null if there is none.
+     */
+    private Expression findRangeCondition(HsqlArrayList list, int column,
+                                          int type) {
 
-                eStart = new Expression(e);
+        for (int i = 0; i < list.size(); i++) {
+            Expression e  = (Expression) list.get(i);
+            Expression e1 = e.getArg();
+            Expression e2 = e.getArg2();
 
-                break;
+            if (e.getType() != type || e1.getType() != Expression.COLUMN
+                    || e1.getFilter() != this || e1.getColumnNr() != column) {
+                continue;
             }
-            case CONDITION_END : {
-
-                // candidate for end
-                if (eEnd != null) {
-                    addAndCondition(e);
-
-                    return;
-                }
 
-                eEnd = new Expression(e);
+            if (type != Expression.EQUAL
+                    && e2.getDataType() != e1.getDataType()) {
+                continue;
+            }
 
-                break;
+            if (isSeekValue(e2)) {
+                return e;
             }
         }
 
-        e.setTrue();
+        return null;
     }
 
     /**
-     * Finds the first row in the table (using an index if there is one) and
-     * checks it against the eEnd (range) and eAnd (other conditions)
-     * Expression objects. (fredt)
-     *
-     * @return true if first row was found, else false
+     * Returns true if the value of the expression is known when this
+     * filter seeks in an index.
      */
-    boolean findFirst(Session session) throws HsqlException {
+    private boolean isSeekValue(Expression e) {
 
-        nonJoinIsNull  = false;
-        isCurrentOuter = false;
+        return e.isParam() || e.isFixedConstant()
+               || (e.getType() == Expression.COLUMN && e.getFilter() != this
+                   && e.isResolved());
+    }
 
-        if (filterIndex == null) {
-            filterIndex = filterTable.getPrimaryIndex();
-        }
+    /**
+     * Assigns an OR condition, where each alternative has a condition on a
+     * column of this filter that can be used to seek in an index, to be
+     * used as the union of the rows found with each index. The condition
+     * is moved to eAnd to be checked for each row.
+     */
+    private boolean setOrCondition(Session session,
+                                   Expression e) throws HsqlException {
 
-        if (isMultiFindFirst) {
-            boolean convertible = true;
-            int[]   types       = filterTable.getColumnTypes();
+        if (eOr != null || isOuterJoin || e.outerFilter != null
+                ||!isResolvedCondition(e)) {
+            return false;
+        }
 
-            currentJoinData = filterTable.getEmptyRowData();
+        HsqlArrayList list = new HsqlArrayList();
 
-            for (int i = 0; i < findFirstExpressions.length; i++) {
-                Expression e = findFirstExpressions[i];
+        if (!addMergeConditions(session, e, list)) {
+            return false;
+        }
 
-                if (e != null) {
-                    Object value = e.getValue(session);
+        mergeConditions = new Expression[list.size()];
+        mergeIndexes    = new Index[list.size()];
 
-                    if (Column.compareToTypeRange(value, types[i]) != 0) {
-                        convertible = false;
+        list.toArray(mergeConditions);
 
-                        break;
-                    }
+        for (int i = 0; i < mergeConditions.length; i++) {
+            mergeIndexes[i] = getIndexForColumn(session,
+                    mergeConditions[i].getArg().getColumnNr());
+        }
 
-                    value = Column.convertObject(value, types[i]);
-                    currentJoinData[i] = e.getValue(session, types[i]);
-                }
-            }
+        eOr = addAndCondition(e);
 
-            it = convertible
-                 ? filterIndex.findFirstRow(session, currentJoinData)
-                 : filterIndex.emptyIterator();
+        return true;
+    }
 
-            if (!it.hasNext()) {
-                ArrayUtil.clearArray(ArrayUtil.CLASS_CODE_OBJECT,
-                                     currentJoinData, 0,
-                                     currentJoinData.length);
-            }
-        } else if (eStart == null) {
-            it = eEnd == null ? filterIndex.firstRow(session)
-                              : filterIndex.findFirstRowNotNull(session);
-        } else {
-            Object value      = eStart.getArg2().getValue(session);
-            int    valuetype  = eStart.getArg2().getDataType();
-            int    targettype = eStart.getArg().getDataType();
+    /**
+     * Adds to the list a condition for each alternative of the OR
+     * condition. For an alternative that is an AND condition, one of its
+     * terms is used. Returns false if an alternative has no such condition.
+     */
+    private boolean addMergeConditions(Session session, Expression e,
+                                       HsqlArrayList list)
+                                       throws HsqlException {
 
-            it = getFirstIterator(session, eStart.getType(), value,
-                                  valuetype, filterIndex, targettype);
+        if (e.getType() == Expression.OR) {
+            return addMergeConditions(session, e.getArg(), list)
+                   && addMergeConditions(session, e.getArg2(), list);
         }
 
-        while (true) {
-            currentRow = it.next();
+        HsqlArrayList conjuncts = new HsqlArrayList();
 
-            if (currentRow == null) {
-                break;
-            }
+        collectConjuncts(e, conjuncts);
 
-            currentData = currentRow.getData();
+        for (int i = 0; i < conjuncts.size(); i++) {
+            Expression c = (Expression) conjuncts.get(i);
 
-            if (!(eEnd == null || eEnd.testCondition(session))) {
-                break;
-            }
+            if (isMergeCondition(session, c)) {
+                list.add(c);
 
-            if (eAnd == null || eAnd.testCondition(session)) {
                 return true;
             }
         }
 
-        currentRow  = null;
-        currentData = emptyData;
-
         return false;
     }
 
-    static RowIterator getFirstIterator(Session session, int eType,
-                                        Object value, int valueType,
-                                        Index index,
-                                        int targetType) throws HsqlException {
+    /**
+     * Returns true if the condition compares a column of this filter that
+     * is the first column of an index with a value known at seek time.
+     */
+    private boolean isMergeCondition(Session session,
+                                     Expression e) throws HsqlException {
 
-        RowIterator it;
-        int         range = 0;
+        Expression e1 = e.getArg();
+        Expression e2 = e.getArg2();
 
-        if (targetType != valueType) {
-            range = Column.compareToTypeRange(value, targetType);
+        if (e1 == null || e1.getType() != Expression.COLUMN
+                || e1.getFilter() != this) {
+            return false;
         }
 
-        if (range == 0) {
-            value = Column.convertObject(value, targetType);
-            it    = index.findFirstRow(session, value, eType);
-        } else {
-            switch (eType) {
+        switch (e.getType()) {
 
-                case Expression.BIGGER_EQUAL :
-                case Expression.BIGGER :
-                    if (range < 0) {
-                        it = index.findFirstRowNotNull(session);
+            case Expression.EQUAL :
+            case Expression.IS_NULL :
+                if (!isSeekValue(e2)) {
+                    return false;
+                }
+                break;
 
-                        break;
+            case Expression.BIGGER :
+            case Expression.BIGGER_EQUAL :
+            case Expression.SMALLER :
+            case Expression.SMALLER_EQUAL :
+                if (e2.getDataType() != e1.getDataType()
+                        ||!isSeekValue(e2)) {
+                    return false;
+                }
+                break;
+
+            case Expression.IN : {
+                if (e2.getType() != Expression.VALUELIST
+                        || e2.getDataType() != e1.getDataType()) {
+                    return false;
+                }
+
+                Expression[] values = e2.valueList;
+
+                for (int i = 0; i < values.length; i++) {
+                    if (!values[i].isParam() &&!values[i].isFixedConstant()) {
+                        return false;
                     }
-                default :
-                    it = index.emptyIterator();
+                }
+
+                break;
             }
+            default :
+                return false;
         }
 
-        return it;
+        return getIndexForColumn(session, e1.getColumnNr())
+               != null;
     }
 
     /**
-     * Advances to the next available value. <p>
-     *
-     * @return true if a next value is available upon exit
-     *
-     * @throws HsqlException if a database access error occurs
+     * Returns true if the condition consists only of logical, comparison
+     * and arithmetic operations on values and on columns whose values are
+     * known when this filter is read.
      */
-    boolean next(Session session) throws HsqlException {
+    private boolean isResolvedCondition(Expression e) {
+
+        if (e == null) {
+            return true;
+        }
+
+        switch (e.getType()) {
+
+            case Expression.VALUE :
+                return true;
+
+            case Expression.COLUMN :
+                return e.getFilter() == this || e.isResolved();
+
+            case Expression.VALUELIST : {
+                Expression[] values = e.valueList;
+
+                for (int i = 0; i < values.length; i++) {
+                    if (!isResolvedCondition(values[i])) {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+            case Expression.AND :
+            case Expression.OR :
+            case Expression.NOT :
+            case Expression.EQUAL :
+            case Expression.NOT_EQUAL :
+            case Expression.BIGGER :
+            case Expression.BIGGER_EQUAL :
+            case Expression.SMALLER :
+            case Expression.SMALLER_EQUAL :
+            case Expression.IS_NULL :
+            case Expression.LIKE :
+            case Expression.IN :
+            case Expression.NEGATE :
+            case Expression.ADD :
+            case Expression.SUBTRACT :
+            case Expression.MULTIPLY :
+            case Expression.DIVIDE :
+            case Expression.CONCAT :
+                return isResolvedCondition(e.getArg())
+                       && isResolvedCondition(e.getArg2());
+
+            default :
+                return false;
+        }
+    }
+
+    /**
+     * When the filter would read all the rows of the table, assigns the
+     * conditions in eAnd that the bitmap indexes of the table can evaluate
+     * to eBitmap, so that only the rows in the combined bitmap are read.
+     * The conditions remain in eAnd.
+     */
+    private void setBitmapConditions(Session session) {
+
+        if (filterTable.bitmapIndexes == null ||!isFullScan()) {
+            return;
+        }
+
+        HsqlArrayList list = new HsqlArrayList();
+
+        collectConjuncts(eAnd, list);
+
+        isBitmapExact = true;
+
+        for (int i = 0; i < list.size(); i++) {
+            Expression e = (Expression) list.get(i);
+
+            if (!isBitmapCondition(session, e)) {
+                isBitmapExact = false;
+
+                continue;
+            }
+
+            eBitmap = eBitmap == null ? e
+                                      : new Expression(Expression.AND,
+                                      eBitmap, e);
+        }
+
+        isBitmapExact &= eBitmap != null;
+    }
+
+    /**
+     * For a full scan of the primary index of a CACHED table with a zone
+     * map, assigns the comparisons in eAnd between a zone map column of
+     * this filter and a value of the same type, which are used to skip the
+     * zones that cannot contain a matching row. The conditions remain in
+     * eAnd.
+     */
+    private void setZoneConditions() {
+
+        int[] columns = filterTable.getZoneMapColumns();
+
+        if (columns == null ||!filterTable.isCached() ||!isFullScan()
+                || filterIndex != filterTable.getPrimaryIndex()) {
+            return;
+        }
+
+        HsqlArrayList list  = new HsqlArrayList();
+        HsqlArrayList found = new HsqlArrayList();
+
+        collectConjuncts(eAnd, list);
+
+        for (int i = 0; i < list.size(); i++) {
+            Expression e = (Expression) list.get(i);
+
+            switch (e.getType()) {
+
+                case Expression.EQUAL :
+                case Expression.BIGGER :
+                case Expression.BIGGER_EQUAL :
+                case Expression.SMALLER :
+                case Expression.SMALLER_EQUAL :
+                    break;
+
+                default :
+                    continue;
+            }
+
+            if (isZoneCondition(e.getArg(), e.getArg2(), columns)
+                    || isZoneCondition(e.getArg2(), e.getArg(), columns)) {
+                found.add(e);
+            }
+        }
+
+        int count = found.size();
+
+        if (count == 0) {
+            return;
+        }
+
+        zoneColumns = new int[count];
+        zoneOpTypes = new int[count];
+        zoneValues  = new Expression[count];
+
+        for (int i = 0; i < count; i++) {
+            Expression e      = (Expression) found.get(i);
+            boolean    isLeft = isZoneCondition(e.getArg(), e.getArg2(),
+                                                columns);
+            Expression column = isLeft ? e.getArg()
+                                       : e.getArg2();
+
+            zoneColumns[i] = column.getColumnNr();
+            zoneOpTypes[i] = isLeft ? e.getType()
+                                    : getReversedType(e.getType());
+            zoneValues[i]  = isLeft ? e.getArg2()
+                                    : e.getArg();
+            eZone = eZone == null ? e
+                                  : new Expression(Expression.AND, eZone,
+                                  e);
+        }
+    }
+
+    private boolean isZoneCondition(Expression e1, Expression e2,
+                                    int[] columns) {
+
+        return e1.getType() == Expression.COLUMN && e1.getFilter() == this
+               && (e1.outerFilter == null || e1.outerFilter == this)
+               && ArrayUtil.find(columns, e1.getColumnNr()) != -1
+               && e2.getDataType() == e1.getDataType() && isSeekValue(e2);
+    }
+
+    /**
+     * Returns the comparison type for the operands in reverse order.
+     */
+    private static int getReversedType(int type) {
+
+        switch (type) {
+
+            case Expression.BIGGER :
+                return Expression.SMALLER;
+
+            case Expression.BIGGER_EQUAL :
+                return Expression.SMALLER_EQUAL;
+
+            case Expression.SMALLER :
+                return Expression.BIGGER;
+
+            case Expression.SMALLER_EQUAL :
+                return Expression.BIGGER_EQUAL;
+
+            default :
+                return type;
+        }
+    }
+
+    /**
+     * Returns an iterator over the rows of the zones of the table that can
+     * contain rows matching the zone conditions.
+     */
+    private RowIterator getZoneIterator(Session session)
+    throws HsqlException {
+
+        ZoneMap map = filterTable.getZoneMap(session);
+
+        if (map == null) {
+            return isDescending ? filterIndex.lastRowIterator(session)
+                                : filterIndex.firstRow(session);
+        }
+
+        Object[] values = new Object[zoneValues.length];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = zoneValues[i].getValue(session);
+        }
+
+        return map.getIterator(session, zoneColumns, zoneOpTypes, values,
+                               isDescending);
+    }
+
+    /**
+     * Returns true if the condition is an equality, IN value list or IS
+     * NULL condition on a column of this filter that has a bitmap index,
+     * or an AND or OR of such conditions. The values must be of the type
+     * of the column, so the bitmaps give exactly the rows that satisfy the
+     * condition.
+     */
+    private boolean isBitmapCondition(Session session, Expression e) {
+
+        switch (e.getType()) {
+
+            case Expression.AND :
+            case Expression.OR :
+                return isBitmapCondition(session, e.getArg())
+                       && isBitmapCondition(session, e.getArg2());
+
+            case Expression.EQUAL :
+            case Expression.IS_NULL :
+            case Expression.IN :
+                break;
+
+            default :
+                return false;
+        }
+
+        Expression e1 = e.getArg();
+        Expression e2 = e.getArg2();
+
+        if (e1.getType() != Expression.COLUMN || e1.getFilter() != this
+                || (e1.outerFilter != null && e1.outerFilter != this)) {
+            return false;
+        }
+
+        if (filterTable.getBitmapIndexForColumn(e1.getColumnNr()) == null
+                ||!BitmapIndex.isCollationExact(session,
+                    e1.getDataType())) {
+            return false;
+        }
+
+        switch (e.getType()) {
+
+            case Expression.EQUAL :
+                return e2.getDataType() == e1.getDataType()
+                       && isSeekValue(e2);
+
+            case Expression.IN : {
+                if (e2.getType() != Expression.VALUELIST
+                        || e2.getDataType() != e1.getDataType()) {
+                    return false;
+                }
+
+                Expression[] values = e2.valueList;
+
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i].getDataType() != e1.getDataType()
+                            || (!values[i].isParam()
+                                &&!values[i].isFixedConstant())) {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+            default :
+                return true;
+        }
+    }
+
+    private void setCondition(Session session,
+                              Expression e) throws HsqlException {
+
+        int        type = e.getType();
+        Expression e1   = e.getArg();
+        Expression e2   = e.getArg2();
+
+        isAssigned = true;
+
+        if (type == Expression.AND) {
+            setCondition(session, e1);
+            setCondition(session, e2);
+
+            return;
+        }
+
+        if (type == Expression.OR && isOuterJoin && e.isInJoin
+                && e.outerFilter == this) {
+            addAndCondition(e);
+            e.setTrue();
+
+            return;
+        }
+
+        if (type == Expression.OR && setOrCondition(session, e)) {
+            return;
+        }
+
+        if (type == Expression.OR &&!isOuterJoin && e.outerFilter == null
+                && isBitmapCondition(session, e)) {
+            addAndCondition(e);
+
+            return;
+        }
+
+        if (type == Expression.IN && setInCondition(session, e)) {
+            return;
+        }
+
+        if (type == Expression.LIKE && setLikeCondition(session, e)) {
+            return;
+        }
+
+        int conditionType = getConditionType(e);
+
+        if (conditionType == CONDITION_NONE) {
+
+            // not a condition expression
+            return;
+        }
+
+        if (setExpressionCondition(session, e, conditionType)) {
+            return;
+        }
+
+// fredt@users 20030813 - patch 1.7.2 - fix for column comparison within same table bugs #572075 and 722443
+        if (e1.getFilter() == this && e2.getFilter() == this) {
+            conditionType = CONDITION_UNORDERED;
+        } else if (e1.getFilter() == this) {
+            if (!e.isInJoin && isOuterJoin) {
+
+                // do not use a where condition on the second table in outer joins
+                return;
+            }
+
+            // ok include this
+        } else if ((e2.getFilter() == this)
+                   && (conditionType != CONDITION_UNORDERED)) {
+
+            // swap and try again to allow index usage
+            e.swapCondition();
+            setCondition(session, e);
+
+            return;
+        } else if (e1.outerFilter == this) {
+
+            // fredt - this test is last to allow swapping the terms above
+            conditionType = CONDITION_OUTER;
+        } else {
+
+            // unrelated: don't include
+            return;
+        }
+
+//        Trace.doAssert(e1.getFilter() == this, "setCondition");
+        if (!e2.isResolved()) {
+            return;
+        }
+
+        // fredt - condition defined in outer but not this one
+        if (e1.outerFilter != null && e1.outerFilter != this) {
+            return;
+        }
+
+        if (conditionType == CONDITION_UNORDERED) {
+            addAndCondition(e);
+
+            return;
+        }
+
+        if (conditionType == CONDITION_OUTER) {
+            addAndCondition(e);
+
+            return;
+        }
+
+        setIndexCondition(e, getIndexForColumn(session, e1.getColumnNr()),
+                          conditionType);
+    }
+
+    /**
+     * Assigns the condition to be used as the start or end condition of a
+     * seek in the index, or moves it to eAnd if it cannot be used.
+     */
+    private void setIndexCondition(Expression e, Index index,
+                                   int conditionType) {
+
+        if (index == null || (filterIndex != index && filterIndex != null)
+                || eIn != null || eLike != null) {
+            addAndCondition(e);
+
+            return;
+        }
+
+        filterIndex = index;
+
+        switch (conditionType) {
+
+            case CONDITION_START_END : {
+
+                // candidate for both start and end
+                if ((eStart != null) || (eEnd != null)) {
+                    addAndCondition(e);
+
+                    return;
+                }
+
+                eStart = new Expression(e);
+                eEnd   = eStart;
+
+                break;
+            }
+            case CONDITION_START : {
+
+                // candidate for start
+                if (eStart != null) {
+                    addAndCondition(e);
+
+                    return;
+                }
+
+                eStart = new Expression(e);
+
+                break;
+            }
+            case CONDITION_END : {
+
+                // candidate for end
+                if (eEnd != null) {
+                    addAndCondition(e);
+
+                    return;
+                }
+
+                eEnd = new Expression(e);
+
+                break;
+            }
+        }
+
+        e.setTrue();
+    }
+
+    /**
+     * Assigns a comparison between an expression that is the same as the
+     * expression of an expression index and a value that is known when
+     * this filter seeks in the index. Returns false if there is no such
+     * index.
+     */
+    private boolean setExpressionCondition(Session session, Expression e,
+                                           int conditionType)
+                                           throws HsqlException {
+
+        if (conditionType == CONDITION_UNORDERED
+                ||!filterTable.hasExpressionIndexes()
+                || e.outerFilter != (isOuterJoin ? this
+                                                 : null)
+                || (isOuterJoin &&!e.isInJoin)) {
+            return false;
+        }
+
+        Expression e1    = e.getArg();
+        Expression e2    = e.getArg2();
+        Index      index = getIndexForExpression(session, e1);
+
+        if (index == null || e2 == null ||!isSeekValue(e2)) {
+            index = getIndexForExpression(session, e2);
+
+            if (index == null ||!isSeekValue(e1)) {
+                return false;
+            }
+
+            e.swapCondition();
+
+            conditionType = getConditionType(e);
+        }
+
+        setIndexCondition(e, index, conditionType);
+
+        return true;
+    }
+
+    /**
+     * Returns an expression index whose expression is the same as the
+     * given expression on the columns of this filter, or null.
+     */
+    private Index getIndexForExpression(Session session,
+                                        Expression e) throws HsqlException {
+
+        if (e == null || e.getType() == Expression.COLUMN) {
+            return null;
+        }
+
+        Index[] indexes = filterTable.getIndexes();
+
+        for (int i = 0; i < indexes.length; i++) {
+            Index index = indexes[i];
+
+            if (index.isExpression() && isIndexUsable(index)
+                    && e.getDataType() == index.getColumnTypes()[0]
+                    && isSameCondition(session, e, index.getKeyFilter(),
+                                       index.getKeyExpression())) {
+                return index;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the index to use for a condition on the column. A partial
+     * index that holds all the rows that satisfy the query conditions is
+     * preferred, as it has fewer rows than the other indexes.
+     */
+    private Index getIndexForColumn(Session session, int column) {
+
+        if (partialIndexes != null) {
+            for (int i = 0; i < partialIndexes.length; i++) {
+                if (partialIndexes[i].getColumns()[0] == column
+                        &&!partialIndexes[i].isExpression()) {
+                    return partialIndexes[i];
+                }
+            }
+        }
+
+        return filterTable.getIndexForColumn(session, column);
+    }
+
+    /**
+     * Returns true if the index can be used to read the rows of this
+     * filter. A partial index can be used only if the query conditions
+     * imply its condition.
+     */
+    boolean isIndexUsable(Index index) {
+
+        if (!index.isPartial()) {
+            return true;
+        }
+
+        if (partialIndexes != null) {
+            for (int i = 0; i < partialIndexes.length; i++) {
+                if (partialIndexes[i] == index) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Sets partialIndexes to the partial indexes of the table whose
+     * condition is implied by the AND terms of the query condition, so
+     * that every row that satisfies the query condition is in the index.
+     * For the table of an outer join, only the conditions of the join are
+     * used.
+     */
+    private void setPartialIndexes(Session session,
+                                   Expression condition)
+                                   throws HsqlException {
+
+        if (!filterTable.hasPartialIndexes()) {
+            return;
+        }
+
+        HsqlArrayList list = new HsqlArrayList();
+
+        collectConjuncts(condition, list);
+
+        // the conditions of other outer joins do not exclude rows of this
+        // table, nor do other conditions when this table is outer joined
+        HsqlArrayList conditions = new HsqlArrayList();
+
+        for (int i = 0; i < list.size(); i++) {
+            Expression e = (Expression) list.get(i);
+
+            if (e.outerFilter == (isOuterJoin ? this
+                                              : null)) {
+                conditions.add(e);
+            }
+        }
+
+        Index[] indexes = filterTable.getIndexes();
+
+        list = new HsqlArrayList();
+
+        for (int i = 0; i < indexes.length; i++) {
+            if (indexes[i].isPartial()
+                    && isImplied(session, conditions, indexes[i],
+                                 indexes[i].getPredicate())) {
+                list.add(indexes[i]);
+            }
+        }
+
+        if (list.size() > 0) {
+            partialIndexes = new Index[list.size()];
+
+            list.toArray(partialIndexes);
+        }
+    }
+
+    /**
+     * Returns true if each AND term of the condition of the partial index
+     * is implied by one of the query conditions.
+     */
+    private boolean isImplied(Session session, HsqlArrayList conditions,
+                              Index index,
+                              Expression p) throws HsqlException {
+
+        if (p.getType() == Expression.AND) {
+            return isImplied(session, conditions, index, p.getArg())
+                   && isImplied(session, conditions, index, p.getArg2());
+        }
+
+        for (int i = 0; i < conditions.size(); i++) {
+            Expression c = (Expression) conditions.get(i);
+
+            if (implies(session, c, index, p)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns true if a row of this filter that satisfies the query
+     * condition c also satisfies the condition p of the partial index.
+     * Only conditions that are the same, and comparisons of the same
+     * column with constants of the type of the column, are recognised.
+     */
+    private boolean implies(Session session, Expression c, Index index,
+                            Expression p) throws HsqlException {
+
+        switch (p.getType()) {
+
+            case Expression.AND :
+                return implies(session, c, index, p.getArg())
+                       && implies(session, c, index, p.getArg2());
+
+            case Expression.OR :
+                if (implies(session, c, index, p.getArg())
+                        || implies(session, c, index, p.getArg2())) {
+                    return true;
+                }
+        }
+
+        switch (c.getType()) {
+
+            case Expression.AND :
+                return implies(session, c.getArg(), index, p)
+                       || implies(session, c.getArg2(), index, p);
+
+            case Expression.OR :
+                return implies(session, c.getArg(), index, p)
+                       && implies(session, c.getArg2(), index, p);
+        }
+
+        if (isSameCondition(session, c, index.getPredicateFilter(), p)) {
+            return true;
+        }
+
+        Expression column = getComparedColumn(c);
+
+        if (column == null || column.getFilter() != this) {
+            return false;
+        }
+
+        // a comparison is never true when the column is null
+        if (p.getType() == Expression.NOT
+                && p.getArg().getType() == Expression.IS_NULL) {
+            return isSameCondition(session, column,
+                                   index.getPredicateFilter(),
+                                   p.getArg().getArg());
+        }
+
+        Expression pcolumn = getComparedColumn(p);
+
+        if (pcolumn == null || c.getType() == Expression.LIKE
+                || p.getType() == Expression.LIKE
+                ||!isSameCondition(session, column,
+                                   index.getPredicateFilter(), pcolumn)) {
+            return false;
+        }
+
+        int      type    = column.getDataType();
+        Object[] cvalues = getComparedValues(session, c, type);
+        Object[] pvalues = getComparedValues(session, p, type);
+
+        if (cvalues == null || pvalues == null) {
+            return false;
+        }
+
+        int ctype = getComparisonType(c);
+        int ptype = getComparisonType(p);
+
+        switch (ctype) {
+
+            case Expression.EQUAL :
+            case Expression.IN :
+                for (int i = 0; i < cvalues.length; i++) {
+                    if (!isTrue(session, cvalues[i], ptype, pvalues, type)) {
+                        return false;
+                    }
+                }
+
+                return true;
+
+            case Expression.NOT_EQUAL :
+                return ptype == Expression.NOT_EQUAL
+                       && compare(session, cvalues[0], pvalues[0], type)
+                          == 0;
+        }
+
+        if (ptype != Expression.NOT_EQUAL && ptype != ctype
+                && !(isLower(ptype) && isLower(ctype))
+                && !(isUpper(ptype) && isUpper(ctype))) {
+            return false;
+        }
+
+        int     cmp       = compare(session, cvalues[0], pvalues[0], type);
+        boolean inclusive = ctype == Expression.BIGGER_EQUAL
+                            || ctype == Expression.SMALLER_EQUAL;
+
+        if (ptype == Expression.NOT_EQUAL) {
+
+            // the range excludes the value
+            return isLower(ctype) ? cmp > 0 || (cmp == 0 &&!inclusive)
+                                  : cmp < 0 || (cmp == 0 &&!inclusive);
+        }
+
+        boolean pinclusive = ptype == Expression.BIGGER_EQUAL
+                             || ptype == Expression.SMALLER_EQUAL;
+        boolean within     = isLower(ctype) ? cmp > 0
+                                            : cmp < 0;
+
+        return within || (cmp == 0 && (pinclusive ||!inclusive));
+    }
+
+    private static boolean isLower(int type) {
+        return type == Expression.BIGGER || type == Expression.BIGGER_EQUAL;
+    }
+
+    private static boolean isUpper(int type) {
+        return type == Expression.SMALLER
+               || type == Expression.SMALLER_EQUAL;
+    }
+
+    /**
+     * Returns true if the value satisfies the comparison with the values
+     * of the condition of the partial index.
+     */
+    private static boolean isTrue(Session session, Object value, int type,
+                                  Object[] values, int dataType) {
+
+        if (type == Expression.IN) {
+            for (int i = 0; i < values.length; i++) {
+                if (compare(session, value, values[i], dataType) == 0) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        int cmp = compare(session, value, values[0], dataType);
+
+        switch (type) {
+
+            case Expression.EQUAL :
+                return cmp == 0;
+
+            case Expression.NOT_EQUAL :
+                return cmp != 0;
+
+            case Expression.BIGGER :
+                return cmp > 0;
+
+            case Expression.BIGGER_EQUAL :
+                return cmp >= 0;
+
+            case Expression.SMALLER :
+                return cmp < 0;
+
+            case Expression.SMALLER_EQUAL :
+                return cmp <= 0;
+
+            default :
+                return false;
+        }
+    }
+
+    private static int compare(Session session, Object a, Object b,
+                               int type) {
+        return Column.compare(session.database.collation, a, b, type);
+    }
+
+    /**
+     * Returns the column of a comparison, IN or LIKE condition, with a
+     * column on either side of a comparison, or null.
+     */
+    private static Expression getComparedColumn(Expression e) {
+
+        switch (e.getType()) {
+
+            case Expression.EQUAL :
+            case Expression.NOT_EQUAL :
+            case Expression.BIGGER :
+            case Expression.BIGGER_EQUAL :
+            case Expression.SMALLER :
+            case Expression.SMALLER_EQUAL :
+                if (e.getArg().getType() == Expression.COLUMN) {
+                    return e.getArg();
+                }
+
+                return e.getArg2().getType() == Expression.COLUMN
+                       ? e.getArg2()
+                       : null;
+
+            case Expression.IN :
+            case Expression.LIKE :
+                return e.getArg().getType() == Expression.COLUMN
+                       ? e.getArg()
+                       : null;
+
+            default :
+                return null;
+        }
+    }
+
+    /**
+     * Returns the comparison type of the condition, as if the column was
+     * on the left side.
+     */
+    private static int getComparisonType(Expression e) {
+
+        int type = e.getType();
+
+        if (e.getArg().getType() == Expression.COLUMN) {
+            return type;
+        }
+
+        switch (type) {
+
+            case Expression.BIGGER :
+                return Expression.SMALLER;
+
+            case Expression.BIGGER_EQUAL :
+                return Expression.SMALLER_EQUAL;
+
+            case Expression.SMALLER :
+                return Expression.BIGGER;
+
+            case Expression.SMALLER_EQUAL :
+                return Expression.BIGGER_EQUAL;
+
+            default :
+                return type;
+        }
+    }
+
+    /**
+     * Returns the values the column is compared with, or null if they are
+     * not all constants of the given type that are not null.
+     */
+    private static Object[] getComparedValues(Session session, Expression e,
+            int type) throws HsqlException {
+
+        Expression   other = e.getArg().getType() == Expression.COLUMN
+                             ? e.getArg2()
+                             : e.getArg();
+        Expression[] list;
+
+        if (e.getType() == Expression.IN) {
+            if (other.getType() != Expression.VALUELIST) {
+                return null;
+            }
+
+            list = other.valueList;
+        } else {
+            list = new Expression[]{ other };
+        }
+
+        Object[] values = new Object[list.length];
+
+        for (int i = 0; i < list.length; i++) {
+            if (list[i].getType() != Expression.VALUE || list[i].isParam()
+                    || list[i].getDataType() != type) {
+                return null;
+            }
+
+            values[i] = list[i].getValue(session);
+
+            if (values[i] == null) {
+                return null;
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Returns true if the query condition or expression c and the condition
+     * or expression p of a partial or expression index are the same, with
+     * columns of this filter in c in place of the columns of the filter
+     * that p is resolved with.
+     */
+    private boolean isSameCondition(Session session, Expression c,
+                                    TableFilter filter,
+                                    Expression p) throws HsqlException {
+
+        if (c == null || p == null) {
+            return c == p;
+        }
+
+        if (c.getType() != p.getType()) {
+            return false;
+        }
+
+        switch (c.getType()) {
+
+            case Expression.COLUMN :
+                return c.getFilter() == this && p.getFilter() == filter
+                       && c.getColumnNr() == p.getColumnNr();
+
+            case Expression.VALUE : {
+                if (c.isParam() || p.isParam()
+                        || c.getDataType() != p.getDataType()) {
+                    return false;
+                }
+
+                Object a = c.getValue(session);
+                Object b = p.getValue(session);
+
+                if (a == null || b == null) {
+                    return a == b;
+                }
+
+                return compare(session, a, b, c.getDataType()) == 0;
+            }
+            case Expression.VALUELIST : {
+                Expression[] clist = c.valueList;
+                Expression[] plist = p.valueList;
+
+                if (clist.length != plist.length) {
+                    return false;
+                }
+
+                for (int i = 0; i < clist.length; i++) {
+                    if (!isSameCondition(session, clist[i], filter,
+                                         plist[i])) {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+            case Expression.FUNCTION : {
+                if (!c.function.isSameMethod(p.function)
+                        ||!Index.isKeyExpression(c)) {
+                    return false;
+                }
+
+                Expression[] cargs = c.function.eArg;
+                Expression[] pargs = p.function.eArg;
+
+                for (int i = 0; i < cargs.length; i++) {
+                    if (!isSameCondition(session, cargs[i], filter,
+                                         pargs[i])) {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+            case Expression.CONVERT :
+                if (c.getDataType() != p.getDataType()
+                        ||!Index.isKeyExpression(c)) {
+                    return false;
+                }
+
+                return isSameCondition(session, c.getArg(), filter,
+                                       p.getArg());
+
+            case Expression.EQUAL :
+                if (isSameCondition(session, c.getArg(), filter, p.getArg2())
+                        && isSameCondition(session, c.getArg2(), filter,
+                                           p.getArg())) {
+                    return true;
+                }
+                break;
+
+            case Expression.LIKE :
+                return false;
+        }
+
+        if (!Index.isPredicateCondition(c)) {
+            return false;
+        }
+
+        return isSameCondition(session, c.getArg(), filter, p.getArg())
+               && isSameCondition(session, c.getArg2(), filter, p.getArg2());
+    }
+
+    /**
+     * Returns true if the column of this filter in the condition is the
+     * first column of an index that can be used for the condition. Sets
+     * filterIndex to the index.
+     */
+    private boolean setSeekIndex(Session session, Expression e) {
+
+        Expression e1 = e.getArg();
+
+        if (e1.getType() != Expression.COLUMN || e1.getFilter() != this
+                || (isOuterJoin &&!e.isInJoin)
+                || (e1.outerFilter != null && e1.outerFilter != this)) {
+            return false;
+        }
+
+        if (eStart != null || eEnd != null || eIn != null || eLike != null) {
+            return false;
+        }
+
+        Index index = getIndexForColumn(session,
+            e1.getColumnNr());
+
+        if (index == null || (filterIndex != index && filterIndex != null)) {
+            return false;
+        }
+
+        filterIndex = index;
+
+        return true;
+    }
+
+    /**
+     * Assigns <code>column IN (value, ...)</code>, where each value is a
+     * constant or a parameter, to be used as a sequence of index seeks,
+     * one for each distinct value.
+     */
+    private boolean setInCondition(Session session, Expression e) {
+
+        Expression e1 = e.getArg();
+        Expression e2 = e.getArg2();
+
+        if (e2.getType() != Expression.VALUELIST
+                || e2.getDataType() != e1.getDataType()) {
+            return false;
+        }
+
+        Expression[] list = e2.valueList;
+
+        for (int i = 0; i < list.length; i++) {
+            if (!list[i].isParam() &&!list[i].isFixedConstant()) {
+                return false;
+            }
+        }
+
+        if (!setSeekIndex(session, e)) {
+            return false;
+        }
+
+        eIn = new Expression(e);
+
+        e.setTrue();
+
+        return true;
+    }
+
+    /**
+     * Assigns <code>column LIKE pattern</code>, where the pattern is a
+     * parameter or a column of another table, to seek the range of values
+     * that start with the fixed prefix of the pattern when it is known.
+     * The condition remains in eAnd to be checked for each row.
+     */
+    private boolean setLikeCondition(Session session, Expression e) {
+
+        Expression e2 = e.getArg2();
+
+        if (!e.isLikeRangeCandidate()) {
+            return false;
+        }
+
+        if (!e2.isParam()
+                && (e2.getType() != Expression.COLUMN
+                    || e2.getFilter() == this ||!e2.isResolved())) {
+            return false;
+        }
+
+        if (!setSeekIndex(session, e)) {
+            return false;
+        }
+
+        eLike = addAndCondition(e);
+
+        return true;
+    }
+
+    /**
+     * Returns an iterator over the rows with values in the IN list, in
+     * index order.
+     */
+    private RowIterator getInIterator(Session session, Expression in,
+                                      Index index,
+                                      boolean reverse) throws HsqlException {
+
+        Expression[] list   = in.getArg2().valueList;
+        int          type   = in.getArg().getDataType();
+        Object[]     values = new Object[list.length];
+        int          count  = 0;
+
+        for (int i = 0; i < list.length; i++) {
+            Object value;
+
+            try {
+                value = list[i].getValue(session, type);
+            } catch (HsqlException e) {
+                continue;
+            }
+
+            if (value != null) {
+                values[count++] = value;
+            }
+        }
+
+        final Collation collation = session.database.collation;
+        final int       sortType  = type;
+
+        Sort.sort(values, new ObjectComparator() {
+
+            public int compare(Object a, Object b) {
+                return Column.compare(collation, a, b, sortType);
+            }
+        }, 0, count - 1);
+
+        int distinct = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0
+                    || Column.compare(collation, values[distinct - 1],
+                                      values[i], type) != 0) {
+                values[distinct++] = values[i];
+            }
+        }
+
+        values = (Object[]) ArrayUtil.resizeArray(values, distinct);
+
+        return new IndexRangeIterator(session, index, new Object[0], values,
+                                      true, values, true, reverse);
+    }
+
+    /**
+     * Returns an iterator over the rows with values that start with the
+     * fixed prefix of the LIKE pattern, or a full index iterator if there
+     * is no prefix.
+     */
+    private RowIterator getLikeIterator(Session session)
+    throws HsqlException {
+
+        Object[] range = eLike.getLikeRange(session);
+
+        if (range == null) {
+            return isDescending ? filterIndex.lastRowIterator(session)
+                                : filterIndex.firstRow(session);
+        }
+
+        return new IndexRangeIterator(session, filterIndex, new Object[0],
+                                      new Object[]{ range[0] }, true,
+                                      new Object[]{ range[1] }, false,
+                                      isDescending);
+    }
+
+    /**
+     * Returns an iterator over the rows that match the values of
+     * rangePrefix and the range conditions on the next column, in index
+     * order or in reverse index order if isDescending.
+     */
+    private RowIterator getRangeIterator(Session session)
+    throws HsqlException {
+
+        int[]    types  = filterIndex.getColumnTypes();
+        Object[] prefix = new Object[rangePrefix.length];
+
+        for (int i = 0; i < prefix.length; i++) {
+            Object value = rangePrefix[i].getValue(session);
+
+            if (value == null
+                    || Column.compareToTypeRange(value, types[i]) != 0) {
+                return filterIndex.emptyIterator();
+            }
+
+            prefix[i] = Column.convertObject(value, types[i]);
+        }
+
+        return getRangeIterator(session, filterIndex, prefix, rangeLow,
+                                rangeHigh, isDescending);
+    }
+
+    /**
+     * Returns an iterator over the rows of the index that match the values
+     * of the prefix and the range conditions on the next column.
+     */
+    private static RowIterator getRangeIterator(Session session,
+            Index index, Object[] prefix, Expression rangeLow,
+            Expression rangeHigh, boolean reverse) throws HsqlException {
+
+        if (rangeLow == null && rangeHigh == null) {
+            return new IndexRangeIterator(session, index, prefix, null, true,
+                                          null, true, reverse);
+        }
+
+        int      type       = index.getColumnTypes()[prefix.length];
+        Object[] lowValues  = new Object[1];
+        Object[] highValues = new Object[1];
+
+        if (rangeLow != null) {
+            Object value = rangeLow.getArg2().getValue(session);
+            int    range = getTypeRange(value, rangeLow, type);
+
+            if (value == null || range > 0) {
+                return index.emptyIterator();
+            }
+
+            if (range == 0) {
+                lowValues[0] = Column.convertObject(value, type);
+            }
+        }
+
+        if (rangeHigh != null) {
+            Object value = rangeHigh.getArg2().getValue(session);
+            int    range = getTypeRange(value, rangeHigh, type);
+
+            if (value == null || range < 0) {
+                return index.emptyIterator();
+            }
+
+            if (range == 0) {
+                highValues[0] = Column.convertObject(value, type);
+            }
+        }
+
+        return new IndexRangeIterator(
+            session, index, prefix, lowValues,
+            rangeLow == null || rangeLow.getType() != Expression.BIGGER,
+            highValues,
+            rangeHigh == null || rangeHigh.getType() != Expression.SMALLER,
+            reverse);
+    }
+
+    /**
+     * Returns an iterator over the union of the rows found in each index
+     * with the condition for the index.
+     */
+    private RowIterator getMergeIterator(Session session)
+    throws HsqlException {
+
+        RowIterator[] iterators = new RowIterator[mergeConditions.length];
+
+        for (int i = 0; i < iterators.length; i++) {
+            Expression e     = mergeConditions[i];
+            Index      index = mergeIndexes[i];
+
+            switch (e.getType()) {
+
+                case Expression.IN :
+                    iterators[i] = getInIterator(session, e, index, false);
+                    break;
+
+                case Expression.IS_NULL :
+                    iterators[i] = new IndexRangeIterator(session, index,
+                                                          new Object[1],
+                                                          null, true, null,
+                                                          true, false);
+                    break;
+
+                case Expression.EQUAL : {
+                    int    type  = e.getArg().getDataType();
+                    Object value = e.getArg2().getValue(session);
+
+                    if (value == null
+                            || Column.compareToTypeRange(value, type) != 0) {
+                        iterators[i] = index.emptyIterator();
+                    } else {
+                        iterators[i] = new IndexRangeIterator(session, index,
+                                new Object[]{
+                                    Column.convertObject(value, type) }, null,
+                                        true, null, true, false);
+                    }
+
+                    break;
+                }
+                case Expression.BIGGER :
+                case Expression.BIGGER_EQUAL :
+                    iterators[i] = getRangeIterator(session, index,
+                                                    new Object[0], e, null,
+                                                    false);
+                    break;
+
+                default :
+                    iterators[i] = getRangeIterator(session, index,
+                                                    new Object[0], null, e,
+                                                    false);
+            }
+        }
+
+        return new IndexMergeIterator(filterTable, iterators);
+    }
+
+    /**
+     * Returns the positions of the rows that satisfy the condition, or
+     * null if a bitmap index that was used in the plan no longer exists.
+     */
+    private SparseBitMap getBitmap(Session session,
+                                   Expression e) throws HsqlException {
+
+        switch (e.getType()) {
+
+            case Expression.AND : {
+                SparseBitMap a = getBitmap(session, e.getArg());
+                SparseBitMap b = getBitmap(session, e.getArg2());
+
+                return a == null ? b
+                                 : b == null ? a
+                                             : SparseBitMap.and(a, b);
+            }
+            case Expression.OR : {
+                SparseBitMap a = getBitmap(session, e.getArg());
+                SparseBitMap b = getBitmap(session, e.getArg2());
+
+                return a == null || b == null ? null
+                                              : SparseBitMap.or(a, b);
+            }
+        }
+
+        Expression  e1    = e.getArg();
+        BitmapIndex index = filterTable.getBitmapIndexForColumn(
+            e1.getColumnNr());
+
+        if (index == null) {
+            return null;
+        }
+
+        filterTable.checkBitmapIndexes(session);
+
+        int type = e1.getDataType();
+
+        switch (e.getType()) {
+
+            case Expression.IS_NULL :
+                return index.getRows(null);
+
+            case Expression.IN : {
+                Expression[] list = e.getArg2().valueList;
+                SparseBitMap map  = new SparseBitMap();
+
+                for (int i = 0; i < list.length; i++) {
+                    Object value = list[i].getValue(session, type);
+
+                    if (value != null) {
+                        map = SparseBitMap.or(map, index.getRows(value));
+                    }
+                }
+
+                return map;
+            }
+            default : {
+                Object value = e.getArg2().getValue(session, type);
+
+                return value == null ? new SparseBitMap()
+                                     : index.getRows(value);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of rows that satisfy the conditions of the filter
+     * when they can all be evaluated with the bitmap indexes, otherwise -1.
+     */
+    int getBitmapCount(Session session) throws HsqlException {
+
+        if (!isBitmapExact || isOuterJoin) {
+            return -1;
+        }
+
+        SparseBitMap map = getBitmap(session, eBitmap);
+
+        return map == null ? -1
+                           : map.cardinality();
+    }
+
+    /**
+     * Returns -1 or 1 if the value of the condition is below or above the
+     * range of the column type, otherwise 0.
+     */
+    private static int getTypeRange(Object value, Expression e, int type) {
 
-        boolean result = false;
+        if (value == null || e.getArg2().getDataType() == type) {
+            return 0;
+        }
+
+        return Column.compareToTypeRange(value, type);
+    }
+
+    /**
+     * Finds the first row in the table (using an index if there is one) and
+     * checks it against the eEnd (range) and eAnd (other conditions)
+     * Expression objects. (fredt)
+     *
+     * @return true if first row was found, else false
+     */
+    boolean findFirst(Session session) throws HsqlException {
 
         nonJoinIsNull  = false;
         isCurrentOuter = false;
 
+        if (filterIndex == null) {
+            filterIndex = filterTable.getPrimaryIndex();
+        }
+
+        if (isMultiFindFirst &&!isDescending) {
+            boolean convertible = true;
+            int[]   types       = filterTable.getColumnTypes();
+
+            currentJoinData = filterTable.getEmptyRowData();
+
+            for (int i = 0; i < findFirstExpressions.length; i++) {
+                Expression e = findFirstExpressions[i];
+
+                if (e != null) {
+                    Object value = e.getValue(session);
+
+                    if (Column.compareToTypeRange(value, types[i]) != 0) {
+                        convertible = false;
+
+                        break;
+                    }
+
+                    value = Column.convertObject(value, types[i]);
+                    currentJoinData[i] = e.getValue(session, types[i]);
+                }
+            }
+
+            it = convertible
+                 ? filterIndex.findFirstRow(session, currentJoinData)
+                 : filterIndex.emptyIterator();
+
+            if (!it.hasNext()) {
+                ArrayUtil.clearArray(ArrayUtil.CLASS_CODE_OBJECT,
+                                     currentJoinData, 0,
+                                     currentJoinData.length);
+            }
+        } else if (eIn != null) {
+            it = getInIterator(session, eIn, filterIndex, isDescending);
+        } else if (eLike != null) {
+            it = getLikeIterator(session);
+        } else if (isRangeSeek || (isDescending && rangePrefix != null)) {
+            it = getRangeIterator(session);
+        } else if (eOr != null) {
+            it = getMergeIterator(session);
+        } else if (eBitmap != null) {
+            SparseBitMap map = getBitmap(session, eBitmap);
+
+            it = map == null ? filterIndex.firstRow(session)
+                             : BitmapIndex.getIterator(filterTable, map);
+        } else if (eZone != null
+                   && filterIndex == filterTable.getPrimaryIndex()) {
+            it = getZoneIterator(session);
+        } else if (isFileOrderScan()) {
+            it = new FileOrderIterator(session, filterTable);
+        } else if (isFileOrderRange()) {
+            it = getFileOrderRangeIterator(session);
+        } else if (eStart == null) {
+            it = eEnd == null ? isDescending
+                                ? filterIndex.lastRowIterator(session)
+                                : filterIndex.firstRow(session)
+                              : filterIndex.findFirstRowNotNull(session);
+        } else {
+            Object value      = eStart.getArg2().getValue(session);
+            int    valuetype  = eStart.getArg2().getDataType();
+            int    targettype = eStart.getArg().getDataType();
+
+            it = getFirstIterator(session, eStart.getType(), value,
+                                  valuetype, filterIndex, targettype);
+        }
+
+        if (blockFilter != null) {
+            blockFilter.reset(session);
+        }
+
         while (true) {
-            currentRow = it.next();
+            currentRow = nextCandidate(session);
 
             if (currentRow == null) {
                 break;
             }
 
-            currentData = currentRow.getData();
+            if (eResidual == null || eResidual.testCondition(session)) {
+                return true;
+            }
+        }
+
+        currentRow  = null;
+        currentData = emptyData;
+
+        return false;
+    }
+
+    static RowIterator getFirstIterator(Session session, int eType,
+                                        Object value, int valueType,
+                                        Index index,
+                                        int targetType) throws HsqlException {
+
+        RowIterator it;
+        int         range = 0;
+
+        if (targetType != valueType) {
+            range = Column.compareToTypeRange(value, targetType);
+        }
+
+        if (range == 0) {
+            value = Column.convertObject(value, targetType);
+            it    = index.findFirstRow(session, value, eType);
+        } else {
+            switch (eType) {
+
+                case Expression.BIGGER_EQUAL :
+                case Expression.BIGGER :
+                    if (range < 0) {
+                        it = index.findFirstRowNotNull(session);
+
+                        break;
+                    }
+                default :
+                    it = index.emptyIterator();
+            }
+        }
+
+        return it;
+    }
+
+    /**
+     * Advances to the next available value. <p>
+     *
+     * @return true if a next value is available upon exit
+     *
+     * @throws HsqlException if a database access error occurs
+     */
+    boolean next(Session session) throws HsqlException {
+
+        boolean result = false;
+
+        nonJoinIsNull  = false;
+        isCurrentOuter = false;
+
+        while (true) {
+            currentRow = nextCandidate(session);
 
-            if (!(eEnd == null || eEnd.testCondition(session))) {
+            if (currentRow == null) {
                 break;
             }
 
-            if (eAnd == null || eAnd.testCondition(session)) {
+            if (eResidual == null || eResidual.testCondition(session)) {
                 result = true;
 
                 break;
@@ -631,6 +2330,246 @@ final class TableFilter {
         return false;
     }
 
+    /**
+     * Returns true if the filter reads all the rows of its index, so any
+     * index of the table can be used instead.
+     */
+    boolean isFullScan() {
+        return eStart == null && eEnd == null &&!isMultiFindFirst
+               && eIn == null && eLike == null && eOr == null
+               && eBitmap == null;
+    }
+
+    /**
+     * Returns true if the filter returns the union of the rows found with
+     * several indexes, or the rows found with bitmap indexes, which are not
+     * in the order of any index.
+     */
+    boolean isIndexMerge() {
+        return eOr != null || eBitmap != null;
+    }
+
+    /**
+     * Returns the number of leading index columns that have the same value
+     * in all the rows returned by this filter.
+     */
+    int getEqualityPrefix() {
+
+        if (isMultiFindFirst) {
+            return filterIndex.getVisibleColumns();
+        }
+
+        if (rangePrefix != null) {
+            return rangePrefix.length;
+        }
+
+        return eStart != null && eStart == eEnd ? 1
+                                                : 0;
+    }
+
+    /**
+     * Returns true if the rows returned by this filter can be read in
+     * reverse index order.
+     */
+    boolean isReversible() {
+        return isFullScan() || rangePrefix != null || eIn != null
+               || eLike != null;
+    }
+
+    /**
+     * Returns true if all the columns of the table that are used in the
+     * query are columns of filterIndex, so the values the filter returns
+     * are all present in the keys of the index. Index nodes are stored
+     * with the rows, so the rows are still read during the scan.
+     */
+    boolean isCoveringIndex() {
+
+        return filterIndex != null
+               && ArrayUtil.containsAllTrueElements(filterIndex.colCheck,
+                   usedColumns);
+    }
+
+    /**
+     * Adds the conditions assigned to this filter to the list.
+     */
+    void collectConditions(HsqlArrayList list) {
+
+        if (eStart != null) {
+            list.add(eStart);
+        }
+
+        if (eEnd != null && eEnd != eStart) {
+            list.add(eEnd);
+        }
+
+        if (eIn != null) {
+            list.add(eIn);
+        }
+
+        collectConjuncts(eAnd, list);
+    }
+
+    /**
+     * Adds the AND terms of the condition, other than TRUE, to the list.
+     */
+    static void collectConjuncts(Expression e, HsqlArrayList list) {
+
+        if (e == null || e.getType() == Expression.TRUE) {
+            return;
+        }
+
+        if (e.getType() == Expression.AND) {
+            collectConjuncts(e.getArg(), list);
+            collectConjuncts(e.getArg2(), list);
+        } else {
+            list.add(e);
+        }
+    }
+
+    BlockFilter getBlockFilter() {
+        return blockFilter;
+    }
+
+    /**
+     * Returns true if the rows are read with a FileOrderIterator. This is
+     * the case for a full scan of the primary index of a CACHED table when
+     * isFileOrder has been set because the order of the rows does not
+     * matter.
+     */
+    private boolean isFileOrderScan() {
+
+        return isFileOrder &&!isDescending && filterTable.isCached()
+               && isFullScan() && eZone == null
+               && (filterIndex == null
+                   || filterIndex == filterTable.getPrimaryIndex());
+    }
+
+    /**
+     * Returns true if the rows in the range of the index given by eStart and
+     * eEnd are read with a FileOrderIterator. This is the case for a CACHED
+     * table when isFileOrder has been set and there are no other index
+     * conditions.
+     */
+    private boolean isFileOrderRange() {
+
+        return isFileOrder &&!isDescending && filterTable.isCached()
+               && filterIndex != null && (eStart != null || eEnd != null)
+               && (eStart == null || eStart.getType() != Expression.IS_NULL)
+               &&!isMultiFindFirst &&!isRangeSeek && eIn == null
+               && eLike == null && eOr == null && eBitmap == null;
+    }
+
+    /**
+     * Returns an iterator over the rows in the range of the index given by
+     * eStart and eEnd in file order. The values are converted to the type of
+     * the first index column as in getFirstIterator(). The converted values
+     * are used only to skip the parts of the index that are out of range:
+     * a numeric value of another type, which may change in the conversion,
+     * becomes an inclusive limit, and a value of another kind is not used.
+     * The iterator checks eStart and eEnd for each row.
+     */
+    private RowIterator getFileOrderRangeIterator(Session session)
+    throws HsqlException {
+
+        Object  low             = null;
+        Object  high            = null;
+        boolean isLowInclusive  = true;
+        boolean isHighInclusive = true;
+
+        if (eStart != null) {
+            int    type      = eStart.getArg().getDataType();
+            int    valueType = eStart.getArg2().getDataType();
+            Object value     = eStart.getArg2().getValue(session);
+            int    range     = value == null ? 1
+                                             : Column.compareToTypeRange(
+                                                 value, type);
+
+            if (range > 0
+                    || (range < 0 && eStart.getType() == Expression.EQUAL)) {
+                return filterIndex.emptyIterator();
+            }
+
+            if (range == 0 && isFileOrderBound(type, valueType)) {
+                low            = Column.convertObject(value, type);
+                isLowInclusive = eStart.getType() != Expression.BIGGER
+                                 || type != valueType;
+            }
+
+            if (eStart.getType() == Expression.EQUAL) {
+                high = low;
+            }
+        }
+
+        if (eEnd != null && eEnd != eStart) {
+            int    type      = eEnd.getArg().getDataType();
+            int    valueType = eEnd.getArg2().getDataType();
+            Object value     = eEnd.getArg2().getValue(session);
+            int    range     = value == null ? -1
+                                             : Column.compareToTypeRange(
+                                                 value, type);
+
+            if (range < 0) {
+                return filterIndex.emptyIterator();
+            }
+
+            if (range == 0 && isFileOrderBound(type, valueType)) {
+                high            = Column.convertObject(value, type);
+                isHighInclusive = eEnd.getType() != Expression.SMALLER
+                                  || type != valueType;
+            }
+        }
+
+        return new FileOrderIterator(session, filterTable, filterIndex, low,
+                                     isLowInclusive, high, isHighInclusive,
+                                     this, eStart, eEnd);
+    }
+
+    /**
+     * Returns true if a value of valueType converted to type can limit the
+     * range of a FileOrderIterator. A numeric value is rounded to a nearby
+     * value of the numeric type, so it limits the range when inclusive.
+     */
+    private static boolean isFileOrderBound(int type, int valueType) {
+        return type == valueType
+               || (Types.isNumberType(type) && Types.isNumberType(valueType));
+    }
+
+    /**
+     * Returns true if the filter is a full scan of a table with rows held
+     * in memory and any AND condition consists only of block conditions.
+     */
+    boolean isParallelScanCandidate() {
+
+        return !isOuterJoin &&!filterTable.isCached && isFullScan()
+               && eResidual == null
+               && (eAnd == null || blockFilter != null);
+    }
+
+    /**
+     * Returns the next row from the iterator that satisfies eEnd and, when
+     * block evaluation is used, the block conditions. Sets currentData.
+     */
+    private Row nextCandidate(Session session) throws HsqlException {
+
+        if (blockFilter != null) {
+            return blockFilter.next(session, this, it, eEnd);
+        }
+
+        Row row = it.next();
+
+        if (row == null) {
+            return null;
+        }
+
+        currentData = row.getData();
+
+        if (!(eEnd == null || eEnd.testCondition(session))) {
+            return null;
+        }
+
+        return row;
+    }
+
     boolean nextOuter(Session session) throws HsqlException {
 
         nonJoinIsNull  = false;
@@ -648,8 +2587,9 @@ final class TableFilter {
      * AND condition when there is no such pre-exisiting object.
      *
      * @param e the condition to add
+     * @return the copy of the condition added to eAnd
      */
-    private void addAndCondition(Expression e) {
+    private Expression addAndCondition(Expression e) {
 
         Expression e2 = new Expression(e);
 
@@ -662,6 +2602,8 @@ final class TableFilter {
         }
 
         e.setTrue();
+
+        return e2;
     }
 
     /**
@@ -697,7 +2639,8 @@ final class TableFilter {
         primaryIndex = filterTable.getPrimaryIndex();
         primaryKey   = filterTable.getPrimaryKey();
         hidden       = false;
-        fullScan     = (eStart == null && eEnd == null);
+        fullScan     = (eStart == null && eEnd == null && eIn == null
+                        && eLike == null && eOr == null && eBitmap == null);
 
         if (index == null) {
             index = primaryIndex;
@@ -705,14 +2648,25 @@ final class TableFilter {
 
         if (index == primaryIndex && primaryKey.length == 0) {
             hidden   = true;
-            fullScan = true;
+            fullScan = eOr == null && eBitmap == null;
         }
 
         sb.append(super.toString()).append('\n');
         sb.append("table=[").append(filterTable.getName().name).append("]\n");
         sb.append("alias=[").append(tableAlias).append("]\n");
         sb.append("access=[").append(fullScan ? "FULL SCAN"
-                                              : "INDEX PRED").append("]\n");
+                                              : eOr != null ? "INDEX MERGE"
+                                                            : eBitmap != null
+                                                              ? "BITMAP INDEX"
+                                                              : "INDEX PRED").append(
+                                                                  "]\n");
+
+        if (isDescending) {
+            sb.append("order=[DESC]\n");
+        } else if (isFileOrderScan() || isFileOrderRange()) {
+            sb.append("order=[FILE]\n");
+        }
+
         sb.append("index=[");
         sb.append(index == null ? "NONE"
                                 : index.getName() == null ? "UNNAMED"
@@ -720,6 +2674,11 @@ final class TableFilter {
                                                           .name);
         sb.append(hidden ? "[HIDDEN]]\n"
                          : "]\n");
+
+        if (!hidden && isCoveringIndex()) {
+            sb.append("covering=[true]\n");
+        }
+
         sb.append("isOuterJoin=[").append(isOuterJoin).append("]\n");
 
         temp = eStart == null ? "null"
@@ -732,11 +2691,78 @@ final class TableFilter {
 
         sb.append("eEnd=[").append(temp).append("]\n");
 
+        if (eIn != null) {
+            sb.append("eIn=[").append(eIn.describe(session)).append("]\n");
+        }
+
+        if (eLike != null) {
+            sb.append("eLike=[").append(eLike.describe(session)).append(
+                "]\n");
+        }
+
+        if (eOr != null) {
+            sb.append("mergeIndexes=[");
+
+            for (int i = 0; i < mergeIndexes.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+
+                sb.append(mergeIndexes[i].getName().name);
+            }
+
+            sb.append("]\n");
+        }
+
+        if (eBitmap != null) {
+            sb.append("eBitmap=[").append(eBitmap.describe(session)).append(
+                "]\n");
+        }
+
+        if (eZone != null && index == primaryIndex) {
+            sb.append("eZone=[").append(eZone.describe(session)).append(
+                "]\n");
+        }
+
+        if (partialIndexes != null) {
+            sb.append("partial=[");
+
+            for (int i = 0; i < partialIndexes.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+
+                sb.append(partialIndexes[i].getName().name);
+            }
+
+            sb.append("]\n");
+        }
+
+        if (isRangeSeek) {
+            sb.append("rangePrefix=[").append(rangePrefix.length).append(
+                "]\n");
+
+            temp = rangeLow == null ? "null"
+                                    : rangeLow.describe(session);
+
+            sb.append("rangeLow=[").append(temp).append("]\n");
+
+            temp = rangeHigh == null ? "null"
+                                     : rangeHigh.describe(session);
+
+            sb.append("rangeHigh=[").append(temp).append("]\n");
+        }
+
         temp = eAnd == null ? "null"
                             : eAnd.describe(session);
 
         sb.append("eAnd=[").append(temp).append("]");
 
+        if (blockFilter != null) {
+            sb.append("\neBlock=[").append(
+                blockFilter.describe(session)).append("]");
+        }
+
         return sb.toString();
     }
 }
@@ -182,12 +182,26 @@ class TableWorks {
     Index createIndex(int[] col, HsqlName name, boolean unique,
                       boolean constraint,
                       boolean forward) throws HsqlException {
+        return createIndex(col, name, unique, constraint, forward, null,
+                           null);
+    }
+
+    /**
+     *  As above, with the expression of an expression index and the
+     *  condition of a partial index, or null. The expression takes the place
+     *  of the first column of an expression index. Only the rows for which
+     *  the condition is true are added to a partial index.
+     */
+    Index createIndex(int[] col, HsqlName name, boolean unique,
+                      boolean constraint, boolean forward, String expression,
+                      String predicate) throws HsqlException {
 
         Index newindex;
 
         if (table.isEmpty(session) || table.isIndexingMutable()) {
             newindex = table.createIndex(session, col, name, unique,
-                                         constraint, forward);
+                                         constraint, forward, expression,
+                                         predicate);
 
             table.database.schemaManager.clearTempTables(session, table);
         } else {
@@ -196,6 +210,14 @@ class TableWorks {
             newindex = tn.createIndexStructure(col, name, unique, constraint,
                                                forward);
 
+            if (expression != null) {
+                tn.setIndexExpression(session, newindex, expression);
+            }
+
+            if (predicate != null) {
+                tn.setIndexPredicate(session, newindex, predicate);
+            }
+
             tn.moveData(session, table, -1, 0);
             tn.updateConstraintsTables(session, table, -1, 0);
 
@@ -204,12 +226,15 @@ class TableWorks {
             table.database.schemaManager.setTable(index, tn);
 
             table = tn;
+
+            // compiled statements that are kept refer to the old table
+            table.database.setMetaDirty(true);
         }
 
         table.database.schemaManager.clearTempTables(session, table);
         table.database.schemaManager.registerIndexName(
             newindex.getName().name, table.getName());
-        table.database.schemaManager.recompileViews(table);
+        table.database.schemaManager.recompileViews(session, table);
 
         return newindex;
     }
@@ -251,7 +276,7 @@ class TableWorks {
 
         table = tn;
 
-        table.database.schemaManager.recompileViews(table);
+        table.database.schemaManager.recompileViews(session, table);
     }
 
     /**
@@ -359,7 +384,34 @@ class TableWorks {
 
         table.database.schemaManager.removeIndexName(indexname,
                 table.getName());
-        table.database.schemaManager.recompileViews(table);
+        table.database.schemaManager.recompileViews(session, table);
+    }
+
+    /**
+     *  Writes all the rows of a CACHED table again at the end of the .data
+     *  file, in primary key order, so that a range scan of the primary key
+     *  reads the file in sequence. As with other changes that move the data
+     *  to a new table, the space of the old rows is reclaimed by CHECKPOINT
+     *  DEFRAG.
+     *
+     * @throws  HsqlException
+     */
+    void clusterTable() throws HsqlException {
+
+        Table tn = table.moveDefinition(null, null, -1, 0);
+
+        tn.setClustered(true);
+        tn.moveData(session, table, -1, 0);
+        tn.setClustered(table.isClustered());
+        tn.updateConstraintsTables(session, table, -1, 0);
+
+        int i = table.database.schemaManager.getTableIndex(table);
+
+        table.database.schemaManager.setTable(i, tn);
+
+        table = tn;
+
+        table.database.schemaManager.recompileViews(session, table);
     }
 
     /**
@@ -391,7 +443,7 @@ class TableWorks {
 
         table = tn;
 
-        table.database.schemaManager.recompileViews(table);
+        table.database.schemaManager.recompileViews(session, table);
     }
 
     /**
@@ -448,7 +500,7 @@ class TableWorks {
 
         table = tn;
 
-        table.database.schemaManager.recompileViews(table);
+        table.database.schemaManager.recompileViews(session, table);
 
         if (constNameRemove != null) {
             table.removeConstraint(constNameRemove.name);
@@ -486,7 +538,7 @@ class TableWorks {
 
         table = tn;
 
-        table.database.schemaManager.recompileViews(table);
+        table.database.schemaManager.recompileViews(session, table);
 
         if (column.isPrimaryKey()) {
             HsqlName pkNameAdd = tn.makeSysPKName();
@@ -324,11 +324,14 @@ public class Token {
     static final String        T_AVG            = "AVG";
     static final String        T_BACKUP         = "BACKUP";
     static final String        T_BEFORE         = "BEFORE";
+    static final String        T_BITMAP         = "BITMAP";
     static final String        T_CACHED         = "CACHED";
     static final String        T_CASCADE        = "CASCADE";
     static final String        T_CASEWHEN       = "CASEWHEN";
     static final String        T_CHECKPOINT     = "CHECKPOINT";
     static final String        T_CLASS          = "CLASS";
+    static final String        T_CLUSTER        = "CLUSTER";
+    static final String        T_CLUSTERED      = "CLUSTERED";
     static final String        T_COALESCE       = "COALESCE";
     static final String        T_COLLATION      = "COLLATION";
     static final String        T_COMPACT        = "COMPACT";
@@ -351,6 +354,7 @@ public class Token {
     static final String        T_KEY            = "KEY";
     static final String        T_LIMIT          = "LIMIT";
     static final String        T_LOGSIZE        = "LOGSIZE";
+    static final String        T_MATERIALIZED   = "MATERIALIZED";
     static final String        T_MAX            = "MAX";
     static final String        T_MAXROWS        = "MAXROWS";
     static final String        T_MEMORY         = "MEMORY";
@@ -373,6 +377,7 @@ public class Token {
     static final String        T_QUEUE          = "QUEUE";
     static final String        T_READONLY       = "READONLY";
     static final String T_REFERENTIAL_INTEGRITY = "REFERENTIAL_INTEGRITY";
+    static final String        T_REFRESH        = "REFRESH";
     static final String        T_RENAME         = "RENAME";
     static final String        T_RESTART        = "RESTART";
     static final String        T_RESTRICT       = "RESTRICT";
@@ -398,6 +403,7 @@ public class Token {
     static final String        T_VIEW           = "VIEW";
     static final String        T_WORK           = "WORK";
     static final String        T_WRITE_DELAY    = "WRITE_DELAY";
+    static final String        T_ZONEMAP        = "ZONEMAP";
     public static final String T_OFF            = "OFF";
 
     // SQL 200n token values
@@ -684,18 +690,24 @@ public class Token {
     static final int        WRITE_DELAY           = 330;
 
     // added stuff
-    static final int VAR_POP     = 330;
-    static final int VAR_SAMP    = 331;
-    static final int STDDEV_POP  = 332;
-    static final int STDDEV_SAMP = 333;
-    static final int DEFRAG      = 334;
-    static final int INCREMENT   = 335;
-    static final int TOCHAR      = 336;
-    static final int DATABASE    = 337;
-    static final int SCHEMA      = 338;
-    static final int ROLE        = 339;
-    static final int DOW         = 340;
-    static final int INITIAL     = 341;
+    static final int VAR_POP      = 330;
+    static final int VAR_SAMP     = 331;
+    static final int STDDEV_POP   = 332;
+    static final int STDDEV_SAMP  = 333;
+    static final int DEFRAG       = 334;
+    static final int INCREMENT    = 335;
+    static final int TOCHAR       = 336;
+    static final int DATABASE     = 337;
+    static final int SCHEMA       = 338;
+    static final int ROLE         = 339;
+    static final int DOW          = 340;
+    static final int INITIAL      = 341;
+    static final int MATERIALIZED = 342;
+    static final int REFRESH      = 343;
+    static final int BITMAP       = 344;
+    static final int CLUSTER      = 345;
+    static final int CLUSTERED    = 346;
+    static final int ZONEMAP      = 347;
 
     //
     static {
@@ -718,10 +730,13 @@ public class Token {
         commandSet.put(T_ALIAS, ALIAS);
         commandSet.put(T_ALTER, ALTER);
         commandSet.put(T_AUTOCOMMIT, AUTOCOMMIT);
+        commandSet.put(T_BITMAP, BITMAP);
         commandSet.put(T_CACHED, CACHED);
         commandSet.put(T_CALL, CALL);
         commandSet.put(T_CHECK, CHECK);
         commandSet.put(T_CHECKPOINT, CHECKPOINT);
+        commandSet.put(T_CLUSTER, CLUSTER);
+        commandSet.put(T_CLUSTERED, CLUSTERED);
         commandSet.put(T_COLUMN, COLUMN);
         commandSet.put(T_COMMIT, COMMIT);
         commandSet.put(T_CONNECT, CONNECT);
@@ -743,6 +758,7 @@ public class Token {
         commandSet.put(T_INSERT, INSERT);
         commandSet.put(T_INTERSECT, INTERSECT);
         commandSet.put(T_LOGSIZE, LOGSIZE);
+        commandSet.put(T_MATERIALIZED, MATERIALIZED);
         commandSet.put(T_MAXROWS, MAXROWS);
         commandSet.put(T_MEMORY, MEMORY);
         commandSet.put(T_MINUS, MINUS);
@@ -755,6 +771,7 @@ public class Token {
         commandSet.put(T_PROPERTY, PROPERTY);
         commandSet.put(T_READONLY, READONLY);
         commandSet.put(T_REFERENTIAL_INTEGRITY, REFERENTIAL_INTEGRITY);
+        commandSet.put(T_REFRESH, REFRESH);
         commandSet.put(T_RELEASE, RELEASE);
         commandSet.put(T_RENAME, RENAME);
         commandSet.put(T_RESTART, RESTART);
@@ -781,6 +798,7 @@ public class Token {
         commandSet.put(T_VALUES, VALUES);
         commandSet.put(T_VIEW, VIEW);
         commandSet.put(T_WRITE_DELAY, WRITE_DELAY);
+        commandSet.put(T_ZONEMAP, ZONEMAP);
         commandSet.put(T_SCHEMA, SCHEMA);
 
         return commandSet;
@@ -682,6 +682,15 @@ public class Tokenizer {
         return iIndex;
     }
 
+    /**
+     * return the start position of the last token
+     *
+     * @return
+     */
+    int getTokenPosition() {
+        return tokenIndex;
+    }
+
     /**
      * mark the current position to be used for future getLastPart() calls
      *
@@ -84,7 +84,8 @@ class View extends Table {
         compileTimeSchema = session.getSchemaHsqlName(null);
 
         compile(session);
-        replaceAsterisksInStatement();
+
+        statement = replaceAsterisks(statement, viewSubqueries);
 
         HsqlName[] schemas = getSchemas();
 
@@ -153,6 +154,56 @@ class View extends Table {
         }
     }
 
+    /**
+     * Compiles a new copy of the SELECT statement for use by a single
+     * statement, so that the copy can be merged into the statement or
+     * receive conditions from it. The subqueries of the copy, ending with
+     * the copy itself, are added to the list.
+     */
+    SubQuery compileCopy(Session session,
+                         HsqlArrayList subqueries) throws HsqlException {
+
+        String schema = compileTimeSchema.name;
+
+        if (!database.schemaManager.schemaExists(schema)) {
+            schema = null;
+        }
+
+        // the session may be the system session, which is modified here
+        HsqlName currentSchema = session.currentSchema;
+        User     user          = session.getUser();
+        boolean  isScript      = session.isProcessingScript;
+        boolean  isLog         = session.isProcessingLog;
+        Session  sysSession = database.sessionManager.getSysSession(schema,
+            false);
+
+        try {
+            Parser p = new Parser(sysSession, database,
+                                  new Tokenizer(statement));
+            int      brackets = p.parseOpenBracketsSelect();
+            SubQuery sq = p.parseSubquery(brackets, colList, true,
+                                          Expression.VIEW);
+
+            p.setAsView(this);
+
+            SubQuery[] list = p.getSortedSubqueries();
+
+            for (int i = 0; i < list.length; i++) {
+                subqueries.add(list[i]);
+            }
+
+            return sq;
+        } finally {
+            if (sysSession == session) {
+                session.currentSchema      = currentSchema;
+                session.isProcessingScript = isScript;
+                session.isProcessingLog    = isLog;
+
+                session.setUser(user);
+            }
+        }
+    }
+
     /**
      * Returns the SELECT statement for the view.
      */
@@ -163,8 +214,8 @@ class View extends Table {
     /**
      *  is a private helper for replaceAsterisksInStatement, to avoid some code duplication
      */
-    private void collectAsteriskPos(final Select select,
-                                    IntKeyHashMap asteriskPositions) {
+    private static void collectAsteriskPos(final Select select,
+                                           IntKeyHashMap asteriskPositions) {
 
         if (select.asteriskPositions == null) {
             return;
@@ -188,21 +239,23 @@ class View extends Table {
     }
 
     /**
-     *  replaces all asterisks in our statement with the actual column list
+     *  replaces all asterisks in the statement with the actual column list
      *
      *  This way, we ensure what is required by the standard: a view returns a result
      *  which reflects the structure of the underlying tables at the *time of the definition
-     *  of the view.
+     *  of the view. Also used for materialized views.
      */
-    private void replaceAsterisksInStatement() throws HsqlException {
+    static String replaceAsterisks(String statement,
+                                   SubQuery[] subqueries)
+                                   throws HsqlException {
 
         IntKeyHashMap asteriskPositions = new IntKeyHashMap();
 
         // asterisk positions in sub queries
-        for (int i = 0; i < viewSubqueries.length; ++i) {
+        for (int i = 0; i < subqueries.length; ++i) {
 
             // collect the occurances of asterisks in the statement
-            Select subSelect = viewSubqueries[i].select;
+            Select subSelect = subqueries[i].select;
 
             collectAsteriskPos(subSelect, asteriskPositions);
 
@@ -251,7 +304,7 @@ class View extends Table {
 
         expandedStatement.append(segment);
 
-        statement = expandedStatement.toString();
+        return expandedStatement.toString();
     }
 
     /**
@@ -0,0 +1,319 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import org.hsqldb.index.RowIterator;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.HsqlArrayList;
+
+/**
+ * Summaries of the values of selected columns of a CACHED table, used to
+ * skip parts of a full scan that cannot satisfy the conditions of a
+ * query.<p>
+ *
+ * The rows of the table are divided into zones of consecutive values of
+ * the first column of the primary index. Each zone holds the lowest and
+ * highest non-null value of each summarized column for its rows. A zone
+ * that cannot contain a row matching a condition such as
+ * <code>column &gt; value</code> is skipped by seeking past it in the
+ * primary index, so its rows are not read from the .data file.<p>
+ *
+ * A new zone is started when a row with a key above all the existing keys
+ * is added to a full zone, so a table that is filled in key order, such as
+ * a log keyed by time or by an IDENTITY column, gets zones of ZONE_SIZE
+ * rows. Other rows widen the summaries of the zone for their key.
+ * Summaries are never narrowed when rows are deleted. The map is built
+ * from the rows when it is first used and after a CHECKPOINT DEFRAG.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+final class ZoneMap {
+
+    static final int ZONE_SIZE = 1024;
+
+    //
+    private Table      table;
+    private Index      primaryIndex;
+    private Collation  collation;
+    private int[]      columns;
+    private int[]      types;
+    private int        keyColumn;
+    private int        keyType;
+    private int        zoneCount;
+    private Object[]   firstKeys;
+    private Object[][] minValues;
+    private Object[][] maxValues;
+    private int[]      rowCounts;
+    private Object     maxKey;
+
+    ZoneMap(Table table, int[] columns) {
+
+        this.table   = table;
+        this.columns = columns;
+        primaryIndex = table.getPrimaryIndex();
+        collation    = table.database.collation;
+        types        = new int[columns.length];
+        keyColumn    = primaryIndex.getColumns()[0];
+        keyType      = table.getColumnTypes()[keyColumn];
+        firstKeys    = new Object[16];
+        minValues    = new Object[16][];
+        maxValues    = new Object[16][];
+        rowCounts    = new int[16];
+
+        ArrayUtil.copyColumnValues(table.getColumnTypes(), columns, types);
+    }
+
+    /**
+     * Adds the zones for all the rows of the table, which are read in
+     * primary key order.
+     */
+    void build(Session session) throws HsqlException {
+
+        RowIterator it = primaryIndex.firstRow(session);
+
+        while (it.hasNext()) {
+            add(it.next().getData());
+        }
+    }
+
+    /**
+     * Widens the summaries of the zone for the key of the row with its
+     * values, or starts a new zone.
+     */
+    void add(Object[] data) {
+
+        Object  key     = data[keyColumn];
+        boolean isAbove = zoneCount == 0
+                          || Column.compare(collation, key, maxKey, keyType)
+                             > 0;
+        int     zone;
+
+        if (zoneCount == 0
+                || (isAbove && rowCounts[zoneCount - 1] >= ZONE_SIZE)) {
+            zone = addZone(key);
+        } else {
+            zone = findZone(key);
+
+            if (zone == 0
+                    && Column.compare(collation, key, firstKeys[0], keyType)
+                       < 0) {
+                firstKeys[0] = key;
+            }
+        }
+
+        if (isAbove) {
+            maxKey = key;
+        }
+
+        Object[] mins = minValues[zone];
+        Object[] maxs = maxValues[zone];
+
+        for (int i = 0; i < columns.length; i++) {
+            Object value = data[columns[i]];
+
+            if (value == null) {
+                continue;
+            }
+
+            if (mins[i] == null
+                    || Column.compare(collation, value, mins[i], types[i])
+                       < 0) {
+                mins[i] = value;
+            }
+
+            if (maxs[i] == null
+                    || Column.compare(collation, value, maxs[i], types[i])
+                       > 0) {
+                maxs[i] = value;
+            }
+        }
+
+        rowCounts[zone]++;
+    }
+
+    private int addZone(Object key) {
+
+        if (zoneCount == firstKeys.length) {
+            int size = zoneCount * 2;
+
+            firstKeys = (Object[]) ArrayUtil.resizeArray(firstKeys, size);
+            minValues = (Object[][]) ArrayUtil.resizeArray(minValues, size);
+            maxValues = (Object[][]) ArrayUtil.resizeArray(maxValues, size);
+            rowCounts = (int[]) ArrayUtil.resizeArray(rowCounts, size);
+        }
+
+        firstKeys[zoneCount] = key;
+        minValues[zoneCount] = new Object[columns.length];
+        maxValues[zoneCount] = new Object[columns.length];
+
+        return zoneCount++;
+    }
+
+    /**
+     * Returns the last zone with a first key not above the key, or zero.
+     */
+    private int findZone(Object key) {
+
+        int low  = 0;
+        int high = zoneCount - 1;
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (Column.compare(collation, firstKeys[mid], key, keyType)
+                    <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Returns an iterator over the rows of the zones that can contain rows
+     * matching all the conditions <code>column op value</code>, in primary
+     * index order or in reverse order. The values must be of the type of
+     * the columns.
+     */
+    RowIterator getIterator(Session session, int[] conditionColumns,
+                            int[] opTypes, Object[] values,
+                            boolean isReverse) throws HsqlException {
+
+        HsqlArrayList lows  = new HsqlArrayList();
+        HsqlArrayList highs = new HsqlArrayList();
+
+        for (int zone = 0; zone < zoneCount; ) {
+            if (!isPossible(zone, conditionColumns, opTypes, values)) {
+                zone++;
+
+                continue;
+            }
+
+            int first = zone;
+
+            for (zone++; zone < zoneCount; zone++) {
+                if (!isPossible(zone, conditionColumns, opTypes, values)) {
+                    break;
+                }
+            }
+
+            // the first and last zones have no limit on the outer side
+            lows.add(first == 0 ? null
+                                : firstKeys[first]);
+            highs.add(zone == zoneCount ? null
+                                        : firstKeys[zone]);
+        }
+
+        if (zoneCount == 0
+                || (lows.size() == 1 && lows.get(0) == null
+                    && highs.get(0) == null)) {
+            return isReverse ? primaryIndex.lastRowIterator(session)
+                             : primaryIndex.firstRow(session);
+        }
+
+        if (lows.size() == 0) {
+            return primaryIndex.emptyIterator();
+        }
+
+        return new IndexRangeIterator(session, primaryIndex, new Object[0],
+                                      lows.toArray(), true, highs.toArray(),
+                                      false, isReverse);
+    }
+
+    /**
+     * Returns false if the summaries show that no row of the zone can
+     * satisfy one of the conditions. A condition on a column without a
+     * summary is ignored.
+     */
+    private boolean isPossible(int zone, int[] conditionColumns,
+                               int[] opTypes, Object[] values) {
+
+        for (int i = 0; i < conditionColumns.length; i++) {
+            int j = ArrayUtil.find(columns, conditionColumns[i]);
+
+            if (j == -1) {
+                continue;
+            }
+
+            Object min   = minValues[zone][j];
+            Object max   = maxValues[zone][j];
+            Object value = values[i];
+
+            // comparisons with null, or on a zone of nulls, are never true
+            if (min == null || value == null) {
+                return false;
+            }
+
+            int type = types[j];
+
+            switch (opTypes[i]) {
+
+                case Expression.EQUAL :
+                    if (Column.compare(collation, value, min, type) < 0
+                            || Column.compare(collation, value, max, type)
+                               > 0) {
+                        return false;
+                    }
+                    break;
+
+                case Expression.BIGGER :
+                    if (Column.compare(collation, max, value, type) <= 0) {
+                        return false;
+                    }
+                    break;
+
+                case Expression.BIGGER_EQUAL :
+                    if (Column.compare(collation, max, value, type) < 0) {
+                        return false;
+                    }
+                    break;
+
+                case Expression.SMALLER :
+                    if (Column.compare(collation, min, value, type) >= 0) {
+                        return false;
+                    }
+                    break;
+
+                case Expression.SMALLER_EQUAL :
+                    if (Column.compare(collation, min, value, type) > 0) {
+                        return false;
+                    }
+                    break;
+            }
+        }
+
+        return true;
+    }
+}
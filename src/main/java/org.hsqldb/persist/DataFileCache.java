@@ -460,14 +460,15 @@ public class DataFileCache {
     /**
      * Allocates file space for the row. <p>
      *
-     * Free space is requested from the block manager if it exists.
-     * Otherwise the file is grown to accommodate it.
+     * Free space is requested from the block manager if it exists, unless
+     * isAtEnd is true. Otherwise the file is grown to accommodate it.
      */
-    private int setFilePos(CachedObject r) throws IOException {
+    private int setFilePos(CachedObject r,
+                           boolean isAtEnd) throws IOException {
 
         int rowSize = r.getStorageSize();
-        int i       = freeBlocks == null ? -1
-                                         : freeBlocks.get(rowSize);
+        int i       = freeBlocks == null || isAtEnd ? -1
+                                                    : freeBlocks.get(rowSize);
 
         if (i == -1) {
             i = (int) (fileFreePosition / cacheFileScale);
@@ -488,6 +489,21 @@ public class DataFileCache {
     }
 
     public synchronized void add(CachedObject object) throws IOException {
+        add(object, false);
+    }
+
+    /**
+     * As add(), but the object is always stored at the end of the file
+     * instead of in a free block, so that objects added one after the other
+     * are stored one after the other. Used for the rows of clustered tables.
+     */
+    public synchronized void addAtEnd(CachedObject object)
+    throws IOException {
+        add(object, true);
+    }
+
+    private void add(CachedObject object,
+                     boolean isAtEnd) throws IOException {
 
         int size = object.getRealSize(rowOut);
 
@@ -496,7 +512,7 @@ public class DataFileCache {
 
         object.setStorageSize(size);
 
-        int i = setFilePos(object);
+        int i = setFilePos(object, isAtEnd);
 
         cache.put(i, object);
 
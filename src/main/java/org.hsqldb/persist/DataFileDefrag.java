@@ -58,7 +58,8 @@ import org.hsqldb.rowio.RowOutputBinary;
  *  in an array.
  *
  *  A second pass over the primary index writes each row to the new disk
- *  image after translating the old pointers to the new.
+ *  image after translating the old pointers to the new. The rows of each
+ *  table are therefore stored in primary key order.
  *
  * @author     fredt@users
  * @version    1.8.0
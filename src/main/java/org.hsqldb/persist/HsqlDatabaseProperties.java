@@ -202,11 +202,15 @@ public class HsqlDatabaseProperties extends HsqlProperties {
     public static final String hsqldb_log_size      = "hsqldb.log_size";
     public static final String hsqldb_nio_data_file = "hsqldb.nio_data_file";
     public static final String hsqldb_max_nio_scale = "hsqldb.max_nio_scale";
+    public static final String hsqldb_result_cache_size =
+        "hsqldb.result_cache_size";
     public static final String hsqldb_raf_buffer_scale =
         "hsqldb.raf_buffer_scale";
     private static final String hsqldb_original_version =
         "hsqldb.original_version";
     public static final String hsqldb_script_format = "hsqldb.script_format";
+    public static final String hsqldb_statement_cache_size =
+        "hsqldb.statement_cache_size";
 
     //
     private static final String sql_compare_in_locale =
@@ -215,6 +219,8 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         "sql.enforce_strict_size";
     public static final String sql_tx_no_multi_write =
         "sql.tx_no_multi_rewrite";
+    public static final String sql_parallel_scan_threads =
+        "sql.parallel_scan_threads";
 
     //
     public static final String textdb_cache_scale = "textdb.cache_scale";
@@ -313,6 +319,14 @@ public class HsqlDatabaseProperties extends HsqlProperties {
                  getMeta(textdb_cache_scale, SET_PROPERTY, 10, 8, 16));
         meta.put(textdb_cache_size_scale,
                  getMeta(textdb_cache_size_scale, SET_PROPERTY, 10, 6, 20));
+        meta.put(sql_parallel_scan_threads,
+                 getMeta(sql_parallel_scan_threads, SET_PROPERTY, 0, 0, 64));
+        meta.put(hsqldb_result_cache_size,
+                 getMeta(hsqldb_result_cache_size, SET_PROPERTY, 0, 0,
+                         1048576));
+        meta.put(hsqldb_statement_cache_size,
+                 getMeta(hsqldb_statement_cache_size, SET_PROPERTY, 1000, 0,
+                         1000000));
     }
 
     private Database database;
@@ -505,6 +519,13 @@ public class HsqlDatabaseProperties extends HsqlProperties {
 
         database.txManager.setReWriteProtection(
             isPropertyTrue(sql_tx_no_multi_write));
+        database.setParallelScanThreads(
+            getIntegerProperty(sql_parallel_scan_threads, 0, 0, 64));
+        database.setResultCacheSize(
+            getIntegerProperty(hsqldb_result_cache_size, 0, 0, 1048576));
+        database.setStatementCacheSize(
+            getIntegerProperty(hsqldb_statement_cache_size, 1000, 0,
+                               1000000));
         database.setMetaDirty(false);
     }
 
@@ -120,6 +120,8 @@ class ScriptReaderBinary extends ScriptReaderBase {
                 }
             }
 
+            t.buildIndexesFromScript(session);
+
             int checkCount = readTableTerm();
 
             if (j != checkCount) {
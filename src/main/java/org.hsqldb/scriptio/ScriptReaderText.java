@@ -41,6 +41,7 @@ import org.hsqldb.Database;
 import org.hsqldb.HsqlException;
 import org.hsqldb.Result;
 import org.hsqldb.Session;
+import org.hsqldb.Table;
 import org.hsqldb.Trace;
 import org.hsqldb.lib.SimpleLog;
 import org.hsqldb.lib.StringConverter;
@@ -112,7 +113,8 @@ public class ScriptReaderText extends ScriptReaderBase {
     throws IOException, HsqlException {
 
         try {
-            String tablename = null;
+            String tablename   = null;
+            Table  loadedTable = null;
 
             // fredt - needed for forward referencing FK constraints
             db.setReferentialIntegrity(false);
@@ -133,10 +135,24 @@ public class ScriptReaderText extends ScriptReaderBase {
                                 tablename, schema);
                     }
 
+                    // the other indexes of each table are built once all
+                    // its rows have been read
+                    if (currentTable != loadedTable) {
+                        if (loadedTable != null) {
+                            loadedTable.buildIndexesFromScript(session);
+                        }
+
+                        loadedTable = currentTable;
+                    }
+
                     currentTable.insertFromScript(rowData);
                 }
             }
 
+            if (loadedTable != null) {
+                loadedTable.buildIndexesFromScript(session);
+            }
+
             db.setReferentialIntegrity(true);
         } catch (Exception e) {
             db.logger.appLog.logContext(e, null);
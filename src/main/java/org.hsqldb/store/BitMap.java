@@ -120,6 +120,37 @@ public class BitMap {
                                   : 1;
     }
 
+    /**
+     * Returns the first set position equal to or larger than pos, or -1 if
+     * there is none
+     */
+    public int nextSetBit(int pos) {
+
+        if (pos < 0) {
+            pos = 0;
+        }
+
+        int windex = pos >> 5;
+
+        if (windex >= map.length) {
+            return -1;
+        }
+
+        int word = map[windex] & (0xFFFFFFFF >>> (pos & 0x1F));
+
+        while (word == 0) {
+            windex++;
+
+            if (windex >= map.length) {
+                return -1;
+            }
+
+            word = map[windex];
+        }
+
+        return (windex << 5) + Integer.numberOfLeadingZeros(word);
+    }
+
     public static int set(int map, int pos) {
 
         int mask = 0x80000000 >>> pos;
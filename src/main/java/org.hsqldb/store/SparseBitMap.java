@@ -0,0 +1,515 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.store;
+
+/**
+ * Compressed bit map of non-negative int positions. The positions are
+ * divided into chunks of 65536 by their high 16 bits. Each chunk that
+ * contains positions is held either as a sorted array of the low 16 bits,
+ * when it has up to 4096 positions, or as a plain bit map of 1024 longs.
+ * Chunks are created and converted between the two forms as positions are
+ * set and unset, so the size follows the number of positions rather than
+ * the largest position.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+public class SparseBitMap {
+
+    private static final int ARRAY_MAX  = 4096;
+    private static final int BITS_WORDS = 1024;
+
+    // high 16 bits of each chunk, ascending
+    private int[] keys;
+
+    // char[] sorted low bits or long[] bit map for each chunk
+    private Object[] chunks;
+
+    // count of positions in each chunk
+    private int[] sizes;
+    private int   chunkCount;
+    private int   cardinality;
+
+    public SparseBitMap() {
+
+        keys   = new int[4];
+        chunks = new Object[4];
+        sizes  = new int[4];
+    }
+
+    /**
+     * Returns the number of positions that are set
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Sets pos and returns old value
+     */
+    public int set(int pos) {
+
+        int key   = pos >>> 16;
+        int low   = pos & 0xFFFF;
+        int index = findChunk(key);
+
+        if (index < 0) {
+            index = -index - 1;
+
+            insertChunk(index, key, new char[4]);
+        }
+
+        Object chunk = chunks[index];
+
+        if (chunk instanceof long[]) {
+            long[] bits = (long[]) chunk;
+            long   mask = 1L << (low & 0x3F);
+
+            if ((bits[low >> 6] & mask) != 0) {
+                return 1;
+            }
+
+            bits[low >> 6] |= mask;
+        } else {
+            char[] array = (char[]) chunk;
+            int    size  = sizes[index];
+            int    i     = find(array, size, low);
+
+            if (i >= 0) {
+                return 1;
+            }
+
+            i = -i - 1;
+
+            if (size == ARRAY_MAX) {
+                long[] bits = toBits(array, size);
+
+                bits[low >> 6] |= 1L << (low & 0x3F);
+                chunks[index]  = bits;
+            } else {
+                if (size == array.length) {
+                    char[] newarray = new char[Math.min(ARRAY_MAX,
+                                                        size * 2)];
+
+                    System.arraycopy(array, 0, newarray, 0, size);
+
+                    array         = newarray;
+                    chunks[index] = array;
+                }
+
+                System.arraycopy(array, i, array, i + 1, size - i);
+
+                array[i] = (char) low;
+            }
+        }
+
+        sizes[index]++;
+        cardinality++;
+
+        return 0;
+    }
+
+    /**
+     * Unsets pos and returns old value
+     */
+    public int unset(int pos) {
+
+        int key   = pos >>> 16;
+        int low   = pos & 0xFFFF;
+        int index = findChunk(key);
+
+        if (index < 0) {
+            return 0;
+        }
+
+        Object chunk = chunks[index];
+        int    size  = sizes[index];
+
+        if (chunk instanceof long[]) {
+            long[] bits = (long[]) chunk;
+            long   mask = 1L << (low & 0x3F);
+
+            if ((bits[low >> 6] & mask) == 0) {
+                return 0;
+            }
+
+            bits[low >> 6] &= ~mask;
+
+            // convert back well below the limit to avoid repeated changes
+            if (size - 1 <= ARRAY_MAX / 2) {
+                chunks[index] = toArray(bits, size - 1);
+            }
+        } else {
+            char[] array = (char[]) chunk;
+            int    i     = find(array, size, low);
+
+            if (i < 0) {
+                return 0;
+            }
+
+            System.arraycopy(array, i + 1, array, i, size - i - 1);
+        }
+
+        sizes[index]--;
+        cardinality--;
+
+        if (sizes[index] == 0) {
+            removeChunk(index);
+        }
+
+        return 1;
+    }
+
+    public boolean isSet(int pos) {
+
+        int index = findChunk(pos >>> 16);
+
+        if (index < 0) {
+            return false;
+        }
+
+        int    low   = pos & 0xFFFF;
+        Object chunk = chunks[index];
+
+        if (chunk instanceof long[]) {
+            return (((long[]) chunk)[low >> 6] & (1L << (low & 0x3F))) != 0;
+        }
+
+        return find((char[]) chunk, sizes[index], low) >= 0;
+    }
+
+    /**
+     * Returns the first set position equal to or larger than pos, or -1 if
+     * there is none
+     */
+    public int nextSetBit(int pos) {
+
+        if (pos < 0) {
+            pos = 0;
+        }
+
+        int key   = pos >>> 16;
+        int index = findChunk(key);
+        int low   = pos & 0xFFFF;
+
+        if (index < 0) {
+            index = -index - 1;
+            low   = 0;
+        }
+
+        for (; index < chunkCount; index++) {
+            if (keys[index] != key) {
+                low = 0;
+            }
+
+            int found = nextInChunk(index, low);
+
+            if (found != -1) {
+                return (keys[index] << 16) | found;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns a new map with the positions set in both maps
+     */
+    public static SparseBitMap and(SparseBitMap a, SparseBitMap b) {
+
+        SparseBitMap result = new SparseBitMap();
+        int          i      = 0;
+        int          j      = 0;
+
+        while (i < a.chunkCount && j < b.chunkCount) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                long[] bits = toBits(a.chunks[i], a.sizes[i]);
+
+                if (b.chunks[j] instanceof long[]) {
+                    long[] other = (long[]) b.chunks[j];
+
+                    for (int k = 0; k < BITS_WORDS; k++) {
+                        bits[k] &= other[k];
+                    }
+                } else {
+                    bits = andArray(bits, (char[]) b.chunks[j], b.sizes[j]);
+                }
+
+                result.addChunk(a.keys[i], bits);
+
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a new map with the positions set in either map
+     */
+    public static SparseBitMap or(SparseBitMap a, SparseBitMap b) {
+
+        SparseBitMap result = new SparseBitMap();
+        int          i      = 0;
+        int          j      = 0;
+
+        while (i < a.chunkCount || j < b.chunkCount) {
+            if (j == b.chunkCount
+                    || (i < a.chunkCount && a.keys[i] < b.keys[j])) {
+                result.addChunk(a.keys[i], toBits(a.chunks[i], a.sizes[i]));
+
+                i++;
+            } else if (i == a.chunkCount || a.keys[i] > b.keys[j]) {
+                result.addChunk(b.keys[j], toBits(b.chunks[j], b.sizes[j]));
+
+                j++;
+            } else {
+                long[] bits  = toBits(a.chunks[i], a.sizes[i]);
+                Object other = b.chunks[j];
+
+                if (other instanceof long[]) {
+                    long[] otherbits = (long[]) other;
+
+                    for (int k = 0; k < BITS_WORDS; k++) {
+                        bits[k] |= otherbits[k];
+                    }
+                } else {
+                    char[] array = (char[]) other;
+
+                    for (int k = 0; k < b.sizes[j]; k++) {
+                        bits[array[k] >> 6] |= 1L << (array[k] & 0x3F);
+                    }
+                }
+
+                result.addChunk(a.keys[i], bits);
+
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Appends a chunk with a key larger than the existing keys, in the
+     * smaller of the two forms.
+     */
+    private void addChunk(int key, long[] bits) {
+
+        int size = 0;
+
+        for (int k = 0; k < BITS_WORDS; k++) {
+            size += Long.bitCount(bits[k]);
+        }
+
+        if (size == 0) {
+            return;
+        }
+
+        insertChunk(chunkCount, key, size > ARRAY_MAX ? (Object) bits
+                                                      : toArray(bits, size));
+
+        sizes[chunkCount - 1] = size;
+        cardinality           += size;
+    }
+
+    private int nextInChunk(int index, int low) {
+
+        Object chunk = chunks[index];
+
+        if (chunk instanceof char[]) {
+            char[] array = (char[]) chunk;
+            int    i     = find(array, sizes[index], low);
+
+            if (i < 0) {
+                i = -i - 1;
+            }
+
+            return i < sizes[index] ? array[i]
+                                    : -1;
+        }
+
+        long[] bits = (long[]) chunk;
+        int    w    = low >> 6;
+        long   word = bits[w] & (-1L << (low & 0x3F));
+
+        while (word == 0) {
+            w++;
+
+            if (w == BITS_WORDS) {
+                return -1;
+            }
+
+            word = bits[w];
+        }
+
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    private int findChunk(int key) {
+
+        int low  = 0;
+        int high = chunkCount - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+
+            if (keys[mid] < key) {
+                low = mid + 1;
+            } else if (keys[mid] > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -low - 1;
+    }
+
+    private void insertChunk(int index, int key, Object chunk) {
+
+        if (chunkCount == keys.length) {
+            int[]    newkeys   = new int[chunkCount * 2];
+            Object[] newchunks = new Object[chunkCount * 2];
+            int[]    newsizes  = new int[chunkCount * 2];
+
+            System.arraycopy(keys, 0, newkeys, 0, chunkCount);
+            System.arraycopy(chunks, 0, newchunks, 0, chunkCount);
+            System.arraycopy(sizes, 0, newsizes, 0, chunkCount);
+
+            keys   = newkeys;
+            chunks = newchunks;
+            sizes  = newsizes;
+        }
+
+        System.arraycopy(keys, index, keys, index + 1, chunkCount - index);
+        System.arraycopy(chunks, index, chunks, index + 1,
+                         chunkCount - index);
+        System.arraycopy(sizes, index, sizes, index + 1, chunkCount - index);
+
+        keys[index]   = key;
+        chunks[index] = chunk;
+        sizes[index]  = 0;
+
+        chunkCount++;
+    }
+
+    private void removeChunk(int index) {
+
+        chunkCount--;
+
+        System.arraycopy(keys, index + 1, keys, index, chunkCount - index);
+        System.arraycopy(chunks, index + 1, chunks, index,
+                         chunkCount - index);
+        System.arraycopy(sizes, index + 1, sizes, index, chunkCount - index);
+
+        chunks[chunkCount] = null;
+    }
+
+    private static int find(char[] array, int size, int value) {
+
+        int low  = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+
+            if (array[mid] < value) {
+                low = mid + 1;
+            } else if (array[mid] > value) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -low - 1;
+    }
+
+    /**
+     * Returns a new bit map with the positions of the chunk.
+     */
+    private static long[] toBits(Object chunk, int size) {
+
+        if (chunk instanceof long[]) {
+            return ((long[]) chunk).clone();
+        }
+
+        char[] array = (char[]) chunk;
+        long[] bits  = new long[BITS_WORDS];
+
+        for (int i = 0; i < size; i++) {
+            bits[array[i] >> 6] |= 1L << (array[i] & 0x3F);
+        }
+
+        return bits;
+    }
+
+    private static char[] toArray(long[] bits, int size) {
+
+        char[] array = new char[Math.max(size, 4)];
+        int    i     = 0;
+
+        for (int w = 0; w < BITS_WORDS; w++) {
+            long word = bits[w];
+
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+
+                array[i++] = (char) ((w << 6) + bit);
+                word       &= word - 1;
+            }
+        }
+
+        return array;
+    }
+
+    private static long[] andArray(long[] bits, char[] array, int size) {
+
+        long[] result = new long[BITS_WORDS];
+
+        for (int i = 0; i < size; i++) {
+            int  low  = array[i];
+            long mask = 1L << (low & 0x3F);
+
+            result[low >> 6] |= bits[low >> 6] & mask;
+        }
+
+        return result;
+    }
+}
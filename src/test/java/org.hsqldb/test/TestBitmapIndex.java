@@ -0,0 +1,254 @@
+/* Copyright (c) 2001-2005, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks COUNT(*) and other queries with conditions on columns with a
+ * BITMAP INDEX against the same queries over a table without bitmap
+ * indexes, after changes to the rows, ROLLBACK, CHECKPOINT DEFRAG and
+ * reopening the database.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+public class TestBitmapIndex {
+
+    private static final String[] conditions = {
+        "st = 1", "st = 4 AND rg = 'r2'", "st IS NULL", "rg IS NULL OR st = 0",
+        "st IN (2, 3, 6) AND fl = FALSE", "(st = 5 OR rg = 'r1') AND fl",
+        "st = 3 AND id > 500", "st IN (1, 9) OR rg IN ('r0', 'r5')"
+    };
+    private File       dir;
+    private Connection connection;
+    private Statement  statement;
+    private Random     random;
+    private int        nextId;
+
+    @Before
+    public void setUp() throws Exception {
+
+        Class.forName("org.hsqldb.jdbcDriver");
+
+        dir = File.createTempFile("testbitmap", "");
+
+        dir.delete();
+        dir.mkdirs();
+        connect();
+        statement.execute("CREATE CACHED TABLE k (id INT PRIMARY KEY,"
+                          + " st INT, rg VARCHAR(10), fl BOOLEAN)");
+        statement.execute("CREATE MEMORY TABLE m (id INT PRIMARY KEY,"
+                          + " st INT, rg VARCHAR(10), fl BOOLEAN)");
+        statement.execute("CREATE MEMORY TABLE u (id INT PRIMARY KEY,"
+                          + " st INT, rg VARCHAR(10), fl BOOLEAN)");
+
+        random = new Random(3);
+
+        insert(2000);
+
+        String[] tables = {
+            "k", "m"
+        };
+
+        for (int i = 0; i < tables.length; i++) {
+            String t = tables[i];
+
+            statement.execute("CREATE BITMAP INDEX " + t + "st ON " + t
+                              + "(st)");
+            statement.execute("CREATE BITMAP INDEX " + t + "rg ON " + t
+                              + "(rg)");
+            statement.execute("CREATE BITMAP INDEX " + t + "fl ON " + t
+                              + "(fl)");
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        statement.execute("SHUTDOWN");
+        connection.close();
+
+        File[] files = dir.listFiles();
+
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+
+        dir.delete();
+    }
+
+    @Test
+    public void testCreate() throws SQLException {
+        assertSame();
+    }
+
+    @Test
+    public void testInsertUpdateDelete() throws SQLException {
+
+        insert(1000);
+        assertSame();
+        execute("DELETE FROM %s WHERE st = 7 OR rg = 'r5' AND fl");
+        assertSame();
+        execute("UPDATE %s SET st = 6 WHERE st = 2 AND rg = 'r1'");
+        execute("UPDATE %s SET rg = NULL, fl = NOT fl WHERE st = 4");
+        assertSame();
+        execute("UPDATE %s SET id = id + 10000 WHERE st IS NULL");
+        assertSame();
+        execute("DELETE FROM %s WHERE id < 1500");
+        assertSame();
+        insert(500);
+        assertSame();
+        execute("DELETE FROM %s");
+        assertSame();
+    }
+
+    @Test
+    public void testRollback() throws SQLException {
+
+        connection.setAutoCommit(false);
+        execute("DELETE FROM %s WHERE st = 1");
+        execute("UPDATE %s SET rg = 'r9' WHERE st = 3");
+        insert(300);
+        assertSame();
+        connection.rollback();
+        assertSame();
+        execute("UPDATE %s SET st = 1 WHERE rg = 'r2'");
+        connection.commit();
+        connection.setAutoCommit(true);
+        assertSame();
+    }
+
+    @Test
+    public void testDefrag() throws Exception {
+
+        execute("DELETE FROM %s WHERE MOD(id, 3) = 0");
+        execute("UPDATE %s SET st = st + 1 WHERE rg = 'r3'");
+        statement.execute("CHECKPOINT DEFRAG");
+        assertSame();
+        insert(500);
+        execute("DELETE FROM %s WHERE st = 2");
+        assertSame();
+        statement.execute("SHUTDOWN");
+        connection.close();
+        connect();
+        assertSame();
+        execute("UPDATE %s SET fl = TRUE WHERE st = 5");
+        assertSame();
+    }
+
+    private void insert(int count) throws SQLException {
+
+        for (int i = 0; i < count; i++) {
+            String st = random.nextInt(20) == 0 ? "NULL"
+                                                : String.valueOf(
+                                                    random.nextInt(8));
+            String rg = random.nextInt(30) == 0 ? "NULL"
+                                                : "'r" + random.nextInt(6)
+                                                  + "'";
+            String values = " VALUES (" + nextId++ + ", " + st + ", " + rg
+                            + ", " + random.nextBoolean() + ")";
+
+            statement.execute("INSERT INTO k" + values);
+            statement.execute("INSERT INTO m" + values);
+            statement.execute("INSERT INTO u" + values);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+
+        statement.execute(sql.replaceAll("%s", "k"));
+        statement.execute(sql.replaceAll("%s", "m"));
+        statement.execute(sql.replaceAll("%s", "u"));
+    }
+
+    /**
+     * Compares the tables with bitmap indexes with table u.
+     */
+    private void assertSame() throws SQLException {
+
+        for (int i = 0; i < conditions.length; i++) {
+            String count = "SELECT COUNT(*) FROM %s WHERE " + conditions[i];
+            String rows  = "SELECT * FROM %s WHERE " + conditions[i]
+                           + " ORDER BY id";
+
+            assertSame(count);
+            assertSame(rows);
+        }
+
+        assertSame("SELECT COUNT(*) FROM %s");
+    }
+
+    private void assertSame(String sql) throws SQLException {
+
+        String expected = query(sql.replaceAll("%s", "u"));
+
+        assertEquals(sql, expected, query(sql.replaceAll("%s", "k")));
+        assertEquals(sql, expected, query(sql.replaceAll("%s", "m")));
+    }
+
+    private void connect() throws SQLException {
+
+        connection = DriverManager.getConnection("jdbc:hsqldb:file:"
+                + dir.getPath() + "/db", "sa", "");
+        statement = connection.createStatement();
+    }
+
+    private String query(String sql) throws SQLException {
+
+        ResultSet    rs = statement.executeQuery(sql);
+        StringBuffer sb = new StringBuffer();
+        int          n  = rs.getMetaData().getColumnCount();
+
+        while (rs.next()) {
+            for (int i = 1; i <= n; i++) {
+                sb.append(rs.getString(i)).append(' ');
+            }
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+}
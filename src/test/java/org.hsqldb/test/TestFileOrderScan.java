@@ -0,0 +1,178 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package org.hsqldb.test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks aggregates over CACHED tables that read a whole table or an
+ * index range in file order against the same aggregates over a MEMORY
+ * table with the same rows, including range limits of another type than
+ * the indexed column.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+public class TestFileOrderScan {
+
+    private File       dir;
+    private Connection connection;
+    private Statement  statement;
+
+    @Before
+    public void setUp() throws Exception {
+
+        Class.forName("org.hsqldb.jdbcDriver");
+
+        dir = File.createTempFile("testfileorder", "");
+
+        dir.delete();
+        dir.mkdirs();
+
+        connection = DriverManager.getConnection("jdbc:hsqldb:file:"
+                + dir.getPath() + "/db", "sa", "");
+        statement = connection.createStatement();
+
+        statement.execute("CREATE CACHED TABLE t (id INT PRIMARY KEY,"
+                          + " a INT, d DOUBLE, b BIGINT)");
+        statement.execute("CREATE INDEX ta ON t(a)");
+        statement.execute("CREATE INDEX te ON t(a + 1)");
+        statement.execute("CREATE INDEX td ON t(d)");
+        statement.execute("CREATE INDEX tb ON t(b)");
+        statement.execute("CREATE MEMORY TABLE m (id INT PRIMARY KEY,"
+                          + " a INT, d DOUBLE, b BIGINT)");
+
+        Random random = new Random(5);
+
+        for (int i = 0; i < 1000; i++) {
+            int    a      = random.nextInt(17) - 8;
+            double d      = random.nextInt(40) / 4.0;
+            String values = " VALUES (" + i + ", " + a + ", " + d + ", " + a
+                            + ")";
+
+            statement.execute("INSERT INTO t" + values);
+            statement.execute("INSERT INTO m" + values);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        statement.execute("SHUTDOWN");
+        connection.close();
+
+        File[] files = dir.listFiles();
+
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+
+        dir.delete();
+    }
+
+    @Test
+    public void testFullScan() throws SQLException {
+        assertSame("COUNT(*), SUM(a), MIN(d), MAX(b)", "MOD(id, 7) <> 3");
+    }
+
+    @Test
+    public void testIntegerLimits() throws SQLException {
+        assertSame("COUNT(*), SUM(id)", "a > 1");
+        assertSame("COUNT(*), SUM(id)", "a >= 1 AND a < 3");
+        assertSame("COUNT(*), SUM(id)", "a = 5");
+    }
+
+    @Test
+    public void testFractionalLimits() throws SQLException {
+        assertSame("COUNT(*), SUM(id)", "a < 5.5");
+        assertSame("COUNT(*), SUM(id)", "a > 4.5 AND a < 5.5");
+        assertSame("COUNT(*), SUM(id)", "a <= 5.5");
+        assertSame("COUNT(*), SUM(id)", "a > -4.5");
+        assertSame("COUNT(*), SUM(id)", "a > 4.9 AND a <= 7.1");
+        assertSame("COUNT(*), SUM(id)", "a = 5.5");
+        assertSame("COUNT(*), SUM(id)", "a = 5.0");
+        assertSame("COUNT(*), SUM(id)", "a < 5.5E0");
+        assertSame("COUNT(*), SUM(id)", "b < 5.5");
+    }
+
+    @Test
+    public void testExpressionIndexLimits() throws SQLException {
+        assertSame("COUNT(*), SUM(id)", "a + 1 < 2.5");
+        assertSame("COUNT(*), SUM(id)", "a + 1 >= 3");
+    }
+
+    @Test
+    public void testDoubleLimits() throws SQLException {
+        assertSame("COUNT(*), SUM(id)", "d < 3");
+        assertSame("COUNT(*), SUM(id)", "d > 2 AND d <= 4");
+        assertSame("COUNT(*), SUM(id)", "d = 2");
+    }
+
+    private void assertSame(String columns,
+                            String condition) throws SQLException {
+
+        String sql = "SELECT " + columns + " FROM %s WHERE " + condition;
+
+        assertEquals(condition, query(sql.replaceAll("%s", "m")),
+                     query(sql.replaceAll("%s", "t")));
+    }
+
+    private String query(String sql) throws SQLException {
+
+        ResultSet    rs = statement.executeQuery(sql);
+        StringBuffer sb = new StringBuffer();
+        int          n  = rs.getMetaData().getColumnCount();
+
+        while (rs.next()) {
+            for (int i = 1; i <= n; i++) {
+                sb.append(rs.getString(i)).append(' ');
+            }
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,132 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that an OR condition combined with an equality on the leading
+ * column of a multi-column index is applied to every row, and not read as
+ * one of its alternatives when the index is used for the seek.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+public class TestIndexOrConditions {
+
+    private Connection connection;
+    private Statement  statement;
+
+    @Before
+    public void setUp() throws Exception {
+
+        Class.forName("org.hsqldb.jdbcDriver");
+
+        connection = DriverManager.getConnection(
+            "jdbc:hsqldb:mem:testindexor", "sa", "");
+        statement = connection.createStatement();
+
+        statement.execute(
+            "CREATE TABLE t (id INT PRIMARY KEY, a INT, b INT, c VARCHAR(10))");
+        statement.execute("CREATE INDEX ta ON t(a)");
+        statement.execute("CREATE INDEX tba ON t(b, a)");
+        statement.execute("CREATE INDEX tc ON t(c)");
+        statement.execute("INSERT INTO t VALUES (1, 10, 2, 'v1a')");
+        statement.execute("INSERT INTO t VALUES (3, 12, 2, 'v3')");
+        statement.execute("INSERT INTO t VALUES (4, 10, 2, 'v1c')");
+        statement.execute("CREATE TABLE m (id INT PRIMARY KEY, a INT, b INT)");
+        statement.execute("CREATE BITMAP INDEX ma ON m(a)");
+        statement.execute("CREATE INDEX mb ON m(b, a)");
+        statement.execute("INSERT INTO m VALUES (1, 10, 2)");
+        statement.execute("INSERT INTO m VALUES (3, 12, 2)");
+        statement.execute("INSERT INTO m VALUES (4, 10, 2)");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        statement.execute("SHUTDOWN");
+        connection.close();
+    }
+
+    @Test
+    public void testOrOnSecondIndexColumn() throws SQLException {
+        assertEquals("1 3 4", query(
+            "SELECT id FROM t WHERE (a = 10 OR a = 12) AND b = 2 ORDER BY id"));
+    }
+
+    @Test
+    public void testOrOverSeveralIndexes() throws SQLException {
+        assertEquals("3 4", query("SELECT id FROM t WHERE b = 2"
+                                  + " AND (a = 12 OR c = 'v1c') ORDER BY id"));
+    }
+
+    @Test
+    public void testOrOnBitmapIndex() throws SQLException {
+        assertEquals("1 3 4", query(
+            "SELECT id FROM m WHERE (a = 10 OR a = 12) AND b = 2 ORDER BY id"));
+    }
+
+    @Test
+    public void testCountOrOnBitmapIndex() throws SQLException {
+        assertEquals("3", query(
+            "SELECT COUNT(*) FROM m WHERE (a = 10 OR a = 12) AND b = 2"));
+    }
+
+    private String query(String sql) throws SQLException {
+
+        ResultSet    rs = statement.executeQuery(sql);
+        StringBuffer sb = new StringBuffer();
+
+        while (rs.next()) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+
+            sb.append(rs.getString(1));
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+}
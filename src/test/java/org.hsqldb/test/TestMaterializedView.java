@@ -0,0 +1,303 @@
+/* Copyright (c) 2001-2005, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that the rows of materialized views match their defining queries
+ * after DML, ROLLBACK, REFRESH and reopening the database, and the rules
+ * for dropping views and their base tables.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+public class TestMaterializedView {
+
+    /** names and defining queries of the maintained views */
+    private static final String[][] maintained = {
+        {
+            "mr", "SELECT id, a, v FROM t WHERE b < 50"
+        }, {
+            "mg", "SELECT b, COUNT(*), SUM(c), COUNT(a) FROM t"
+                  + " WHERE v <> 'x3' GROUP BY b"
+        }, {
+            "mt", "SELECT COUNT(*), SUM(c) FROM t"
+        }
+    };
+    private File       dir;
+    private Connection connection;
+    private Statement  statement;
+
+    @Before
+    public void setUp() throws Exception {
+
+        Class.forName("org.hsqldb.jdbcDriver");
+
+        dir = File.createTempFile("testmatview", "");
+
+        dir.delete();
+        dir.mkdirs();
+        connect();
+        statement.execute("CREATE CACHED TABLE t (id INT PRIMARY KEY,"
+                          + " a INT, b INT, c INT NOT NULL, v VARCHAR(10))");
+        statement.execute("CREATE TABLE u (id INT PRIMARY KEY, x INT)");
+
+        for (int i = 0; i < 500; i++) {
+            String a = i % 7 == 0 ? "NULL"
+                                  : String.valueOf(i % 37);
+            String b = i % 13 == 0 ? "NULL"
+                                   : String.valueOf(i % 100);
+
+            statement.execute("INSERT INTO t VALUES (" + i + ", " + a + ", "
+                              + b + ", " + i % 5 + ", 'x" + i % 10 + "')");
+
+            if (i % 2 == 0) {
+                statement.execute("INSERT INTO u VALUES (" + i + ", "
+                                  + i % 11 + ")");
+            }
+        }
+
+        statement.execute("CREATE MATERIALIZED VIEW mr AS "
+                          + maintained[0][1]);
+        statement.execute("CREATE CACHED MATERIALIZED VIEW mg"
+                          + " (b, n, sc, na) AS " + maintained[1][1]);
+        statement.execute("CREATE MEMORY MATERIALIZED VIEW mt (n, sc) AS "
+                          + maintained[2][1]);
+        statement.execute("CREATE MATERIALIZED VIEW mj AS"
+                          + " SELECT t.id, u.x FROM t JOIN u ON t.id = u.id");
+        statement.execute("CREATE INDEX imr ON mr(a)");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        statement.execute("SHUTDOWN");
+        connection.close();
+
+        File[] files = dir.listFiles();
+
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+
+        dir.delete();
+    }
+
+    @Test
+    public void testCreate() throws SQLException {
+        assertMaintained();
+        assertRefreshed();
+    }
+
+    @Test
+    public void testInsertUpdateDelete() throws SQLException {
+
+        statement.execute("INSERT INTO t VALUES (1000, 1, 2, 3, 'x1')");
+        statement.execute("INSERT INTO t VALUES (1001, NULL, NULL, 4, 'x3')");
+        assertMaintained();
+        statement.execute("DELETE FROM t WHERE id < 50");
+        assertMaintained();
+        statement.execute("UPDATE t SET b = b + 1, c = c + 2 WHERE id < 300");
+        assertMaintained();
+        statement.execute("UPDATE t SET v = 'x3' WHERE id BETWEEN 300 AND 350");
+        assertMaintained();
+        statement.execute("UPDATE t SET id = id + 2000 WHERE a = 5");
+        assertMaintained();
+        statement.execute("DELETE FROM t");
+        assertMaintained();
+        assertEquals("0 null ", query("SELECT * FROM mt"));
+    }
+
+    @Test
+    public void testRollback() throws SQLException {
+
+        String before = query("SELECT * FROM mg ORDER BY 1, 2, 3, 4");
+
+        connection.setAutoCommit(false);
+        statement.execute("DELETE FROM t WHERE id > 400");
+        statement.execute("UPDATE t SET b = 7 WHERE id < 250");
+        statement.execute("INSERT INTO t VALUES (1000, 1, 2, 3, 'x1')");
+        assertMaintained();
+        connection.rollback();
+        assertMaintained();
+        assertEquals(before, query("SELECT * FROM mg ORDER BY 1, 2, 3, 4"));
+        statement.execute("UPDATE t SET b = 8 WHERE id < 100");
+        connection.commit();
+        connection.setAutoCommit(true);
+        assertMaintained();
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+
+        statement.execute("CHECKPOINT");
+        statement.execute("INSERT INTO t VALUES (1000, 1, 2, 3, 'x1')");
+        statement.execute("UPDATE t SET b = b + 1 WHERE id < 300");
+        statement.execute("DELETE FROM t WHERE id BETWEEN 100 AND 150");
+        statement.execute("SHUTDOWN IMMEDIATELY");
+        connection.close();
+        connect();
+        assertMaintained();
+        statement.execute("SHUTDOWN SCRIPT");
+        connection.close();
+        connect();
+        assertMaintained();
+        statement.execute("DELETE FROM t WHERE id < 200");
+        statement.execute("UPDATE t SET v = 'x3' WHERE id > 400");
+        assertMaintained();
+        assertEquals("1", query("SELECT COUNT(*) FROM"
+                                + " information_schema.system_indexinfo"
+                                + " WHERE index_name = 'IMR'").trim());
+    }
+
+    @Test
+    public void testRefresh() throws SQLException {
+
+        statement.execute("DELETE FROM u WHERE id < 100");
+        statement.execute("INSERT INTO u VALUES (1, 5)");
+        assertFalse(query("SELECT * FROM mj ORDER BY 1, 2").equals(
+            query("SELECT t.id, u.x FROM t JOIN u ON t.id = u.id"
+                  + " ORDER BY 1, 2")));
+        statement.execute("REFRESH MATERIALIZED VIEW mj");
+        assertRefreshed();
+        statement.execute("REFRESH MATERIALIZED VIEW mr");
+        assertMaintained();
+    }
+
+    @Test
+    public void testReadOnly() throws SQLException {
+        assertError("INSERT INTO mr VALUES (1, 1, 'a')");
+        assertError("DELETE FROM mg");
+        assertError("UPDATE mt SET n = 0");
+    }
+
+    @Test
+    public void testDrop() throws SQLException {
+
+        assertError("DROP TABLE t");
+        assertError("ALTER TABLE t RENAME TO t2");
+        assertError("DROP MATERIALIZED VIEW t");
+        assertError("DROP VIEW mr");
+        statement.execute("DROP MATERIALIZED VIEW mr");
+        assertError("SELECT * FROM mr");
+        statement.execute("INSERT INTO t VALUES (1000, 1, 2, 3, 'x1')");
+        assertMaintained(1);
+        statement.execute("DROP TABLE t CASCADE");
+        assertError("SELECT * FROM mg");
+        assertError("SELECT * FROM mt");
+        assertError("SELECT * FROM mj");
+        statement.execute("DROP TABLE u");
+    }
+
+    /**
+     * Checks the rows of each maintained view against its query.
+     */
+    private void assertMaintained() throws SQLException {
+        assertMaintained(0);
+    }
+
+    private void assertMaintained(int from) throws SQLException {
+
+        for (int i = from; i < maintained.length; i++) {
+            assertView(maintained[i][0], maintained[i][1]);
+        }
+    }
+
+    private void assertRefreshed() throws SQLException {
+        assertView("mj", "SELECT t.id, u.x FROM t JOIN u ON t.id = u.id");
+    }
+
+    private void assertView(String name, String sql) throws SQLException {
+
+        ResultSet rs    = statement.executeQuery(sql);
+        int       n     = rs.getMetaData().getColumnCount();
+        String    order = " ORDER BY 1";
+
+        rs.close();
+
+        for (int i = 2; i <= n; i++) {
+            order += ", " + i;
+        }
+
+        assertEquals(name, query(sql + order),
+                     query("SELECT * FROM " + name + order));
+    }
+
+    private void assertError(String sql) {
+
+        try {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            return;
+        }
+
+        fail(sql);
+    }
+
+    private void connect() throws SQLException {
+
+        connection = DriverManager.getConnection("jdbc:hsqldb:file:"
+                + dir.getPath() + "/db", "sa", "");
+        statement = connection.createStatement();
+    }
+
+    private String query(String sql) throws SQLException {
+
+        ResultSet    rs = statement.executeQuery(sql);
+        StringBuffer sb = new StringBuffer();
+        int          n  = rs.getMetaData().getColumnCount();
+
+        while (rs.next()) {
+            for (int i = 1; i <= n; i++) {
+                sb.append(rs.getString(i)).append(' ');
+            }
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+}
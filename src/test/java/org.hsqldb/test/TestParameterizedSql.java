@@ -0,0 +1,148 @@
+/* Copyright (c) 2001-2008, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that directly executed statements whose literals are replaced
+ * with parameters return the same results as the statements compiled with
+ * the literals. Each statement is run twice, so that the second run uses
+ * the compiled statement kept for the parameterized sql.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+public class TestParameterizedSql {
+
+    private Connection connection;
+    private Statement  statement;
+
+    @Before
+    public void setUp() throws Exception {
+
+        Class.forName("org.hsqldb.jdbcDriver");
+
+        connection = DriverManager.getConnection(
+            "jdbc:hsqldb:mem:testparameterized", "sa", "");
+        statement = connection.createStatement();
+
+        statement.execute("CREATE TABLE t (id INT PRIMARY KEY, a INT,"
+                          + " bi BIGINT, d DECIMAL(10,2), f DOUBLE,"
+                          + " s SMALLINT)");
+
+        for (int i = 1; i <= 6; i++) {
+            statement.execute("INSERT INTO t VALUES (" + i + ", " + i + ", "
+                              + i + ", " + i + ".5, 0, " + i + ")");
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        statement.execute("SHUTDOWN");
+        connection.close();
+    }
+
+    @Test
+    public void testDecimalLiteralWithIntegerColumn() throws SQLException {
+        assertTwice("3 4 5 6",
+                    "SELECT id FROM t WHERE a / 2.0 > 1 ORDER BY id");
+    }
+
+    @Test
+    public void testDecimalLiteralWithBigintColumn() throws SQLException {
+        assertTwice("3 4 5 6",
+                    "SELECT id FROM t WHERE bi / 2.0 > 1 ORDER BY id");
+    }
+
+    @Test
+    public void testIntegerLiteralWithIntegerColumn() throws SQLException {
+        assertTwice("4 5 6", "SELECT id FROM t WHERE a / 2 > 1 ORDER BY id");
+    }
+
+    @Test
+    public void testIntegerLiteralWithWiderColumns() throws SQLException {
+        assertTwice("3 4 5 6", "SELECT id FROM t WHERE bi * 2 > 5 ORDER BY id");
+        assertTwice("2 3 4 5 6", "SELECT id FROM t WHERE d > 2 ORDER BY id");
+        assertTwice("1", "SELECT id FROM t WHERE f + 1 = 1 AND id = 1");
+    }
+
+    @Test
+    public void testIntegerLiteralWithSmallintColumn() throws SQLException {
+        assertTwice("32768", "SELECT s + 32767 FROM t WHERE id = 1");
+    }
+
+    @Test
+    public void testUpdateWithDecimalLiteral() throws SQLException {
+
+        for (int i = 0; i < 2; i++) {
+            statement.execute("UPDATE t SET f = a / 2.0 WHERE id = 1");
+            assertEquals("0.5", query("SELECT f FROM t WHERE id = 1"));
+            statement.execute("UPDATE t SET f = 0 WHERE id = 1");
+        }
+    }
+
+    private void assertTwice(String expected,
+                             String sql) throws SQLException {
+        assertEquals(expected, query(sql));
+        assertEquals(expected, query(sql));
+    }
+
+    private String query(String sql) throws SQLException {
+
+        ResultSet    rs = statement.executeQuery(sql);
+        StringBuffer sb = new StringBuffer();
+
+        while (rs.next()) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+
+            sb.append(rs.getString(1));
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,268 @@
+/* Copyright (c) 2001-2005, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.hsqldb.store.SparseBitMap;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks SparseBitMap against java.util.BitSet for positions in several
+ * chunks, including the conversion of chunks between the sorted array and
+ * the plain bit map forms, and the results of AND and OR.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+public class TestSparseBitMap {
+
+    private static final int CHUNK     = 65536;
+    private static final int ARRAY_MAX = 4096;
+
+    @Test
+    public void testSetAndUnset() {
+
+        SparseBitMap map      = new SparseBitMap();
+        BitSet       expected = new BitSet();
+
+        assertEquals(-1, map.nextSetBit(0));
+        assertEquals(0, map.set(CHUNK - 1));
+        assertEquals(1, map.set(CHUNK - 1));
+        assertEquals(0, map.set(CHUNK));
+        assertEquals(0, map.set(3 * CHUNK + 5));
+        expected.set(CHUNK - 1);
+        expected.set(CHUNK);
+        expected.set(3 * CHUNK + 5);
+        assertSame(expected, map);
+        assertEquals(3 * CHUNK + 5, map.nextSetBit(CHUNK + 1));
+        assertEquals(-1, map.nextSetBit(3 * CHUNK + 6));
+        assertEquals(1, map.unset(CHUNK));
+        assertEquals(0, map.unset(CHUNK));
+        assertEquals(0, map.unset(2 * CHUNK));
+        expected.clear(CHUNK);
+        assertSame(expected, map);
+    }
+
+    @Test
+    public void testChunkConversion() {
+
+        SparseBitMap map      = new SparseBitMap();
+        BitSet       expected = new BitSet();
+        int          base     = 2 * CHUNK;
+
+        // the array form holds up to ARRAY_MAX positions
+        for (int i = 0; i < ARRAY_MAX; i++) {
+            set(map, expected, base + i * 16);
+        }
+
+        assertSame(expected, map);
+
+        // one more converts the chunk to a bit map
+        set(map, expected, base + 1);
+        assertSame(expected, map);
+        set(map, expected, base + 3);
+        assertSame(expected, map);
+
+        // the bit map is converted back at half the limit
+        for (int i = 0; i <= ARRAY_MAX / 2 + 1; i++) {
+            unset(map, expected, base + i * 16);
+            assertEquals(expected.cardinality(), map.cardinality());
+        }
+
+        assertSame(expected, map);
+
+        for (int i = 0; i < 5; i++) {
+            set(map, expected, base + i * 16);
+        }
+
+        assertSame(expected, map);
+
+        // removing the last position removes the chunk
+        for (int i = expected.nextSetBit(0); i >= 0;
+                i = expected.nextSetBit(i + 1)) {
+            assertEquals(1, map.unset(i));
+        }
+
+        assertEquals(0, map.cardinality());
+        assertEquals(-1, map.nextSetBit(0));
+    }
+
+    @Test
+    public void testAndOr() {
+
+        SparseBitMap a  = new SparseBitMap();
+        SparseBitMap b  = new SparseBitMap();
+        BitSet       ea = new BitSet();
+        BitSet       eb = new BitSet();
+
+        // chunk 0: bit maps in both, overlapping in fewer than ARRAY_MAX
+        for (int i = 0; i < 6000; i++) {
+            set(a, ea, i * 2);
+            set(b, eb, i * 3);
+        }
+
+        // chunk 1: bit map and array, and chunk 2: arrays in both
+        for (int i = 0; i < 5000; i++) {
+            set(a, ea, CHUNK + i * 13);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            set(b, eb, CHUNK + i * 7);
+            set(a, ea, 2 * CHUNK + i * 2);
+            set(b, eb, 2 * CHUNK + i * 5);
+        }
+
+        // chunk 3: disjoint arrays, chunk 4 and 5: in one map only
+        set(a, ea, 3 * CHUNK + 1);
+        set(b, eb, 3 * CHUNK + 2);
+
+        for (int i = 0; i < 5000; i++) {
+            set(a, ea, 4 * CHUNK + i);
+        }
+
+        set(b, eb, 5 * CHUNK);
+        assertAndOr(ea, eb, a, b);
+        assertAndOr(eb, ea, b, a);
+        assertAndOr(ea, ea, a, a);
+        assertAndOr(ea, new BitSet(), a, new SparseBitMap());
+
+        // results can be changed like other maps
+        SparseBitMap result   = SparseBitMap.or(a, b);
+        BitSet       expected = (BitSet) ea.clone();
+
+        expected.or(eb);
+
+        for (int i = 0; i < 3000; i++) {
+            unset(result, expected, i * 2);
+        }
+
+        set(result, expected, 4 * CHUNK + 6000);
+        assertSame(expected, result);
+    }
+
+    @Test
+    public void testRandom() {
+
+        Random       random = new Random(7);
+        SparseBitMap a      = new SparseBitMap();
+        SparseBitMap b      = new SparseBitMap();
+        BitSet       ea     = new BitSet();
+        BitSet       eb     = new BitSet();
+
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < 40000; i++) {
+                int chunk = random.nextInt(4);
+
+                // chunk 0 is dense, the others sparse
+                int pos = chunk * CHUNK
+                          + random.nextInt(chunk == 0 ? 8192
+                                                      : CHUNK);
+
+                if (random.nextInt(3) == 0) {
+                    unset(a, ea, pos);
+                } else {
+                    set(a, ea, pos);
+                }
+
+                pos = random.nextInt(4 * CHUNK);
+
+                if (random.nextInt(round + 2) == 0) {
+                    unset(b, eb, pos);
+                } else {
+                    set(b, eb, pos);
+                }
+            }
+
+            assertSame(ea, a);
+            assertSame(eb, b);
+            assertAndOr(ea, eb, a, b);
+        }
+    }
+
+    private static void set(SparseBitMap map, BitSet expected, int pos) {
+
+        assertEquals(expected.get(pos) ? 1
+                                       : 0, map.set(pos));
+        expected.set(pos);
+    }
+
+    private static void unset(SparseBitMap map, BitSet expected, int pos) {
+
+        assertEquals(expected.get(pos) ? 1
+                                       : 0, map.unset(pos));
+        expected.clear(pos);
+    }
+
+    private static void assertAndOr(BitSet ea, BitSet eb, SparseBitMap a,
+                                    SparseBitMap b) {
+
+        BitSet and = (BitSet) ea.clone();
+        BitSet or  = (BitSet) ea.clone();
+
+        and.and(eb);
+        or.or(eb);
+        assertSame(and, SparseBitMap.and(a, b));
+        assertSame(or, SparseBitMap.or(a, b));
+    }
+
+    /**
+     * Checks the cardinality, nextSetBit() and isSet() of the map.
+     */
+    private static void assertSame(BitSet expected, SparseBitMap map) {
+
+        assertEquals(expected.cardinality(), map.cardinality());
+
+        int pos = -1;
+
+        do {
+            int next = expected.nextSetBit(pos + 1);
+
+            assertEquals(next, map.nextSetBit(pos + 1));
+
+            for (int i = pos + 1; i < next && i < pos + 64; i++) {
+                assertFalse(map.isSet(i));
+            }
+
+            if (next >= 0) {
+                assertTrue(map.isSet(next));
+            }
+
+            pos = next;
+        } while (pos >= 0);
+    }
+}
@@ -0,0 +1,286 @@
+/* Copyright (c) 2001-2005, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks queries over a CACHED table with a ZONEMAP against the same
+ * queries over a CACHED table without one, after inserts, updates that
+ * change the primary key, deletes, CHECKPOINT DEFRAG and reopening the
+ * database.
+ *
+ * @version 1.8.0
+ * @since 1.8.0
+ */
+public class TestZoneMap {
+
+    private static final String[] conditions = {
+        "ts < 400", "ts >= 9000 AND ts < 9100", "ts > 15000",
+        "ts BETWEEN 6000 AND 6020 OR ts = 12", "s = 'g3'", "s > 'g8'",
+        "n = 7 AND ts > 4000", "n > 995", "ts < 0", "ts IS NULL"
+    };
+    private File       dir;
+    private Connection connection;
+    private Statement  statement;
+    private Random     random;
+
+    @Before
+    public void setUp() throws Exception {
+
+        Class.forName("org.hsqldb.jdbcDriver");
+
+        dir = File.createTempFile("testzonemap", "");
+
+        dir.delete();
+        dir.mkdirs();
+        connect();
+        statement.execute("CREATE CACHED TABLE z (id INT PRIMARY KEY,"
+                          + " ts INT, n INT, s VARCHAR(10))");
+        statement.execute("CREATE CACHED TABLE p (id INT PRIMARY KEY,"
+                          + " ts INT, n INT, s VARCHAR(10))");
+        statement.execute("SET TABLE z ZONEMAP (ts, s, n)");
+
+        random = new Random(11);
+
+        insert(0, 8000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        statement.execute("SHUTDOWN");
+        connection.close();
+
+        File[] files = dir.listFiles();
+
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+
+        dir.delete();
+    }
+
+    @Test
+    public void testInsert() throws SQLException {
+
+        assertSame();
+        insert(8000, 2000);
+        assertSame();
+
+        // rows below the first key and between the zones
+        insert(-500, 500);
+        statement.execute("INSERT INTO z VALUES (20001, 1, 1, 'g1')");
+        statement.execute("INSERT INTO p VALUES (20001, 1, 1, 'g1')");
+        assertSame();
+    }
+
+    @Test
+    public void testPrimaryKeyUpdate() throws SQLException {
+
+        // rows move to other zones, with their old values
+        execute("UPDATE %s SET id = id + 20000 WHERE ts < 1000");
+        assertSame();
+        execute("UPDATE %s SET id = 30000 - id, ts = -ts WHERE s = 'g9'");
+        assertSame();
+        execute("UPDATE %s SET id = -id - 1, s = 'g99' WHERE n < 10");
+        assertSame();
+        execute("UPDATE %s SET id = id + 100000 WHERE MOD(id, 7) = 1"
+                + " AND id > 7000");
+        assertSame();
+    }
+
+    @Test
+    public void testDelete() throws SQLException {
+
+        execute("DELETE FROM %s WHERE ts > 10000");
+        assertSame();
+        execute("DELETE FROM %s WHERE MOD(id, 3) = 0");
+        assertSame();
+        insert(10000, 2000);
+        assertSame();
+        execute("DELETE FROM %s");
+        assertSame();
+    }
+
+    @Test
+    public void testDefrag() throws Exception {
+
+        execute("UPDATE %s SET id = id + 20000 WHERE ts < 3000");
+        execute("DELETE FROM %s WHERE s = 'g5'");
+        statement.execute("CHECKPOINT DEFRAG");
+        assertSame();
+        execute("UPDATE %s SET ts = ts + 100000 WHERE MOD(id, 50) = 0");
+        insert(40000, 1000);
+        assertSame();
+        statement.execute("SHUTDOWN");
+        connection.close();
+        connect();
+        assertSame();
+        execute("UPDATE %s SET id = -id WHERE n > 900");
+        assertSame();
+    }
+
+    @Test
+    public void testOnOff() throws SQLException {
+
+        execute("UPDATE %s SET id = id + 20000 WHERE ts < 1000");
+        statement.execute("SET TABLE z ZONEMAP OFF");
+        assertSame();
+        execute("DELETE FROM %s WHERE ts > 14000");
+        statement.execute("SET TABLE z ZONEMAP (n, ts)");
+        assertSame();
+    }
+
+    /**
+     * Inserts rows with ts increasing with the key, as in a log.
+     */
+    private void insert(int first, int count) throws SQLException {
+
+        PreparedStatement z = connection.prepareStatement(
+            "INSERT INTO z VALUES (?, ?, ?, ?)");
+        PreparedStatement p = connection.prepareStatement(
+            "INSERT INTO p VALUES (?, ?, ?, ?)");
+
+        for (int i = first; i < first + count; i++) {
+            int     ts     = i * 2 + random.nextInt(20);
+            int     n      = random.nextInt(1000);
+            String  s      = "g" + (i / 800) % 10;
+            boolean isNull = random.nextInt(50) == 0;
+
+            for (int j = 0; j < 2; j++) {
+                PreparedStatement ps = j == 0 ? z
+                                              : p;
+
+                ps.setInt(1, i);
+
+                if (isNull) {
+                    ps.setNull(2, Types.INTEGER);
+                } else {
+                    ps.setInt(2, ts);
+                }
+
+                ps.setInt(3, n);
+                ps.setString(4, s);
+                ps.execute();
+            }
+        }
+
+        z.close();
+        p.close();
+    }
+
+    private void execute(String sql) throws SQLException {
+        statement.execute(sql.replaceAll("%s", "z"));
+        statement.execute(sql.replaceAll("%s", "p"));
+    }
+
+    /**
+     * Compares the rows and counts of z and p for each condition, with
+     * constants and with parameters.
+     */
+    private void assertSame() throws SQLException {
+
+        for (int i = 0; i < conditions.length; i++) {
+            String sql = "SELECT COUNT(*), SUM(id), MIN(ts), MAX(n) FROM %s"
+                         + " WHERE " + conditions[i];
+
+            assertEquals(sql, query(sql.replaceAll("%s", "p")),
+                         query(sql.replaceAll("%s", "z")));
+        }
+
+        String sql = "SELECT * FROM %s WHERE ts > ? AND ts < ? ORDER BY id";
+
+        for (int i = 0; i < 5; i++) {
+            int low = random.nextInt(17000) - 500;
+
+            assertEquals(sql, query(sql.replaceAll("%s", "p"), low, low + 60),
+                         query(sql.replaceAll("%s", "z"), low, low + 60));
+        }
+    }
+
+    private void connect() throws SQLException {
+
+        connection = DriverManager.getConnection("jdbc:hsqldb:file:"
+                + dir.getPath() + "/db", "sa", "");
+        statement = connection.createStatement();
+    }
+
+    private String query(String sql) throws SQLException {
+        return toString(statement.executeQuery(sql));
+    }
+
+    private String query(String sql, int low,
+                         int high) throws SQLException {
+
+        PreparedStatement ps = connection.prepareStatement(sql);
+
+        ps.setInt(1, low);
+        ps.setInt(2, high);
+
+        String result = toString(ps.executeQuery());
+
+        ps.close();
+
+        return result;
+    }
+
+    private static String toString(ResultSet rs) throws SQLException {
+
+        StringBuffer sb = new StringBuffer();
+        int          n  = rs.getMetaData().getColumnCount();
+
+        while (rs.next()) {
+            for (int i = 1; i <= n; i++) {
+                sb.append(rs.getString(i)).append(' ');
+            }
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+}